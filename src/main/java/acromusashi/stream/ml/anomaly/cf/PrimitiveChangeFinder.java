@@ -0,0 +1,296 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.anomaly.cf;
+
+import java.text.MessageFormat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 変化点検出アルゴリズム「ChangeFinder」を、プリミティブ型の固定長リングバッファを用いて実装したクラス<br>
+ * 過去データとスコアを固定長のdouble配列で保持し、スコア算出時にオブジェクトの生成(ボクシングを含む)を行わない。<br>
+ * 算出順序は{@link ChangeFinder}と同一のため、同じ入力に対して同一のスコアを算出する。<br>
+ * 平滑化は{@link ChangeFinder}と同様に古いスコアから順に総和を算出する。
+ * 加算・減算による累積和では丸め誤差によりスコアが一致しなくなるため用いない。
+ *
+ * @author kimura
+ */
+public class PrimitiveChangeFinder
+{
+    /** logger */
+    private static final Logger   logger = LoggerFactory.getLogger(PrimitiveChangeFinder.class);
+
+    /** ログメッセージのヘッダ */
+    private String                logHeader;
+
+    /** 自己回帰モデルの次数「k」 */
+    private int                   arDimensionNum;
+
+    /** 平滑化ウィンドウサイズ「T」 */
+    private int                   smoothingWindow;
+
+    /** オンライン忘却パラメータ「r」(0~1 小さいほど過去の値に依存) */
+    private double                forgetability;
+
+    /** 過去データを蓄積するためのリングバッファ。長さは「自己回帰モデルの次数 + 1」 */
+    private double[]              pastData;
+
+    /** 過去データのリングバッファ中の最新データの位置 */
+    private int                   pastHead;
+
+    /** 過去データのリングバッファに保持しているデータ数 */
+    private int                   pastSize;
+
+    /** μ最尤推定値 */
+    private double                estimatedMyu;
+
+    /** Σ最尤推定値 */
+    private double                estimatedSigma;
+
+    /** 確率密度関数を生成するためのベース配列「C」 */
+    private double[]              pdfBase;
+
+    /** パラメータ推定に用いる係数配列「ω」 */
+    private double[]              yuleWalkerAns;
+
+    /** 結果のスコア値を保持するリングバッファ。長さは「平滑化ウィンドウサイズ」 */
+    private double[]              scores;
+
+    /** スコアのリングバッファ中の次回書き込み位置 */
+    private int                   scoreNext;
+
+    /** スコアのリングバッファに保持しているスコア数 */
+    private int                   scoreSize;
+
+    /** 2段階目の学習を行うChangeFinder */
+    private PrimitiveChangeFinder secondChangeFinder;
+
+    /**
+     * 初期化パラメータ群を指定してインスタンスを生成する。<br>
+     * 平滑化ウィンドウサイズが1未満の場合は平滑化を行えないため、インスタンスを生成しない。
+     *
+     * @param arDimensionNum 自己回帰モデルの次数
+     * @param smoothingWindow 平滑化ウィンドウサイズ
+     * @param forgetability 忘却パラメータ
+     * @param hasSecond 2段階目の学習を行うChangeFinderを保持するか
+     */
+    public PrimitiveChangeFinder(int arDimensionNum, int smoothingWindow, double forgetability,
+            boolean hasSecond)
+    {
+        if (smoothingWindow < 1)
+        {
+            throw new IllegalArgumentException("The smoothing window has to be positive!");
+        }
+
+        this.arDimensionNum = arDimensionNum;
+        this.smoothingWindow = smoothingWindow;
+        this.forgetability = forgetability;
+        this.pastData = new double[this.arDimensionNum + 1];
+        this.pdfBase = new double[this.arDimensionNum + 1];
+        this.yuleWalkerAns = new double[this.arDimensionNum + 1];
+        this.scores = new double[this.smoothingWindow];
+
+        if (hasSecond == true)
+        {
+            this.secondChangeFinder = new PrimitiveChangeFinder(arDimensionNum, smoothingWindow,
+                    forgetability, false);
+            this.logHeader = "FirstLearn:";
+        }
+        else
+        {
+            this.logHeader = "SecondLearn:";
+        }
+    }
+
+    /**
+     * 指定した値を用いて変化点スコアを算出する。<br>
+     * 算出と同時に過去状態の更新も行う。
+     *
+     * @param input 指定値
+     * @return 変化点スコア
+     */
+    public double calculateScore(double input)
+    {
+        addPastData(input);
+        int dataLength = this.pastSize;
+
+        // #############################################
+        // ## オンライン忘却アルゴリズムSDARを用いて1段階学習を行う。
+        // #############################################
+        // 最尤推定値「μ」を更新する。
+        this.estimatedMyu = (1 - this.forgetability) * this.estimatedMyu + this.forgetability
+                * input;
+
+        // 確率密度関数用の係数配列を更新する。
+        // 算出される個数は「過去データの数」「自己回帰モデルの次数 + 1」のうち小さい方
+        int pdfBaseNum = Math.min(dataLength, this.arDimensionNum + 1);
+        for (int index = 0; index < pdfBaseNum; index++)
+        {
+            this.pdfBase[index] = (1 - this.forgetability) * this.pdfBase[index]
+                    + this.forgetability * (input - this.estimatedMyu)
+                    * (getPastData(index) - this.estimatedMyu);
+        }
+
+        // パラメータ推定に用いる係数配列「ω」の算出を行う。
+        // 確率密度関数用の係数配列のインデックスと異なり1オリジンのため配列インデックスも1から使用している。
+        for (int yuleIndex = 1; yuleIndex < pdfBaseNum; yuleIndex++)
+        {
+            double nowPdfBase = this.pdfBase[yuleIndex];
+
+            for (int index = 1; index < yuleIndex; index++)
+            {
+                nowPdfBase = nowPdfBase
+                        - (this.pdfBase[yuleIndex - index] * this.yuleWalkerAns[index]);
+            }
+
+            double yuleResult = nowPdfBase / (this.pdfBase[0]);
+            this.yuleWalkerAns[yuleIndex] = yuleResult;
+        }
+
+        // データの推測値を算出
+        double estimatedValue = this.estimatedMyu;
+        for (int index = 1; index < pdfBaseNum; index++)
+        {
+            double dataResult = getPastData(index);
+            double dist = this.yuleWalkerAns[index] * (dataResult - this.estimatedMyu);
+            estimatedValue = estimatedValue + dist;
+        }
+
+        // 次回算出時に用いる過去データは「自己回帰モデルの次数」分のため、最古のデータを破棄する。
+        if (this.pastSize > this.arDimensionNum)
+        {
+            this.pastSize--;
+        }
+
+        // Σの最尤推定値を算出
+        this.estimatedSigma = (1 - this.forgetability) * this.estimatedSigma + this.forgetability
+                * Math.pow((input - estimatedValue), 2);
+
+        // 1段階学習結果スコアを算出
+        double firstScore = ChangeFinder.calcFirstScore(estimatedValue, input,
+                this.estimatedSigma, this.smoothingWindow);
+        addScore(firstScore);
+
+        // #############################################
+        // ## 平滑化を行う。
+        // #############################################
+        double movingAverage = smoothing();
+
+        if (logger.isDebugEnabled() == true)
+        {
+            String logFormat = "CalculateResult. Input={0}, Myu={1}, Sigma={2}, Estimated={3}, Score={4}, MovingAverage={5}";
+            logger.debug(this.logHeader
+                    + MessageFormat.format(logFormat, input, this.estimatedMyu,
+                            this.estimatedSigma, estimatedValue, firstScore, movingAverage));
+        }
+
+        // #############################################
+        // ## オンライン忘却アルゴリズムSDARを用いて2段階学習を行う。
+        // ## フィールド「secondFinder」が存在している場合、2段階学習結果をスコアとして返す。
+        // ## 存在していない場合は本インスタンス自身が2段階目のChangeFinderのため、平滑化の結果をそのまま返す。
+        // #############################################
+        if (this.secondChangeFinder == null)
+        {
+            return movingAverage;
+        }
+
+        double secondScore = this.secondChangeFinder.calculateScore(movingAverage);
+        return secondScore;
+    }
+
+    /**
+     * 過去データのリングバッファの先頭に指定値を追加する。
+     *
+     * @param input 指定値
+     */
+    private void addPastData(double input)
+    {
+        this.pastHead = this.pastHead - 1;
+        if (this.pastHead < 0)
+        {
+            this.pastHead = this.pastData.length - 1;
+        }
+
+        this.pastData[this.pastHead] = input;
+        if (this.pastSize < this.pastData.length)
+        {
+            this.pastSize++;
+        }
+    }
+
+    /**
+     * 新しい方から指定した位置の過去データを取得する。
+     *
+     * @param index 新しい方からの位置(最新データが0)
+     * @return 過去データ
+     */
+    private double getPastData(int index)
+    {
+        int position = this.pastHead + index;
+        if (position >= this.pastData.length)
+        {
+            position = position - this.pastData.length;
+        }
+
+        return this.pastData[position];
+    }
+
+    /**
+     * スコアのリングバッファに指定スコアを追加する。<br>
+     * 平滑化ウィンドウサイズ分のスコアを保持している場合、最も古いスコアを上書きする。
+     *
+     * @param score スコア
+     */
+    private void addScore(double score)
+    {
+        this.scores[this.scoreNext] = score;
+        this.scoreNext = this.scoreNext + 1;
+        if (this.scoreNext >= this.scores.length)
+        {
+            this.scoreNext = 0;
+        }
+
+        if (this.scoreSize < this.scores.length)
+        {
+            this.scoreSize++;
+        }
+    }
+
+    /**
+     * 保持しているスコアを古い方から順に加算して平滑化を行い、移動平均スコアを算出する。
+     *
+     * @return 移動平均スコア
+     */
+    private double smoothing()
+    {
+        int position = this.scoreNext - this.scoreSize;
+        if (position < 0)
+        {
+            position = position + this.scores.length;
+        }
+
+        double scoreSum = 0.0d;
+        for (int count = 0; count < this.scoreSize; count++)
+        {
+            scoreSum = scoreSum + this.scores[position];
+            position = position + 1;
+            if (position >= this.scores.length)
+            {
+                position = 0;
+            }
+        }
+
+        return scoreSum / this.smoothingWindow;
+    }
+}
@@ -15,10 +15,12 @@ package acromusashi.stream.ml.anomaly.lof;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.collections.ComparatorUtils;
 import org.apache.commons.lang.StringUtils;
@@ -28,8 +30,11 @@ import acromusashi.stream.ml.anomaly.lof.entity.DistanceResult;
 import acromusashi.stream.ml.anomaly.lof.entity.DistanceResultComparator;
 import acromusashi.stream.ml.anomaly.lof.entity.KDistanceResult;
 import acromusashi.stream.ml.anomaly.lof.entity.LofDataSet;
+import acromusashi.stream.ml.anomaly.lof.entity.LofLshIndex;
 import acromusashi.stream.ml.anomaly.lof.entity.LofPoint;
 import acromusashi.stream.ml.anomaly.lof.entity.LofPointComparator;
+import acromusashi.stream.ml.anomaly.lof.entity.LofScoreCache;
+import acromusashi.stream.ml.common.util.PointMatrix;
 
 /**
  * Local Outlier Factorの計算を行うユーティリティクラス
@@ -38,6 +43,12 @@ import acromusashi.stream.ml.anomaly.lof.entity.LofPointComparator;
  */
 public class LofCalculator
 {
+    /** K距離算出時に学習データセットのK近傍探索用インデックスを用いるデータ数の下限 */
+    public static final int INDEXED_SEARCH_THRESHOLD = 64;
+
+    /** 複数の対象点の一括算出時に、学習データとの距離をまとめて算出する対象点数 */
+    public static final int BATCH_BLOCK_SIZE         = 64;
+
     /**
      * インスタンス化を防止するためのコンストラクタ
      */
@@ -47,6 +58,8 @@ public class LofCalculator
     /**
      * 指定したK値、対象点、データセットを基に局所外れ係数スコアを算出する。その際、データセットが中間データを使用せずに処理を行う。<br>
      * 本メソッド呼び出しによってデータセットの更新は行われない。<br>
+     * 算出に必要なK距離、K距離近傍は対象点のK距離近傍と、それらの点のK距離近傍に限られるため、
+     * データセットの複製は行わず、必要な点の値のみを一時領域に算出して用いる。
      * 
      * @param kn K値
      * @param targetPoint 対象点
@@ -58,19 +71,31 @@ public class LofCalculator
         // 対象点のK距離、K距離近傍を算出する。
         KDistanceResult kResult = calculateKDistance(kn, targetPoint, dataSet);
 
-        LofPoint tmpTargetPoint = targetPoint.deepCopy();
-        tmpTargetPoint.setkDistance(kResult.getkDistance());
-        tmpTargetPoint.setkDistanceNeighbor(kResult.getkDistanceNeighbor());
+        // データセット中の点のK距離、K距離近傍は必要になった時点で算出し、一時領域に保持する。
+        Map<String, KDistanceResult> overlay = new HashMap<>();
+        double targetLrd = calculateLrd(kn, targetPoint, kResult.getkDistanceNeighbor(), dataSet,
+                overlay);
+
+        // 対象の局所外れ係数を算出する。
+        int countedData = 0;
+        double totalAmount = 0.0d;
+        for (String neighborId : kResult.getkDistanceNeighbor())
+        {
+            LofPoint neighborPoint = dataSet.getDataMap().get(neighborId);
+            KDistanceResult neighborResult = getKDistance(kn, neighborPoint, dataSet, overlay);
+            double neighborLrd = calculateLrd(kn, neighborPoint,
+                    neighborResult.getkDistanceNeighbor(), dataSet, overlay);
 
-        // データセット用の学習データモデルを一時的に生成する。
-        LofDataSet tmpDataSet = dataSet.deepCopy();
-        initDataSet(kn, tmpDataSet);
+            totalAmount = totalAmount + (neighborLrd / targetLrd);
+            countedData++;
+        }
 
-        updateLrd(tmpTargetPoint, tmpDataSet);
+        if (countedData == 0)
+        {
+            return totalAmount;
+        }
 
-        // 対象の局所外れ係数を算出する。
-        double lof = calculateLof(tmpTargetPoint, tmpDataSet);
-        return lof;
+        return totalAmount / (countedData);
     }
 
     /**
@@ -104,6 +129,86 @@ public class LofCalculator
         return deleteId;
     }
 
+    /**
+     * 判定時刻が基準時刻より前の点を学習データセットから一括で削除する。<br>
+     * 削除対象は判定時刻順に並んだデータIDのリストの先頭から取得するため、学習データセット全体の走査は行わない。
+     * 中間データの更新は行わないため、中間データを保持する場合は{@link #deleteExpiredData(int, long, LofDataSet, ForkJoinPool)}を用いること。
+     * 
+     * @param expireTime 基準時刻
+     * @param dataSet 学習データセット
+     * @return 削除したデータのIdのリスト(判定時刻の古い順)
+     */
+    public static List<String> deleteExpiredData(long expireTime, LofDataSet dataSet)
+    {
+        List<String> expiredIds = dataSet.getExpiredDataIds(expireTime);
+        if (expiredIds.isEmpty() == false)
+        {
+            dataSet.deleteData(new HashSet<>(expiredIds));
+        }
+
+        return expiredIds;
+    }
+
+    /**
+     * 判定時刻が基準時刻より前の点を学習データセットから一括で削除し、中間データを更新する。<br>
+     * 中間データの更新は削除した点をK距離近傍に含む点と、それらの点をK距離近傍に含む点(逆K近傍)に限定して行う。<br>
+     * 算出結果は削除後に{@link #initDataSet(int, LofDataSet)}メソッドを実行した場合と同一となる。
+     * 
+     * @param kn K値
+     * @param expireTime 基準時刻
+     * @param dataSet 学習データセット
+     * @param pool 再計算の並列実行に用いるスレッドプール。nullの場合は逐次実行する
+     * @return 削除したデータのIdのリスト(判定時刻の古い順)
+     */
+    public static List<String> deleteExpiredData(int kn, long expireTime, LofDataSet dataSet,
+            ForkJoinPool pool)
+    {
+        List<String> expiredIds = dataSet.getExpiredDataIds(expireTime);
+        if (expiredIds.isEmpty() == true)
+        {
+            return expiredIds;
+        }
+
+        deleteDataWithUpdate(kn, new HashSet<>(expiredIds), dataSet, pool);
+
+        return expiredIds;
+    }
+
+    /**
+     * 指定した点を学習データセットから一括で削除し、中間データを更新する。<br>
+     * 中間データの更新は削除した点をK距離近傍に含む点と、それらの点をK距離近傍に含む点(逆K近傍)に限定して行う。<br>
+     * 算出結果は削除後に{@link #initDataSet(int, LofDataSet)}メソッドを実行した場合と同一となる。
+     * 
+     * @param kn K値
+     * @param deleteIds 削除対象点のデータIDの集合
+     * @param dataSet 学習データセット
+     * @param pool 再計算の並列実行に用いるスレッドプール。nullの場合は逐次実行する
+     */
+    public static void deleteDataWithUpdate(int kn, Set<String> deleteIds, LofDataSet dataSet,
+            ForkJoinPool pool)
+    {
+        // 削除したデータをK距離近傍に含む点がK距離、K距離近傍の更新対象となる。
+        Set<String> updateTargets = new HashSet<>();
+        for (String deleteId : deleteIds)
+        {
+            updateTargets.addAll(dataSet.getReverseNeighbors(deleteId));
+        }
+        updateTargets.removeAll(deleteIds);
+
+        dataSet.deleteData(deleteIds);
+
+        // K距離、K距離近傍を全て更新した後局所到達可能密度を更新する必要があるため、2ブロックに分けて行う。
+        updatePoints(kn, toPoints(updateTargets, dataSet), dataSet, false, pool);
+
+        Set<String> lrdTargets = new HashSet<>(updateTargets);
+        for (String targetId : updateTargets)
+        {
+            lrdTargets.addAll(dataSet.getReverseNeighbors(targetId));
+        }
+
+        updatePoints(kn, toPoints(lrdTargets, dataSet), dataSet, true, pool);
+    }
+
     /**
      * 指定したK値、対象点、データセットを基に局所外れ係数スコアを算出する。<br>
      * 本メソッド呼び出しによってデータセットの更新は行われない。<br>
@@ -130,9 +235,45 @@ public class LofCalculator
         return lof;
     }
 
+    /**
+     * 指定したK値、複数の対象点、データセットを基に各対象点の局所外れ係数スコアを一括で算出する。<br>
+     * 本メソッド呼び出しによってデータセットの更新は行われない。<br>
+     * 対象点と学習データ中の各点との距離は全対象点分をまとめて算出し、K距離近傍の選択と対象点の局所到達可能密度の算出に共用する。<br>
+     * キャッシュを指定した場合はデータセットが中間データを保持しないものとして扱い、学習データ中の点のK距離と局所到達可能密度は
+     * 必要になった時点で算出してキャッシュに保持する。キャッシュの値は学習データの版が変化するまで以後の呼び出しでも共用する。<br>
+     * 算出結果はキャッシュを指定しない場合は{@link #calculateLofWithoutUpdate(int, LofPoint, LofDataSet)}、
+     * 指定した場合は{@link #calculateLofNoIntermediate(int, LofPoint, LofDataSet)}と同一となる。
+     * 
+     * @param kn K値
+     * @param targetPoints 対象点のリスト
+     * @param dataSet 学習データセット
+     * @param cache 中間データを保持しない場合に用いるキャッシュ。中間データを保持する場合はnull
+     * @return 対象点毎のLOFスコア
+     */
+    public static double[] calculateLofBatch(int kn, List<LofPoint> targetPoints,
+            LofDataSet dataSet, LofScoreCache cache)
+    {
+        if (cache != null)
+        {
+            cache.synchronize(dataSet);
+        }
+
+        // 全対象点のK距離近傍を一括で選択する。
+        List<List<DistanceResult>> neighborsList = searchNeighbors(kn, targetPoints, dataSet);
+
+        double[] result = new double[targetPoints.size()];
+        for (int index = 0; index < result.length; index++)
+        {
+            result[index] = calculateLof(kn, neighborsList.get(index), dataSet, cache);
+        }
+
+        return result;
+    }
+
     /**
      * 指定したK値、対象点、データセットを基に局所外れ係数スコアを算出する。<br>
-     * 本メソッド呼び出しによって対象点、データセット内の学習データが更新され、データ保持数を超過していた場合は古いデータから削除が行われる。
+     * 本メソッド呼び出しによって対象点、データセット内の学習データが更新され、データ保持数を超過していた場合は古いデータから削除が行われる。<br>
+     * 中間データの更新は追加/削除によってK距離近傍が変化する点と、それらの点をK距離近傍に含む点(逆K近傍)に限定して行う(Incremental LOF)。
      * 
      * @param kn K値
      * @param max データ保持数最大値
@@ -146,26 +287,67 @@ public class LofCalculator
         // データ数が最大に達している場合には古い方からデータの削除を行う
         String deleteId = addPointToDataSet(max, addedPoint, dataSet);
 
+        return updateIntermediate(kn, addedPoint, dataSet, deleteId);
+    }
+
+    /**
+     * 学習データセットの指定した点を対象点で置き換え、対象点の局所外れ係数スコアを算出する。<br>
+     * 削除する点を指定しない場合は対象点の追加のみを行う。
+     * 中間データの更新範囲と算出結果は{@link #calculateLofWithUpdate(int, int, LofPoint, LofDataSet)}と同様である。
+     * 
+     * @param kn K値
+     * @param deleteId 削除する点のデータID。削除を行わない場合はnull
+     * @param addedPoint 対象点
+     * @param dataSet 学習データセット
+     * @return LOFスコア
+     */
+    public static double calculateLofWithReplace(int kn, String deleteId, LofPoint addedPoint,
+            LofDataSet dataSet)
+    {
+        if (deleteId != null)
+        {
+            dataSet.deleteData(deleteId);
+        }
+
+        dataSet.addData(addedPoint);
+
+        return updateIntermediate(kn, addedPoint, dataSet, deleteId);
+    }
+
+    /**
+     * 対象点の追加、及び点の削除後に、K距離近傍が変化する点とその逆K近傍の中間データを更新し、対象点の局所外れ係数スコアを算出する。
+     * 
+     * @param kn K値
+     * @param addedPoint 追加した対象点
+     * @param dataSet 学習データセット
+     * @param deleteId 削除した点のデータID。削除していない場合はnull
+     * @return LOFスコア
+     */
+    private static double updateIntermediate(int kn, LofPoint addedPoint, LofDataSet dataSet,
+            String deleteId)
+    {
         // K距離、K距離近傍、局所到達可能密度の更新を行う対象点の一覧を取得する。
         Set<String> updateTargets = generateUpdateTargets(addedPoint, dataSet, deleteId);
 
-        Collection<LofPoint> targetList = dataSet.getDataMap().values();
         // K距離、K距離近傍を全て更新した後局所到達可能密度を更新する必要があるため、2ブロックに分けて行う。
-        for (LofPoint targetPoint : targetList)
+        for (String targetId : updateTargets)
         {
-            if (updateTargets.contains(targetPoint.getDataId()))
-            {
-                // 対象点のK距離、K距離近傍を更新する。
-                updateKDistance(kn, targetPoint, dataSet);
-            }
+            // 対象点のK距離、K距離近傍を更新する。
+            updateKDistance(kn, dataSet.getDataMap().get(targetId), dataSet);
+        }
+
+        // 局所到達可能密度はK距離近傍の点との到達可能距離から算出されるため、
+        // K距離近傍が更新された点と、K距離が更新された点をK距離近傍に含む点のみが更新対象となる。
+        Set<String> lrdTargets = new HashSet<>(updateTargets);
+        for (String targetId : updateTargets)
+        {
+            lrdTargets.addAll(dataSet.getReverseNeighbors(targetId));
         }
 
-        // K距離の更新によって「K距離が更新された点」をK距離近傍に含む点の到達可能距離/局所到達可能密度も更新される
-        // 実質的にほぼすべての点の到達可能距離/局所到達可能密度が更新される形になるため、全点に対して算出を行う。 
-        for (LofPoint targetPoint : targetList)
+        for (String targetId : lrdTargets)
         {
             // 対象点の局所到達可能密度を更新する。
-            updateLrd(targetPoint, dataSet);
+            updateLrd(dataSet.getDataMap().get(targetId), dataSet);
         }
 
         // 対象の局所外れ係数を算出する。「addedPoint」は必ずK距離、K距離近傍、局所到達可能密度の対象となり、値が設定されているためそのまま用いる。
@@ -202,9 +384,37 @@ public class LofCalculator
         }
     }
 
+    /**
+     * 指定したK値、データセットを基に学習データセットの初期化を指定したスレッドプール上で並列に行う。<br>
+     * 再計算する値は{@link #initDataSet(int, LofDataSet)}と同一であり、算出結果も同一となる。<br>
+     * K距離、K距離近傍を全点について更新し終えてから局所到達可能密度の更新を開始する。
+     * 
+     * @param kn K値
+     * @param dataSet 学習データセット
+     * @param pool 並列実行に用いるスレッドプール。nullの場合は逐次実行する
+     */
+    public static void initDataSet(int kn, LofDataSet dataSet, ForkJoinPool pool)
+    {
+        if (pool == null)
+        {
+            initDataSet(kn, dataSet);
+            return;
+        }
+
+        Collection<LofPoint> pointList = dataSet.getDataMap().values();
+        LofPoint[] points = pointList.toArray(new LofPoint[pointList.size()]);
+
+        // invokeは全タスクの完了まで待ち合わせるため、局所到達可能密度の更新は全点のK距離更新後に開始される。
+        updatePoints(kn, points, dataSet, false, pool);
+        updatePoints(kn, points, dataSet, true, pool);
+    }
+
     /**
      * 学習データのマージを行う。<br>
-     * 中間データは生成されないため、必要な場合は本メソッド実行後に{@link #initDataSet(int, LofDataSet)}メソッドを実行すること。
+     * 双方の学習データの点を判定時刻の新しい方から最大保持数個だけ取得し、判定時刻の古い順に保持する学習データを生成する。
+     * 双方のデータIDのリストは判定時刻順に並んでいるため、末尾から比較しながら取得することでソートを行わずにマージする。<br>
+     * 中間データは生成されないため、必要な場合は本メソッド実行後に{@link #initDataSet(int, LofDataSet)}メソッドを実行するか、
+     * {@link #mergeDataSet(int, LofDataSet, LofDataSet, int, ForkJoinPool)}メソッドを用いること。
      * 
      * @param baseDataSet マージのベース学習データ
      * @param targetDataSet マージ対象の学習データ
@@ -213,166 +423,486 @@ public class LofCalculator
      */
     public static LofDataSet mergeDataSet(LofDataSet baseDataSet, LofDataSet targetDataSet, int max)
     {
-        Collection<LofPoint> basePointList = baseDataSet.getDataMap().values();
-        Collection<LofPoint> targetPointList = targetDataSet.getDataMap().values();
-
-        // LOFの対象点を時刻でソートしたリストを生成する。
-        List<LofPoint> mergedList = new ArrayList<>();
-        mergedList.addAll(basePointList);
-        mergedList.addAll(targetPointList);
-        Collections.sort(mergedList, new LofPointComparator());
-
-        // ソート後、新しい方から扱うため順番を逆にする。
-        Collections.reverse(mergedList);
+        List<LofPoint> basePoints = toTimeOrderedPoints(baseDataSet);
+        List<LofPoint> targetPoints = toTimeOrderedPoints(targetDataSet);
+        LofPointComparator comparator = new LofPointComparator();
 
-        // 新しいデータから順にマージ後のモデルに反映する。
+        // 新しいデータから順にマージ後のモデルに反映する。判定時刻が同一の場合はマージ対象の学習データを優先する。
         // 但し、お互いに非同期でマージが行われるため同様のIDを持つデータが複数存在するケースがある。
         // そのため、IDを比較してそれまでに取得していないデータの追加のみを行う。
         Set<String> registeredId = new HashSet<>();
-        int addedCount = 0;
-        LofDataSet resultDataSet = new LofDataSet();
+        List<LofPoint> mergedList = new ArrayList<>();
+        int baseIndex = basePoints.size() - 1;
+        int targetIndex = targetPoints.size() - 1;
 
-        for (LofPoint targetPoint : mergedList)
+        while (mergedList.size() < max && (baseIndex >= 0 || targetIndex >= 0))
         {
-            if (registeredId.contains(targetPoint.getDataId()) == true)
+            LofPoint nextPoint = null;
+            if (baseIndex < 0
+                    || (targetIndex >= 0 && comparator.compare(targetPoints.get(targetIndex),
+                            basePoints.get(baseIndex)) >= 0))
             {
-                continue;
+                nextPoint = targetPoints.get(targetIndex);
+                targetIndex--;
+            }
+            else
+            {
+                nextPoint = basePoints.get(baseIndex);
+                baseIndex--;
             }
 
-            registeredId.add(targetPoint.getDataId());
-            resultDataSet.addData(targetPoint);
-            addedCount++;
-
-            if (addedCount >= max)
+            if (registeredId.add(nextPoint.getDataId()) == true)
             {
-                break;
+                mergedList.add(nextPoint);
             }
         }
 
+        // 古いデータが先頭となるよう、取得順と逆順に追加する。
+        LofDataSet resultDataSet = new LofDataSet();
+        for (int index = mergedList.size() - 1; index >= 0; index--)
+        {
+            resultDataSet.addData(mergedList.get(index));
+        }
+
+        // サンプリングの状態は新しい層の値を、同一の層の場合は受信データ数の多い方を引き継ぐ。
+        LofDataSet sampleSource = baseDataSet;
+        if (targetDataSet.getSampleStratum() > baseDataSet.getSampleStratum()
+                || (targetDataSet.getSampleStratum() == baseDataSet.getSampleStratum()
+                && targetDataSet.getSampleCount() > baseDataSet.getSampleCount()))
+        {
+            sampleSource = targetDataSet;
+        }
+        resultDataSet.setSampleStratum(sampleSource.getSampleStratum());
+        resultDataSet.setSampleCount(sampleSource.getSampleCount());
+
         return resultDataSet;
     }
 
     /**
-     * 学習データの中間データを更新する必要があるDataIdの一覧を生成する。<br>
-     * 以下のいずれかの条件を満たす場合に更新する必要があると判断する。
+     * 学習データのマージを行い、マージ後の学習データの中間データを生成する。<br>
+     * マージ結果の点は{@link #mergeDataSet(LofDataSet, LofDataSet, int)}と同一となる。
+     * 各点の中間データはマージ元の学習データで算出した値を引き継ぎ、マージによってK距離近傍が変化し得る以下の点のみ再計算する。
      * <ol>
-     * <li>削除されたデータをK距離近傍に含む</li>
-     * <li>追加点との距離がK距離より小さい</li>
+     * <li>中間データを保持していない、またはK距離近傍の点数がK値に満たない点</li>
+     * <li>K距離近傍の点がマージ結果に含まれない点</li>
+     * <li>マージ元の学習データに存在しない点との距離がK距離以下となる点</li>
      * </ol>
+     * 局所到達可能密度は上記の点、上記の点をK距離近傍に含む点、及びマージ元が異なる点をK距離近傍に含む点のみ再計算する。<br>
+     * 算出結果はマージ後に{@link #initDataSet(int, LofDataSet)}メソッドを実行した場合と同一となる。
+     * マージ結果の点はマージ元の学習データの点を共有するため、マージ元の学習データの中間データも更新される。
      * 
-     * @param addedPoint 追加点
-     * @param dataSet 学習データセット
-     * @param deleteId 削除データのId
-     * @return 学習データの中間データを更新する必要があるDataIdの一覧
+     * @param kn K値
+     * @param baseDataSet マージのベース学習データ
+     * @param targetDataSet マージ対象の学習データ
+     * @param max データ保持数最大値
+     * @param pool 再計算の並列実行に用いるスレッドプール。nullの場合は逐次実行する
+     * @return マージ後の学習データ
      */
-    protected static Set<String> generateUpdateTargets(LofPoint addedPoint, LofDataSet dataSet,
-            String deleteId)
+    public static LofDataSet mergeDataSet(int kn, LofDataSet baseDataSet,
+            LofDataSet targetDataSet, int max, ForkJoinPool pool)
     {
+        LofDataSet mergedDataSet = mergeDataSet(baseDataSet, targetDataSet, max);
+
+        // 中間データの更新前に、マージ元の中間データを用いて再計算対象を判定する。
         Set<String> updateTargets = new HashSet<>();
-        // 以下の条件のいずれかを満たす対象点と追加された対象点に対してK距離、K距離近傍、局所到達可能密度の更新を行う必要がある。
-        // 但し、今回追加された対象点は常時対象となるため、判定は行わず、中間データ更新が必要として扱う。
-        // 1.削除されたデータをK距離近傍に含む
-        // 2.追加された対象点との距離がK距離より小さい。
-        updateTargets.add(addedPoint.getDataId());
-        Collection<LofPoint> pointList = dataSet.getDataMap().values();
-        for (LofPoint targetPoint : pointList)
+        addMergeUpdateTargets(kn, mergedDataSet, baseDataSet, updateTargets);
+        addMergeUpdateTargets(kn, mergedDataSet, targetDataSet, updateTargets);
+
+        // K距離、K距離近傍を全て更新した後局所到達可能密度を更新する必要があるため、2ブロックに分けて行う。
+        updatePoints(kn, toPoints(updateTargets, mergedDataSet), mergedDataSet, false, pool);
+
+        Set<String> lrdTargets = new HashSet<>(updateTargets);
+        for (String targetId : updateTargets)
         {
-            boolean isDeteted = false;
-            boolean kDistUpdate = false;
+            lrdTargets.addAll(mergedDataSet.getReverseNeighbors(targetId));
+        }
 
-            // 今回追加された対象点は判定をスキップ
-            if (StringUtils.equals(addedPoint.getDataId(), targetPoint.getDataId()) == true)
+        // マージ元が異なる点のK距離は算出元の点の局所到達可能密度の算出時と異なり得るため、再計算の対象とする。
+        for (LofPoint targetPoint : mergedDataSet.getDataMap().values())
+        {
+            boolean fromBase = isOriginalPoint(targetPoint, baseDataSet);
+            for (String neighborId : targetPoint.getkDistanceNeighbor())
             {
-                continue;
+                LofPoint neighborPoint = mergedDataSet.getDataMap().get(neighborId);
+                if (isOriginalPoint(neighborPoint, baseDataSet) != fromBase)
+                {
+                    lrdTargets.add(targetPoint.getDataId());
+                    break;
+                }
             }
+        }
+
+        updatePoints(kn, toPoints(lrdTargets, mergedDataSet), mergedDataSet, true, pool);
+
+        // マージ元の学習データが保持する逆K近傍情報は点の更新に追従していないため破棄する。
+        baseDataSet.clearReverseNeighbors();
+        targetDataSet.clearReverseNeighbors();
 
-            // 「1.削除されたデータをK距離近傍に含む」判定
-            // K値は高々20～30の値になるのが一般的なため、Listへのcontainsメソッド実行は性能負荷にはならないと判断する。
-            if (deleteId != null && targetPoint.getkDistanceNeighbor().contains(deleteId) == true)
+        return mergedDataSet;
+    }
+
+    /**
+     * 学習データの点をデータIDのリストの順に取得し、判定時刻の昇順に並んだリストを生成する。<br>
+     * データIDのリストが判定時刻の昇順、または降順に並んでいる場合はソートを行わない。
+     * 
+     * @param dataSet 学習データ
+     * @return 判定時刻の昇順に並んだ点のリスト
+     */
+    private static List<LofPoint> toTimeOrderedPoints(LofDataSet dataSet)
+    {
+        List<LofPoint> points = new ArrayList<>(dataSet.getDataIdList().size());
+        for (String dataId : dataSet.getDataIdList())
+        {
+            LofPoint point = dataSet.getDataMap().get(dataId);
+            if (point != null)
             {
-                isDeteted = true;
+                points.add(point);
             }
+        }
 
-            // 「2.追加された対象点との距離がK距離より小さい。」判定
-            if (MathUtils.distance(addedPoint.getDataPoint(), targetPoint.getDataPoint()) < targetPoint.getkDistance())
+        LofPointComparator comparator = new LofPointComparator();
+        boolean ascending = true;
+        boolean descending = true;
+        for (int index = 1; index < points.size(); index++)
+        {
+            int result = comparator.compare(points.get(index - 1), points.get(index));
+            if (result > 0)
             {
-                kDistUpdate = true;
+                ascending = false;
             }
-
-            if (isDeteted || kDistUpdate)
+            if (result < 0)
             {
-                updateTargets.add(targetPoint.getDataId());
+                descending = false;
             }
         }
 
-        return updateTargets;
+        if (ascending == true)
+        {
+            return points;
+        }
+
+        // 過去のマージ結果は新しい順に保持していたため、逆順に並べ替える。
+        if (descending == true)
+        {
+            Collections.reverse(points);
+            return points;
+        }
+
+        Collections.sort(points, comparator);
+        return points;
     }
 
     /**
-     * 対象点の局所到達可能密度を更新する。
+     * マージ元の学習データから引き継いだ点のうち、マージによってK距離近傍が変化し得る点のデータIDを追加する。
      * 
-     * @param targetPoint 判定対象点
-     * @param dataSet 全体データ
+     * @param kn K値
+     * @param mergedDataSet マージ後の学習データ
+     * @param sourceDataSet マージ元の学習データ
+     * @param updateTargets 再計算対象のデータIDの格納先
      */
-    protected static void updateLrd(LofPoint targetPoint, LofDataSet dataSet)
+    private static void addMergeUpdateTargets(int kn, LofDataSet mergedDataSet,
+            LofDataSet sourceDataSet, Set<String> updateTargets)
     {
-        // 対象点の局所到達可能密度を更新する。
-        double lrd = calculateLrd(targetPoint, dataSet);
-        targetPoint.setLrd(lrd);
+        List<LofPoint> keptPoints = new ArrayList<>();
+        List<LofPoint> gainedPoints = new ArrayList<>();
+        for (LofPoint mergedPoint : mergedDataSet.getDataMap().values())
+        {
+            if (isOriginalPoint(mergedPoint, sourceDataSet) == true)
+            {
+                keptPoints.add(mergedPoint);
+            }
+            else if (sourceDataSet.getDataMap().containsKey(mergedPoint.getDataId()) == false)
+            {
+                gainedPoints.add(mergedPoint);
+            }
+        }
+
+        // 「1.中間データを保持していない、またはK距離近傍の点数がK値に満たない」「2.K距離近傍の点がマージ結果に含まれない」判定
+        int neighborLimit = Math.min(kn, mergedDataSet.getDataMap().size() - 1);
+        double maxKDistance = 0.0d;
+        for (LofPoint keptPoint : keptPoints)
+        {
+            List<String> neighbors = keptPoint.getkDistanceNeighbor();
+            if (neighbors == null || neighbors.size() < neighborLimit
+                    || mergedDataSet.getDataMap().keySet().containsAll(neighbors) == false)
+            {
+                updateTargets.add(keptPoint.getDataId());
+                continue;
+            }
+
+            maxKDistance = Math.max(maxKDistance, keptPoint.getkDistance());
+        }
+
+        // 「3.マージ元の学習データに存在しない点との距離がK距離以下」判定
+        // データ数が多い場合は追加点毎にK距離の最大値を半径とした範囲探索で候補を絞り込む。
+        for (LofPoint gainedPoint : gainedPoints)
+        {
+            Collection<LofPoint> candidates = keptPoints;
+            if (isIndexedSearchEnabled(mergedDataSet) == true)
+            {
+                candidates = mergedDataSet.getPointIndex().searchWithin(
+                        gainedPoint.getDataPoint(), maxKDistance);
+            }
+
+            for (LofPoint candidate : candidates)
+            {
+                if (updateTargets.contains(candidate.getDataId()) == true
+                        || isOriginalPoint(candidate, sourceDataSet) == false)
+                {
+                    continue;
+                }
+
+                double distance = MathUtils.distance(gainedPoint.getDataPoint(),
+                        candidate.getDataPoint());
+                if (distance <= candidate.getkDistance())
+                {
+                    updateTargets.add(candidate.getDataId());
+                }
+            }
+        }
     }
 
     /**
-     * 対象点のK距離とK距離近傍データのIDを更新する。
+     * 対象点がマージ元の学習データの点そのものであるかを判定する。
      * 
-     * @param kn K値
-     * @param targetPoint 判定対象点
-     * @param dataSet 全体データ
+     * @param targetPoint 対象点
+     * @param sourceDataSet マージ元の学習データ
+     * @return マージ元の学習データの点そのものである場合true
      */
-    protected static void updateKDistance(int kn, LofPoint targetPoint, LofDataSet dataSet)
+    private static boolean isOriginalPoint(LofPoint targetPoint, LofDataSet sourceDataSet)
     {
-        // 対象点のK距離、K距離近傍を算出する。
-        KDistanceResult kResult = calculateKDistance(kn, targetPoint, dataSet);
-        targetPoint.setkDistance(kResult.getkDistance());
-        targetPoint.setkDistanceNeighbor(kResult.getkDistanceNeighbor());
+        return sourceDataSet.getDataMap().get(targetPoint.getDataId()) == targetPoint;
     }
 
     /**
-     * 指定したK値、対象点、データセットを基にK距離とK距離近傍データのIDを算出する。
+     * データIDの集合に対応する点の配列を生成する。
      * 
-     * @param kn K値
-     * @param targetPoint 判定対象点
-     * @param dataSet 全体データ
-     * @return K距離とK距離近傍データのIDを保持するエンティティ。但し、K距離算出に必要なデータ個数を満たさない場合は判定対象点から最遠の点に対する距離となる。
+     * @param dataIds データIDの集合
+     * @param dataSet 学習データセット
+     * @return 点の配列
      */
-    protected static KDistanceResult calculateKDistance(int kn, LofPoint targetPoint,
-            LofDataSet dataSet)
+    private static LofPoint[] toPoints(Collection<String> dataIds, LofDataSet dataSet)
     {
-        // 距離算出結果保持マップを算出
-        List<DistanceResult> distances = calculateDistances(targetPoint, dataSet);
+        LofPoint[] points = new LofPoint[dataIds.size()];
+        int index = 0;
+        for (String dataId : dataIds)
+        {
+            points[index] = dataSet.getDataMap().get(dataId);
+            index++;
+        }
 
-        // 算出した距離を用いてK距離とK距離近傍データのIDを算出
-        KDistanceResult kResult = calculateKDistance(kn, distances);
-        return kResult;
+        return points;
     }
 
     /**
-     * basePointのtargetPointに関する到達可能距離(Reachability distance)を算出する。
+     * 指定した点のK距離とK距離近傍、または局所到達可能密度のいずれか一方を更新する。<br>
+     * スレッドプールを指定した場合は点の範囲毎に分割して並列実行し、全点の更新の完了を待ち合わせる。
+     * 並列実行中に遅延生成が行われないよう、K近傍探索用インデックスは事前に生成しておく。
+     * また、逆K近傍情報は各タスクから更新できないため破棄し、次回参照時に再生成させる。
      * 
-     * @param basePoint 算出元対象点
-     * @param targetPoint 算出先対象点
-     * @return 到達可能距離
+     * @param kn K値
+     * @param points 更新対象点の配列
+     * @param dataSet 学習データセット
+     * @param updateLrd 局所到達可能密度を更新するか。falseの場合はK距離とK距離近傍を更新する
+     * @param pool 並列実行に用いるスレッドプール。nullの場合は逐次実行する
      */
-    protected static double calculateReachDistance(LofPoint basePoint, LofPoint targetPoint)
+    private static void updatePoints(int kn, LofPoint[] points, LofDataSet dataSet,
+            boolean updateLrd, ForkJoinPool pool)
     {
-        double distance = MathUtils.distance(basePoint.getDataPoint(), targetPoint.getDataPoint());
+        if (pool == null)
+        {
+            for (LofPoint targetPoint : points)
+            {
+                if (updateLrd == true)
+                {
+                    updateLrd(targetPoint, dataSet);
+                }
+                else
+                {
+                    updateKDistance(kn, targetPoint, dataSet);
+                }
+            }
 
-        double reachDistance = (double) ComparatorUtils.max(distance, targetPoint.getkDistance(),
-                ComparatorUtils.NATURAL_COMPARATOR);
-        return reachDistance;
-    }
+            return;
+        }
 
-    /**
-     * basePointに対する局所到達可能密度(Local reachability density)を算出する。
+        if (isIndexedSearchEnabled(dataSet) == true)
+        {
+            dataSet.getPointIndex();
+        }
+        dataSet.getLshIndex();
+        dataSet.clearReverseNeighbors();
+
+        pool.invoke(new LofInitTask(kn, points, dataSet, updateLrd, 0, points.length,
+                LofInitTask.DEFAULT_SPLIT_THRESHOLD));
+    }
+
+    /**
+     * 学習データの中間データを更新する必要があるDataIdの一覧を生成する。<br>
+     * 以下のいずれかの条件を満たす場合に更新する必要があると判断する。
+     * <ol>
+     * <li>削除されたデータをK距離近傍に含む</li>
+     * <li>追加点との距離がK距離以下</li>
+     * </ol>
+     * 1.は学習データセットが保持する逆K近傍情報から、2.はK距離の最大値を半径とした範囲探索の結果から判定する。
+     * 但し、近似K近傍探索を行う場合、2.は追加点と同じバケットに格納された点のみから判定する。
+     * 
+     * @param addedPoint 追加点
+     * @param dataSet 学習データセット
+     * @param deleteId 削除データのId
+     * @return 学習データの中間データを更新する必要があるDataIdの一覧
+     */
+    protected static Set<String> generateUpdateTargets(LofPoint addedPoint, LofDataSet dataSet,
+            String deleteId)
+    {
+        Set<String> updateTargets = new HashSet<>();
+        // 以下の条件のいずれかを満たす対象点と追加された対象点に対してK距離、K距離近傍、局所到達可能密度の更新を行う必要がある。
+        // 但し、今回追加された対象点は常時対象となるため、判定は行わず、中間データ更新が必要として扱う。
+        // 1.削除されたデータをK距離近傍に含む
+        // 2.追加された対象点との距離がK距離以下。
+        updateTargets.add(addedPoint.getDataId());
+
+        // 「1.削除されたデータをK距離近傍に含む」判定
+        if (deleteId != null)
+        {
+            updateTargets.addAll(dataSet.getReverseNeighbors(deleteId));
+        }
+
+        // 「2.追加された対象点との距離がK距離以下。」判定
+        // 距離がK距離と等しい場合も、データIDの優先度によってK距離近傍が入れ替わる可能性があるため対象とする。
+        // 条件を満たす点は追加点からの距離がK距離の最大値未満となるため、データ数が多い場合は範囲探索で候補を絞り込む。
+        Collection<LofPoint> candidates = dataSet.getDataMap().values();
+        if (dataSet.getLshIndex() != null)
+        {
+            // 近似探索を行う場合は追加点と同じバケットの点のみを判定対象とする。
+            candidates = dataSet.getLshIndex().searchCandidates(addedPoint.getDataPoint(),
+                    addedPoint.getDataId());
+        }
+        else if (isIndexedSearchEnabled(dataSet) == true)
+        {
+            double maxKDistance = 0.0d;
+            for (LofPoint targetPoint : candidates)
+            {
+                maxKDistance = Math.max(maxKDistance, targetPoint.getkDistance());
+            }
+
+            candidates = dataSet.getPointIndex().searchWithin(addedPoint.getDataPoint(),
+                    maxKDistance);
+        }
+
+        for (LofPoint targetPoint : candidates)
+        {
+            // 今回追加された対象点は判定をスキップ
+            if (StringUtils.equals(addedPoint.getDataId(), targetPoint.getDataId()) == true)
+            {
+                continue;
+            }
+
+            if (MathUtils.distance(addedPoint.getDataPoint(), targetPoint.getDataPoint()) <= targetPoint.getkDistance())
+            {
+                updateTargets.add(targetPoint.getDataId());
+            }
+        }
+
+        return updateTargets;
+    }
+
+    /**
+     * 対象点の局所到達可能密度を更新する。
+     * 
+     * @param targetPoint 判定対象点
+     * @param dataSet 全体データ
+     */
+    protected static void updateLrd(LofPoint targetPoint, LofDataSet dataSet)
+    {
+        // 対象点の局所到達可能密度を更新する。
+        double lrd = calculateLrd(targetPoint, dataSet);
+        targetPoint.setLrd(lrd);
+    }
+
+    /**
+     * 対象点のK距離とK距離近傍データのIDを更新する。
+     * 
+     * @param kn K値
+     * @param targetPoint 判定対象点
+     * @param dataSet 全体データ
+     */
+    protected static void updateKDistance(int kn, LofPoint targetPoint, LofDataSet dataSet)
+    {
+        // 対象点のK距離、K距離近傍を算出する。
+        KDistanceResult kResult = calculateKDistance(kn, targetPoint, dataSet);
+        targetPoint.setkDistance(kResult.getkDistance());
+        dataSet.updateNeighbors(targetPoint, kResult.getkDistanceNeighbor());
+    }
+
+    /**
+     * 指定したK値、対象点、データセットを基にK距離とK距離近傍データのIDを算出する。<br>
+     * 学習データセットにLSHのパラメータが設定されている場合は近似K近傍探索用インデックスの候補点から算出する。
+     * 候補点がK件に満たない場合、及びパラメータが設定されていない場合は以下の方法で厳密に算出する。<br>
+     * データ数が{@link #INDEXED_SEARCH_THRESHOLD}以上、かつ「2の次元数乗」以上の場合は学習データセットが保持するK近傍探索用インデックスを用いて算出する。
+     * それ以外の場合は全点との距離を算出しながら上位K件のみを保持する選択を行う。
+     * いずれの場合も算出結果は全点との距離を算出してソートした場合と同一となる。
+     * 
+     * @param kn K値
+     * @param targetPoint 判定対象点
+     * @param dataSet 全体データ
+     * @return K距離とK距離近傍データのIDを保持するエンティティ。但し、K距離算出に必要なデータ個数を満たさない場合は判定対象点から最遠の点に対する距離となる。
+     */
+    protected static KDistanceResult calculateKDistance(int kn, LofPoint targetPoint,
+            LofDataSet dataSet)
+    {
+        // 距離算出結果保持マップを算出
+        List<DistanceResult> distances = searchNeighbors(kn, targetPoint, dataSet);
+
+        // 算出した距離を用いてK距離とK距離近傍データのIDを算出
+        KDistanceResult kResult = calculateKDistance(kn, distances);
+        return kResult;
+    }
+
+    /**
+     * 指定したK値、対象点、データセットを基に対象点に近い点を最大K件選択し、距離の昇順のリストを生成して返す。<br>
+     * 探索方法は{@link #calculateKDistance(int, LofPoint, LofDataSet)}に記載の方法から選択する。
+     * 
+     * @param kn K値
+     * @param targetPoint 判定対象点
+     * @param dataSet 全体データ
+     * @return 距離算出結果リスト。距離＞データIDの優先度でソートした状態で返す。
+     */
+    protected static List<DistanceResult> searchNeighbors(int kn, LofPoint targetPoint,
+            LofDataSet dataSet)
+    {
+        List<DistanceResult> distances = searchApproximateNeighbors(kn, targetPoint, dataSet);
+        if (distances == null && isIndexedSearchEnabled(dataSet) == true)
+        {
+            distances = dataSet.getPointIndex().searchNeighbors(targetPoint.getDataPoint(),
+                    targetPoint.getDataId(), kn);
+        }
+        else if (distances == null)
+        {
+            distances = selectNeighbors(kn, targetPoint, dataSet);
+        }
+
+        return distances;
+    }
+
+    /**
+     * basePointのtargetPointに関する到達可能距離(Reachability distance)を算出する。
+     * 
+     * @param basePoint 算出元対象点
+     * @param targetPoint 算出先対象点
+     * @return 到達可能距離
+     */
+    protected static double calculateReachDistance(LofPoint basePoint, LofPoint targetPoint)
+    {
+        double distance = MathUtils.distance(basePoint.getDataPoint(), targetPoint.getDataPoint());
+
+        double reachDistance = (double) ComparatorUtils.max(distance, targetPoint.getkDistance(),
+                ComparatorUtils.NATURAL_COMPARATOR);
+        return reachDistance;
+    }
+
+    /**
+     * basePointに対する局所到達可能密度(Local reachability density)を算出する。
      * 
      * @param basePoint 算出元対象点
      * @param dataSet 全体データ
@@ -405,6 +935,69 @@ public class LofCalculator
         return (countedData) / totalAmount;
     }
 
+    /**
+     * 中間データを使用せずに、basePointに対する局所到達可能密度(Local reachability density)を算出する。<br>
+     * K距離近傍の各点のK距離は一時領域から取得し、存在しない場合は算出して一時領域に保持する。
+     * 
+     * @param kn K値
+     * @param basePoint 算出元対象点
+     * @param neighbors 算出元対象点のK距離近傍データのIDリスト
+     * @param dataSet 全体データ
+     * @param overlay データID＞K距離算出結果の一時領域
+     * @return 局所到達可能密度
+     */
+    protected static double calculateLrd(int kn, LofPoint basePoint, List<String> neighbors,
+            LofDataSet dataSet, Map<String, KDistanceResult> overlay)
+    {
+        int countedData = 0;
+        double totalAmount = 0.0d;
+
+        for (String targetDataId : neighbors)
+        {
+            LofPoint targetPoint = dataSet.getDataMap().get(targetDataId);
+
+            if (targetPoint == null)
+            {
+                continue;
+            }
+
+            double distance = MathUtils.distance(basePoint.getDataPoint(),
+                    targetPoint.getDataPoint());
+            double kDistance = getKDistance(kn, targetPoint, dataSet, overlay).getkDistance();
+            totalAmount = totalAmount + Math.max(distance, kDistance);
+            countedData++;
+        }
+
+        if (totalAmount == 0.0d)
+        {
+            return totalAmount;
+        }
+
+        return (countedData) / totalAmount;
+    }
+
+    /**
+     * 一時領域から対象点のK距離とK距離近傍データのIDを取得する。存在しない場合は算出して一時領域に保持する。
+     * 
+     * @param kn K値
+     * @param targetPoint 対象点
+     * @param dataSet 全体データ
+     * @param overlay データID＞K距離算出結果の一時領域
+     * @return K距離とK距離近傍データのIDを保持するエンティティ
+     */
+    protected static KDistanceResult getKDistance(int kn, LofPoint targetPoint,
+            LofDataSet dataSet, Map<String, KDistanceResult> overlay)
+    {
+        KDistanceResult kResult = overlay.get(targetPoint.getDataId());
+        if (kResult == null)
+        {
+            kResult = calculateKDistance(kn, targetPoint, dataSet);
+            overlay.put(targetPoint.getDataId(), kResult);
+        }
+
+        return kResult;
+    }
+
     /**
      * basePointの局所外れ係数(Local outlier factor)を算出する。
      * 
@@ -432,6 +1025,101 @@ public class LofCalculator
         return totalAmount / (countedData);
     }
 
+    /**
+     * 距離算出結果リストで与えたK距離近傍を基に対象点の局所外れ係数を算出する。<br>
+     * 対象点と近傍点との到達可能距離には距離算出結果リストの距離を用いる。
+     * 
+     * @param kn K値
+     * @param neighbors 対象点のK距離近傍の距離算出結果リスト
+     * @param dataSet 全体データ
+     * @param cache 中間データを保持しない場合に用いるキャッシュ。中間データを保持する場合はnull
+     * @return 局所外れ係数
+     */
+    protected static double calculateLof(int kn, List<DistanceResult> neighbors,
+            LofDataSet dataSet, LofScoreCache cache)
+    {
+        // 対象点の局所到達可能密度を算出する。
+        int countedData = 0;
+        double totalAmount = 0.0d;
+        for (DistanceResult neighbor : neighbors)
+        {
+            LofPoint neighborPoint = dataSet.getDataMap().get(neighbor.getDataId());
+            double kDistance = getKDistance(kn, neighborPoint, dataSet, cache);
+            totalAmount = totalAmount + Math.max(neighbor.getDistance(), kDistance);
+            countedData++;
+        }
+
+        double targetLrd = 0.0d;
+        if (totalAmount != 0.0d)
+        {
+            targetLrd = countedData / totalAmount;
+        }
+
+        // 対象の局所外れ係数を算出する。
+        double lofAmount = 0.0d;
+        for (DistanceResult neighbor : neighbors)
+        {
+            LofPoint neighborPoint = dataSet.getDataMap().get(neighbor.getDataId());
+            lofAmount = lofAmount + (getLrd(kn, neighborPoint, dataSet, cache) / targetLrd);
+        }
+
+        if (countedData == 0)
+        {
+            return lofAmount;
+        }
+
+        return lofAmount / countedData;
+    }
+
+    /**
+     * 学習データ中の点のK距離を取得する。キャッシュを指定した場合はキャッシュから取得し、存在しない場合は算出してキャッシュに保持する。
+     * 
+     * @param kn K値
+     * @param targetPoint 対象点
+     * @param dataSet 全体データ
+     * @param cache 中間データを保持しない場合に用いるキャッシュ。中間データを保持する場合はnull
+     * @return K距離
+     */
+    private static double getKDistance(int kn, LofPoint targetPoint, LofDataSet dataSet,
+            LofScoreCache cache)
+    {
+        if (cache == null)
+        {
+            return targetPoint.getkDistance();
+        }
+
+        return getKDistance(kn, targetPoint, dataSet, cache.getkDistances()).getkDistance();
+    }
+
+    /**
+     * 学習データ中の点の局所到達可能密度を取得する。キャッシュを指定した場合はキャッシュから取得し、存在しない場合は算出してキャッシュに保持する。
+     * 
+     * @param kn K値
+     * @param targetPoint 対象点
+     * @param dataSet 全体データ
+     * @param cache 中間データを保持しない場合に用いるキャッシュ。中間データを保持する場合はnull
+     * @return 局所到達可能密度
+     */
+    private static double getLrd(int kn, LofPoint targetPoint, LofDataSet dataSet,
+            LofScoreCache cache)
+    {
+        if (cache == null)
+        {
+            return targetPoint.getLrd();
+        }
+
+        Double lrd = cache.getLrds().get(targetPoint.getDataId());
+        if (lrd == null)
+        {
+            KDistanceResult kResult = getKDistance(kn, targetPoint, dataSet, cache.getkDistances());
+            lrd = calculateLrd(kn, targetPoint, kResult.getkDistanceNeighbor(), dataSet,
+                    cache.getkDistances());
+            cache.getLrds().put(targetPoint.getDataId(), lrd);
+        }
+
+        return lrd;
+    }
+
     /**
      * 指定した対象点、データセットを基に対象点とデータセット中の各点間の距離を算出し、距離の昇順のリストを生成して返す。
      * 
@@ -464,6 +1152,255 @@ public class LofCalculator
         return distances;
     }
 
+    /**
+     * 指定した対象点、データセットを基に対象点に近い点を最大K件選択し、距離の昇順のリストを生成して返す。<br>
+     * 距離が近い上位K件のみを最大ヒープに保持するため、{@link #calculateDistances(LofPoint, LofDataSet)}と異なり全点分の距離算出結果を生成しない。<br>
+     * また、距離の算出途中で二乗和が現在のK番目の候補の距離を超えた時点でその点の算出を打ち切る。
+     * 
+     * @param kn K値
+     * @param targetPoint 判定対象点
+     * @param dataSet 全体データ
+     * @return 距離算出結果リスト。{@link #calculateDistances(LofPoint, LofDataSet)}の先頭K件と同一の内容を返す。
+     */
+    protected static List<DistanceResult> selectNeighbors(int kn, LofPoint targetPoint,
+            LofDataSet dataSet)
+    {
+        int capacity = Math.max(kn, 1);
+        double[] heapDistances = new double[capacity];
+        String[] heapIds = new String[capacity];
+        int heapSize = 0;
+        double[] target = targetPoint.getDataPoint();
+
+        for (LofPoint candidate : dataSet.getDataMap().values())
+        {
+            // 同一データの場合除外する
+            if (StringUtils.equals(candidate.getDataId(), targetPoint.getDataId()) == true)
+            {
+                continue;
+            }
+
+            // 候補がK件揃っている場合、K番目の候補より遠いことが確定した時点で距離の算出を打ち切る。
+            double bound = Double.POSITIVE_INFINITY;
+            double squaredBound = Double.POSITIVE_INFINITY;
+            if (heapSize == capacity)
+            {
+                bound = heapDistances[0];
+                squaredBound = bound * bound;
+            }
+
+            double[] candidatePoint = candidate.getDataPoint();
+            double sum = 0.0d;
+            boolean abandoned = false;
+            for (int index = 0; index < candidatePoint.length; index++)
+            {
+                double diff = candidatePoint[index] - target[index];
+                sum = sum + diff * diff;
+
+                // 二乗和で大まかに判定し、平方根で確定させることで距離が同値の候補を取りこぼさない。
+                if (sum > squaredBound && Math.sqrt(sum) > bound)
+                {
+                    abandoned = true;
+                    break;
+                }
+            }
+
+            if (abandoned == true)
+            {
+                continue;
+            }
+
+            heapSize = offerNeighbor(heapDistances, heapIds, heapSize, Math.sqrt(sum),
+                    candidate.getDataId());
+        }
+
+        return drainNeighbors(heapDistances, heapIds, heapSize);
+    }
+
+    /**
+     * 指定した複数の対象点、データセットを基に各対象点に近い点を最大K件選択し、距離の昇順のリストを生成して返す。<br>
+     * 近似K近傍探索用インデックス、K近傍探索用インデックスのいずれも用いない場合は、学習データの点を{@link #BATCH_BLOCK_SIZE}件までの対象点で共用しながら
+     * 対象点と学習データ中の各点との距離のブロックを算出し、各対象点の行から上位K件を選択する。
+     * 
+     * @param kn K値
+     * @param targetPoints 対象点のリスト
+     * @param dataSet 全体データ
+     * @return 対象点毎の距離算出結果リスト。近似探索を行わない場合、各要素は{@link #calculateDistances(LofPoint, LofDataSet)}の先頭K件と同一の内容となる。
+     */
+    protected static List<List<DistanceResult>> searchNeighbors(int kn,
+            List<LofPoint> targetPoints, LofDataSet dataSet)
+    {
+        List<List<DistanceResult>> result = new ArrayList<>(targetPoints.size());
+        if (dataSet.getLshIndex() != null || isIndexedSearchEnabled(dataSet) == true)
+        {
+            for (LofPoint targetPoint : targetPoints)
+            {
+                List<DistanceResult> distances = searchNeighbors(kn, targetPoint, dataSet);
+                result.add(distances.subList(0, Math.min(kn, distances.size())));
+            }
+
+            return result;
+        }
+
+        int dataNum = dataSet.getDataMap().size();
+        if (dataNum == 0)
+        {
+            for (int index = 0; index < targetPoints.size(); index++)
+            {
+                result.add(new ArrayList<DistanceResult>());
+            }
+
+            return result;
+        }
+
+        // 学習データの点を行優先の配列に展開する。
+        int dimension = dataSet.getDataMap().values().iterator().next().getDataPoint().length;
+        PointMatrix dataMatrix = new PointMatrix(dataNum, dimension);
+        String[] dataIds = new String[dataNum];
+        int dataIndex = 0;
+        for (LofPoint dataPoint : dataSet.getDataMap().values())
+        {
+            dataMatrix.setRow(dataIndex, dataPoint.getDataPoint());
+            dataIds[dataIndex] = dataPoint.getDataId();
+            dataIndex++;
+        }
+
+        int capacity = Math.max(kn, 1);
+        double[] heapDistances = new double[capacity];
+        String[] heapIds = new String[capacity];
+        double[] block = new double[Math.min(BATCH_BLOCK_SIZE, targetPoints.size()) * dataNum];
+
+        for (int fromIndex = 0; fromIndex < targetPoints.size(); fromIndex += BATCH_BLOCK_SIZE)
+        {
+            int blockSize = Math.min(BATCH_BLOCK_SIZE, targetPoints.size() - fromIndex);
+            PointMatrix targetMatrix = new PointMatrix(blockSize, dimension);
+            for (int targetIndex = 0; targetIndex < blockSize; targetIndex++)
+            {
+                targetMatrix.setRow(targetIndex, targetPoints.get(fromIndex + targetIndex)
+                        .getDataPoint());
+            }
+
+            // 学習データの1点を読み込む間にブロック内の全対象点との距離を算出する。
+            for (int rowIndex = 0; rowIndex < dataNum; rowIndex++)
+            {
+                calculateBlockDistances(dataMatrix, rowIndex, targetMatrix, block, dataNum);
+            }
+
+            for (int targetIndex = 0; targetIndex < blockSize; targetIndex++)
+            {
+                String targetId = targetPoints.get(fromIndex + targetIndex).getDataId();
+                int offset = targetIndex * dataNum;
+                int heapSize = 0;
+                for (int rowIndex = 0; rowIndex < dataNum; rowIndex++)
+                {
+                    // K件揃っている場合、K番目の候補より遠い点は候補にならない。
+                    double distance = block[offset + rowIndex];
+                    if (heapSize == capacity && distance > heapDistances[0])
+                    {
+                        continue;
+                    }
+
+                    // 同一データの場合除外する
+                    if (StringUtils.equals(dataIds[rowIndex], targetId) == true)
+                    {
+                        continue;
+                    }
+
+                    heapSize = offerNeighbor(heapDistances, heapIds, heapSize, distance,
+                            dataIds[rowIndex]);
+                }
+
+                result.add(drainNeighbors(heapDistances, heapIds, heapSize));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * 学習データの1点と対象点行列の全行との距離を算出し、距離ブロックの対象点毎の行に格納する。<br>
+     * 学習データの座標の読み込みを共用するため、対象点4行分の二乗和を並行して算出する。
+     * 各二乗和の加算順序は{@link MathUtils#distance(double[], double[])}と同一であるため、算出結果も同一となる。
+     * 
+     * @param dataMatrix 学習データの点行列
+     * @param rowIndex 学習データの点の行インデックス
+     * @param targetMatrix 対象点行列
+     * @param block 距離ブロック。対象点毎に学習データの点数分の領域を用いる
+     * @param dataNum 学習データの点数
+     */
+    private static void calculateBlockDistances(PointMatrix dataMatrix, int rowIndex,
+            PointMatrix targetMatrix, double[] block, int dataNum)
+    {
+        double[] dataValues = dataMatrix.getValues();
+        double[] targetValues = targetMatrix.getValues();
+        int dimension = dataMatrix.getColumnNum();
+        int dataOffset = dataMatrix.getOffset(rowIndex);
+        int targetNum = targetMatrix.getRowNum();
+
+        int targetIndex = 0;
+        for (; targetIndex + 4 <= targetNum; targetIndex += 4)
+        {
+            int offset0 = targetMatrix.getOffset(targetIndex);
+            int offset1 = offset0 + dimension;
+            int offset2 = offset1 + dimension;
+            int offset3 = offset2 + dimension;
+            double sum0 = 0.0d;
+            double sum1 = 0.0d;
+            double sum2 = 0.0d;
+            double sum3 = 0.0d;
+            for (int index = 0; index < dimension; index++)
+            {
+                double value = dataValues[dataOffset + index];
+                double diff0 = value - targetValues[offset0 + index];
+                double diff1 = value - targetValues[offset1 + index];
+                double diff2 = value - targetValues[offset2 + index];
+                double diff3 = value - targetValues[offset3 + index];
+                sum0 = sum0 + diff0 * diff0;
+                sum1 = sum1 + diff1 * diff1;
+                sum2 = sum2 + diff2 * diff2;
+                sum3 = sum3 + diff3 * diff3;
+            }
+
+            block[targetIndex * dataNum + rowIndex] = Math.sqrt(sum0);
+            block[(targetIndex + 1) * dataNum + rowIndex] = Math.sqrt(sum1);
+            block[(targetIndex + 2) * dataNum + rowIndex] = Math.sqrt(sum2);
+            block[(targetIndex + 3) * dataNum + rowIndex] = Math.sqrt(sum3);
+        }
+
+        for (; targetIndex < targetNum; targetIndex++)
+        {
+            double squaredDistance = dataMatrix.squaredDistance(rowIndex, targetValues,
+                    targetMatrix.getOffset(targetIndex));
+            block[targetIndex * dataNum + rowIndex] = Math.sqrt(squaredDistance);
+        }
+    }
+
+    /**
+     * 学習データセットの近似K近傍探索用インデックスを用いて、対象点に近い点を最大K件選択する。
+     * 
+     * @param kn K値
+     * @param targetPoint 判定対象点
+     * @param dataSet 全体データ
+     * @return 距離算出結果リスト。近似探索を行わない場合、または候補点がK件に満たない場合はnull
+     */
+    protected static List<DistanceResult> searchApproximateNeighbors(int kn,
+            LofPoint targetPoint, LofDataSet dataSet)
+    {
+        LofLshIndex lshIndex = dataSet.getLshIndex();
+        if (lshIndex == null)
+        {
+            return null;
+        }
+
+        List<DistanceResult> distances = lshIndex.searchNeighbors(targetPoint.getDataPoint(),
+                targetPoint.getDataId(), kn);
+        if (distances.size() < kn)
+        {
+            return null;
+        }
+
+        return distances;
+    }
+
     /**
      * 距離算出結果リストを基にK距離とK距離近傍データのIDを算出する。
      * 
@@ -496,4 +1433,183 @@ public class LofCalculator
         kResult.setkDistanceNeighbor(idList);
         return kResult;
     }
+
+    /**
+     * 学習データセットのK近傍探索用インデックスを用いるかを判定する。<br>
+     * データ数が少ない場合、または次元数に対してデータ数が少なくKD木の枝刈りが効かない場合はインデックスを用いない。
+     * 
+     * @param dataSet 全体データ
+     * @return インデックスを用いる場合true
+     */
+    private static boolean isIndexedSearchEnabled(LofDataSet dataSet)
+    {
+        int dataNum = dataSet.getDataMap().size();
+        if (dataNum < INDEXED_SEARCH_THRESHOLD)
+        {
+            return false;
+        }
+
+        int dimension = dataSet.getDataMap().values().iterator().next().getDataPoint().length;
+        return dimension < Integer.SIZE - 1 && (1 << dimension) <= dataNum;
+    }
+
+    /**
+     * 上位K件の候補を保持する最大ヒープに候補を追加する。<br>
+     * ヒープが満杯の場合、候補が先頭(K番目の候補)より近い場合のみ先頭と置き換える。
+     * 
+     * @param distances ヒープの距離
+     * @param ids ヒープのデータID
+     * @param size ヒープの要素数
+     * @param distance 候補の距離
+     * @param dataId 候補のデータID
+     * @return 追加後のヒープの要素数
+     */
+    private static int offerNeighbor(double[] distances, String[] ids, int size, double distance,
+            String dataId)
+    {
+        if (size < distances.length)
+        {
+            distances[size] = distance;
+            ids[size] = dataId;
+            siftUp(distances, ids, size);
+            return size + 1;
+        }
+
+        if (compareDistance(distance, dataId, distances[0], ids[0]) < 0)
+        {
+            distances[0] = distance;
+            ids[0] = dataId;
+            siftDown(distances, ids, 0, size);
+        }
+
+        return size;
+    }
+
+    /**
+     * 最大ヒープの要素を距離の昇順に並べた距離算出結果リストを生成する。ヒープの内容は破棄される。
+     * 
+     * @param distances ヒープの距離
+     * @param ids ヒープのデータID
+     * @param size ヒープの要素数
+     * @return 距離算出結果リスト
+     */
+    private static List<DistanceResult> drainNeighbors(double[] distances, String[] ids, int size)
+    {
+        // 最大ヒープから末尾に向けて取り出すことで、距離の昇順に並べる。
+        for (int lastIndex = size - 1; lastIndex > 0; lastIndex--)
+        {
+            swap(distances, ids, 0, lastIndex);
+            siftDown(distances, ids, 0, lastIndex);
+        }
+
+        List<DistanceResult> result = new ArrayList<>(size);
+        for (int index = 0; index < size; index++)
+        {
+            result.add(new DistanceResult(ids[index], distances[index]));
+        }
+
+        return result;
+    }
+
+    /**
+     * 最大ヒープの指定位置の要素を親要素と比較しながら上方に移動させる。
+     * 
+     * @param distances ヒープの距離
+     * @param ids ヒープのデータID
+     * @param index 移動対象の位置
+     */
+    private static void siftUp(double[] distances, String[] ids, int index)
+    {
+        int current = index;
+        while (current > 0)
+        {
+            int parent = (current - 1) >>> 1;
+            if (compareDistance(distances[current], ids[current], distances[parent],
+                    ids[parent]) <= 0)
+            {
+                return;
+            }
+
+            swap(distances, ids, current, parent);
+            current = parent;
+        }
+    }
+
+    /**
+     * 最大ヒープの指定位置の要素を子要素と比較しながら下方に移動させる。
+     * 
+     * @param distances ヒープの距離
+     * @param ids ヒープのデータID
+     * @param index 移動対象の位置
+     * @param size ヒープの要素数
+     */
+    private static void siftDown(double[] distances, String[] ids, int index, int size)
+    {
+        int current = index;
+        while (true)
+        {
+            int largest = current;
+            int left = current * 2 + 1;
+            int right = left + 1;
+            if (left < size
+                    && compareDistance(distances[left], ids[left], distances[largest],
+                            ids[largest]) > 0)
+            {
+                largest = left;
+            }
+            if (right < size
+                    && compareDistance(distances[right], ids[right], distances[largest],
+                            ids[largest]) > 0)
+            {
+                largest = right;
+            }
+            if (largest == current)
+            {
+                return;
+            }
+
+            swap(distances, ids, current, largest);
+            current = largest;
+        }
+    }
+
+    /**
+     * ヒープの2要素を入れ替える。
+     * 
+     * @param distances ヒープの距離
+     * @param ids ヒープのデータID
+     * @param index1 入れ替え対象の位置1
+     * @param index2 入れ替え対象の位置2
+     */
+    private static void swap(double[] distances, String[] ids, int index1, int index2)
+    {
+        double tmpDistance = distances[index1];
+        distances[index1] = distances[index2];
+        distances[index2] = tmpDistance;
+
+        String tmpId = ids[index1];
+        ids[index1] = ids[index2];
+        ids[index2] = tmpId;
+    }
+
+    /**
+     * 「距離＞データID」の優先度で大小を比較する。{@link DistanceResultComparator}と同一の順序となる。
+     * 
+     * @param distance1 距離1
+     * @param dataId1 データID1
+     * @param distance2 距離2
+     * @param dataId2 データID2
+     * @return 比較結果
+     */
+    private static int compareDistance(double distance1, String dataId1, double distance2,
+            String dataId2)
+    {
+        int distanceResult = Double.compare(distance1, distance2);
+        if (distanceResult != 0)
+        {
+            return distanceResult;
+        }
+
+        return dataId1.compareTo(dataId2);
+    }
 }
@@ -20,26 +20,32 @@ package acromusashi.stream.ml.anomaly.lof;
 public interface LofConfKey
 {
     /** ベース状態名称 */
-    String STATE_BASE_NAME     = "lof.state.base.name";
+    String STATE_BASE_NAME       = "lof.state.base.name";
 
     /** 中間状態を保持するか */
-    String HAS_INTERMEDIATE    = "lof.has.intermediate";
+    String HAS_INTERMEDIATE      = "lof.has.intermediate";
 
     /** データ受信時、常時学習データモデルを更新するか */
-    String ALWAYS_UPDATE_MODEL = "lof.always.update.model";
+    String ALWAYS_UPDATE_MODEL   = "lof.always.update.model";
 
     /** 学習モデルを更新する頻度 */
-    String UPDATE_INTERVAL     = "lof.update.interval";
+    String UPDATE_INTERVAL       = "lof.update.interval";
 
     /** K値 */
-    String KN                  = "lof.kn";
+    String KN                    = "lof.kn";
 
     /** 学習データモデルが実際にLOF算出を行う際に必要な最小データ数 */
-    String MIN_DATA_COUNT      = "lof.min.data.count";
+    String MIN_DATA_COUNT        = "lof.min.data.count";
 
     /** 学習データモデルが最大で保持するデータ数 */
-    String MAX_DATA_COUNT      = "lof.max.data.count";
+    String MAX_DATA_COUNT        = "lof.max.data.count";
 
     /** 通知を行うLOF閾値 */
-    String NOTITY_THRESHOLD    = "lof.notify.threshold";
+    String NOTITY_THRESHOLD      = "lof.notify.threshold";
+
+    /** マージ後の学習データセットの初期化を並列実行するスレッド数 */
+    String INIT_THREAD_NUM       = "lof.init.thread.num";
+
+    /** マージ後に保持するマイクロクラスタの最大数 */
+    String MAX_MICRO_CLUSTER_NUM = "lof.max.micro.cluster.num";
 }
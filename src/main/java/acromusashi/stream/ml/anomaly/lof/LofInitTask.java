@@ -0,0 +1,119 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.anomaly.lof;
+
+import java.util.concurrent.RecursiveAction;
+
+import acromusashi.stream.ml.anomaly.lof.entity.LofDataSet;
+import acromusashi.stream.ml.anomaly.lof.entity.LofPoint;
+
+/**
+ * 学習データセットの初期化を点の範囲毎に分割して並列実行するタスク<br>
+ * 担当範囲の各点について、K距離とK距離近傍の更新、または局所到達可能密度の更新のいずれか一方を行う。<br>
+ * 各点の更新結果は自身のフィールドにのみ格納するため、タスク間で書き込み先は重複しない。
+ *
+ * @author kimura
+ */
+public class LofInitTask extends RecursiveAction
+{
+    /** 分割せずに処理する点数のデフォルト値 */
+    public static final int   DEFAULT_SPLIT_THRESHOLD = 64;
+
+    /** serialVersionUID */
+    private static final long serialVersionUID        = -6271630854160383216L;
+
+    /** LOFパラメータ「K」値 */
+    private int               kn;
+
+    /** 対象点の配列 */
+    private LofPoint[]        points;
+
+    /** 学習データセット */
+    private LofDataSet        dataSet;
+
+    /** 局所到達可能密度を更新するか。falseの場合はK距離とK距離近傍を更新する */
+    private boolean           updateLrd;
+
+    /** 担当範囲の開始インデックス(この値を含む) */
+    private int               fromIndex;
+
+    /** 担当範囲の終了インデックス(この値を含まない) */
+    private int               toIndex;
+
+    /** 分割せずに処理する点数 */
+    private int               splitThreshold;
+
+    /**
+     * 担当範囲を指定してインスタンスを生成する。
+     *
+     * @param kn K値
+     * @param points 対象点の配列
+     * @param dataSet 学習データセット
+     * @param updateLrd 局所到達可能密度を更新するか。falseの場合はK距離とK距離近傍を更新する
+     * @param fromIndex 担当範囲の開始インデックス(この値を含む)
+     * @param toIndex 担当範囲の終了インデックス(この値を含まない)
+     * @param splitThreshold 分割せずに処理する点数
+     */
+    public LofInitTask(int kn, LofPoint[] points, LofDataSet dataSet, boolean updateLrd,
+            int fromIndex, int toIndex, int splitThreshold)
+    {
+        this.kn = kn;
+        this.points = points;
+        this.dataSet = dataSet;
+        this.updateLrd = updateLrd;
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+        this.splitThreshold = splitThreshold;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void compute()
+    {
+        if (this.toIndex - this.fromIndex <= this.splitThreshold)
+        {
+            update();
+            return;
+        }
+
+        int middleIndex = (this.fromIndex + this.toIndex) >>> 1;
+        LofInitTask leftTask = new LofInitTask(this.kn, this.points, this.dataSet,
+                this.updateLrd, this.fromIndex, middleIndex, this.splitThreshold);
+        LofInitTask rightTask = new LofInitTask(this.kn, this.points, this.dataSet,
+                this.updateLrd, middleIndex, this.toIndex, this.splitThreshold);
+
+        leftTask.fork();
+        rightTask.compute();
+        leftTask.join();
+    }
+
+    /**
+     * 担当範囲の点の更新を行う。
+     */
+    private void update()
+    {
+        for (int index = this.fromIndex; index < this.toIndex; index++)
+        {
+            if (this.updateLrd == true)
+            {
+                LofCalculator.updateLrd(this.points[index], this.dataSet);
+            }
+            else
+            {
+                LofCalculator.updateKDistance(this.kn, this.points[index], this.dataSet);
+            }
+        }
+    }
+}
@@ -0,0 +1,536 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.anomaly.lof;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.math.util.MathUtils;
+
+import acromusashi.stream.ml.anomaly.lof.entity.DistanceResult;
+import acromusashi.stream.ml.anomaly.lof.entity.DistanceResultComparator;
+import acromusashi.stream.ml.anomaly.lof.entity.LofDataSet;
+import acromusashi.stream.ml.anomaly.lof.entity.LofMicroCluster;
+import acromusashi.stream.ml.anomaly.lof.entity.LofPoint;
+import acromusashi.stream.ml.clustering.kmeans.KmeansCalculator;
+import acromusashi.stream.ml.clustering.kmeans.entity.KmeansPoint;
+
+/**
+ * 学習データの古い点をマイクロクラスタに要約し、保持するメモリ量を抑えてLOFスコアを算出するクラス<br>
+ * 学習データセットが直近の点(生データ)に加えてマイクロクラスタを保持する場合、生データとマイクロクラスタの中心点を近傍の候補とし、
+ * マイクロクラスタのK距離と局所到達可能密度には要約した点の平均値を用いてLOFスコアを算出する。<br>
+ * 生データの中間データは生データのみから算出し、マイクロクラスタは近傍の候補としない。
+ *
+ * @author kimura
+ */
+public class LofMicroClusterCalculator
+{
+    /** 要約時にKMeansの中心点を更新する最大回数 */
+    public static final int MAX_ITERATION = 10;
+
+    /**
+     * マイクロクラスタ毎に保持する吸収したIDの最大数<br>
+     * 吸収されたマイクロクラスタは全パーティションのマージが一巡すると存在しなくなるため、直近に吸収したIDのみを保持する。
+     */
+    public static final int MAX_ABSORBED  = 256;
+
+    /**
+     * インスタンス化を防止するためのコンストラクタ
+     */
+    private LofMicroClusterCalculator()
+    {}
+
+    /**
+     * 学習データセットの直近の点を除いた古い点をKMeansでクラスタリングし、マイクロクラスタに要約する。<br>
+     * 生成したマイクロクラスタは既存のマイクロクラスタに追加し、最大数を超過した場合は中心点の近いマイクロクラスタ同士をマージする。
+     * 要約した点は学習データセットから削除し、残った点の中間データを更新する。<br>
+     * 学習データセットは中間データを保持していることを前提とする。
+     *
+     * @param kn K値
+     * @param recentNum 要約せずに残す直近の点の数
+     * @param clusterNum 1回の要約で生成するマイクロクラスタ数
+     * @param maxClusterNum マイクロクラスタの最大保持数
+     * @param dataSet 学習データセット
+     * @param random KMeans++による初期中心点の選択に用いる乱数生成器
+     * @param pool 中間データの再計算の並列実行に用いるスレッドプール。nullの場合は逐次実行する
+     * @return 要約した点数
+     */
+    public static int summarize(int kn, int recentNum, int clusterNum, int maxClusterNum,
+            LofDataSet dataSet, Random random, ForkJoinPool pool)
+    {
+        List<String> dataIdList = dataSet.getDataIdList();
+        int oldNum = dataIdList.size() - recentNum;
+        if (oldNum <= 0)
+        {
+            return 0;
+        }
+
+        List<LofPoint> oldPoints = new ArrayList<>(oldNum);
+        List<KmeansPoint> kmeansPoints = new ArrayList<>(oldNum);
+        for (String dataId : dataIdList.subList(0, oldNum))
+        {
+            LofPoint oldPoint = dataSet.getDataMap().get(dataId);
+            oldPoints.add(oldPoint);
+            KmeansPoint kmeansPoint = new KmeansPoint();
+            kmeansPoint.setDataPoint(oldPoint.getDataPoint());
+            kmeansPoints.add(kmeansPoint);
+        }
+
+        int[] assignments = clusterPoints(kmeansPoints, Math.min(clusterNum, oldNum), random);
+        List<LofMicroCluster> microClusters = dataSet.getMicroClusters();
+        microClusters.addAll(createMicroClusters(oldPoints, assignments));
+        reduceMicroClusters(microClusters, maxClusterNum);
+
+        Set<String> oldIds = new HashSet<>();
+        for (LofPoint oldPoint : oldPoints)
+        {
+            oldIds.add(oldPoint.getDataId());
+        }
+
+        LofCalculator.deleteDataWithUpdate(kn, oldIds, dataSet, pool);
+
+        return oldNum;
+    }
+
+    /**
+     * 学習データセットの生データとマイクロクラスタを基に局所外れ係数スコアを算出する。<br>
+     * 本メソッド呼び出しによってデータセットの更新は行われない。<br>
+     * 生データとマイクロクラスタの中心点のうち対象点に近いK個を近傍とし、距離が等しい場合は生データを優先する。
+     * マイクロクラスタを保持しない場合の算出結果は{@link LofCalculator#calculateLofWithoutUpdate(int, LofPoint, LofDataSet)}と同一となる。
+     *
+     * @param kn K値
+     * @param targetPoint 対象点
+     * @param dataSet 学習データセット
+     * @return LOFスコア
+     */
+    public static double calculateLof(int kn, LofPoint targetPoint, LofDataSet dataSet)
+    {
+        List<LofMicroCluster> microClusters = dataSet.getMicroClusters();
+        if (microClusters.isEmpty() == true)
+        {
+            return LofCalculator.calculateLofWithoutUpdate(kn, targetPoint, dataSet);
+        }
+
+        List<DistanceResult> rawNeighbors = LofCalculator.searchNeighbors(kn, targetPoint,
+                dataSet);
+        List<DistanceResult> clusterNeighbors = searchMicroClusters(kn, targetPoint,
+                microClusters);
+        Map<String, LofMicroCluster> clusterMap = new HashMap<>();
+        for (LofMicroCluster microCluster : microClusters)
+        {
+            clusterMap.put(microCluster.getClusterId(), microCluster);
+        }
+
+        // 生データ、マイクロクラスタの各近傍を距離の昇順にマージしながら、近傍のK距離、局所到達可能密度を取得する。
+        int neighborNum = Math.min(kn, rawNeighbors.size() + clusterNeighbors.size());
+        double[] distances = new double[neighborNum];
+        double[] kDistances = new double[neighborNum];
+        double[] lrds = new double[neighborNum];
+        int rawIndex = 0;
+        int clusterIndex = 0;
+        for (int index = 0; index < neighborNum; index++)
+        {
+            double rawDistance = Double.MAX_VALUE;
+            LofPoint rawPoint = null;
+            if (rawIndex < rawNeighbors.size())
+            {
+                rawPoint = dataSet.getDataMap().get(rawNeighbors.get(rawIndex).getDataId());
+                rawDistance = MathUtils.distance(targetPoint.getDataPoint(),
+                        rawPoint.getDataPoint());
+            }
+
+            DistanceResult clusterNeighbor = null;
+            if (clusterIndex < clusterNeighbors.size())
+            {
+                clusterNeighbor = clusterNeighbors.get(clusterIndex);
+            }
+
+            if (clusterNeighbor != null
+                    && (rawPoint == null || clusterNeighbor.getDistance() < rawDistance))
+            {
+                LofMicroCluster microCluster = clusterMap.get(clusterNeighbor.getDataId());
+                distances[index] = clusterNeighbor.getDistance();
+                kDistances[index] = microCluster.getkDistance();
+                lrds[index] = microCluster.getLrd();
+                clusterIndex++;
+            }
+            else
+            {
+                distances[index] = rawDistance;
+                kDistances[index] = rawPoint.getkDistance();
+                lrds[index] = rawPoint.getLrd();
+                rawIndex++;
+            }
+        }
+
+        // 対象点の局所到達可能密度を算出する。
+        double totalAmount = 0.0d;
+        for (int index = 0; index < neighborNum; index++)
+        {
+            totalAmount = totalAmount + Math.max(distances[index], kDistances[index]);
+        }
+
+        double targetLrd = 0.0d;
+        if (totalAmount != 0.0d)
+        {
+            targetLrd = neighborNum / totalAmount;
+        }
+
+        // 対象の局所外れ係数を算出する。
+        double lofAmount = 0.0d;
+        for (int index = 0; index < neighborNum; index++)
+        {
+            lofAmount = lofAmount + (lrds[index] / targetLrd);
+        }
+
+        if (neighborNum == 0)
+        {
+            return lofAmount;
+        }
+
+        return lofAmount / neighborNum;
+    }
+
+    /**
+     * 2つのマイクロクラスタのリストをマージする。<br>
+     * 同一のIDのマイクロクラスタが双方に存在する場合は要約した点数の多い方を用い、最大数を超過した場合は中心点の近いマイクロクラスタ同士をマージする。
+     * 他のパーティションで既に別のマイクロクラスタに吸収されたマイクロクラスタは、同じ点を重複して数えないよう除外する。
+     * 吸収の判定は要約した点数の多いマイクロクラスタから順に行うため、双方のパーティションで互いを吸収した場合も一方のみが残る。
+     * マージ元のマイクロクラスタは更新しない。
+     *
+     * @param baseClusters マージ元マイクロクラスタのリスト
+     * @param targetClusters マージ対象マイクロクラスタのリスト
+     * @param maxClusterNum マイクロクラスタの最大保持数
+     * @return マージ後のマイクロクラスタのリスト
+     */
+    public static List<LofMicroCluster> mergeMicroClusters(List<LofMicroCluster> baseClusters,
+            List<LofMicroCluster> targetClusters, int maxClusterNum)
+    {
+        List<LofMicroCluster> result = new ArrayList<>();
+        Map<String, Integer> indexMap = new HashMap<>();
+        List<LofMicroCluster> sourceClusters = new ArrayList<>(baseClusters);
+        sourceClusters.addAll(targetClusters);
+
+        for (LofMicroCluster sourceCluster : sourceClusters)
+        {
+            Integer index = indexMap.get(sourceCluster.getClusterId());
+            if (index == null)
+            {
+                indexMap.put(sourceCluster.getClusterId(), result.size());
+                result.add(sourceCluster.deepCopy());
+            }
+            else if (result.get(index).getCount() < sourceCluster.getCount())
+            {
+                result.set(index, sourceCluster.deepCopy());
+            }
+        }
+
+        removeAbsorbedClusters(result);
+        reduceMicroClusters(result, maxClusterNum);
+        return result;
+    }
+
+    /**
+     * 他のマイクロクラスタに吸収済みのマイクロクラスタをリストから削除する。<br>
+     * 要約した点数の多いマイクロクラスタから順に残すかを判定し、残したマイクロクラスタが吸収したIDを持つマイクロクラスタを削除する。
+     * 残ったマイクロクラスタのリスト上の順序は変更しない。
+     *
+     * @param microClusters マイクロクラスタのリスト
+     */
+    private static void removeAbsorbedClusters(List<LofMicroCluster> microClusters)
+    {
+        List<LofMicroCluster> sortedClusters = new ArrayList<>(microClusters);
+        Collections.sort(sortedClusters, new Comparator<LofMicroCluster>() {
+            @Override
+            public int compare(LofMicroCluster cluster1, LofMicroCluster cluster2)
+            {
+                return Long.compare(cluster2.getCount(), cluster1.getCount());
+            }
+        });
+
+        Set<String> absorbedIds = new HashSet<>();
+        Set<LofMicroCluster> removeClusters = new HashSet<>();
+        for (LofMicroCluster microCluster : sortedClusters)
+        {
+            if (absorbedIds.contains(microCluster.getClusterId()) == true)
+            {
+                removeClusters.add(microCluster);
+                continue;
+            }
+
+            absorbedIds.addAll(microCluster.getAbsorbedIds());
+        }
+
+        microClusters.removeAll(removeClusters);
+    }
+
+    /**
+     * マイクロクラスタ数が最大数以下になるまで、中心点が最も近いマイクロクラスタの組をマージする。<br>
+     * マージ後のマイクロクラスタはリスト上の前方の位置に格納し、IDは前方のマイクロクラスタのIDを引き継ぐ。
+     *
+     * @param microClusters マイクロクラスタのリスト
+     * @param maxClusterNum マイクロクラスタの最大保持数
+     */
+    protected static void reduceMicroClusters(List<LofMicroCluster> microClusters,
+            int maxClusterNum)
+    {
+        while (microClusters.size() > Math.max(maxClusterNum, 1))
+        {
+            int nearestIndex1 = 0;
+            int nearestIndex2 = 1;
+            double minDistance = Double.MAX_VALUE;
+            for (int index1 = 0; index1 < microClusters.size(); index1++)
+            {
+                double[] center1 = microClusters.get(index1).getCenter();
+                for (int index2 = index1 + 1; index2 < microClusters.size(); index2++)
+                {
+                    double distance = MathUtils.distance(center1,
+                            microClusters.get(index2).getCenter());
+                    if (distance < minDistance)
+                    {
+                        minDistance = distance;
+                        nearestIndex1 = index1;
+                        nearestIndex2 = index2;
+                    }
+                }
+            }
+
+            LofMicroCluster merged = mergeMicroCluster(microClusters.get(nearestIndex1),
+                    microClusters.get(nearestIndex2));
+            microClusters.set(nearestIndex1, merged);
+            microClusters.remove(nearestIndex2);
+        }
+    }
+
+    /**
+     * 2つのマイクロクラスタを要約した点数で重み付けしてマージする。
+     *
+     * @param baseCluster マージ元マイクロクラスタ
+     * @param targetCluster マージ対象マイクロクラスタ
+     * @return マージ後のマイクロクラスタ
+     */
+    protected static LofMicroCluster mergeMicroCluster(LofMicroCluster baseCluster,
+            LofMicroCluster targetCluster)
+    {
+        long count = baseCluster.getCount() + targetCluster.getCount();
+        double baseWeight = (double) baseCluster.getCount() / count;
+        double targetWeight = (double) targetCluster.getCount() / count;
+
+        double[] center = new double[baseCluster.getCenter().length];
+        for (int index = 0; index < center.length; index++)
+        {
+            center[index] = baseCluster.getCenter()[index] * baseWeight
+                    + targetCluster.getCenter()[index] * targetWeight;
+        }
+
+        LofMicroCluster result = new LofMicroCluster();
+        result.setClusterId(baseCluster.getClusterId());
+        result.setCenter(center);
+        result.setCount(count);
+        result.setSquaredSum(baseCluster.getSquaredSum() + targetCluster.getSquaredSum());
+        result.setkDistance(baseCluster.getkDistance() * baseWeight
+                + targetCluster.getkDistance() * targetWeight);
+        result.setLrd(baseCluster.getLrd() * baseWeight + targetCluster.getLrd() * targetWeight);
+        result.setLastJudgeTime(Math.max(baseCluster.getLastJudgeTime(),
+                targetCluster.getLastJudgeTime()));
+
+        // 吸収したIDは古い方から上限を超過した分を破棄する。
+        Set<String> absorbedIds = result.getAbsorbedIds();
+        absorbedIds.addAll(baseCluster.getAbsorbedIds());
+        absorbedIds.addAll(targetCluster.getAbsorbedIds());
+        absorbedIds.add(targetCluster.getClusterId());
+        Iterator<String> absorbedIterator = absorbedIds.iterator();
+        while (absorbedIds.size() > MAX_ABSORBED)
+        {
+            absorbedIterator.next();
+            absorbedIterator.remove();
+        }
+
+        return result;
+    }
+
+    /**
+     * KMeans++で初期中心点を選択し、中心点が変化しなくなるか最大回数に達するまで中心点の更新を行い、各点の所属クラスタを算出する。
+     *
+     * @param kmeansPoints クラスタリング対象点のリスト
+     * @param clusterNum クラスタ数
+     * @param random 乱数生成器
+     * @return 点毎の所属クラスタのインデックス
+     */
+    private static int[] clusterPoints(List<KmeansPoint> kmeansPoints, int clusterNum,
+            Random random)
+    {
+        List<KmeansPoint> initialCentroids = KmeansCalculator.createInitialCentroids(
+                kmeansPoints, clusterNum, random);
+        int dimension = kmeansPoints.get(0).getDataPoint().length;
+        double[][] centroids = new double[initialCentroids.size()][];
+        for (int index = 0; index < centroids.length; index++)
+        {
+            centroids[index] = initialCentroids.get(index).getDataPoint();
+        }
+
+        int[] assignments = new int[kmeansPoints.size()];
+        Arrays.fill(assignments, -1);
+        for (int iteration = 0; iteration < MAX_ITERATION; iteration++)
+        {
+            boolean changed = false;
+            for (int index = 0; index < assignments.length; index++)
+            {
+                int centroidIndex = KmeansCalculator.nearestCentroid(
+                        kmeansPoints.get(index).getDataPoint(), centroids).getCentroidIndex();
+                if (assignments[index] != centroidIndex)
+                {
+                    assignments[index] = centroidIndex;
+                    changed = true;
+                }
+            }
+
+            if (changed == false)
+            {
+                break;
+            }
+
+            // 所属する点の平均値で中心点を更新する。所属する点が存在しない中心点は更新しない。
+            double[][] sums = new double[centroids.length][dimension];
+            int[] counts = new int[centroids.length];
+            for (int index = 0; index < assignments.length; index++)
+            {
+                double[] dataPoint = kmeansPoints.get(index).getDataPoint();
+                for (int dimIndex = 0; dimIndex < dimension; dimIndex++)
+                {
+                    sums[assignments[index]][dimIndex] += dataPoint[dimIndex];
+                }
+                counts[assignments[index]]++;
+            }
+
+            for (int centroidIndex = 0; centroidIndex < centroids.length; centroidIndex++)
+            {
+                if (counts[centroidIndex] == 0)
+                {
+                    continue;
+                }
+
+                for (int dimIndex = 0; dimIndex < dimension; dimIndex++)
+                {
+                    sums[centroidIndex][dimIndex] = sums[centroidIndex][dimIndex]
+                            / counts[centroidIndex];
+                }
+                centroids[centroidIndex] = sums[centroidIndex];
+            }
+        }
+
+        return assignments;
+    }
+
+    /**
+     * 点毎の所属クラスタを基に、所属する点が存在するクラスタ毎のマイクロクラスタを生成する。<br>
+     * マイクロクラスタのIDには所属する点のうち最も古い点のデータIDを用いる。
+     *
+     * @param oldPoints 要約対象点のリスト(判定時刻の古い順)
+     * @param assignments 点毎の所属クラスタのインデックス
+     * @return マイクロクラスタのリスト
+     */
+    private static List<LofMicroCluster> createMicroClusters(List<LofPoint> oldPoints,
+            int[] assignments)
+    {
+        Map<Integer, LofMicroCluster> clusterMap = new HashMap<>();
+        List<LofMicroCluster> result = new ArrayList<>();
+        int dimension = oldPoints.get(0).getDataPoint().length;
+
+        // 中心点、K距離、局所到達可能密度は総和を求めた後に点数で割る。
+        for (int index = 0; index < assignments.length; index++)
+        {
+            LofPoint oldPoint = oldPoints.get(index);
+            LofMicroCluster microCluster = clusterMap.get(assignments[index]);
+            if (microCluster == null)
+            {
+                microCluster = new LofMicroCluster();
+                microCluster.setClusterId(oldPoint.getDataId());
+                microCluster.setCenter(new double[dimension]);
+                clusterMap.put(assignments[index], microCluster);
+                result.add(microCluster);
+            }
+
+            double[] dataPoint = oldPoint.getDataPoint();
+            double[] center = microCluster.getCenter();
+            double squaredNorm = 0.0d;
+            for (int dimIndex = 0; dimIndex < dimension; dimIndex++)
+            {
+                center[dimIndex] += dataPoint[dimIndex];
+                squaredNorm = squaredNorm + dataPoint[dimIndex] * dataPoint[dimIndex];
+            }
+
+            microCluster.setCount(microCluster.getCount() + 1);
+            microCluster.setSquaredSum(microCluster.getSquaredSum() + squaredNorm);
+            microCluster.setkDistance(microCluster.getkDistance() + oldPoint.getkDistance());
+            microCluster.setLrd(microCluster.getLrd() + oldPoint.getLrd());
+            if (oldPoint.getJudgeDate() != null)
+            {
+                microCluster.setLastJudgeTime(Math.max(microCluster.getLastJudgeTime(),
+                        oldPoint.getJudgeDate().getTime()));
+            }
+        }
+
+        for (LofMicroCluster microCluster : result)
+        {
+            long count = microCluster.getCount();
+            double[] center = microCluster.getCenter();
+            for (int dimIndex = 0; dimIndex < dimension; dimIndex++)
+            {
+                center[dimIndex] = center[dimIndex] / count;
+            }
+            microCluster.setkDistance(microCluster.getkDistance() / count);
+            microCluster.setLrd(microCluster.getLrd() / count);
+        }
+
+        return result;
+    }
+
+    /**
+     * 対象点に中心点が近いマイクロクラスタを最大K個選択し、距離＞IDの優先度でソートした距離算出結果リストを返す。
+     *
+     * @param kn K値
+     * @param targetPoint 対象点
+     * @param microClusters マイクロクラスタのリスト
+     * @return 距離算出結果リスト。データIDにはマイクロクラスタのIDを設定する
+     */
+    private static List<DistanceResult> searchMicroClusters(int kn, LofPoint targetPoint,
+            List<LofMicroCluster> microClusters)
+    {
+        List<DistanceResult> result = new ArrayList<>(microClusters.size());
+        for (LofMicroCluster microCluster : microClusters)
+        {
+            double distance = MathUtils.distance(targetPoint.getDataPoint(),
+                    microCluster.getCenter());
+            result.add(new DistanceResult(microCluster.getClusterId(), distance));
+        }
+
+        Collections.sort(result, new DistanceResultComparator());
+        if (result.size() > kn)
+        {
+            return result.subList(0, kn);
+        }
+
+        return result;
+    }
+}
@@ -16,7 +16,6 @@ import java.util.Date;
 import java.util.Map;
 import java.util.UUID;
 
-import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,6 +24,7 @@ import storm.trident.operation.TridentCollector;
 import storm.trident.operation.TridentOperationContext;
 import storm.trident.tuple.TridentTuple;
 import acromusashi.stream.ml.anomaly.lof.entity.LofPoint;
+import acromusashi.stream.ml.common.util.DelimitedDoubleParser;
 import backtype.storm.tuple.Values;
 
 /**
@@ -35,13 +35,16 @@ import backtype.storm.tuple.Values;
 public class LofPointCreator extends BaseFunction
 {
     /** serialVersionUID */
-    private static final long   serialVersionUID = 4620883521921594615L;
+    private static final long               serialVersionUID = 4620883521921594615L;
 
     /** logger */
-    private static final Logger logger           = LoggerFactory.getLogger(LofPointCreator.class);
+    private static final Logger             logger           = LoggerFactory.getLogger(LofPointCreator.class);
 
     /** 読みこんだデータを分割する文字列 */
-    private String              delimeter        = ",";
+    private String                          delimeter        = ",";
+
+    /** 読みこんだデータを数値に変換するパーサ */
+    private transient DelimitedDoubleParser parser;
 
     /**
      * パラメータを指定せずにインスタンスを生成する。
@@ -69,29 +72,28 @@ public class LofPointCreator extends BaseFunction
     @Override
     public void execute(TridentTuple tuple, TridentCollector collector)
     {
-        String receivedStr = tuple.getString(0);
-
-        String[] splitedStr = StringUtils.split(receivedStr, this.delimeter);
-        int dataNum = splitedStr.length;
-        double[] points = new double[splitedStr.length];
-
-        try
+        if (this.parser == null)
         {
-            for (int index = 0; index < dataNum; index++)
-            {
-                points[index] = Double.parseDouble(splitedStr[index].trim());
-            }
-
-            LofPoint result = new LofPoint();
-            result.setDataId(UUID.randomUUID().toString());
-            result.setDataPoint(points);
-            result.setJudgeDate(new Date(getCurrentTime()));
-            collector.emit(new Values(result));
+            this.parser = new DelimitedDoubleParser(this.delimeter);
         }
-        catch (Exception ex)
+
+        String receivedStr = tuple.getString(0);
+        double[] points = this.parser.parseToArray(receivedStr);
+
+        if (points == null)
         {
-            logger.warn("Received data is invalid. skip this data. ReceivedData=" + receivedStr, ex);
+            logger.warn("Received data is invalid. skip this data. ReceivedData=" + receivedStr);
+            return;
         }
+
+        // 数値のデータIDはUUIDの上位64bitを用いる。
+        UUID dataId = UUID.randomUUID();
+        LofPoint result = new LofPoint();
+        result.setDataId(dataId.toString());
+        result.setPointId(dataId.getMostSignificantBits());
+        result.setDataPoint(points);
+        result.setJudgeDate(new Date(getCurrentTime()));
+        collector.emit(new Values(result));
     }
 
     /**
@@ -118,5 +120,6 @@ public class LofPointCreator extends BaseFunction
     public void setDelimeter(String delimeter)
     {
         this.delimeter = delimeter;
+        this.parser = null;
     }
 }
@@ -15,7 +15,9 @@ package acromusashi.stream.ml.anomaly.lof;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,8 +27,10 @@ import storm.trident.state.BaseQueryFunction;
 import storm.trident.state.map.MapState;
 import storm.trident.tuple.TridentTuple;
 import acromusashi.stream.ml.anomaly.lof.entity.LofDataSet;
+import acromusashi.stream.ml.anomaly.lof.entity.LofLshParameter;
 import acromusashi.stream.ml.anomaly.lof.entity.LofPoint;
 import acromusashi.stream.ml.anomaly.lof.entity.LofResult;
+import acromusashi.stream.ml.anomaly.lof.entity.LofScoreCache;
 import backtype.storm.tuple.Values;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -41,6 +45,9 @@ public class LofQuery extends BaseQueryFunction<MapState<LofDataSet>, String>
     /** serialVersionUID */
     private static final long        serialVersionUID = -9162800953757233992L;
 
+    /** 状態名称とモデルキーを連結する区切り文字 */
+    private static final String      KEY_SEPARATOR    = ".";
+
     /** logger */
     private static final Logger      logger           = LoggerFactory.getLogger(LofQuery.class);
 
@@ -56,6 +63,15 @@ public class LofQuery extends BaseQueryFunction<MapState<LofDataSet>, String>
     /** Jacksonを用いた変換マッパーオブジェクト */
     protected transient ObjectMapper objectMapper;
 
+    /** 中間データを保持しない学習データに対するLOFスコア算出に用いるキャッシュ */
+    private transient LofScoreCache  scoreCache;
+
+    /** 近似LOFに用いるLSHのパラメータ。nullの場合は厳密なK近傍探索を行う */
+    private LofLshParameter          lshParameter;
+
+    /** 学習モデルを切り替えるモデルキーを保持するTupleのフィールド名。nullの場合は単一の学習モデルを用いる */
+    private String                   modelKeyField;
+
     /**
      * ベース名称を指定してインスタンスを生成する。
      * 
@@ -81,6 +97,12 @@ public class LofQuery extends BaseQueryFunction<MapState<LofDataSet>, String>
             this.objectMapper = new ObjectMapper();
         }
 
+        // モデルキーを指定している場合はモデルキー毎の学習モデルを用いる。
+        if (this.modelKeyField != null)
+        {
+            return batchRetrieveKeyed(state, tuples);
+        }
+
         // Get model
         List<LofDataSet> dataSets = state.multiGet(Arrays.asList(Arrays.asList((Object) this.baseStateName)));
         LofDataSet dataSet = null;
@@ -90,53 +112,198 @@ public class LofQuery extends BaseQueryFunction<MapState<LofDataSet>, String>
         }
 
         List<String> resultStrList = new ArrayList<>();
-        // 受信したデータ毎にLOFスコアの算出を行い、結果のJSON文字列を返す
+
+        // データモデルが取得できなかった場合は空文字を結果として設定
+        if (dataSet == null)
+        {
+            for (int index = 0; index < tuples.size(); index++)
+            {
+                resultStrList.add("");
+            }
+
+            return resultStrList;
+        }
+
+        // 近似LOFを用いる場合、K近傍探索にLSHを用いるよう設定する。
+        dataSet.setLshParameter(this.lshParameter);
+
+        List<LofPoint> recievedPoints = new ArrayList<>();
         for (TridentTuple targetTuple : tuples)
         {
-            LofPoint recievedPoint = (LofPoint) targetTuple.get(0);
+            recievedPoints.add((LofPoint) targetTuple.get(0));
+        }
+
+        double[] lofScores = calculateLofScores(recievedPoints, dataSet);
+
+        // 受信したデータ毎にLOFスコアの結果のJSON文字列を返す
+        for (int index = 0; index < recievedPoints.size(); index++)
+        {
+            resultStrList.add(createResultStr(recievedPoints.get(index), lofScores[index]));
+        }
+
+        return resultStrList;
+    }
+
+    /**
+     * モデルキー毎の学習モデルを用いてLOFスコアを算出する。<br>
+     * バッチ内のTupleをモデルキー毎にグループ化し、必要な学習モデルを1回のmultiGetでまとめて取得する。
+     * 学習モデルが取得できなかったモデルキーのデータは空文字を結果として設定する。
+     * 
+     * @param state 状態
+     * @param tuples 受信Tupleのリスト
+     * @return 受信データ毎のLOFスコアの結果のJSON文字列のリスト
+     */
+    protected List<String> batchRetrieveKeyed(MapState<LofDataSet> state, List<TridentTuple> tuples)
+    {
+        Map<String, List<Integer>> groupedIndexes = new LinkedHashMap<>();
+        for (int index = 0; index < tuples.size(); index++)
+        {
+            String modelKey = String.valueOf(tuples.get(index).getValueByField(this.modelKeyField));
+            List<Integer> keyIndexes = groupedIndexes.get(modelKey);
+            if (keyIndexes == null)
+            {
+                keyIndexes = new ArrayList<>();
+                groupedIndexes.put(modelKey, keyIndexes);
+            }
+            keyIndexes.add(index);
+        }
+
+        // Get models
+        List<List<Object>> stateKeys = new ArrayList<>(groupedIndexes.size());
+        for (String modelKey : groupedIndexes.keySet())
+        {
+            stateKeys.add(Arrays.asList((Object) (this.baseStateName + KEY_SEPARATOR + modelKey)));
+        }
+        List<LofDataSet> dataSets = state.multiGet(stateKeys);
+
+        String[] resultStrs = new String[tuples.size()];
+        Arrays.fill(resultStrs, "");
+        int keyIndex = 0;
+        for (List<Integer> keyIndexes : groupedIndexes.values())
+        {
+            LofDataSet dataSet = null;
+            if (dataSets != null && keyIndex < dataSets.size())
+            {
+                dataSet = dataSets.get(keyIndex);
+            }
+            keyIndex++;
 
             // データモデルが取得できなかった場合は空文字を結果として設定
             if (dataSet == null)
             {
-                resultStrList.add("");
                 continue;
             }
 
-            double lofScore = 0.0d;
-            if (this.hasIntermediate)
+            List<LofPoint> recievedPoints = new ArrayList<>(keyIndexes.size());
+            for (Integer index : keyIndexes)
             {
-                lofScore = LofCalculator.calculateLofWithoutUpdate(this.kn, recievedPoint, dataSet);
+                recievedPoints.add((LofPoint) tuples.get(index).get(0));
             }
-            else
+
+            // 学習モデル毎にキャッシュを用いると学習モデル数に応じたメモリを消費するため、キャッシュはバッチ内でのみ用いる。
+            dataSet.setLshParameter(this.lshParameter);
+            double[] lofScores = calculateLofScores(recievedPoints, dataSet, new LofScoreCache());
+            for (int pointIndex = 0; pointIndex < recievedPoints.size(); pointIndex++)
             {
-                lofScore = LofCalculator.calculateLofNoIntermediate(this.kn, recievedPoint, dataSet);
+                resultStrs[keyIndexes.get(pointIndex)] = createResultStr(
+                        recievedPoints.get(pointIndex), lofScores[pointIndex]);
             }
+        }
 
-            LofResult result = new LofResult(lofScore, recievedPoint);
+        return Arrays.asList(resultStrs);
+    }
 
-            String resultStr = null;
+    /**
+     * LOFスコアの結果のJSON文字列を生成する。
+     * 
+     * @param recievedPoint 受信データ
+     * @param lofScore LOFスコア
+     * @return LOFスコアの結果のJSON文字列。変換に失敗した場合は空文字
+     */
+    private String createResultStr(LofPoint recievedPoint, double lofScore)
+    {
+        LofResult result = new LofResult(lofScore, recievedPoint);
+        String resultStr = null;
 
-            try
-            {
-                resultStr = this.objectMapper.writeValueAsString(result);
-            }
-            catch (IOException ex)
-            {
-                logger.warn("Received data is invalid. skip this data. ReceivedData="
-                        + recievedPoint, ex);
-            }
+        try
+        {
+            resultStr = this.objectMapper.writeValueAsString(result);
+        }
+        catch (IOException ex)
+        {
+            logger.warn("Received data is invalid. skip this data. ReceivedData="
+                    + recievedPoint, ex);
+        }
+
+        if (resultStr != null)
+        {
+            return resultStr;
+        }
+
+        return "";
+    }
 
-            if (resultStr != null)
+    /**
+     * 受信したデータのLOFスコアをバッチ単位でまとめて算出する。<br>
+     * 学習データウィンドウを用いる場合、マイクロクラスタを保持する場合を除き、学習データとの距離算出と近傍点の局所到達可能密度をバッチ内の全データで共用する。<br>
+     * 中間データを保持しない場合、学習データ中の点のK距離と局所到達可能密度は学習データの版が変化するまでバッチを跨いで保持する。
+     * 
+     * @param recievedPoints 受信データのリスト
+     * @param dataSet 学習モデルデータ
+     * @return 受信データ毎のLOFスコア
+     */
+    protected double[] calculateLofScores(List<LofPoint> recievedPoints, LofDataSet dataSet)
+    {
+        if (this.scoreCache == null)
+        {
+            this.scoreCache = new LofScoreCache();
+        }
+
+        return calculateLofScores(recievedPoints, dataSet, this.scoreCache);
+    }
+
+    /**
+     * 中間データを保持しない場合に用いるキャッシュを指定し、受信したデータのLOFスコアをバッチ単位でまとめて算出する。
+     * 
+     * @param recievedPoints 受信データのリスト
+     * @param dataSet 学習モデルデータ
+     * @param cache 中間データを保持しない場合に用いるキャッシュ
+     * @return 受信データ毎のLOFスコア
+     */
+    protected double[] calculateLofScores(List<LofPoint> recievedPoints, LofDataSet dataSet,
+            LofScoreCache cache)
+    {
+        if (dataSet.getWindow() != null)
+        {
+            double[] lofScores = new double[recievedPoints.size()];
+            for (int index = 0; index < lofScores.length; index++)
             {
-                resultStrList.add(resultStr);
+                lofScores[index] = LofWindowCalculator.calculateLof(dataSet.getWindow(),
+                        recievedPoints.get(index).getDataPoint());
             }
-            else
+
+            return lofScores;
+        }
+
+        // 古い学習データをマイクロクラスタに要約している場合、学習データは常に中間データを保持する。
+        if (dataSet.getMicroClusters().isEmpty() == false)
+        {
+            double[] lofScores = new double[recievedPoints.size()];
+            for (int index = 0; index < lofScores.length; index++)
             {
-                resultStrList.add("");
+                lofScores[index] = LofMicroClusterCalculator.calculateLof(this.kn,
+                        recievedPoints.get(index), dataSet);
             }
+
+            return lofScores;
         }
 
-        return resultStrList;
+        if (this.hasIntermediate)
+        {
+            return LofCalculator.calculateLofBatch(this.kn, recievedPoints, dataSet, null);
+        }
+
+        return LofCalculator.calculateLofBatch(this.kn, recievedPoints, dataSet, cache);
     }
 
     /**
@@ -147,4 +314,25 @@ public class LofQuery extends BaseQueryFunction<MapState<LofDataSet>, String>
     {
         collector.emit(new Values(result));
     }
+
+    /**
+     * 近似LOFに用いるLSHのパラメータを設定する。テーブル数、ハッシュ関数数、バケット幅で再現率と算出速度を調整する。
+     * 
+     * @param lshParameter LSHのパラメータ。nullの場合は厳密なK近傍探索を行う
+     */
+    public void setLshParameter(LofLshParameter lshParameter)
+    {
+        this.lshParameter = lshParameter;
+    }
+
+    /**
+     * 学習モデルを切り替えるモデルキーを保持するTupleのフィールド名を設定する。<br>
+     * 設定した場合、{@link LofUpdater#setModelKeyField(String)}と同様に「状態名称.モデルキー」をキーとする学習モデルを用いる。
+     * 
+     * @param modelKeyField モデルキーを保持するフィールド名。nullの場合は単一の学習モデルを用いる
+     */
+    public void setModelKeyField(String modelKeyField)
+    {
+        this.modelKeyField = modelKeyField;
+    }
 }
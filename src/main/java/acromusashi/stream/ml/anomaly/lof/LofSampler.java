@@ -0,0 +1,137 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.anomaly.lof;
+
+import java.util.Random;
+
+import acromusashi.stream.ml.anomaly.lof.entity.LofDataSet;
+import acromusashi.stream.ml.anomaly.lof.entity.LofPoint;
+
+/**
+ * サンプリングによってLOFの学習データセットに追加するデータを選択するユーティリティクラス<br>
+ * 受信データを全て追加する代わりに一部のデータのみを追加することで、学習データの更新回数を抑えつつ長い期間のデータを保持する。<br>
+ * 層別サンプリングでは判定時刻を「層の期間」毎の層に分け、最大保持数を層数で割った数を層毎の保持数とする。
+ * 層の中では受信データから一様に層毎の保持数個を選択するリザーバサンプリングを行い、層を跨いだ削除は古い層のデータから行う。
+ * 集中的にデータを受信した場合も1層分の保持数を超えて学習データを占有しないため、直近の「層数」個の層のデータを保持し続ける。<br>
+ * リザーバサンプリングは全データを1層として扱う層別サンプリングとして扱う。<br>
+ * 学習データセットのデータIDのリストは判定時刻の古い順に並んでいることを前提とする。
+ *
+ * @author kimura
+ */
+public class LofSampler
+{
+    /** 受信データを学習データセットに追加しないことを示す値 */
+    public static final int NOT_SAMPLED = -2;
+
+    /** 受信データを削除を伴わずに学習データセットに追加することを示す値 */
+    public static final int APPEND      = -1;
+
+    /**
+     * インスタンス化を防止するためのコンストラクタ
+     */
+    private LofSampler()
+    {}
+
+    /**
+     * 受信データを学習データセットに追加するかを判定し、追加する場合は置き換える学習データの位置を返す。<br>
+     * 判定に伴い、学習データセットが保持するサンプリングの状態(現在の層、層で受信したデータ数)を更新する。
+     *
+     * @param policy 追加方式。{@link LofWindowPolicy#FIFO}の場合は常に追加する
+     * @param max データ保持数最大値
+     * @param stratumNum 層数。層別サンプリングを行う場合のみ用いる
+     * @param stratumTime 層の期間(ミリ秒)。層別サンプリングを行う場合のみ用いる
+     * @param receivedPoint 受信データ
+     * @param dataSet 学習データセット
+     * @param random 乱数生成器
+     * @return 置き換える学習データのデータIDのリスト上の位置。削除を伴わずに追加する場合は{@link #APPEND}、
+     * 追加しない場合は{@link #NOT_SAMPLED}
+     */
+    public static int selectReplaceIndex(LofWindowPolicy policy, int max, int stratumNum,
+            long stratumTime, LofPoint receivedPoint, LofDataSet dataSet, Random random)
+    {
+        int dataCount = dataSet.getDataIdList().size();
+        if (policy == LofWindowPolicy.FIFO)
+        {
+            return selectOldestIndex(max, dataCount);
+        }
+
+        long stratum = 0L;
+        int stratumCapacity = max;
+        if (policy == LofWindowPolicy.STRATIFIED)
+        {
+            stratum = toStratum(receivedPoint, stratumTime);
+            stratumCapacity = Math.max(max / stratumNum, 1);
+        }
+
+        // 新しい層のデータを受信した場合は層の受信データ数を初期化する。
+        if (stratum != dataSet.getSampleStratum())
+        {
+            dataSet.setSampleStratum(stratum);
+            dataSet.setSampleCount(0L);
+        }
+
+        long previousCount = dataSet.getSampleCount();
+        long sampleCount = previousCount + 1;
+        dataSet.setSampleCount(sampleCount);
+
+        // 層の保持数に達するまでは全て追加するため、層の保持データは学習データの末尾の
+        // 「min(層の受信データ数, 層毎の保持数)」個となる。
+        int stratumSize = (int) Math.min(Math.min(previousCount, stratumCapacity), dataCount);
+        if (stratumSize < stratumCapacity)
+        {
+            return selectOldestIndex(max, dataCount);
+        }
+
+        // 層の保持数に達している場合、「層毎の保持数 / 層の受信データ数」の確率で層の保持データの1つと置き換える。
+        if (random.nextDouble() * sampleCount >= stratumCapacity)
+        {
+            return NOT_SAMPLED;
+        }
+
+        return dataCount - stratumSize + random.nextInt(stratumSize);
+    }
+
+    /**
+     * 受信データの判定時刻が属する層の番号を算出する。判定時刻が存在しない場合は0とする。
+     *
+     * @param receivedPoint 受信データ
+     * @param stratumTime 層の期間(ミリ秒)
+     * @return 層の番号
+     */
+    private static long toStratum(LofPoint receivedPoint, long stratumTime)
+    {
+        if (receivedPoint.getJudgeDate() == null || stratumTime <= 0)
+        {
+            return 0L;
+        }
+
+        return receivedPoint.getJudgeDate().getTime() / stratumTime;
+    }
+
+    /**
+     * データ保持数が最大に達している場合は最も古い学習データの位置を、達していない場合は{@link #APPEND}を返す。
+     *
+     * @param max データ保持数最大値
+     * @param dataCount 現在のデータ保持数
+     * @return 置き換える学習データの位置
+     */
+    private static int selectOldestIndex(int max, int dataCount)
+    {
+        if (dataCount < max)
+        {
+            return APPEND;
+        }
+
+        return 0;
+    }
+}
@@ -12,9 +12,13 @@
 */
 package acromusashi.stream.ml.anomaly.lof;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import storm.trident.operation.TridentCollector;
 import storm.trident.operation.TridentOperationContext;
@@ -22,8 +26,11 @@ import storm.trident.state.BaseStateUpdater;
 import storm.trident.state.map.MapState;
 import storm.trident.tuple.TridentTuple;
 import acromusashi.stream.ml.anomaly.lof.entity.LofDataSet;
+import acromusashi.stream.ml.anomaly.lof.entity.LofDistanceCache;
+import acromusashi.stream.ml.anomaly.lof.entity.LofLshParameter;
 import acromusashi.stream.ml.anomaly.lof.entity.LofPoint;
 import acromusashi.stream.ml.anomaly.lof.entity.LofResult;
+import acromusashi.stream.ml.anomaly.lof.entity.LofWindow;
 import acromusashi.stream.ml.common.notify.ResultNotifier;
 
 /**
@@ -34,7 +41,10 @@ import acromusashi.stream.ml.common.notify.ResultNotifier;
 public class LofUpdater extends BaseStateUpdater<MapState<LofDataSet>>
 {
     /** serialVersionUID */
-    private static final long            serialVersionUID = -8751225616008741403L;
+    private static final long            serialVersionUID   = -8751225616008741403L;
+
+    /** 状態名称とモデルキーを連結する区切り文字 */
+    private static final String          KEY_SEPARATOR      = ".";
 
     /** データ処理時に呼び出される通知オブジェクト */
     protected ResultNotifier<LofResult>  dataNotifier;
@@ -46,7 +56,7 @@ public class LofUpdater extends BaseStateUpdater<MapState<LofDataSet>>
     private String                       stateName;
 
     /** 初期状態 */
-    private LofDataSet                   initialState     = new LofDataSet();
+    private LofDataSet                   initialState       = new LofDataSet();
 
     /** 中間データを学習データに保持するか */
     private boolean                      hasIntermediate;
@@ -69,6 +79,60 @@ public class LofUpdater extends BaseStateUpdater<MapState<LofDataSet>>
     /** 本コンポーネントが受信したデータ数 */
     private int                          receiveCount;
 
+    /** 学習データをリングバッファで保持するコンパクトな学習データウィンドウ({@link LofWindow})を用いるか */
+    private boolean                      compactWindow;
+
+    /** 学習データセットの初期化を並列実行するスレッド数。1以下の場合は並列実行しない */
+    private int                          initThreadNum;
+
+    /** 学習データセットの初期化を並列実行するスレッドプール */
+    private transient ForkJoinPool       initPool;
+
+    /** 近似LOFに用いるLSHのパラメータ。nullの場合は厳密なK近傍探索を行う */
+    private LofLshParameter              lshParameter;
+
+    /** 学習データモデルが保持するデータの期間(ミリ秒)。0以下の場合は期間による削除を行わない */
+    private long                         windowTime;
+
+    /** コンパクトな学習データウィンドウを用いる場合に、スロット間の距離をキャッシュするか */
+    private boolean                      windowDistanceCache;
+
+    /** スロット間の距離のキャッシュが消費するバイト数の上限 */
+    private long                         distanceCacheBytes = LofDistanceCache.DEFAULT_MAX_BYTES;
+
+    /** スロット間の距離のキャッシュ */
+    private transient LofDistanceCache   distanceCache;
+
+    /** 学習データセットに受信データを追加する方式 */
+    private LofWindowPolicy              windowPolicy       = LofWindowPolicy.FIFO;
+
+    /** 層別サンプリングを行う場合の層数 */
+    private int                          stratumNum         = 1;
+
+    /** 層別サンプリングを行う場合の層の期間(ミリ秒) */
+    private long                         stratumTime;
+
+    /** サンプリングに用いる乱数シード。nullの場合はシードを固定しない */
+    private Long                         randomSeed;
+
+    /** サンプリング、マイクロクラスタへの要約に用いる乱数生成器 */
+    private transient Random             random;
+
+    /** 古い学習データをマイクロクラスタに要約し、保持するデータ数を抑えるか */
+    private boolean                      microCluster;
+
+    /** 1回の要約で生成するマイクロクラスタ数 */
+    private int                          microClusterNum    = 10;
+
+    /** マイクロクラスタの最大保持数 */
+    private int                          maxMicroClusterNum = 100;
+
+    /** 学習モデルを切り替えるモデルキーを保持するTupleのフィールド名。nullの場合は単一の学習モデルを用いる */
+    private String                       modelKeyField;
+
+    /** モデルキー>当該モデルキーの学習モデルが最大で保持するデータ数のマッピング */
+    private Map<String, Integer>         keyMaxDataCounts;
+
     /**
      * パラメータを指定せずにインスタンスを生成する。
      */
@@ -91,6 +155,25 @@ public class LofUpdater extends BaseStateUpdater<MapState<LofDataSet>>
         {
             this.batchNotifier.initialize(conf, context);
         }
+
+        // 学習データセットの初期化を並列実行する場合、Updater毎にスレッドプールを生成する。
+        if (this.initThreadNum > 1)
+        {
+            this.initPool = new ForkJoinPool(this.initThreadNum);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void cleanup()
+    {
+        if (this.initPool != null)
+        {
+            this.initPool.shutdown();
+            this.initPool = null;
+        }
     }
 
     /**
@@ -100,6 +183,13 @@ public class LofUpdater extends BaseStateUpdater<MapState<LofDataSet>>
     public void updateState(MapState<LofDataSet> state, List<TridentTuple> tuples,
             TridentCollector collector)
     {
+        // モデルキーを指定している場合はモデルキー毎の学習モデルを用いる。
+        if (this.modelKeyField != null)
+        {
+            updateKeyedState(state, tuples);
+            return;
+        }
+
         // Get model
         List<LofDataSet> dataSets = state.multiGet(Arrays.asList(Arrays.asList((Object) this.stateName)));
         LofDataSet dataSet = null;
@@ -112,6 +202,15 @@ public class LofUpdater extends BaseStateUpdater<MapState<LofDataSet>>
             dataSet = this.initialState;
         }
 
+        // 近似LOFを用いる場合、K近傍探索にLSHを用いるよう設定する。
+        dataSet.setLshParameter(this.lshParameter);
+
+        // 期間を指定している場合、バッチ開始時に期間外のデータを一括で削除する。
+        if (this.windowTime > 0 && this.compactWindow == false)
+        {
+            deleteExpiredData(dataSet);
+        }
+
         for (TridentTuple targetTuple : tuples)
         {
             this.receiveCount++;
@@ -134,6 +233,159 @@ public class LofUpdater extends BaseStateUpdater<MapState<LofDataSet>>
         }
     }
 
+    /**
+     * モデルキー毎の学習モデルを用いて状態を更新する。<br>
+     * バッチ内のTupleをモデルキー毎に受信順を保持してグループ化し、必要な学習モデルを1回のmultiGetでまとめて取得する。
+     * 受信データによって変化した学習モデルのみを1回のmultiPutでまとめて保存する。<br>
+     * 状態が存在しないモデルキーは初期状態のコピーから学習を開始し、モデルキー毎の最大保持数が設定されている場合は学習モデルに設定する。
+     * 
+     * @param state 状態
+     * @param tuples 受信Tupleのリスト
+     */
+    protected void updateKeyedState(MapState<LofDataSet> state, List<TridentTuple> tuples)
+    {
+        Map<String, List<TridentTuple>> groupedTuples = new LinkedHashMap<>();
+        for (TridentTuple targetTuple : tuples)
+        {
+            String modelKey = String.valueOf(targetTuple.getValueByField(this.modelKeyField));
+            List<TridentTuple> keyTuples = groupedTuples.get(modelKey);
+            if (keyTuples == null)
+            {
+                keyTuples = new ArrayList<>();
+                groupedTuples.put(modelKey, keyTuples);
+            }
+            keyTuples.add(targetTuple);
+        }
+
+        // Get models
+        List<String> modelKeys = new ArrayList<>(groupedTuples.keySet());
+        List<List<Object>> stateKeys = new ArrayList<>(modelKeys.size());
+        for (String modelKey : modelKeys)
+        {
+            stateKeys.add(Arrays.asList((Object) toStateKey(modelKey)));
+        }
+        List<LofDataSet> dataSets = state.multiGet(stateKeys);
+
+        List<List<Object>> dirtyKeys = new ArrayList<>();
+        List<LofDataSet> dirtyDataSets = new ArrayList<>();
+        for (int index = 0; index < modelKeys.size(); index++)
+        {
+            String modelKey = modelKeys.get(index);
+            LofDataSet dataSet = null;
+            if (dataSets != null && index < dataSets.size())
+            {
+                dataSet = dataSets.get(index);
+            }
+
+            boolean created = false;
+            if (dataSet == null)
+            {
+                dataSet = this.initialState.deepCopy();
+                created = true;
+            }
+
+            if (this.keyMaxDataCounts != null && this.keyMaxDataCounts.containsKey(modelKey))
+            {
+                dataSet.setMaxDataCount(this.keyMaxDataCounts.get(modelKey));
+            }
+
+            long[] modelVersion = calculateModelVersion(dataSet);
+            dataSet.setLshParameter(this.lshParameter);
+            if (this.windowTime > 0 && this.compactWindow == false)
+            {
+                deleteExpiredData(dataSet);
+            }
+
+            for (TridentTuple targetTuple : groupedTuples.get(modelKey))
+            {
+                this.receiveCount++;
+                LofPoint recievedPoint = (LofPoint) targetTuple.get(0);
+                double lofScore = receivePoint(recievedPoint, dataSet);
+
+                if (this.dataNotifier != null)
+                {
+                    this.dataNotifier.notifyResult(new LofResult(lofScore, recievedPoint));
+                }
+            }
+
+            if (created == true
+                    || Arrays.equals(modelVersion, calculateModelVersion(dataSet)) == false)
+            {
+                dirtyKeys.add(stateKeys.get(index));
+                dirtyDataSets.add(dataSet);
+            }
+        }
+
+        // Save models
+        if (dirtyKeys.isEmpty() == false)
+        {
+            state.multiPut(dirtyKeys, dirtyDataSets);
+        }
+
+        if (this.batchNotifier != null)
+        {
+            for (LofDataSet dirtyDataSet : dirtyDataSets)
+            {
+                this.batchNotifier.notifyResult(dirtyDataSet);
+            }
+        }
+    }
+
+    /**
+     * モデルキーから状態のキーを生成する。
+     * 
+     * @param modelKey モデルキー
+     * @return 状態名称とモデルキーを連結した状態のキー
+     */
+    protected String toStateKey(String modelKey)
+    {
+        return this.stateName + KEY_SEPARATOR + modelKey;
+    }
+
+    /**
+     * 学習モデルが変化したかの判定に用いる値を算出する。<br>
+     * 学習データの版、サンプリングの状態、マイクロクラスタ数、学習データウィンドウの保持位置と最新の点を値として保持する。
+     * 
+     * @param dataSet 学習モデルデータ
+     * @return 学習モデルが変化したかの判定に用いる値の配列
+     */
+    private static long[] calculateModelVersion(LofDataSet dataSet)
+    {
+        long[] values = new long[]{dataSet.getVersion(), dataSet.getSampleStratum(),
+                dataSet.getSampleCount(), dataSet.getMicroClusters().size(), 0L, 0L, 0L, 0L};
+
+        LofWindow window = dataSet.getWindow();
+        if (window != null)
+        {
+            values[4] = window.getStart();
+            values[5] = window.getSize();
+            if (window.getSize() > 0)
+            {
+                int newestSlot = window.getSlot(window.getSize() - 1);
+                values[6] = window.getPointIds()[newestSlot];
+                values[7] = window.getJudgeTimes()[newestSlot];
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * 学習モデルの最大保持数を取得する。学習モデルに最大保持数が設定されている場合はその値を用いる。
+     * 
+     * @param dataSet 学習モデルデータ
+     * @return 最大保持数
+     */
+    protected int getMaxDataCount(LofDataSet dataSet)
+    {
+        if (dataSet.getMaxDataCount() > 0)
+        {
+            return dataSet.getMaxDataCount();
+        }
+
+        return this.maxDataCount;
+    }
+
     /**
      * データを受信した時の処理を行う。<br>
      * LOFスコアの算出を行う。
@@ -144,6 +396,21 @@ public class LofUpdater extends BaseStateUpdater<MapState<LofDataSet>>
      */
     protected double receivePoint(LofPoint recievedPoint, LofDataSet dataSet)
     {
+        if (this.compactWindow == true)
+        {
+            return receivePointToWindow(recievedPoint, dataSet);
+        }
+
+        if (this.microCluster == true)
+        {
+            return receivePointWithMicroCluster(recievedPoint, dataSet);
+        }
+
+        if (this.windowPolicy != LofWindowPolicy.FIFO)
+        {
+            return receivePointWithSampling(recievedPoint, dataSet);
+        }
+
         // 現在保持している学習データ数
         int dataCount = dataSet.getDataIdList().size();
 
@@ -156,7 +423,7 @@ public class LofUpdater extends BaseStateUpdater<MapState<LofDataSet>>
 
         double lofScore = 0.0d;
 
-        if (this.alwaysUpdateModel || dataSet.getDataIdList().size() < this.maxDataCount
+        if (this.alwaysUpdateModel || dataSet.getDataIdList().size() < getMaxDataCount(dataSet)
                 || (this.receiveCount % this.updateInterval) == 0)
         {
             // 以下の条件を満たす場合、学習データモデルの更新、及びLOF値の算出を行う。
@@ -174,6 +441,181 @@ public class LofUpdater extends BaseStateUpdater<MapState<LofDataSet>>
         return lofScore;
     }
 
+    /**
+     * サンプリングによって学習データを選択する場合のデータを受信した時の処理を行う。<br>
+     * 受信データを学習データに追加するかはサンプリングによって判定し、追加しないデータはスコアの算出のみを行う。
+     * そのため、「データ受信時、常時学習データモデルを更新するか」「学習モデルの更新間隔」の設定は用いない。
+     * 
+     * @param recievedPoint 受信データ
+     * @param dataSet 学習モデルデータ
+     * @return 算出されたLOF値。データが最小数に満たない場合は0.0が返る。
+     */
+    protected double receivePointWithSampling(LofPoint recievedPoint, LofDataSet dataSet)
+    {
+        // データが最小数に満たない場合はデータの追加のみを行い、LOF値は0.0として扱う
+        // 追加するデータはサンプリングの対象外のため、サンプリングの状態は更新しない。
+        if (dataSet.getDataIdList().size() < this.minDataCount)
+        {
+            addDataWithoutCalculate(recievedPoint, dataSet);
+            return 0.0d;
+        }
+
+        int replaceIndex = LofSampler.selectReplaceIndex(this.windowPolicy,
+                getMaxDataCount(dataSet), this.stratumNum, this.stratumTime, recievedPoint,
+                dataSet, getRandom());
+
+        if (replaceIndex == LofSampler.NOT_SAMPLED)
+        {
+            return calculateLofWithoutUpdate(recievedPoint, dataSet);
+        }
+
+        String deleteId = null;
+        if (replaceIndex != LofSampler.APPEND)
+        {
+            deleteId = dataSet.getDataIdList().get(replaceIndex);
+        }
+
+        double result = 0.0d;
+
+        if (this.hasIntermediate)
+        {
+            result = LofCalculator.calculateLofWithReplace(this.kn, deleteId, recievedPoint,
+                    dataSet);
+        }
+        else
+        {
+            if (deleteId != null)
+            {
+                dataSet.deleteData(deleteId);
+            }
+            dataSet.addData(recievedPoint);
+            result = LofCalculator.calculateLofNoIntermediate(this.kn, recievedPoint, dataSet);
+        }
+
+        return result;
+    }
+
+    /**
+     * 古い学習データをマイクロクラスタに要約する場合のデータを受信した時の処理を行う。<br>
+     * 受信データのスコアは直近の学習データとマイクロクラスタを基に算出した後、受信データを学習データに追加する。
+     * 学習データ数が最大保持数に達した場合は最大保持数の半分の直近の点を残し、古い点をマイクロクラスタに要約する。<br>
+     * マイクロクラスタへの要約には古い点の中間データを用いるため、「中間データを学習データに保持するか」「データ受信時、常時学習データモデルを更新するか」
+     * 「学習モデルの更新間隔」「受信データを追加する方式」の設定は用いずに、常に中間データを保持して全受信データを追加する。
+     * 
+     * @param recievedPoint 受信データ
+     * @param dataSet 学習モデルデータ
+     * @return 算出されたLOF値。データが最小数に満たない場合は0.0が返る。
+     */
+    protected double receivePointWithMicroCluster(LofPoint recievedPoint, LofDataSet dataSet)
+    {
+        // データが最小数に満たない場合はデータの追加のみを行い、LOF値は0.0として扱う
+        if (dataSet.getMicroClusters().isEmpty() == true
+                && dataSet.getDataIdList().size() < this.minDataCount)
+        {
+            dataSet.addData(recievedPoint);
+            LofCalculator.initDataSet(this.kn, dataSet, this.initPool);
+            return 0.0d;
+        }
+
+        double lofScore = LofMicroClusterCalculator.calculateLof(this.kn, recievedPoint, dataSet);
+        LofCalculator.calculateLofWithReplace(this.kn, null, recievedPoint, dataSet);
+
+        if (dataSet.getDataIdList().size() >= getMaxDataCount(dataSet))
+        {
+            LofMicroClusterCalculator.summarize(this.kn, getMaxDataCount(dataSet) / 2,
+                    this.microClusterNum, this.maxMicroClusterNum, dataSet, getRandom(),
+                    this.initPool);
+        }
+
+        return lofScore;
+    }
+
+    /**
+     * コンパクトな学習データウィンドウを用いてデータを受信した時の処理を行う。<br>
+     * 学習データウィンドウは常に中間データを保持するため、「中間データを学習データに保持するか」の設定は用いない。
+     * 
+     * @param recievedPoint 受信データ
+     * @param dataSet 学習モデルデータ
+     * @return 算出されたLOF値。データが最小数に満たない場合は0.0が返る。
+     */
+    protected double receivePointToWindow(LofPoint recievedPoint, LofDataSet dataSet)
+    {
+        LofWindow window = dataSet.getWindow();
+        if (window == null)
+        {
+            window = new LofWindow(getMaxDataCount(dataSet), this.kn,
+                    recievedPoint.getDataPoint().length);
+            dataSet.setWindow(window);
+        }
+
+        LofDistanceCache cache = getDistanceCache(window);
+
+        // データが最小数に満たない場合はデータの追加のみを行い、LOF値は0.0として扱う
+        if (window.getSize() < this.minDataCount)
+        {
+            LofWindowCalculator.addPoint(window, recievedPoint, cache);
+            return 0.0d;
+        }
+
+        double lofScore = 0.0d;
+
+        if (this.alwaysUpdateModel || window.getSize() < window.getCapacity()
+                || (this.receiveCount % this.updateInterval) == 0)
+        {
+            lofScore = LofWindowCalculator.addPoint(window, recievedPoint, cache);
+        }
+        else
+        {
+            lofScore = LofWindowCalculator.calculateLof(window, recievedPoint.getDataPoint());
+        }
+
+        return lofScore;
+    }
+
+    /**
+     * スロット間の距離のキャッシュを取得する。初回呼び出し時に生成する。<br>
+     * モデルキー毎の学習モデルを用いる場合、キャッシュを学習モデル間で共有すると学習モデルが切り替わる度に再計算となるため、キャッシュは用いない。
+     * 
+     * @param window 学習データウィンドウ
+     * @return スロット間の距離のキャッシュ。キャッシュを用いない場合、モデルキー毎の学習モデルを用いる場合、またはキャッシュの消費メモリが上限を超える場合はnull
+     */
+    protected LofDistanceCache getDistanceCache(LofWindow window)
+    {
+        if (this.windowDistanceCache == false || this.modelKeyField != null
+                || LofDistanceCache.isAvailable(window.getCapacity(), window.getDimension(),
+                        this.distanceCacheBytes) == false)
+        {
+            return null;
+        }
+
+        if (this.distanceCache == null)
+        {
+            this.distanceCache = new LofDistanceCache();
+        }
+
+        return this.distanceCache;
+    }
+
+    /**
+     * 学習データモデルから判定時刻が保持期間外となったデータを一括で削除する。<br>
+     * 中間データを保持する場合は、削除したデータをK距離近傍に含む点の中間データのみ再計算する。
+     * 
+     * @param dataSet 学習モデルデータ
+     */
+    protected void deleteExpiredData(LofDataSet dataSet)
+    {
+        long expireTime = getCurrentTime() - this.windowTime;
+
+        if (this.hasIntermediate)
+        {
+            LofCalculator.deleteExpiredData(this.kn, expireTime, dataSet, this.initPool);
+        }
+        else
+        {
+            LofCalculator.deleteExpiredData(expireTime, dataSet);
+        }
+    }
+
     /**
      * LOF算出は行わず、学習データモデルへのデータ追加のみを行う。
      * 
@@ -187,7 +629,7 @@ public class LofUpdater extends BaseStateUpdater<MapState<LofDataSet>>
         // 中間データを保持する場合はデータ追加時に中間データの生成を行う。
         if (this.hasIntermediate)
         {
-            LofCalculator.initDataSet(this.kn, dataSet);
+            LofCalculator.initDataSet(this.kn, dataSet, this.initPool);
         }
     }
 
@@ -204,12 +646,12 @@ public class LofUpdater extends BaseStateUpdater<MapState<LofDataSet>>
 
         if (this.hasIntermediate)
         {
-            result = LofCalculator.calculateLofWithUpdate(this.kn, this.maxDataCount,
+            result = LofCalculator.calculateLofWithUpdate(this.kn, getMaxDataCount(dataSet),
                     recievedPoint, dataSet);
         }
         else
         {
-            LofCalculator.addPointToDataSet(this.maxDataCount, recievedPoint, dataSet);
+            LofCalculator.addPointToDataSet(getMaxDataCount(dataSet), recievedPoint, dataSet);
             result = LofCalculator.calculateLofNoIntermediate(this.kn, recievedPoint, dataSet);
         }
 
@@ -239,6 +681,38 @@ public class LofUpdater extends BaseStateUpdater<MapState<LofDataSet>>
         return result;
     }
 
+    /**
+     * サンプリング、マイクロクラスタへの要約に用いる乱数生成器を取得する。初回呼び出し時に生成し、シードが設定されている場合はシードを固定する。
+     * 
+     * @return 乱数生成器
+     */
+    protected Random getRandom()
+    {
+        if (this.random == null)
+        {
+            if (this.randomSeed != null)
+            {
+                this.random = new Random(this.randomSeed);
+            }
+            else
+            {
+                this.random = new Random();
+            }
+        }
+
+        return this.random;
+    }
+
+    /**
+     * 現在の時刻値を取得する。
+     * 
+     * @return 現在の時刻値
+     */
+    protected long getCurrentTime()
+    {
+        return System.currentTimeMillis();
+    }
+
     /**
      * @param dataNotifier the dataNotifier to set
      */
@@ -318,4 +792,152 @@ public class LofUpdater extends BaseStateUpdater<MapState<LofDataSet>>
     {
         this.maxDataCount = maxDataCount;
     }
+
+    /**
+     * @param compactWindow the compactWindow to set
+     */
+    public void setCompactWindow(boolean compactWindow)
+    {
+        this.compactWindow = compactWindow;
+    }
+
+    /**
+     * @param initThreadNum the initThreadNum to set
+     */
+    public void setInitThreadNum(int initThreadNum)
+    {
+        this.initThreadNum = initThreadNum;
+    }
+
+    /**
+     * 近似LOFに用いるLSHのパラメータを設定する。テーブル数、ハッシュ関数数、バケット幅で再現率と算出速度を調整する。
+     * 
+     * @param lshParameter LSHのパラメータ。nullの場合は厳密なK近傍探索を行う
+     */
+    public void setLshParameter(LofLshParameter lshParameter)
+    {
+        this.lshParameter = lshParameter;
+    }
+
+    /**
+     * 学習データモデルが保持するデータの期間を設定する。最大保持数による削除と併用され、いずれかを超過したデータが削除される。<br>
+     * コンパクトな学習データウィンドウを用いる場合は本設定は用いず、最大保持数による削除のみを行う。
+     * 
+     * @param windowTime 保持期間(ミリ秒)。0以下の場合は期間による削除を行わない
+     */
+    public void setWindowTime(long windowTime)
+    {
+        this.windowTime = windowTime;
+    }
+
+    /**
+     * コンパクトな学習データウィンドウのスロット間の距離をキャッシュするかを設定する。<br>
+     * キャッシュは最大保持数をNとした場合にN*(N-1)/2個の距離を保持するため、最大保持数に応じたメモリを消費する。
+     * モデルキー毎の学習モデルを用いる場合はキャッシュを用いない。
+     * 
+     * @param windowDistanceCache スロット間の距離をキャッシュする場合true
+     */
+    public void setWindowDistanceCache(boolean windowDistanceCache)
+    {
+        this.windowDistanceCache = windowDistanceCache;
+    }
+
+    /**
+     * スロット間の距離のキャッシュが消費するバイト数の上限を設定する。<br>
+     * 最大保持数と次元数から算出したキャッシュの消費メモリが上限を超える場合はキャッシュを用いない。
+     * デフォルト値は{@link LofDistanceCache#DEFAULT_MAX_BYTES}。
+     * 
+     * @param distanceCacheBytes キャッシュが消費するバイト数の上限
+     */
+    public void setDistanceCacheBytes(long distanceCacheBytes)
+    {
+        this.distanceCacheBytes = distanceCacheBytes;
+    }
+
+    /**
+     * 学習データセットに受信データを追加する方式を設定する。<br>
+     * {@link LofWindowPolicy#RESERVOIR}、{@link LofWindowPolicy#STRATIFIED}の場合、サンプリングで選択されなかった受信データはスコアの算出のみを行う。
+     * コンパクトな学習データウィンドウを用いる場合は本設定は用いない。
+     * 
+     * @param windowPolicy 受信データを追加する方式
+     */
+    public void setWindowPolicy(LofWindowPolicy windowPolicy)
+    {
+        this.windowPolicy = windowPolicy;
+    }
+
+    /**
+     * @param stratumNum the stratumNum to set
+     */
+    public void setStratumNum(int stratumNum)
+    {
+        this.stratumNum = stratumNum;
+    }
+
+    /**
+     * @param stratumTime the stratumTime to set
+     */
+    public void setStratumTime(long stratumTime)
+    {
+        this.stratumTime = stratumTime;
+    }
+
+    /**
+     * @param randomSeed the randomSeed to set
+     */
+    public void setRandomSeed(Long randomSeed)
+    {
+        this.randomSeed = randomSeed;
+    }
+
+    /**
+     * 古い学習データをマイクロクラスタに要約するかを設定する。<br>
+     * 要約する場合、学習データは最大保持数に達する毎に直近の半分の点を残してマイクロクラスタに要約され、
+     * 受信データのスコアは直近の学習データとマイクロクラスタを基に算出する。
+     * コンパクトな学習データウィンドウを用いる場合は本設定は用いない。
+     * 
+     * @param microCluster マイクロクラスタに要約する場合true
+     */
+    public void setMicroCluster(boolean microCluster)
+    {
+        this.microCluster = microCluster;
+    }
+
+    /**
+     * @param microClusterNum the microClusterNum to set
+     */
+    public void setMicroClusterNum(int microClusterNum)
+    {
+        this.microClusterNum = microClusterNum;
+    }
+
+    /**
+     * @param maxMicroClusterNum the maxMicroClusterNum to set
+     */
+    public void setMaxMicroClusterNum(int maxMicroClusterNum)
+    {
+        this.maxMicroClusterNum = maxMicroClusterNum;
+    }
+
+    /**
+     * 学習モデルを切り替えるモデルキーを保持するTupleのフィールド名を設定する。<br>
+     * 設定した場合、受信データをモデルキー毎にグループ化し、「状態名称.モデルキー」をキーとする学習モデルをモデルキー毎に用いる。
+     * 
+     * @param modelKeyField モデルキーを保持するフィールド名。nullの場合は単一の学習モデルを用いる
+     */
+    public void setModelKeyField(String modelKeyField)
+    {
+        this.modelKeyField = modelKeyField;
+    }
+
+    /**
+     * モデルキー毎の最大保持数を設定する。設定されていないモデルキーは「学習データモデルが最大で保持するデータ数」を用いる。<br>
+     * コンパクトな学習データウィンドウを用いる場合、最大保持数はウィンドウの生成時にのみ反映される。
+     * 
+     * @param keyMaxDataCounts モデルキー>最大保持数のマッピング
+     */
+    public void setKeyMaxDataCounts(Map<String, Integer> keyMaxDataCounts)
+    {
+        this.keyMaxDataCounts = keyMaxDataCounts;
+    }
 }
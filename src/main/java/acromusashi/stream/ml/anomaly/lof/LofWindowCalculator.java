@@ -0,0 +1,749 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.anomaly.lof;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import acromusashi.stream.ml.anomaly.lof.entity.LofDataSet;
+import acromusashi.stream.ml.anomaly.lof.entity.LofDistanceCache;
+import acromusashi.stream.ml.anomaly.lof.entity.LofPoint;
+import acromusashi.stream.ml.anomaly.lof.entity.LofWindow;
+import acromusashi.stream.ml.common.util.ArrayMathUtil;
+
+/**
+ * リングバッファで学習データを保持する{@link LofWindow}を対象にLocal Outlier Factorの計算を行うユーティリティクラス<br>
+ * K距離近傍は「距離＞数値のデータID＞スロット番号」の優先度で選択する。
+ *
+ * @author kimura
+ */
+public class LofWindowCalculator
+{
+    /** 数値のデータIDの算出に用いるFNV-1aハッシュの初期値 */
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    /** 数値のデータIDの算出に用いるFNV-1aハッシュの乗数 */
+    private static final long FNV_PRIME        = 0x100000001b3L;
+
+    /**
+     * インスタンス化を防止するためのコンストラクタ
+     */
+    private LofWindowCalculator()
+    {}
+
+    /**
+     * 学習データウィンドウに対象点を追加し、対象点の局所外れ係数スコアを算出する。<br>
+     * 保持数が上限に達していた場合は最も古い点のスロットを対象点で上書きする。<br>
+     * 中間データの更新は以下の点に限定して行う(Incremental LOF)。
+     * <ol>
+     * <li>追加点、削除点をK距離近傍に含む点、追加点との距離がK距離以下の点、K距離近傍がK個に満たない点のK距離、K距離近傍</li>
+     * <li>上記の点、及び上記の点をK距離近傍に含む点の局所到達可能密度</li>
+     * </ol>
+     *
+     * @param window 学習データウィンドウ
+     * @param addedPoint 対象点
+     * @return LOFスコア
+     */
+    public static double addPoint(LofWindow window, LofPoint addedPoint)
+    {
+        return addPoint(window, addedPoint, null);
+    }
+
+    /**
+     * スロット間の距離のキャッシュを用いて、学習データウィンドウに対象点を追加し、対象点の局所外れ係数スコアを算出する。<br>
+     * キャッシュは追加点のスロットの行のみ更新し、更新対象点の判定、K距離近傍の探索、局所到達可能密度の算出ではキャッシュの距離を用いる。
+     * 上書きされるスロットの行も追加点の行として更新されるため、削除点の行を個別に更新する必要はない。<br>
+     * 算出結果はキャッシュを用いない{@link #addPoint(LofWindow, LofPoint)}と同一となる。
+     *
+     * @param window 学習データウィンドウ
+     * @param addedPoint 対象点
+     * @param cache スロット間の距離のキャッシュ。nullの場合はキャッシュを用いない
+     * @return LOFスコア
+     */
+    public static double addPoint(LofWindow window, LofPoint addedPoint, LofDistanceCache cache)
+    {
+        // 前回の呼び出し以後にウィンドウが復元、マージされている場合に備え、格納された点が異なるスロットの行を再算出する。
+        if (cache != null)
+        {
+            cache.synchronize(window);
+        }
+
+        int capacity = window.getCapacity();
+        boolean[] updateTargets = new boolean[capacity];
+
+        // 保持数が上限に達している場合は最も古い点のスロットを再利用する。
+        // 削除される点をK距離近傍に含む点は、スロットを上書きする前に更新対象として判定する。
+        int slot;
+        if (window.getSize() == capacity)
+        {
+            slot = window.getStart();
+            markReverseNeighbors(window, slot, updateTargets);
+            window.setStart((window.getStart() + 1) % capacity);
+            window.setSize(window.getSize() - 1);
+        }
+        else
+        {
+            slot = window.getSlot(window.getSize());
+        }
+
+        storePoint(window, slot, addedPoint);
+        updateTargets[slot] = true;
+        if (cache != null)
+        {
+            cache.updateRow(window, slot);
+        }
+
+        // 追加点との距離がK距離以下の点、及びK距離近傍がK個に満たない点を更新対象とする。
+        // 距離がK距離と等しい場合も、数値のデータIDの優先度によってK距離近傍が入れ替わる可能性があるため対象とする。
+        for (int order = 0; order < window.getSize(); order++)
+        {
+            int targetSlot = window.getSlot(order);
+            if (targetSlot == slot || updateTargets[targetSlot] == true)
+            {
+                continue;
+            }
+
+            if (window.getNeighborCounts()[targetSlot] < window.getKn())
+            {
+                updateTargets[targetSlot] = true;
+                continue;
+            }
+
+            double distance = calculateDistance(window, cache, targetSlot, slot);
+            if (distance <= window.getkDistances()[targetSlot])
+            {
+                updateTargets[targetSlot] = true;
+            }
+        }
+
+        // K距離、K距離近傍を全て更新した後局所到達可能密度を更新する必要があるため、2ブロックに分けて行う。
+        for (int order = 0; order < window.getSize(); order++)
+        {
+            int targetSlot = window.getSlot(order);
+            if (updateTargets[targetSlot] == true)
+            {
+                updateKDistance(window, targetSlot, cache);
+            }
+        }
+
+        boolean[] lrdTargets = updateTargets.clone();
+        markReverseNeighbors(window, updateTargets, lrdTargets);
+        for (int order = 0; order < window.getSize(); order++)
+        {
+            int targetSlot = window.getSlot(order);
+            if (lrdTargets[targetSlot] == true)
+            {
+                updateLrd(window, targetSlot, cache);
+            }
+        }
+
+        return calculateLof(window, slot);
+    }
+
+    /**
+     * 学習データウィンドウを更新せずに、対象点の局所外れ係数スコアを算出する。
+     *
+     * @param window 学習データウィンドウ
+     * @param target 対象点の座標
+     * @return LOFスコア
+     */
+    public static double calculateLof(LofWindow window, double[] target)
+    {
+        int[] neighborSlots = new int[window.getKn()];
+        double[] neighborDistances = new double[window.getKn()];
+        int neighborCount = searchNeighbors(window, target, 0, -1, neighborSlots,
+                neighborDistances);
+
+        double lrd = calculateLrd(window, neighborSlots, 0, neighborDistances, neighborCount);
+        return calculateLof(window, neighborSlots, 0, neighborCount, lrd);
+    }
+
+    /**
+     * 学習データウィンドウが保持する全ての点のK距離、K距離近傍、局所到達可能密度を再計算する。
+     *
+     * @param window 学習データウィンドウ
+     */
+    public static void initWindow(LofWindow window)
+    {
+        for (int order = 0; order < window.getSize(); order++)
+        {
+            updateKDistance(window, window.getSlot(order));
+        }
+
+        for (int order = 0; order < window.getSize(); order++)
+        {
+            updateLrd(window, window.getSlot(order));
+        }
+    }
+
+    /**
+     * 学習データウィンドウのマージを行う。<br>
+     * 双方の点から判定時刻が新しい順に、同一の点を除いてベースの保持可能な点数だけ取得し、中間データを再計算する。
+     *
+     * @param baseWindow マージのベース学習データウィンドウ
+     * @param targetWindow マージ対象の学習データウィンドウ
+     * @return マージ後の学習データウィンドウ
+     */
+    public static LofWindow mergeWindow(LofWindow baseWindow, LofWindow targetWindow)
+    {
+        if (baseWindow == null)
+        {
+            return targetWindow;
+        }
+        if (targetWindow == null)
+        {
+            return baseWindow;
+        }
+
+        List<LofPoint> mergedList = new ArrayList<>();
+        mergedList.addAll(toPoints(baseWindow));
+        mergedList.addAll(toPoints(targetWindow));
+        return mergePoints(baseWindow, mergedList);
+    }
+
+    /**
+     * 学習データセット同士をマージした学習データウィンドウを生成する。<br>
+     * 学習データウィンドウを保持しない学習データセットは、保持する点をウィンドウの点と同様にマージ対象とする。
+     * ウィンドウの保持可能な点数、K値、次元数はベースの学習データウィンドウ(存在しない場合はマージ対象の学習データウィンドウ)に合わせる。
+     *
+     * @param baseDataSet マージのベース学習データセット
+     * @param targetDataSet マージ対象の学習データセット
+     * @return マージ後の学習データウィンドウ。双方ともウィンドウを保持しない場合はnull
+     */
+    public static LofWindow mergeWindow(LofDataSet baseDataSet, LofDataSet targetDataSet)
+    {
+        LofWindow templateWindow = baseDataSet.getWindow();
+        if (templateWindow == null)
+        {
+            templateWindow = targetDataSet.getWindow();
+        }
+        if (templateWindow == null)
+        {
+            return null;
+        }
+
+        List<LofPoint> mergedList = new ArrayList<>();
+        mergedList.addAll(collectPoints(baseDataSet, templateWindow.getDimension()));
+        mergedList.addAll(collectPoints(targetDataSet, templateWindow.getDimension()));
+        return mergePoints(templateWindow, mergedList);
+    }
+
+    /**
+     * 学習データセットが保持する点を取得する。学習データウィンドウを保持する場合はウィンドウの点を取得する。<br>
+     * ウィンドウを保持しない場合は、次元数が一致する点のみを対象とする。
+     *
+     * @param dataSet 学習データセット
+     * @param dimension 次元数
+     * @return 点のリスト
+     */
+    private static List<LofPoint> collectPoints(LofDataSet dataSet, int dimension)
+    {
+        if (dataSet.getWindow() != null)
+        {
+            return toPoints(dataSet.getWindow());
+        }
+
+        List<LofPoint> result = new ArrayList<>(dataSet.getDataMap().size());
+        for (LofPoint targetPoint : dataSet.getDataMap().values())
+        {
+            if (targetPoint.getDataPoint() != null
+                    && targetPoint.getDataPoint().length == dimension)
+            {
+                result.add(targetPoint);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * 点のリストから判定時刻が新しい順に、同一の点を除いて保持可能な点数だけ取得した学習データウィンドウを生成する。<br>
+     * 数値のデータIDを持つ点は数値のデータIDで、持たない点は判定時刻と座標で同一の点かを判定する。
+     *
+     * @param templateWindow 保持可能な点数、K値、次元数を取得する学習データウィンドウ
+     * @param mergedList 点のリスト
+     * @return マージ後の学習データウィンドウ
+     */
+    private static LofWindow mergePoints(LofWindow templateWindow, List<LofPoint> mergedList)
+    {
+        // 新しいデータから順に採用し、重複するデータは最初に採用したもののみを用いる。
+        Collections.sort(mergedList, new Comparator<LofPoint>() {
+            @Override
+            public int compare(LofPoint o1, LofPoint o2)
+            {
+                return Long.compare(getJudgeTime(o2), getJudgeTime(o1));
+            }
+        });
+
+        List<LofPoint> adoptedList = new ArrayList<>();
+        Set<Long> registeredId = new HashSet<>();
+        Set<String> registeredPoint = new HashSet<>();
+        for (LofPoint targetPoint : mergedList)
+        {
+            if (adoptedList.size() >= templateWindow.getCapacity())
+            {
+                break;
+            }
+
+            long pointId = resolvePointId(targetPoint);
+            boolean registered = false;
+            if (pointId != 0L)
+            {
+                registered = registeredId.add(pointId);
+            }
+            else
+            {
+                registered = registeredPoint.add(getJudgeTime(targetPoint) + ":"
+                        + Arrays.toString(targetPoint.getDataPoint()));
+            }
+
+            if (registered == true)
+            {
+                adoptedList.add(targetPoint);
+            }
+        }
+
+        // ウィンドウには古いデータから順に格納する。
+        Collections.reverse(adoptedList);
+        LofWindow result = new LofWindow(templateWindow.getCapacity(), templateWindow.getKn(),
+                templateWindow.getDimension());
+        for (LofPoint targetPoint : adoptedList)
+        {
+            storePoint(result, result.getSlot(result.getSize()), targetPoint);
+        }
+
+        initWindow(result);
+        return result;
+    }
+
+    /**
+     * 点を識別する数値のデータIDを取得する。<br>
+     * 数値のデータIDが設定されていない(0の)場合は、データIDの文字列から64bitのハッシュ値(FNV-1a)を算出して用いる。
+     * データIDも存在しない場合は0を返す。
+     *
+     * @param point 点
+     * @return 数値のデータID
+     */
+    static long resolvePointId(LofPoint point)
+    {
+        if (point.getPointId() != 0L || point.getDataId() == null)
+        {
+            return point.getPointId();
+        }
+
+        String dataId = point.getDataId();
+        long hash = FNV_OFFSET_BASIS;
+        for (int index = 0; index < dataId.length(); index++)
+        {
+            hash = (hash ^ dataId.charAt(index)) * FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    /**
+     * 点の判定時刻を取得する。判定時刻が存在しない場合は0とする。
+     *
+     * @param point 点
+     * @return 判定時刻
+     */
+    private static long getJudgeTime(LofPoint point)
+    {
+        if (point.getJudgeDate() == null)
+        {
+            return 0L;
+        }
+
+        return point.getJudgeDate().getTime();
+    }
+
+    /**
+     * 学習データウィンドウが保持する点を、古いものから順に{@link LofPoint}のリストに変換する。中間データは変換しない。
+     *
+     * @param window 学習データウィンドウ
+     * @return 点のリスト
+     */
+    public static List<LofPoint> toPoints(LofWindow window)
+    {
+        List<LofPoint> result = new ArrayList<>(window.getSize());
+        int dimension = window.getDimension();
+        for (int order = 0; order < window.getSize(); order++)
+        {
+            int slot = window.getSlot(order);
+            double[] dataPoint = new double[dimension];
+            System.arraycopy(window.getCoordinates(), slot * dimension, dataPoint, 0, dimension);
+
+            LofPoint point = new LofPoint();
+            point.setDataId(Long.toString(window.getPointIds()[slot]));
+            point.setPointId(window.getPointIds()[slot]);
+            point.setDataPoint(dataPoint);
+            point.setJudgeDate(new Date(window.getJudgeTimes()[slot]));
+            result.add(point);
+        }
+
+        return result;
+    }
+
+    /**
+     * 指定したスロットのK距離とK距離近傍を更新する。
+     *
+     * @param window 学習データウィンドウ
+     * @param slot スロット番号
+     */
+    protected static void updateKDistance(LofWindow window, int slot)
+    {
+        updateKDistance(window, slot, null);
+    }
+
+    /**
+     * スロット間の距離のキャッシュを用いて、指定したスロットのK距離とK距離近傍を更新する。
+     *
+     * @param window 学習データウィンドウ
+     * @param slot スロット番号
+     * @param cache スロット間の距離のキャッシュ。nullの場合は距離を都度算出する
+     */
+    protected static void updateKDistance(LofWindow window, int slot, LofDistanceCache cache)
+    {
+        int kn = window.getKn();
+        double[] neighborDistances = new double[kn];
+        int neighborCount = searchNeighbors(window, window.getCoordinates(),
+                slot * window.getDimension(), slot, window.getNeighbors(), slot * kn,
+                neighborDistances, cache);
+
+        window.getNeighborCounts()[slot] = neighborCount;
+        if (neighborCount == 0)
+        {
+            window.getkDistances()[slot] = 0.0d;
+        }
+        else
+        {
+            window.getkDistances()[slot] = neighborDistances[neighborCount - 1];
+        }
+    }
+
+    /**
+     * 指定したスロットの局所到達可能密度を更新する。
+     *
+     * @param window 学習データウィンドウ
+     * @param slot スロット番号
+     */
+    protected static void updateLrd(LofWindow window, int slot)
+    {
+        updateLrd(window, slot, null);
+    }
+
+    /**
+     * スロット間の距離のキャッシュを用いて、指定したスロットの局所到達可能密度を更新する。
+     *
+     * @param window 学習データウィンドウ
+     * @param slot スロット番号
+     * @param cache スロット間の距離のキャッシュ。nullの場合は距離を都度算出する
+     */
+    protected static void updateLrd(LofWindow window, int slot, LofDistanceCache cache)
+    {
+        int kn = window.getKn();
+        int neighborCount = window.getNeighborCounts()[slot];
+        double[] neighborDistances = new double[neighborCount];
+        for (int index = 0; index < neighborCount; index++)
+        {
+            int neighborSlot = window.getNeighbors()[slot * kn + index];
+            neighborDistances[index] = calculateDistance(window, cache, slot, neighborSlot);
+        }
+
+        window.getLrds()[slot] = calculateLrd(window, window.getNeighbors(), slot * kn,
+                neighborDistances, neighborCount);
+    }
+
+    /**
+     * 対象点に近いスロットを最大K件探索する。
+     *
+     * @param window 学習データウィンドウ
+     * @param target 対象点を含む配列
+     * @param targetOffset 対象点の先頭要素のインデックス
+     * @param excludeSlot 探索対象外とするスロット番号。対象外とするスロットが存在しない場合は-1
+     * @param neighborSlots 探索結果のスロット番号の格納先
+     * @param neighborDistances 探索結果の距離の格納先
+     * @return 探索結果の件数
+     */
+    protected static int searchNeighbors(LofWindow window, double[] target, int targetOffset,
+            int excludeSlot, int[] neighborSlots, double[] neighborDistances)
+    {
+        return searchNeighbors(window, target, targetOffset, excludeSlot, neighborSlots, 0,
+                neighborDistances, null);
+    }
+
+    /**
+     * 対象点に近いスロットを最大K件探索し、「距離＞数値のデータID＞スロット番号」の昇順に格納する。
+     *
+     * @param window 学習データウィンドウ
+     * @param target 対象点を含む配列
+     * @param targetOffset 対象点の先頭要素のインデックス
+     * @param excludeSlot 探索対象外とするスロット番号。対象外とするスロットが存在しない場合は-1
+     * @param neighborSlots 探索結果のスロット番号の格納先
+     * @param neighborOffset 探索結果のスロット番号の格納開始位置
+     * @param neighborDistances 探索結果の距離の格納先
+     * @param cache スロット間の距離のキャッシュ。対象点が探索対象外とするスロットの点である場合のみ指定する
+     * @return 探索結果の件数
+     */
+    private static int searchNeighbors(LofWindow window, double[] target, int targetOffset,
+            int excludeSlot, int[] neighborSlots, int neighborOffset, double[] neighborDistances,
+            LofDistanceCache cache)
+    {
+        int kn = window.getKn();
+        int dimension = window.getDimension();
+        double[] coordinates = window.getCoordinates();
+        long[] pointIds = window.getPointIds();
+        int count = 0;
+
+        for (int order = 0; order < window.getSize(); order++)
+        {
+            int slot = window.getSlot(order);
+            if (slot == excludeSlot)
+            {
+                continue;
+            }
+
+            double distance = 0.0d;
+            if (cache != null)
+            {
+                distance = cache.getDistance(slot, excludeSlot);
+            }
+            else
+            {
+                distance = Math.sqrt(ArrayMathUtil.squaredDistance(coordinates, slot
+                        * dimension, target, targetOffset, dimension));
+            }
+
+            if (count == kn
+                    && compare(distance, pointIds[slot], slot, neighborDistances[kn - 1],
+                            pointIds[neighborSlots[neighborOffset + kn - 1]],
+                            neighborSlots[neighborOffset + kn - 1]) >= 0)
+            {
+                continue;
+            }
+
+            int position = count;
+            if (count == kn)
+            {
+                position--;
+            }
+            else
+            {
+                count++;
+            }
+
+            while (position > 0
+                    && compare(distance, pointIds[slot], slot, neighborDistances[position - 1],
+                            pointIds[neighborSlots[neighborOffset + position - 1]],
+                            neighborSlots[neighborOffset + position - 1]) < 0)
+            {
+                neighborDistances[position] = neighborDistances[position - 1];
+                neighborSlots[neighborOffset + position] = neighborSlots[neighborOffset
+                        + position - 1];
+                position--;
+            }
+
+            neighborDistances[position] = distance;
+            neighborSlots[neighborOffset + position] = slot;
+        }
+
+        return count;
+    }
+
+    /**
+     * 指定したスロット間の距離を取得する。キャッシュを指定した場合はキャッシュから取得し、指定しない場合は算出する。
+     *
+     * @param window 学習データウィンドウ
+     * @param cache スロット間の距離のキャッシュ。nullの場合は距離を算出する
+     * @param slot1 スロット番号1
+     * @param slot2 スロット番号2
+     * @return 距離
+     */
+    private static double calculateDistance(LofWindow window, LofDistanceCache cache, int slot1,
+            int slot2)
+    {
+        if (cache != null)
+        {
+            return cache.getDistance(slot1, slot2);
+        }
+
+        int dimension = window.getDimension();
+        return Math.sqrt(ArrayMathUtil.squaredDistance(window.getCoordinates(), slot1
+                * dimension, window.getCoordinates(), slot2 * dimension, dimension));
+    }
+
+    /**
+     * K距離近傍のスロットと距離を基に局所到達可能密度を算出する。
+     *
+     * @param window 学習データウィンドウ
+     * @param neighborSlots K距離近傍のスロット番号
+     * @param neighborOffset K距離近傍のスロット番号の格納開始位置
+     * @param neighborDistances K距離近傍との距離
+     * @param neighborCount K距離近傍の件数
+     * @return 局所到達可能密度
+     */
+    private static double calculateLrd(LofWindow window, int[] neighborSlots, int neighborOffset,
+            double[] neighborDistances, int neighborCount)
+    {
+        double totalAmount = 0.0d;
+        for (int index = 0; index < neighborCount; index++)
+        {
+            int neighborSlot = neighborSlots[neighborOffset + index];
+            double reachDistance = Math.max(neighborDistances[index],
+                    window.getkDistances()[neighborSlot]);
+            totalAmount = totalAmount + reachDistance;
+        }
+
+        if (totalAmount == 0.0d)
+        {
+            return totalAmount;
+        }
+
+        return neighborCount / totalAmount;
+    }
+
+    /**
+     * 指定したスロットの局所外れ係数を算出する。
+     *
+     * @param window 学習データウィンドウ
+     * @param slot スロット番号
+     * @return 局所外れ係数
+     */
+    private static double calculateLof(LofWindow window, int slot)
+    {
+        return calculateLof(window, window.getNeighbors(), slot * window.getKn(),
+                window.getNeighborCounts()[slot], window.getLrds()[slot]);
+    }
+
+    /**
+     * K距離近傍のスロットと局所到達可能密度を基に局所外れ係数を算出する。
+     *
+     * @param window 学習データウィンドウ
+     * @param neighborSlots K距離近傍のスロット番号
+     * @param neighborOffset K距離近傍のスロット番号の格納開始位置
+     * @param neighborCount K距離近傍の件数
+     * @param lrd 算出対象の局所到達可能密度
+     * @return 局所外れ係数
+     */
+    private static double calculateLof(LofWindow window, int[] neighborSlots, int neighborOffset,
+            int neighborCount, double lrd)
+    {
+        double totalAmount = 0.0d;
+        for (int index = 0; index < neighborCount; index++)
+        {
+            int neighborSlot = neighborSlots[neighborOffset + index];
+            totalAmount = totalAmount + (window.getLrds()[neighborSlot] / lrd);
+        }
+
+        if (neighborCount == 0)
+        {
+            return totalAmount;
+        }
+
+        return totalAmount / neighborCount;
+    }
+
+    /**
+     * 指定したスロットをK距離近傍に含むスロットに印を付ける。
+     *
+     * @param window 学習データウィンドウ
+     * @param slot スロット番号
+     * @param marks 印の格納先
+     */
+    private static void markReverseNeighbors(LofWindow window, int slot, boolean[] marks)
+    {
+        boolean[] targets = new boolean[window.getCapacity()];
+        targets[slot] = true;
+        markReverseNeighbors(window, targets, marks);
+    }
+
+    /**
+     * 対象のスロットのいずれかをK距離近傍に含むスロットに印を付ける。
+     *
+     * @param window 学習データウィンドウ
+     * @param targets 対象のスロット
+     * @param marks 印の格納先
+     */
+    private static void markReverseNeighbors(LofWindow window, boolean[] targets, boolean[] marks)
+    {
+        int kn = window.getKn();
+        int[] neighbors = window.getNeighbors();
+        for (int order = 0; order < window.getSize(); order++)
+        {
+            int slot = window.getSlot(order);
+            for (int index = 0; index < window.getNeighborCounts()[slot]; index++)
+            {
+                if (targets[neighbors[slot * kn + index]] == true)
+                {
+                    marks[slot] = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 指定したスロットに点を格納する。格納したスロットの中間データは初期化する。
+     *
+     * @param window 学習データウィンドウ
+     * @param slot スロット番号
+     * @param point 格納する点
+     */
+    private static void storePoint(LofWindow window, int slot, LofPoint point)
+    {
+        System.arraycopy(point.getDataPoint(), 0, window.getCoordinates(),
+                slot * window.getDimension(), window.getDimension());
+        window.getPointIds()[slot] = resolvePointId(point);
+        window.getJudgeTimes()[slot] = getJudgeTime(point);
+
+        window.getNeighborCounts()[slot] = 0;
+        window.getkDistances()[slot] = 0.0d;
+        window.getLrds()[slot] = 0.0d;
+        window.setSize(window.getSize() + 1);
+    }
+
+    /**
+     * 「距離＞数値のデータID＞スロット番号」の優先度で大小を比較する。
+     *
+     * @param distance1 距離1
+     * @param pointId1 数値のデータID1
+     * @param slot1 スロット番号1
+     * @param distance2 距離2
+     * @param pointId2 数値のデータID2
+     * @param slot2 スロット番号2
+     * @return 比較結果
+     */
+    private static int compare(double distance1, long pointId1, int slot1, double distance2,
+            long pointId2, int slot2)
+    {
+        int distanceResult = Double.compare(distance1, distance2);
+        if (distanceResult != 0)
+        {
+            return distanceResult;
+        }
+
+        int idResult = Long.compare(pointId1, pointId2);
+        if (idResult != 0)
+        {
+            return idResult;
+        }
+
+        return Integer.compare(slot1, slot2);
+    }
+}
@@ -0,0 +1,30 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.anomaly.lof;
+
+/**
+ * LOFの学習データセットに受信データを追加する方式
+ *
+ * @author kimura
+ */
+public enum LofWindowPolicy
+{
+    /** 受信データを全て追加し、最大保持数を超過した場合は最も古いデータを削除する。 */
+    FIFO,
+
+    /** 受信した全データから一様に最大保持数個を選択するよう、リザーバサンプリングで追加するデータを選択する。 */
+    RESERVOIR,
+
+    /** 判定時刻を一定の期間毎の層に分け、層毎に同数のデータを保持するよう、層毎にリザーバサンプリングで追加するデータを選択する。 */
+    STRATIFIED
+}
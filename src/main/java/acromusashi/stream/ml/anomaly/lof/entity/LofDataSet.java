@@ -15,9 +15,12 @@ package acromusashi.stream.ml.anomaly.lof.entity;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
@@ -30,13 +33,46 @@ import org.apache.commons.lang.builder.ToStringStyle;
 public class LofDataSet implements Serializable
 {
     /** serialVersionUID */
-    private static final long     serialVersionUID = 7589332742661081169L;
+    private static final long                     serialVersionUID   = 7589332742661081169L;
+
+    /** 版の算出に用いる乗数 */
+    private static final long                     VERSION_MULTIPLIER = 0x9E3779B97F4A7C15L;
 
     /** 保持するデータIDのリスト */
-    private List<String>          dataIdList       = new ArrayList<>();
+    private List<String>                          dataIdList         = new ArrayList<>();
 
     /** 保持するデータID>データ値のマッピング */
-    private Map<String, LofPoint> dataMap          = new HashMap<>();
+    private Map<String, LofPoint>                 dataMap            = new HashMap<>();
+
+    /** リングバッファで学習データを保持するウィンドウ。コンパクトな学習データを用いない場合はnull */
+    private LofWindow                             window;
+
+    /** データの追加/削除の履歴から算出する学習データの版。保持するデータが変化する度に更新される。 */
+    private long                                  version;
+
+    /** サンプリングによる学習データの選択に用いる、現在の層の番号 */
+    private long                                  sampleStratum;
+
+    /** サンプリングによる学習データの選択に用いる、現在の層で受信したデータ数 */
+    private long                                  sampleCount;
+
+    /** 本学習モデルが最大で保持するデータ数。0以下の場合は未設定とし、設定値の最大保持数を用いる */
+    private int                                   maxDataCount;
+
+    /** 古い学習データを要約したマイクロクラスタのリスト。要約を行わない場合は空 */
+    private List<LofMicroCluster>                 microClusters      = new ArrayList<>();
+
+    /** K近傍探索用インデックス。初回参照時に生成し、以後はデータの追加/削除に合わせて更新する。学習モデルと共に保存し、バッチ間で引き継ぐ。 */
+    private LofPointIndex                         pointIndex;
+
+    /** データID>当該データをK距離近傍に含むデータIDの集合のマッピング。初回参照時に生成し、以後はK距離近傍の更新に合わせて更新する。 */
+    private transient Map<String, Set<String>>    reverseNeighborMap;
+
+    /** 近似K近傍探索に用いるLSHのパラメータ。nullの場合は近似探索を行わない。 */
+    private LofLshParameter                       lshParameter;
+
+    /** 近似K近傍探索用インデックス。初回参照時に生成し、以後はデータの追加/削除に合わせて更新する。学習モデルと共に保存し、バッチ間で引き継ぐ。 */
+    private LofLshIndex                           lshIndex;
 
     /**
      * パラメータを指定せずにインスタンスを生成する。
@@ -51,19 +87,229 @@ public class LofDataSet implements Serializable
      */
     public void addData(LofPoint addedPoint)
     {
+        updateVersion(addedPoint.getDataId(), 1);
         this.dataIdList.add(addedPoint.getDataId());
-        this.dataMap.put(addedPoint.getDataId(), addedPoint);
+        LofPoint replacedPoint = this.dataMap.put(addedPoint.getDataId(), addedPoint);
+
+        if (this.pointIndex != null)
+        {
+            if (replacedPoint != null)
+            {
+                this.pointIndex.remove(addedPoint.getDataId());
+            }
+            this.pointIndex.add(addedPoint);
+        }
+
+        if (this.reverseNeighborMap != null)
+        {
+            if (replacedPoint != null)
+            {
+                removeReverseNeighbors(replacedPoint);
+            }
+            addReverseNeighbors(addedPoint);
+        }
+
+        if (this.lshIndex != null)
+        {
+            this.lshIndex.remove(addedPoint.getDataId());
+            this.lshIndex.add(addedPoint);
+        }
     }
 
     /**
-     * 保持するデータIDのリスト/データマッピングに値を追加する。
+     * 保持するデータIDのリスト/データマッピングに値を追加する。<br>
+     * 削除した点をK距離近傍に含む点の逆K近傍情報は、それらの点のK距離近傍が更新されるまで保持する。
      * 
      * @param deleteDataId 追加対象点
      */
     public void deleteData(String deleteDataId)
     {
         this.dataIdList.remove(deleteDataId);
-        this.dataMap.remove(deleteDataId);
+        removeData(deleteDataId);
+    }
+
+    /**
+     * 保持するデータIDのリスト/データマッピングから複数の値を一括で削除する。<br>
+     * データIDのリストの走査は削除するデータ数に依らず1回のみ行う。
+     * 削除した点をK距離近傍に含む点の逆K近傍情報は、それらの点のK距離近傍が更新されるまで保持する。
+     * 
+     * @param deleteDataIds 削除対象点のデータIDの集合
+     */
+    public void deleteData(Set<String> deleteDataIds)
+    {
+        this.dataIdList.removeAll(deleteDataIds);
+        for (String deleteDataId : deleteDataIds)
+        {
+            removeData(deleteDataId);
+        }
+    }
+
+    /**
+     * 判定時刻が指定した時刻より前のデータIDを判定時刻の古い順に取得する。<br>
+     * データIDのリストは判定時刻順に並んでいるため、先頭から走査して判定時刻が基準時刻以後の点に到達した時点で終了する。
+     * そのため、走査する点数は期間外の点数に比例し、保持する点数には依存しない。
+     * 判定時刻を保持しないデータは対象外とし、走査は継続する。
+     * 
+     * @param expireTime 基準時刻
+     * @return 判定時刻が基準時刻より前のデータIDのリスト
+     */
+    public List<String> getExpiredDataIds(long expireTime)
+    {
+        List<String> result = new ArrayList<>();
+        for (String dataId : this.dataIdList)
+        {
+            LofPoint targetPoint = this.dataMap.get(dataId);
+            if (targetPoint == null || targetPoint.getJudgeDate() == null)
+            {
+                continue;
+            }
+
+            if (targetPoint.getJudgeDate().getTime() >= expireTime)
+            {
+                break;
+            }
+
+            result.add(dataId);
+        }
+
+        return result;
+    }
+
+    /**
+     * データマッピングと各インデックスから値を削除する。
+     * 
+     * @param deleteDataId 削除対象点のデータID
+     */
+    private void removeData(String deleteDataId)
+    {
+        updateVersion(deleteDataId, 2);
+        LofPoint deletedPoint = this.dataMap.remove(deleteDataId);
+
+        if (this.pointIndex != null)
+        {
+            this.pointIndex.remove(deleteDataId);
+        }
+
+        if (this.reverseNeighborMap != null && deletedPoint != null)
+        {
+            removeReverseNeighbors(deletedPoint);
+        }
+
+        if (this.lshIndex != null)
+        {
+            this.lshIndex.remove(deleteDataId);
+        }
+    }
+
+    /**
+     * 対象点のK距離近傍データのIDリストを更新し、逆K近傍情報に反映する。
+     * 
+     * @param targetPoint 対象点
+     * @param neighbors K距離近傍データのIDリスト
+     */
+    public void updateNeighbors(LofPoint targetPoint, List<String> neighbors)
+    {
+        if (this.reverseNeighborMap != null)
+        {
+            removeReverseNeighbors(targetPoint);
+        }
+
+        targetPoint.setkDistanceNeighbor(neighbors);
+
+        if (this.reverseNeighborMap != null)
+        {
+            addReverseNeighbors(targetPoint);
+        }
+    }
+
+    /**
+     * 指定したデータをK距離近傍に含むデータIDの集合(逆K近傍)を取得する。<br>
+     * 初回参照時に保持している各点のK距離近傍から生成し、以後は{@link #updateNeighbors(LofPoint, List)}等に合わせて更新する。
+     * 
+     * @param dataId データID
+     * @return 逆K近傍のデータIDの集合。存在しない場合は空集合
+     */
+    public Set<String> getReverseNeighbors(String dataId)
+    {
+        if (this.reverseNeighborMap == null)
+        {
+            this.reverseNeighborMap = new HashMap<>();
+            for (LofPoint targetPoint : this.dataMap.values())
+            {
+                addReverseNeighbors(targetPoint);
+            }
+        }
+
+        Set<String> reverseNeighbors = this.reverseNeighborMap.get(dataId);
+        if (reverseNeighbors == null)
+        {
+            return Collections.emptySet();
+        }
+
+        return reverseNeighbors;
+    }
+
+    /**
+     * 変更対象のデータIDと変更種別を学習データの版に反映する。
+     * 
+     * @param dataId 変更対象のデータID
+     * @param operation 変更種別
+     */
+    private void updateVersion(String dataId, int operation)
+    {
+        this.version = (this.version + dataId.hashCode()) * VERSION_MULTIPLIER + operation;
+    }
+
+    /**
+     * 対象点のK距離近傍を逆K近傍情報に追加する。
+     * 
+     * @param targetPoint 対象点
+     */
+    private void addReverseNeighbors(LofPoint targetPoint)
+    {
+        if (targetPoint.getkDistanceNeighbor() == null)
+        {
+            return;
+        }
+
+        for (String neighborId : targetPoint.getkDistanceNeighbor())
+        {
+            Set<String> reverseNeighbors = this.reverseNeighborMap.get(neighborId);
+            if (reverseNeighbors == null)
+            {
+                reverseNeighbors = new HashSet<>();
+                this.reverseNeighborMap.put(neighborId, reverseNeighbors);
+            }
+            reverseNeighbors.add(targetPoint.getDataId());
+        }
+    }
+
+    /**
+     * 対象点のK距離近傍を逆K近傍情報から除外する。
+     * 
+     * @param targetPoint 対象点
+     */
+    private void removeReverseNeighbors(LofPoint targetPoint)
+    {
+        if (targetPoint.getkDistanceNeighbor() == null)
+        {
+            return;
+        }
+
+        for (String neighborId : targetPoint.getkDistanceNeighbor())
+        {
+            Set<String> reverseNeighbors = this.reverseNeighborMap.get(neighborId);
+            if (reverseNeighbors == null)
+            {
+                continue;
+            }
+
+            reverseNeighbors.remove(targetPoint.getDataId());
+            if (reverseNeighbors.isEmpty())
+            {
+                this.reverseNeighborMap.remove(neighborId);
+            }
+        }
     }
 
     /**
@@ -75,6 +321,19 @@ public class LofDataSet implements Serializable
     {
         LofDataSet result = new LofDataSet();
         result.getDataIdList().addAll(this.dataIdList);
+        result.setVersion(this.version);
+        result.setSampleStratum(this.sampleStratum);
+        result.setSampleCount(this.sampleCount);
+        result.setMaxDataCount(this.maxDataCount);
+        result.setLshParameter(this.lshParameter);
+        if (this.window != null)
+        {
+            result.setWindow(this.window.deepCopy());
+        }
+        for (LofMicroCluster microCluster : getMicroClusters())
+        {
+            result.getMicroClusters().add(microCluster.deepCopy());
+        }
         Collection<LofPoint> pointList = this.dataMap.values();
         for (LofPoint targetPoint : pointList)
         {
@@ -114,6 +373,199 @@ public class LofDataSet implements Serializable
     public void setDataMap(Map<String, LofPoint> dataMap)
     {
         this.dataMap = dataMap;
+        this.pointIndex = null;
+        this.reverseNeighborMap = null;
+        this.lshIndex = null;
+
+        for (String dataId : dataMap.keySet())
+        {
+            updateVersion(dataId, 3);
+        }
+    }
+
+    /**
+     * @return the version
+     */
+    public long getVersion()
+    {
+        return this.version;
+    }
+
+    /**
+     * @param version the version to set
+     */
+    public void setVersion(long version)
+    {
+        this.version = version;
+    }
+
+    /**
+     * @return the sampleStratum
+     */
+    public long getSampleStratum()
+    {
+        return this.sampleStratum;
+    }
+
+    /**
+     * @param sampleStratum the sampleStratum to set
+     */
+    public void setSampleStratum(long sampleStratum)
+    {
+        this.sampleStratum = sampleStratum;
+    }
+
+    /**
+     * @return the sampleCount
+     */
+    public long getSampleCount()
+    {
+        return this.sampleCount;
+    }
+
+    /**
+     * @param sampleCount the sampleCount to set
+     */
+    public void setSampleCount(long sampleCount)
+    {
+        this.sampleCount = sampleCount;
+    }
+
+    /**
+     * @return the maxDataCount
+     */
+    public int getMaxDataCount()
+    {
+        return this.maxDataCount;
+    }
+
+    /**
+     * @param maxDataCount the maxDataCount to set
+     */
+    public void setMaxDataCount(int maxDataCount)
+    {
+        this.maxDataCount = maxDataCount;
+    }
+
+    /**
+     * マイクロクラスタのリストを取得する。マイクロクラスタを保持しない版の状態を復元した場合は空リストを生成して返す。
+     * 
+     * @return マイクロクラスタのリスト
+     */
+    public List<LofMicroCluster> getMicroClusters()
+    {
+        if (this.microClusters == null)
+        {
+            this.microClusters = new ArrayList<>();
+        }
+
+        return this.microClusters;
+    }
+
+    /**
+     * @param microClusters the microClusters to set
+     */
+    public void setMicroClusters(List<LofMicroCluster> microClusters)
+    {
+        this.microClusters = microClusters;
+    }
+
+    /**
+     * @return the window
+     */
+    public LofWindow getWindow()
+    {
+        return this.window;
+    }
+
+    /**
+     * @param window the window to set
+     */
+    public void setWindow(LofWindow window)
+    {
+        this.window = window;
+    }
+
+    /**
+     * K近傍探索用インデックスを取得する。<br>
+     * 初回参照時に保持しているデータから生成し、以後は{@link #addData(LofPoint)}、{@link #deleteData(String)}に合わせて更新する。
+     * そのため、{@link #getDataMap()}で取得したマッピングを直接更新した場合は{@link #clearPointIndex()}を呼び出すこと。<br>
+     * インデックスは学習モデルと共にシリアライズされるため、状態から復元した学習モデルでは生成済みのKD木をそのまま用いる。
+     * 
+     * @return K近傍探索用インデックス
+     */
+    public LofPointIndex getPointIndex()
+    {
+        if (this.pointIndex == null)
+        {
+            this.pointIndex = new LofPointIndex(this.dataMap.values());
+        }
+
+        return this.pointIndex;
+    }
+
+    /**
+     * K近傍探索用インデックス、近似K近傍探索用インデックスと逆K近傍情報を破棄する。次回参照時に保持しているデータから再生成される。
+     */
+    public void clearPointIndex()
+    {
+        this.pointIndex = null;
+        this.reverseNeighborMap = null;
+        this.lshIndex = null;
+    }
+
+    /**
+     * 近似K近傍探索用インデックスを取得する。<br>
+     * 初回参照時に保持しているデータから生成し、以後は{@link #addData(LofPoint)}、{@link #deleteData(String)}に合わせて更新する。
+     * インデックスは学習モデルと共にシリアライズされるため、状態から復元した学習モデルでは生成済みの射影ベクトルとバケットをそのまま用いる。
+     * 
+     * @return 近似K近傍探索用インデックス。LSHのパラメータが設定されていない場合はnull
+     */
+    public LofLshIndex getLshIndex()
+    {
+        if (this.lshParameter == null)
+        {
+            return null;
+        }
+
+        if (this.lshIndex == null)
+        {
+            this.lshIndex = new LofLshIndex(this.lshParameter, this.dataMap.values());
+        }
+
+        return this.lshIndex;
+    }
+
+    /**
+     * @return the lshParameter
+     */
+    public LofLshParameter getLshParameter()
+    {
+        return this.lshParameter;
+    }
+
+    /**
+     * 近似K近傍探索に用いるLSHのパラメータを設定する。現在と値が異なるパラメータを設定した場合は近似K近傍探索用インデックスを破棄する。<br>
+     * 値が同一のパラメータを設定した場合は、状態から復元した学習モデルのインデックスをそのまま用いる。
+     * 
+     * @param lshParameter LSHのパラメータ。nullの場合は近似探索を行わない。
+     */
+    public void setLshParameter(LofLshParameter lshParameter)
+    {
+        if (lshParameter == null || lshParameter.equals(this.lshParameter) == false)
+        {
+            this.lshIndex = null;
+        }
+
+        this.lshParameter = lshParameter;
+    }
+
+    /**
+     * 逆K近傍情報のみを破棄する。次回参照時に保持している各点のK距離近傍から再生成される。
+     */
+    public void clearReverseNeighbors()
+    {
+        this.reverseNeighborMap = null;
     }
 
     /**
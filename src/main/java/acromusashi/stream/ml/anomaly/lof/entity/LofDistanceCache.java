@@ -0,0 +1,242 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.anomaly.lof.entity;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+
+import acromusashi.stream.ml.common.util.ArrayMathUtil;
+
+/**
+ * 学習データウィンドウ({@link LofWindow})のスロット間の距離を保持するキャッシュ<br>
+ * 距離は対称であるため、スロットの組毎に1要素を割り当てた下三角行列を1次元配列に詰めて保持する。
+ * そのため、保持可能な点数をNとした場合、N*(N-1)/2個の要素を用いる。<br>
+ * スロット毎に距離を算出した時点の「数値のデータID」「判定時刻」「座標」を保持し、いずれかがウィンドウの内容と異なるスロットの行のみ再算出する。
+ * 座標も比較するため、数値のデータIDと判定時刻が同一の別の点が格納された場合も古い距離は用いない。<br>
+ * ウィンドウの状態はバッチ毎に復元されるため、本キャッシュは状態に含めずに保持する。<br>
+ * 消費メモリは保持可能な点数の2乗に比例するため、利用側は{@link #isAvailable(int, int, long)}で設定したバイト数以内に収まるかを判定して用いる。
+ *
+ * @author kimura
+ */
+public class LofDistanceCache
+{
+    /** 距離を配列1個に格納可能な保持可能な点数の上限 */
+    public static final int MAX_CAPACITY      = 46340;
+
+    /** キャッシュが消費するバイト数の上限のデフォルト値(64MB) */
+    public static final int DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+
+    /** 保持可能な点数(スロット数) */
+    private int             capacity;
+
+    /** 次元数 */
+    private int             dimension;
+
+    /** スロットの組毎の距離。下三角行列を行優先で格納する */
+    private double[]        distances;
+
+    /** スロット毎の距離を算出した時点の数値のデータID */
+    private long[]          pointIds;
+
+    /** スロット毎の距離を算出した時点の判定時刻 */
+    private long[]          judgeTimes;
+
+    /** スロット毎の距離を算出した時点の座標。スロット順に行優先で格納する */
+    private double[]        coordinates;
+
+    /** スロット毎の距離が有効か */
+    private boolean[]       valid;
+
+    /**
+     * パラメータを指定せずにインスタンスを生成する。
+     */
+    public LofDistanceCache()
+    {}
+
+    /**
+     * 学習データウィンドウの内容とキャッシュの内容を一致させる。<br>
+     * ウィンドウの保持可能な点数、次元数が異なる場合はキャッシュを再生成し、格納された点が異なるスロットの行を再算出する。
+     * 点を格納していないスロットは無効とする。
+     *
+     * @param window 学習データウィンドウ
+     */
+    public void synchronize(LofWindow window)
+    {
+        if (this.distances == null || this.capacity != window.getCapacity()
+                || this.dimension != window.getDimension())
+        {
+            this.capacity = window.getCapacity();
+            this.dimension = window.getDimension();
+            this.distances = new double[this.capacity * (this.capacity - 1) / 2];
+            this.pointIds = new long[this.capacity];
+            this.judgeTimes = new long[this.capacity];
+            this.coordinates = new double[this.capacity * this.dimension];
+            this.valid = new boolean[this.capacity];
+        }
+
+        boolean[] occupied = new boolean[this.capacity];
+        for (int order = 0; order < window.getSize(); order++)
+        {
+            occupied[window.getSlot(order)] = true;
+        }
+
+        for (int slot = 0; slot < this.capacity; slot++)
+        {
+            if (occupied[slot] == false)
+            {
+                this.valid[slot] = false;
+            }
+        }
+
+        for (int order = 0; order < window.getSize(); order++)
+        {
+            int slot = window.getSlot(order);
+            if (this.valid[slot] == false || this.pointIds[slot] != window.getPointIds()[slot]
+                    || this.judgeTimes[slot] != window.getJudgeTimes()[slot]
+                    || isSameCoordinates(window, slot) == false)
+            {
+                updateRow(window, slot);
+            }
+        }
+    }
+
+    /**
+     * 指定したスロットと、ウィンドウが保持する他の全スロットとの距離を算出して格納する。<br>
+     * スロットに点を格納、または上書きした際に呼び出す。
+     *
+     * @param window 学習データウィンドウ
+     * @param slot スロット番号
+     */
+    public void updateRow(LofWindow window, int slot)
+    {
+        double[] coordinates = window.getCoordinates();
+        for (int order = 0; order < window.getSize(); order++)
+        {
+            int targetSlot = window.getSlot(order);
+            if (targetSlot == slot)
+            {
+                continue;
+            }
+
+            this.distances[toIndex(slot, targetSlot)] = Math.sqrt(ArrayMathUtil.squaredDistance(
+                    coordinates, slot * this.dimension, coordinates, targetSlot
+                            * this.dimension, this.dimension));
+        }
+
+        this.pointIds[slot] = window.getPointIds()[slot];
+        this.judgeTimes[slot] = window.getJudgeTimes()[slot];
+        System.arraycopy(coordinates, slot * this.dimension, this.coordinates, slot
+                * this.dimension, this.dimension);
+        this.valid[slot] = true;
+    }
+
+    /**
+     * 指定したスロットについて、距離を算出した時点の座標とウィンドウの座標が一致するかを判定する。
+     *
+     * @param window 学習データウィンドウ
+     * @param slot スロット番号
+     * @return 一致する場合true
+     */
+    private boolean isSameCoordinates(LofWindow window, int slot)
+    {
+        double[] windowCoordinates = window.getCoordinates();
+        int offset = slot * this.dimension;
+        for (int dimIndex = 0; dimIndex < this.dimension; dimIndex++)
+        {
+            if (Double.doubleToLongBits(this.coordinates[offset + dimIndex]) != Double
+                    .doubleToLongBits(windowCoordinates[offset + dimIndex]))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * 指定したスロット間の距離を取得する。
+     *
+     * @param slot1 スロット番号1
+     * @param slot2 スロット番号2
+     * @return 距離
+     */
+    public double getDistance(int slot1, int slot2)
+    {
+        return this.distances[toIndex(slot1, slot2)];
+    }
+
+    /**
+     * 指定した保持可能な点数、次元数のキャッシュが消費するバイト数の概算値を算出する。<br>
+     * 距離の下三角行列と、スロット毎に保持する数値のデータID、判定時刻、座標、有効フラグの合計とする。
+     *
+     * @param capacity 保持可能な点数
+     * @param dimension 次元数
+     * @return 消費するバイト数
+     */
+    public static long estimateBytes(int capacity, int dimension)
+    {
+        long distanceBytes = (long) capacity * (capacity - 1) / 2 * 8L;
+        long slotBytes = (long) capacity * (8L + 8L + 8L * dimension + 1L);
+        return distanceBytes + slotBytes;
+    }
+
+    /**
+     * 指定した保持可能な点数、次元数のキャッシュを、指定したバイト数以内で生成可能かを判定する。
+     *
+     * @param capacity 保持可能な点数
+     * @param dimension 次元数
+     * @param maxBytes キャッシュが消費するバイト数の上限
+     * @return 生成可能な場合true。保持可能な点数が{@link #MAX_CAPACITY}を超える場合は常にfalse
+     */
+    public static boolean isAvailable(int capacity, int dimension, long maxBytes)
+    {
+        if (capacity > MAX_CAPACITY)
+        {
+            return false;
+        }
+
+        return estimateBytes(capacity, dimension) <= maxBytes;
+    }
+
+    /**
+     * スロットの組に対応する配列のインデックスを算出する。
+     *
+     * @param slot1 スロット番号1
+     * @param slot2 スロット番号2
+     * @return 配列のインデックス
+     */
+    private static int toIndex(int slot1, int slot2)
+    {
+        int high = Math.max(slot1, slot2);
+        int low = Math.min(slot1, slot2);
+        return high * (high - 1) / 2 + low;
+    }
+
+    /**
+     * @return the capacity
+     */
+    public int getCapacity()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        String result = ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
+        return result;
+    }
+}
@@ -0,0 +1,283 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.anomaly.lof.entity;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+
+import acromusashi.stream.ml.common.util.ArrayMathUtil;
+
+/**
+ * LOFの学習データセットに対して局所性鋭敏型ハッシュ(LSH)を用いて近似K近傍探索を行うインデックス<br>
+ * ユークリッド距離向けのランダム射影(p-stable分布)を用い、テーブル毎に「ハッシュ関数数」個の射影を量子化した値の組をバケットのキーとする。<br>
+ * 探索時はいずれかのテーブルで対象点と同じバケットに格納された点のみを候補とし、候補との距離を算出して近い順にK件を選択する。
+ * そのため、探索結果は真のK近傍の一部を取りこぼす可能性がある。<br>
+ * 射影ベクトルとバケットは学習モデルと共にシリアライズされるため、バッチ毎に状態を復元しても再生成せず、点の追加/削除のみを反映する。
+ *
+ * @author kimura
+ */
+public class LofLshIndex implements Serializable
+{
+    /** serialVersionUID */
+    private static final long               serialVersionUID = 6120478213304617390L;
+
+    /** バケットのキーの算出に用いる乗数 */
+    private static final long               KEY_MULTIPLIER   = 0x9E3779B97F4A7C15L;
+
+    /** パラメータ */
+    private LofLshParameter                 parameter;
+
+    /** 次元数。点が追加されるまでは0 */
+    private int                             dimension;
+
+    /** 射影ベクトル。テーブル順、ハッシュ関数順に行優先で格納する */
+    private double[]                        projections;
+
+    /** 射影のオフセット */
+    private double[]                        offsets;
+
+    /** テーブル毎のバケットのキー＞格納した点のリストのマッピング */
+    private List<Map<Long, List<LofPoint>>> tables;
+
+    /** データID＞テーブル毎のバケットのキーのマッピング */
+    private Map<String, long[]>             pointKeys;
+
+    /**
+     * パラメータと点の一覧を指定してインデックスを構築する。
+     *
+     * @param parameter パラメータ
+     * @param points 点の一覧
+     */
+    public LofLshIndex(LofLshParameter parameter, Collection<LofPoint> points)
+    {
+        this.parameter = parameter;
+        this.tables = new ArrayList<>(parameter.getTableNum());
+        for (int tableIndex = 0; tableIndex < parameter.getTableNum(); tableIndex++)
+        {
+            this.tables.add(new HashMap<Long, List<LofPoint>>());
+        }
+        this.pointKeys = new HashMap<>();
+
+        for (LofPoint point : points)
+        {
+            add(point);
+        }
+    }
+
+    /**
+     * インデックスに点を追加する。
+     *
+     * @param addedPoint 追加対象点
+     */
+    public void add(LofPoint addedPoint)
+    {
+        long[] keys = calculateKeys(addedPoint.getDataPoint());
+        this.pointKeys.put(addedPoint.getDataId(), keys);
+
+        for (int tableIndex = 0; tableIndex < keys.length; tableIndex++)
+        {
+            Map<Long, List<LofPoint>> table = this.tables.get(tableIndex);
+            List<LofPoint> bucket = table.get(keys[tableIndex]);
+            if (bucket == null)
+            {
+                bucket = new ArrayList<>();
+                table.put(keys[tableIndex], bucket);
+            }
+
+            bucket.add(addedPoint);
+        }
+    }
+
+    /**
+     * インデックスから点を削除する。
+     *
+     * @param deleteDataId 削除対象点のデータID
+     */
+    public void remove(String deleteDataId)
+    {
+        long[] keys = this.pointKeys.remove(deleteDataId);
+        if (keys == null)
+        {
+            return;
+        }
+
+        for (int tableIndex = 0; tableIndex < keys.length; tableIndex++)
+        {
+            Map<Long, List<LofPoint>> table = this.tables.get(tableIndex);
+            List<LofPoint> bucket = table.get(keys[tableIndex]);
+            for (int index = 0; index < bucket.size(); index++)
+            {
+                if (StringUtils.equals(bucket.get(index).getDataId(), deleteDataId) == true)
+                {
+                    bucket.remove(index);
+                    break;
+                }
+            }
+
+            if (bucket.isEmpty() == true)
+            {
+                table.remove(keys[tableIndex]);
+            }
+        }
+    }
+
+    /**
+     * いずれかのテーブルで対象点と同じバケットに格納された点を重複なく取得する。
+     *
+     * @param target 対象点の座標
+     * @param excludeId 取得対象外とするデータID(対象点自身のデータID)
+     * @return 候補点のリスト(順不同)
+     */
+    public List<LofPoint> searchCandidates(double[] target, String excludeId)
+    {
+        if (this.dimension == 0)
+        {
+            return Collections.emptyList();
+        }
+
+        long[] keys = calculateKeys(target);
+        Set<LofPoint> visitedPoints = Collections.newSetFromMap(
+                new IdentityHashMap<LofPoint, Boolean>());
+        List<LofPoint> result = new ArrayList<>();
+        for (int tableIndex = 0; tableIndex < keys.length; tableIndex++)
+        {
+            List<LofPoint> bucket = this.tables.get(tableIndex).get(keys[tableIndex]);
+            if (bucket == null)
+            {
+                continue;
+            }
+
+            for (LofPoint candidate : bucket)
+            {
+                if (visitedPoints.add(candidate) == false
+                        || StringUtils.equals(candidate.getDataId(), excludeId) == true)
+                {
+                    continue;
+                }
+
+                result.add(candidate);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * 候補点の中から対象点に近い点を最大K件選択し、距離の昇順のリストを生成して返す。
+     *
+     * @param target 対象点の座標
+     * @param excludeId 探索対象外とするデータID(対象点自身のデータID)
+     * @param kn K値
+     * @return 距離算出結果リスト。距離＞データIDの優先度でソートした状態で返す。候補点がK件に満たない場合は候補点の数だけ返す。
+     */
+    public List<DistanceResult> searchNeighbors(double[] target, String excludeId, int kn)
+    {
+        int candidateNum = Math.max(kn, 1);
+        double[] candidateDistances = new double[candidateNum];
+        String[] candidateIds = new String[candidateNum];
+        int[] count = {0};
+
+        for (LofPoint candidate : searchCandidates(target, excludeId))
+        {
+            double distance = Math.sqrt(ArrayMathUtil.squaredDistance(candidate.getDataPoint(),
+                    target));
+            LofPointIndex.offer(distance, candidate.getDataId(), candidateDistances,
+                    candidateIds, count);
+        }
+
+        List<DistanceResult> result = new ArrayList<>(count[0]);
+        for (int index = 0; index < count[0]; index++)
+        {
+            result.add(new DistanceResult(candidateIds[index], candidateDistances[index]));
+        }
+
+        return result;
+    }
+
+    /**
+     * 対象点のテーブル毎のバケットのキーを算出する。
+     *
+     * @param target 対象点の座標
+     * @return テーブル毎のバケットのキー
+     */
+    private long[] calculateKeys(double[] target)
+    {
+        if (this.dimension == 0)
+        {
+            initProjections(target.length);
+        }
+
+        int tableNum = this.parameter.getTableNum();
+        int hashNum = this.parameter.getHashNum();
+        double bucketWidth = this.parameter.getBucketWidth();
+        long[] keys = new long[tableNum];
+        int hashIndex = 0;
+
+        for (int tableIndex = 0; tableIndex < tableNum; tableIndex++)
+        {
+            long key = 0L;
+            for (int index = 0; index < hashNum; index++)
+            {
+                int projectionOffset = hashIndex * this.dimension;
+                double projected = this.offsets[hashIndex];
+                for (int dimIndex = 0; dimIndex < this.dimension; dimIndex++)
+                {
+                    projected = projected + this.projections[projectionOffset + dimIndex]
+                            * target[dimIndex];
+                }
+
+                long hash = (long) Math.floor(projected / bucketWidth);
+                key = key * KEY_MULTIPLIER + hash;
+                hashIndex++;
+            }
+
+            keys[tableIndex] = key;
+        }
+
+        return keys;
+    }
+
+    /**
+     * 次元数を指定して射影ベクトルと射影のオフセットを生成する。<br>
+     * 射影ベクトルの各要素は標準正規分布に、オフセットは0以上バケット幅未満の一様分布に従う。
+     *
+     * @param dimension 次元数
+     */
+    private void initProjections(int dimension)
+    {
+        this.dimension = dimension;
+        int hashTotal = this.parameter.getTableNum() * this.parameter.getHashNum();
+        this.projections = new double[hashTotal * dimension];
+        this.offsets = new double[hashTotal];
+
+        Random random = new Random(this.parameter.getSeed());
+        for (int index = 0; index < this.projections.length; index++)
+        {
+            this.projections[index] = random.nextGaussian();
+        }
+        for (int index = 0; index < hashTotal; index++)
+        {
+            this.offsets[index] = random.nextDouble() * this.parameter.getBucketWidth();
+        }
+    }
+}
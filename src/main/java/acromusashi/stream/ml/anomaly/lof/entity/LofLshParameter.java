@@ -0,0 +1,173 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.anomaly.lof.entity;
+
+import java.io.Serializable;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+
+/**
+ * 局所性鋭敏型ハッシュ(LSH)を用いた近似LOFのパラメータを保持するエンティティクラス<br>
+ * 近傍の取りこぼし(再現率)と算出速度は以下のパラメータで調整する。
+ * <ul>
+ * <li>テーブル数:増やすほど再現率が上がり、点の追加/探索時のハッシュ算出量と候補数が増える。</li>
+ * <li>ハッシュ関数数:増やすほどバケットが細分化されて候補数が減り、再現率が下がる。</li>
+ * <li>バケット幅:増やすほど再現率が上がり、候補数が増える。学習データの点間距離(K距離程度)を目安に設定する。</li>
+ * </ul>
+ *
+ * @author kimura
+ */
+public class LofLshParameter implements Serializable
+{
+    /** テーブル数のデフォルト値 */
+    public static final int    DEFAULT_TABLE_NUM    = 10;
+
+    /** ハッシュ関数数のデフォルト値 */
+    public static final int    DEFAULT_HASH_NUM     = 4;
+
+    /** バケット幅のデフォルト値 */
+    public static final double DEFAULT_BUCKET_WIDTH = 4.0d;
+
+    /** serialVersionUID */
+    private static final long  serialVersionUID     = 3364098551704739281L;
+
+    /** ハッシュテーブル数 */
+    private int                tableNum             = DEFAULT_TABLE_NUM;
+
+    /** テーブル毎のハッシュ関数(ランダム射影)数 */
+    private int                hashNum              = DEFAULT_HASH_NUM;
+
+    /** ランダム射影の量子化に用いるバケット幅 */
+    private double             bucketWidth          = DEFAULT_BUCKET_WIDTH;
+
+    /** ランダム射影の生成に用いる乱数シード */
+    private long               seed;
+
+    /**
+     * パラメータを指定せずにインスタンスを生成する。
+     */
+    public LofLshParameter()
+    {}
+
+    /**
+     * @return the tableNum
+     */
+    public int getTableNum()
+    {
+        return this.tableNum;
+    }
+
+    /**
+     * @param tableNum the tableNum to set
+     */
+    public void setTableNum(int tableNum)
+    {
+        this.tableNum = tableNum;
+    }
+
+    /**
+     * @return the hashNum
+     */
+    public int getHashNum()
+    {
+        return this.hashNum;
+    }
+
+    /**
+     * @param hashNum the hashNum to set
+     */
+    public void setHashNum(int hashNum)
+    {
+        this.hashNum = hashNum;
+    }
+
+    /**
+     * @return the bucketWidth
+     */
+    public double getBucketWidth()
+    {
+        return this.bucketWidth;
+    }
+
+    /**
+     * @param bucketWidth the bucketWidth to set
+     */
+    public void setBucketWidth(double bucketWidth)
+    {
+        this.bucketWidth = bucketWidth;
+    }
+
+    /**
+     * @return the seed
+     */
+    public long getSeed()
+    {
+        return this.seed;
+    }
+
+    /**
+     * @param seed the seed to set
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object other)
+    {
+        if (this == other)
+        {
+            return true;
+        }
+
+        if (!(other instanceof LofLshParameter))
+        {
+            return false;
+        }
+
+        LofLshParameter otherParameter = (LofLshParameter) other;
+        return this.tableNum == otherParameter.getTableNum()
+                && this.hashNum == otherParameter.getHashNum()
+                && Double.compare(this.bucketWidth, otherParameter.getBucketWidth()) == 0
+                && this.seed == otherParameter.getSeed();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode()
+    {
+        long bucketWidthBits = Double.doubleToLongBits(this.bucketWidth);
+        int result = this.tableNum;
+        result = 31 * result + this.hashNum;
+        result = 31 * result + (int) (bucketWidthBits ^ (bucketWidthBits >>> 32));
+        result = 31 * result + (int) (this.seed ^ (this.seed >>> 32));
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        String result = ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
+        return result;
+    }
+}
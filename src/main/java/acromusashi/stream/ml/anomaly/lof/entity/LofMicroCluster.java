@@ -0,0 +1,256 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.anomaly.lof.entity;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+
+/**
+ * 学習データの古い点を要約したマイクロクラスタを保持するエンティティクラス<br>
+ * 要約した点の中心点、点数、半径に加え、LOFスコア算出時に近傍として用いるK距離と局所到達可能密度の推定値(要約した点の平均値)を保持する。<br>
+ * 半径はマイクロクラスタ同士をマージした後も算出できるよう、要約した点のノルムの二乗の総和から算出する。<br>
+ * パーティション間のマージで同じ点を重複して数えないよう、マージによって吸収したマイクロクラスタのIDを保持する。
+ *
+ * @author kimura
+ */
+public class LofMicroCluster implements Serializable
+{
+    /** serialVersionUID */
+    private static final long serialVersionUID = -3316802364416525702L;
+
+    /** マイクロクラスタのID。要約した点のうち最も古い点のデータIDを用いる */
+    private String            clusterId;
+
+    /** 中心点 */
+    private double[]          center;
+
+    /** 要約した点数 */
+    private long              count;
+
+    /** 要約した点のノルムの二乗の総和 */
+    private double            squaredSum;
+
+    /** 要約した点のK距離の平均値 */
+    private double            kDistance;
+
+    /** 要約した点の局所到達可能密度の平均値 */
+    private double            lrd;
+
+    /** 要約した点のうち最も新しい点の判定時刻 */
+    private long              lastJudgeTime;
+
+    /** マージによって吸収したマイクロクラスタのID。吸収した順に保持する */
+    private Set<String>       absorbedIds;
+
+    /**
+     * パラメータを指定せずにインスタンスを生成する。
+     */
+    public LofMicroCluster()
+    {}
+
+    /**
+     * 中心点からの距離の二乗平均の平方根を半径として算出する。
+     *
+     * @return 半径
+     */
+    public double getRadius()
+    {
+        if (this.count == 0)
+        {
+            return 0.0d;
+        }
+
+        double centerNorm = 0.0d;
+        for (double value : this.center)
+        {
+            centerNorm = centerNorm + value * value;
+        }
+
+        double variance = this.squaredSum / this.count - centerNorm;
+        if (variance <= 0.0d)
+        {
+            return 0.0d;
+        }
+
+        return Math.sqrt(variance);
+    }
+
+    /**
+     * 対象エンティティのDeepCopyを作成する。
+     *
+     * @return 対象エンティティのDeepCopy
+     */
+    public LofMicroCluster deepCopy()
+    {
+        LofMicroCluster result = new LofMicroCluster();
+        result.setClusterId(this.clusterId);
+        result.setCenter(Arrays.copyOf(this.center, this.center.length));
+        result.setCount(this.count);
+        result.setSquaredSum(this.squaredSum);
+        result.setkDistance(this.kDistance);
+        result.setLrd(this.lrd);
+        result.setLastJudgeTime(this.lastJudgeTime);
+        result.setAbsorbedIds(new LinkedHashSet<>(getAbsorbedIds()));
+        return result;
+    }
+
+    /**
+     * @return the clusterId
+     */
+    public String getClusterId()
+    {
+        return this.clusterId;
+    }
+
+    /**
+     * @param clusterId the clusterId to set
+     */
+    public void setClusterId(String clusterId)
+    {
+        this.clusterId = clusterId;
+    }
+
+    /**
+     * @return the center
+     */
+    public double[] getCenter()
+    {
+        return this.center;
+    }
+
+    /**
+     * @param center the center to set
+     */
+    public void setCenter(double[] center)
+    {
+        this.center = center;
+    }
+
+    /**
+     * @return the count
+     */
+    public long getCount()
+    {
+        return this.count;
+    }
+
+    /**
+     * @param count the count to set
+     */
+    public void setCount(long count)
+    {
+        this.count = count;
+    }
+
+    /**
+     * @return the squaredSum
+     */
+    public double getSquaredSum()
+    {
+        return this.squaredSum;
+    }
+
+    /**
+     * @param squaredSum the squaredSum to set
+     */
+    public void setSquaredSum(double squaredSum)
+    {
+        this.squaredSum = squaredSum;
+    }
+
+    /**
+     * @return the kDistance
+     */
+    public double getkDistance()
+    {
+        return this.kDistance;
+    }
+
+    /**
+     * @param kDistance the kDistance to set
+     */
+    public void setkDistance(double kDistance)
+    {
+        this.kDistance = kDistance;
+    }
+
+    /**
+     * @return the lrd
+     */
+    public double getLrd()
+    {
+        return this.lrd;
+    }
+
+    /**
+     * @param lrd the lrd to set
+     */
+    public void setLrd(double lrd)
+    {
+        this.lrd = lrd;
+    }
+
+    /**
+     * @return the lastJudgeTime
+     */
+    public long getLastJudgeTime()
+    {
+        return this.lastJudgeTime;
+    }
+
+    /**
+     * @param lastJudgeTime the lastJudgeTime to set
+     */
+    public void setLastJudgeTime(long lastJudgeTime)
+    {
+        this.lastJudgeTime = lastJudgeTime;
+    }
+
+    /**
+     * マージによって吸収したマイクロクラスタのIDを取得する。吸収したIDを保持しない版の状態を復元した場合は空集合を生成して返す。
+     *
+     * @return 吸収したマイクロクラスタのID
+     */
+    public Set<String> getAbsorbedIds()
+    {
+        if (this.absorbedIds == null)
+        {
+            this.absorbedIds = new LinkedHashSet<>();
+        }
+
+        return this.absorbedIds;
+    }
+
+    /**
+     * @param absorbedIds the absorbedIds to set
+     */
+    public void setAbsorbedIds(Set<String> absorbedIds)
+    {
+        this.absorbedIds = absorbedIds;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        String result = ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
+        return result;
+    }
+}
@@ -34,6 +34,9 @@ public class LofPoint implements Serializable
     /** データID */
     private String            dataId;
 
+    /** 数値のデータID。コンパクトな学習データウィンドウ({@link LofWindow})で用いる */
+    private long              pointId;
+
     /** データ座標 */
     private double[]          dataPoint;
 
@@ -66,6 +69,7 @@ public class LofPoint implements Serializable
     {
         LofPoint result = new LofPoint();
         result.setDataId(this.dataId);
+        result.setPointId(this.pointId);
         result.setkDistance(this.kDistance);
 
         double[] copiedArray = Arrays.copyOf(this.dataPoint, this.dataPoint.length);
@@ -79,6 +83,12 @@ public class LofPoint implements Serializable
 
         result.setkDistanceNeighbor(copiedList);
         result.setLrd(this.lrd);
+
+        if (this.judgeDate != null)
+        {
+            result.setJudgeDate(new Date(this.judgeDate.getTime()));
+        }
+
         return result;
     }
 
@@ -98,6 +108,22 @@ public class LofPoint implements Serializable
         this.dataId = dataId;
     }
 
+    /**
+     * @return the pointId
+     */
+    public long getPointId()
+    {
+        return this.pointId;
+    }
+
+    /**
+     * @param pointId the pointId to set
+     */
+    public void setPointId(long pointId)
+    {
+        this.pointId = pointId;
+    }
+
     /**
      * @return the dataPoint
      */
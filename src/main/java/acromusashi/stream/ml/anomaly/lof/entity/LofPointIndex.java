@@ -0,0 +1,616 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.anomaly.lof.entity;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+
+import acromusashi.stream.ml.common.util.ArrayMathUtil;
+import acromusashi.stream.ml.common.util.PointMatrix;
+
+/**
+ * LOFの学習データセットに対してK近傍探索を行うインデックス<br>
+ * 構築時点の点をKD木に格納し、以後の追加点は未索引リストに、削除点は削除フラグに保持する。<br>
+ * 未索引の点は探索毎に線形探索を行うため、未索引の点数が保持点数の平方根の2倍を超えた時点、
+ * または削除済みの点数が保持点数の1/4を超えた時点でKD木を再構築する。<br>
+ * 探索結果は全点との距離を算出して「距離＞データID」でソートした結果の先頭K件と同一となる。<br>
+ * 学習モデルと共にシリアライズされるため、バッチ毎に状態を復元しても木の構造は再構築せずに引き継ぐ。
+ * 点の座標とデータIDの位置のマッピングは点から導出できるためシリアライズせず、復元後の初回利用時に再生成する。
+ *
+ * @author kimura
+ */
+public class LofPointIndex implements Serializable
+{
+    /** serialVersionUID */
+    private static final long              serialVersionUID     = -3151722406911378418L;
+
+    /** 分割せずに線形探索を行う点数 */
+    private static final int               LEAF_SIZE            = 8;
+
+    /** 再構築を行う未索引/削除済み点数の最小値 */
+    private static final int               MIN_REBUILD_NUM      = 32;
+
+    /** 再構築を行う削除済み点数の、保持点数に対する割合の逆数 */
+    private static final int               REBUILD_RATE_DIVISOR = 4;
+
+    /** KD木に格納した点の座標。シリアライズ後の復元時は初回利用時に再生成する。 */
+    private transient PointMatrix          treeMatrix;
+
+    /** KD木に格納した点 */
+    private LofPoint[]                     treePoints;
+
+    /** 木の構造に従って並べた行インデックス */
+    private int[]                          order;
+
+    /** 範囲の中央位置毎の分割次元 */
+    private int[]                          splitDims;
+
+    /** KD木に格納した点の削除フラグ */
+    private boolean[]                      deleted;
+
+    /** KD木に格納した点のうち削除済みの点数 */
+    private int                            deletedNum;
+
+    /** KD木に格納した点のデータID＞行インデックスのマッピング。シリアライズ後の復元時は初回利用時に再生成する。 */
+    private transient Map<String, Integer> treePositions;
+
+    /** KD木構築後に追加された点 */
+    private List<LofPoint>                 pendingPoints;
+
+    /**
+     * 点の一覧を指定してインデックスを構築する。
+     *
+     * @param points 点の一覧
+     */
+    public LofPointIndex(Collection<LofPoint> points)
+    {
+        build(new ArrayList<>(points));
+    }
+
+    /**
+     * インデックスに点を追加する。
+     *
+     * @param addedPoint 追加対象点
+     */
+    public void add(LofPoint addedPoint)
+    {
+        restoreIfNeeded();
+        this.pendingPoints.add(addedPoint);
+        rebuildIfNeeded();
+    }
+
+    /**
+     * インデックスから点を削除する。
+     *
+     * @param deleteDataId 削除対象点のデータID
+     */
+    public void remove(String deleteDataId)
+    {
+        restoreIfNeeded();
+        Integer position = this.treePositions.remove(deleteDataId);
+        if (position != null)
+        {
+            this.deleted[position] = true;
+            this.deletedNum++;
+            rebuildIfNeeded();
+            return;
+        }
+
+        for (int index = 0; index < this.pendingPoints.size(); index++)
+        {
+            if (StringUtils.equals(this.pendingPoints.get(index).getDataId(), deleteDataId) == true)
+            {
+                this.pendingPoints.remove(index);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 対象点に近い点を最大K件探索し、距離の昇順のリストを生成して返す。
+     *
+     * @param target 対象点の座標
+     * @param excludeId 探索対象外とするデータID(対象点自身のデータID)
+     * @param kn K値
+     * @return 距離算出結果リスト。距離＞データIDの優先度でソートした状態で返す。
+     */
+    public List<DistanceResult> searchNeighbors(double[] target, String excludeId, int kn)
+    {
+        restoreIfNeeded();
+        int candidateNum = Math.max(kn, 1);
+        double[] candidateDistances = new double[candidateNum];
+        String[] candidateIds = new String[candidateNum];
+        int[] count = {0};
+
+        search(0, this.order.length, target, excludeId, candidateDistances, candidateIds, count);
+
+        for (LofPoint pendingPoint : this.pendingPoints)
+        {
+            if (StringUtils.equals(pendingPoint.getDataId(), excludeId) == true)
+            {
+                continue;
+            }
+
+            double distance = Math.sqrt(ArrayMathUtil.squaredDistance(
+                    pendingPoint.getDataPoint(), target));
+            offer(distance, pendingPoint.getDataId(), candidateDistances, candidateIds, count);
+        }
+
+        List<DistanceResult> result = new ArrayList<>(count[0]);
+        for (int index = 0; index < count[0]; index++)
+        {
+            result.add(new DistanceResult(candidateIds[index], candidateDistances[index]));
+        }
+
+        return result;
+    }
+
+    /**
+     * 対象点からの距離が指定した半径以下の点を探索する。
+     *
+     * @param target 対象点の座標
+     * @param radius 半径
+     * @return 半径以下の点のリスト(順不同)
+     */
+    public List<LofPoint> searchWithin(double[] target, double radius)
+    {
+        restoreIfNeeded();
+        List<LofPoint> result = new ArrayList<>();
+        searchRange(0, this.order.length, target, radius, result);
+
+        for (LofPoint pendingPoint : this.pendingPoints)
+        {
+            double distance = Math.sqrt(ArrayMathUtil.squaredDistance(
+                    pendingPoint.getDataPoint(), target));
+            if (distance <= radius)
+            {
+                result.add(pendingPoint);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * シリアライズ後に復元された場合、KD木に格納した点から座標とデータIDの位置のマッピングを再生成する。<br>
+     * 木の構造(行の並び順と分割次元)は復元した値をそのまま用いるため、点の並べ替えは行わない。
+     */
+    private void restoreIfNeeded()
+    {
+        if (this.treeMatrix != null)
+        {
+            return;
+        }
+
+        int pointNum = this.treePoints.length;
+        int dimension = 0;
+        if (pointNum > 0)
+        {
+            dimension = this.treePoints[0].getDataPoint().length;
+        }
+
+        this.treeMatrix = new PointMatrix(pointNum, dimension);
+        this.treePositions = new HashMap<>();
+        for (int rowIndex = 0; rowIndex < pointNum; rowIndex++)
+        {
+            LofPoint point = this.treePoints[rowIndex];
+            this.treeMatrix.setRow(rowIndex, point.getDataPoint());
+            if (this.deleted[rowIndex] == false)
+            {
+                this.treePositions.put(point.getDataId(), rowIndex);
+            }
+        }
+    }
+
+    /**
+     * 未索引の点数、または削除済みの点数が閾値を超えた場合、KD木を再構築する。
+     */
+    private void rebuildIfNeeded()
+    {
+        int pendingNum = this.pendingPoints.size();
+        int liveNum = this.treePositions.size() + pendingNum;
+        boolean pendingExceeded = pendingNum >= MIN_REBUILD_NUM
+                && (long) pendingNum * pendingNum > 4L * liveNum;
+        boolean deletedExceeded = this.deletedNum >= MIN_REBUILD_NUM
+                && this.deletedNum * REBUILD_RATE_DIVISOR > liveNum;
+        if (pendingExceeded == false && deletedExceeded == false)
+        {
+            return;
+        }
+
+        List<LofPoint> livePoints = new ArrayList<>(liveNum);
+        for (int rowIndex = 0; rowIndex < this.treePoints.length; rowIndex++)
+        {
+            if (this.deleted[rowIndex] == false)
+            {
+                livePoints.add(this.treePoints[rowIndex]);
+            }
+        }
+        livePoints.addAll(this.pendingPoints);
+
+        build(livePoints);
+    }
+
+    /**
+     * 指定した点の一覧でKD木を構築する。
+     *
+     * @param points 点の一覧
+     */
+    private void build(List<LofPoint> points)
+    {
+        int pointNum = points.size();
+        int dimension = 0;
+        if (pointNum > 0)
+        {
+            dimension = points.get(0).getDataPoint().length;
+        }
+
+        this.treeMatrix = new PointMatrix(pointNum, dimension);
+        this.treePoints = new LofPoint[pointNum];
+        this.order = new int[pointNum];
+        this.splitDims = new int[pointNum];
+        this.deleted = new boolean[pointNum];
+        this.deletedNum = 0;
+        this.treePositions = new HashMap<>();
+        this.pendingPoints = new ArrayList<>();
+
+        for (int rowIndex = 0; rowIndex < pointNum; rowIndex++)
+        {
+            LofPoint point = points.get(rowIndex);
+            this.treeMatrix.setRow(rowIndex, point.getDataPoint());
+            this.treePoints[rowIndex] = point;
+            this.order[rowIndex] = rowIndex;
+            this.treePositions.put(point.getDataId(), rowIndex);
+        }
+
+        buildRange(0, pointNum);
+    }
+
+    /**
+     * 指定した範囲の行を分割次元の値で中央値分割し、左右の範囲を再帰的に構築する。
+     *
+     * @param fromIndex 範囲の開始位置(この値を含む)
+     * @param toIndex 範囲の終了位置(この値を含まない)
+     */
+    private void buildRange(int fromIndex, int toIndex)
+    {
+        if (toIndex - fromIndex <= LEAF_SIZE)
+        {
+            return;
+        }
+
+        int splitDim = selectSplitDim(fromIndex, toIndex);
+        int middleIndex = (fromIndex + toIndex) >>> 1;
+        select(fromIndex, toIndex - 1, middleIndex, splitDim);
+        this.splitDims[middleIndex] = splitDim;
+
+        buildRange(fromIndex, middleIndex);
+        buildRange(middleIndex + 1, toIndex);
+    }
+
+    /**
+     * 指定した範囲で値の広がりが最も大きい次元を取得する。
+     *
+     * @param fromIndex 範囲の開始位置(この値を含む)
+     * @param toIndex 範囲の終了位置(この値を含まない)
+     * @return 分割次元
+     */
+    private int selectSplitDim(int fromIndex, int toIndex)
+    {
+        double[] values = this.treeMatrix.getValues();
+        int splitDim = 0;
+        double maxSpread = -1.0d;
+
+        for (int dim = 0; dim < this.treeMatrix.getColumnNum(); dim++)
+        {
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int position = fromIndex; position < toIndex; position++)
+            {
+                double value = values[this.treeMatrix.getOffset(this.order[position]) + dim];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+
+            if (max - min > maxSpread)
+            {
+                maxSpread = max - min;
+                splitDim = dim;
+            }
+        }
+
+        return splitDim;
+    }
+
+    /**
+     * 指定した位置に分割次元の値でk番目となる行が位置するよう、範囲内の行を並べ替える。
+     *
+     * @param left 範囲の開始位置(この値を含む)
+     * @param right 範囲の終了位置(この値を含む)
+     * @param kth 確定させる位置
+     * @param dim 分割次元
+     */
+    private void select(int left, int right, int kth, int dim)
+    {
+        double[] values = this.treeMatrix.getValues();
+
+        while (left < right)
+        {
+            double pivot = values[this.treeMatrix.getOffset(this.order[(left + right) >>> 1]) + dim];
+            int lower = left;
+            int upper = right;
+
+            while (lower <= upper)
+            {
+                while (values[this.treeMatrix.getOffset(this.order[lower]) + dim] < pivot)
+                {
+                    lower++;
+                }
+                while (values[this.treeMatrix.getOffset(this.order[upper]) + dim] > pivot)
+                {
+                    upper--;
+                }
+                if (lower <= upper)
+                {
+                    int temp = this.order[lower];
+                    this.order[lower] = this.order[upper];
+                    this.order[upper] = temp;
+                    lower++;
+                    upper--;
+                }
+            }
+
+            if (kth <= upper)
+            {
+                right = upper;
+            }
+            else if (kth >= lower)
+            {
+                left = lower;
+            }
+            else
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 指定した範囲を探索し、近傍候補を更新する。<br>
+     * 分割面までの距離が現在のK番目の候補の距離以下の場合のみ反対側の範囲を探索する。
+     * 距離が同値でデータIDが小さい点を取りこぼさないよう、同値の場合も探索対象とする。
+     *
+     * @param fromIndex 範囲の開始位置(この値を含む)
+     * @param toIndex 範囲の終了位置(この値を含まない)
+     * @param target 対象点の座標
+     * @param excludeId 探索対象外とするデータID
+     * @param candidateDistances 近傍候補の距離
+     * @param candidateIds 近傍候補のデータID
+     * @param count 近傍候補数
+     */
+    private void search(int fromIndex, int toIndex, double[] target, String excludeId,
+            double[] candidateDistances, String[] candidateIds, int[] count)
+    {
+        if (toIndex - fromIndex <= LEAF_SIZE)
+        {
+            for (int position = fromIndex; position < toIndex; position++)
+            {
+                check(this.order[position], target, excludeId, candidateDistances, candidateIds,
+                        count);
+            }
+            return;
+        }
+
+        int middleIndex = (fromIndex + toIndex) >>> 1;
+        int rowIndex = this.order[middleIndex];
+        check(rowIndex, target, excludeId, candidateDistances, candidateIds, count);
+
+        int splitDim = this.splitDims[middleIndex];
+        double diff = target[splitDim]
+                - this.treeMatrix.getValues()[this.treeMatrix.getOffset(rowIndex) + splitDim];
+
+        // 反対側の点との距離は分割面までの距離以上となるため、分割面までの距離で枝刈りを行う。
+        // 距離の算出誤差による取りこぼしを防ぐため、距離と同じく二乗和の平方根で比較する。
+        if (diff < 0)
+        {
+            search(fromIndex, middleIndex, target, excludeId, candidateDistances, candidateIds,
+                    count);
+            if (Math.sqrt(diff * diff) <= currentBound(candidateDistances, count))
+            {
+                search(middleIndex + 1, toIndex, target, excludeId, candidateDistances,
+                        candidateIds, count);
+            }
+        }
+        else
+        {
+            search(middleIndex + 1, toIndex, target, excludeId, candidateDistances, candidateIds,
+                    count);
+            if (Math.sqrt(diff * diff) <= currentBound(candidateDistances, count))
+            {
+                search(fromIndex, middleIndex, target, excludeId, candidateDistances,
+                        candidateIds, count);
+            }
+        }
+    }
+
+    /**
+     * 指定した範囲を探索し、対象点からの距離が半径以下の点を結果に追加する。
+     *
+     * @param fromIndex 範囲の開始位置(この値を含む)
+     * @param toIndex 範囲の終了位置(この値を含まない)
+     * @param target 対象点の座標
+     * @param radius 半径
+     * @param result 探索結果
+     */
+    private void searchRange(int fromIndex, int toIndex, double[] target, double radius,
+            List<LofPoint> result)
+    {
+        if (toIndex - fromIndex <= LEAF_SIZE)
+        {
+            for (int position = fromIndex; position < toIndex; position++)
+            {
+                checkRange(this.order[position], target, radius, result);
+            }
+            return;
+        }
+
+        int middleIndex = (fromIndex + toIndex) >>> 1;
+        int rowIndex = this.order[middleIndex];
+        checkRange(rowIndex, target, radius, result);
+
+        int splitDim = this.splitDims[middleIndex];
+        double diff = target[splitDim]
+                - this.treeMatrix.getValues()[this.treeMatrix.getOffset(rowIndex) + splitDim];
+        boolean crossing = Math.sqrt(diff * diff) <= radius;
+
+        if (diff < 0 || crossing)
+        {
+            searchRange(fromIndex, middleIndex, target, radius, result);
+        }
+        if (diff >= 0 || crossing)
+        {
+            searchRange(middleIndex + 1, toIndex, target, radius, result);
+        }
+    }
+
+    /**
+     * 指定した行との距離を算出し、半径以下の場合は結果に追加する。
+     *
+     * @param rowIndex 行インデックス
+     * @param target 対象点の座標
+     * @param radius 半径
+     * @param result 探索結果
+     */
+    private void checkRange(int rowIndex, double[] target, double radius, List<LofPoint> result)
+    {
+        if (this.deleted[rowIndex] == true)
+        {
+            return;
+        }
+
+        double distance = Math.sqrt(this.treeMatrix.squaredDistance(rowIndex, target, 0));
+        if (distance <= radius)
+        {
+            result.add(this.treePoints[rowIndex]);
+        }
+    }
+
+    /**
+     * 指定した行との距離を算出し、近傍候補を更新する。
+     *
+     * @param rowIndex 行インデックス
+     * @param target 対象点の座標
+     * @param excludeId 探索対象外とするデータID
+     * @param candidateDistances 近傍候補の距離
+     * @param candidateIds 近傍候補のデータID
+     * @param count 近傍候補数
+     */
+    private void check(int rowIndex, double[] target, String excludeId,
+            double[] candidateDistances, String[] candidateIds, int[] count)
+    {
+        if (this.deleted[rowIndex] == true
+                || StringUtils.equals(this.treePoints[rowIndex].getDataId(), excludeId) == true)
+        {
+            return;
+        }
+
+        double distance = Math.sqrt(this.treeMatrix.squaredDistance(rowIndex, target, 0));
+        offer(distance, this.treePoints[rowIndex].getDataId(), candidateDistances, candidateIds, count);
+    }
+
+    /**
+     * 近傍候補に点を追加する。候補は「距離＞データID」の昇順に保持し、K件を超えた場合は末尾の候補を除外する。
+     *
+     * @param distance 距離
+     * @param dataId データID
+     * @param candidateDistances 近傍候補の距離
+     * @param candidateIds 近傍候補のデータID
+     * @param count 近傍候補数
+     */
+    static void offer(double distance, String dataId, double[] candidateDistances,
+            String[] candidateIds, int[] count)
+    {
+        int capacity = candidateDistances.length;
+        if (count[0] == capacity
+                && compare(distance, dataId, candidateDistances[capacity - 1],
+                        candidateIds[capacity - 1]) >= 0)
+        {
+            return;
+        }
+
+        int position = count[0];
+        if (position == capacity)
+        {
+            position--;
+        }
+        else
+        {
+            count[0]++;
+        }
+
+        while (position > 0
+                && compare(distance, dataId, candidateDistances[position - 1],
+                        candidateIds[position - 1]) < 0)
+        {
+            candidateDistances[position] = candidateDistances[position - 1];
+            candidateIds[position] = candidateIds[position - 1];
+            position--;
+        }
+
+        candidateDistances[position] = distance;
+        candidateIds[position] = dataId;
+    }
+
+    /**
+     * 現在の近傍候補から、探索を継続する距離の上限を取得する。
+     *
+     * @param candidateDistances 近傍候補の距離
+     * @param count 近傍候補数
+     * @return K件の候補が揃っている場合はK番目の候補の距離、揃っていない場合は無限大
+     */
+    private static double currentBound(double[] candidateDistances, int[] count)
+    {
+        if (count[0] < candidateDistances.length)
+        {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        return candidateDistances[candidateDistances.length - 1];
+    }
+
+    /**
+     * 「距離＞データID」の優先度で大小を比較する。{@link DistanceResultComparator}と同一の順序となる。
+     *
+     * @param distance1 距離1
+     * @param dataId1 データID1
+     * @param distance2 距離2
+     * @param dataId2 データID2
+     * @return 比較結果
+     */
+    private static int compare(double distance1, String dataId1, double distance2, String dataId2)
+    {
+        int distanceResult = Double.compare(distance1, distance2);
+        if (distanceResult != 0)
+        {
+            return distanceResult;
+        }
+
+        return dataId1.compareTo(dataId2);
+    }
+}
@@ -0,0 +1,94 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.anomaly.lof.entity;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+
+/**
+ * 中間データを保持しない学習データセットに対するLOFスコア算出時に、学習データ中の点のK距離と局所到達可能密度を保持するキャッシュ<br>
+ * 値は学習データの版({@link LofDataSet#getVersion()})毎に保持し、版が変化した時点で破棄する。
+ *
+ * @author kimura
+ */
+public class LofScoreCache
+{
+    /** 保持している値を算出した学習データの版 */
+    private long                         version;
+
+    /** データID>K距離算出結果のマッピング */
+    private Map<String, KDistanceResult> kDistances = new HashMap<>();
+
+    /** データID>局所到達可能密度のマッピング */
+    private Map<String, Double>          lrds       = new HashMap<>();
+
+    /**
+     * パラメータを指定せずにインスタンスを生成する。
+     */
+    public LofScoreCache()
+    {}
+
+    /**
+     * 指定した学習データセットの版と保持している値の版が異なる場合、保持している値を破棄して版を更新する。
+     *
+     * @param dataSet 学習データセット
+     */
+    public void synchronize(LofDataSet dataSet)
+    {
+        if (this.version == dataSet.getVersion())
+        {
+            return;
+        }
+
+        this.version = dataSet.getVersion();
+        this.kDistances.clear();
+        this.lrds.clear();
+    }
+
+    /**
+     * @return the version
+     */
+    public long getVersion()
+    {
+        return this.version;
+    }
+
+    /**
+     * @return the kDistances
+     */
+    public Map<String, KDistanceResult> getkDistances()
+    {
+        return this.kDistances;
+    }
+
+    /**
+     * @return the lrds
+     */
+    public Map<String, Double> getLrds()
+    {
+        return this.lrds;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        String result = ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
+        return result;
+    }
+}
@@ -0,0 +1,331 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.anomaly.lof.entity;
+
+import java.io.Serializable;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+
+/**
+ * Local Outlier Factorの学習データを固定長のリングバッファで保持するエンティティクラス<br>
+ * 各点は「スロット」に格納し、座標、数値のデータID、K距離、局所到達可能密度をスロット毎の配列で保持する。<br>
+ * K距離近傍はデータIDではなくスロット番号の配列で保持するため、データIDの文字列やリストを保持する{@link LofDataSet}と比べて点あたりのメモリ量が小さい。<br>
+ * 保持数が上限に達した場合は最も古い点のスロットを新しい点で上書きするため、削除は O(1) で行える。
+ *
+ * @author kimura
+ */
+public class LofWindow implements Serializable
+{
+    /** serialVersionUID */
+    private static final long serialVersionUID = -2310859136582301857L;
+
+    /** 保持可能な点数(スロット数) */
+    private int               capacity;
+
+    /** LOFパラメータ「K」値 */
+    private int               kn;
+
+    /** 次元数 */
+    private int               dimension;
+
+    /** 最も古い点を格納したスロット */
+    private int               start;
+
+    /** 保持している点数 */
+    private int               size;
+
+    /** スロット毎の座標。スロット順に行優先で格納する */
+    private double[]          coordinates;
+
+    /** スロット毎の数値のデータID */
+    private long[]            pointIds;
+
+    /** スロット毎のLOF判定を行った時刻 */
+    private long[]            judgeTimes;
+
+    /** スロット毎のK距離近傍のスロット番号。1スロットあたりK個の領域を用いる */
+    private int[]             neighbors;
+
+    /** スロット毎のK距離近傍の点数 */
+    private int[]             neighborCounts;
+
+    /** スロット毎のK距離 */
+    private double[]          kDistances;
+
+    /** スロット毎の局所到達可能密度 */
+    private double[]          lrds;
+
+    /**
+     * パラメータを指定せずにインスタンスを生成する。
+     */
+    public LofWindow()
+    {}
+
+    /**
+     * 保持可能な点数、K値、次元数を指定してインスタンスを生成する。
+     *
+     * @param capacity 保持可能な点数
+     * @param kn K値
+     * @param dimension 次元数
+     */
+    public LofWindow(int capacity, int kn, int dimension)
+    {
+        this.capacity = capacity;
+        this.kn = kn;
+        this.dimension = dimension;
+        this.coordinates = new double[capacity * dimension];
+        this.pointIds = new long[capacity];
+        this.judgeTimes = new long[capacity];
+        this.neighbors = new int[capacity * kn];
+        this.neighborCounts = new int[capacity];
+        this.kDistances = new double[capacity];
+        this.lrds = new double[capacity];
+    }
+
+    /**
+     * 古い方から数えた順番に対応するスロット番号を取得する。
+     *
+     * @param order 古い方から数えた順番(0が最も古い)
+     * @return スロット番号
+     */
+    public int getSlot(int order)
+    {
+        return (this.start + order) % this.capacity;
+    }
+
+    /**
+     * 対象エンティティのDeepCopyを作成する。
+     *
+     * @return 対象エンティティのDeepCopy
+     */
+    public LofWindow deepCopy()
+    {
+        LofWindow result = new LofWindow();
+        result.setCapacity(this.capacity);
+        result.setKn(this.kn);
+        result.setDimension(this.dimension);
+        result.setStart(this.start);
+        result.setSize(this.size);
+        result.setCoordinates(this.coordinates.clone());
+        result.setPointIds(this.pointIds.clone());
+        result.setJudgeTimes(this.judgeTimes.clone());
+        result.setNeighbors(this.neighbors.clone());
+        result.setNeighborCounts(this.neighborCounts.clone());
+        result.setkDistances(this.kDistances.clone());
+        result.setLrds(this.lrds.clone());
+        return result;
+    }
+
+    /**
+     * @return the capacity
+     */
+    public int getCapacity()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * @param capacity the capacity to set
+     */
+    public void setCapacity(int capacity)
+    {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the kn
+     */
+    public int getKn()
+    {
+        return this.kn;
+    }
+
+    /**
+     * @param kn the kn to set
+     */
+    public void setKn(int kn)
+    {
+        this.kn = kn;
+    }
+
+    /**
+     * @return the dimension
+     */
+    public int getDimension()
+    {
+        return this.dimension;
+    }
+
+    /**
+     * @param dimension the dimension to set
+     */
+    public void setDimension(int dimension)
+    {
+        this.dimension = dimension;
+    }
+
+    /**
+     * @return the start
+     */
+    public int getStart()
+    {
+        return this.start;
+    }
+
+    /**
+     * @param start the start to set
+     */
+    public void setStart(int start)
+    {
+        this.start = start;
+    }
+
+    /**
+     * @return the size
+     */
+    public int getSize()
+    {
+        return this.size;
+    }
+
+    /**
+     * @param size the size to set
+     */
+    public void setSize(int size)
+    {
+        this.size = size;
+    }
+
+    /**
+     * @return the coordinates
+     */
+    public double[] getCoordinates()
+    {
+        return this.coordinates;
+    }
+
+    /**
+     * @param coordinates the coordinates to set
+     */
+    public void setCoordinates(double[] coordinates)
+    {
+        this.coordinates = coordinates;
+    }
+
+    /**
+     * @return the pointIds
+     */
+    public long[] getPointIds()
+    {
+        return this.pointIds;
+    }
+
+    /**
+     * @param pointIds the pointIds to set
+     */
+    public void setPointIds(long[] pointIds)
+    {
+        this.pointIds = pointIds;
+    }
+
+    /**
+     * @return the judgeTimes
+     */
+    public long[] getJudgeTimes()
+    {
+        return this.judgeTimes;
+    }
+
+    /**
+     * @param judgeTimes the judgeTimes to set
+     */
+    public void setJudgeTimes(long[] judgeTimes)
+    {
+        this.judgeTimes = judgeTimes;
+    }
+
+    /**
+     * @return the neighbors
+     */
+    public int[] getNeighbors()
+    {
+        return this.neighbors;
+    }
+
+    /**
+     * @param neighbors the neighbors to set
+     */
+    public void setNeighbors(int[] neighbors)
+    {
+        this.neighbors = neighbors;
+    }
+
+    /**
+     * @return the neighborCounts
+     */
+    public int[] getNeighborCounts()
+    {
+        return this.neighborCounts;
+    }
+
+    /**
+     * @param neighborCounts the neighborCounts to set
+     */
+    public void setNeighborCounts(int[] neighborCounts)
+    {
+        this.neighborCounts = neighborCounts;
+    }
+
+    /**
+     * @return the kDistances
+     */
+    public double[] getkDistances()
+    {
+        return this.kDistances;
+    }
+
+    /**
+     * @param kDistances the kDistances to set
+     */
+    public void setkDistances(double[] kDistances)
+    {
+        this.kDistances = kDistances;
+    }
+
+    /**
+     * @return the lrds
+     */
+    public double[] getLrds()
+    {
+        return this.lrds;
+    }
+
+    /**
+     * @param lrds the lrds to set
+     */
+    public void setLrds(double[] lrds)
+    {
+        this.lrds = lrds;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        String result = ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
+        return result;
+    }
+}
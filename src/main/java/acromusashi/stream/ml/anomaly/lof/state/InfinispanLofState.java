@@ -14,6 +14,12 @@ package acromusashi.stream.ml.anomaly.lof.state;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import org.infinispan.client.hotrod.RemoteCache;
@@ -39,12 +45,18 @@ public class InfinispanLofState extends LofState
     /** キャッシュ上のデータ生存期間のデフォルト値 */
     private static final int                            DEFAULT_LIFESPAN = 600;
 
+    /** 1回のcommitで生存期間を延長するベースキー数の上限のデフォルト値 */
+    private static final int                            DEFAULT_REFRESH  = 100;
+
     /** logger */
     private static final Logger                         logger           = LoggerFactory.getLogger(InfinispanLofState.class);
 
     /** キャッシュ上のデータ生存期間(単位：秒) */
     protected int                                       lifespan         = DEFAULT_LIFESPAN;
 
+    /** 1回のcommitで生存期間を延長するベースキー数の上限 */
+    protected int                                       refreshLimit     = DEFAULT_REFRESH;
+
     /** 投入先のサーバ情報 */
     protected String                                    targetServer;
 
@@ -54,6 +66,15 @@ public class InfinispanLofState extends LofState
     /** 状態を保存するベースキー */
     protected String                                    baseKey;
 
+    /** 実行中のトランザクションで状態を保存したベースキーの集合 */
+    protected Set<String>                               putBaseKeys      = new HashSet<>();
+
+    /** ベースキー>当該キーの状態の生存期間を前回延長した時刻のマッピング */
+    protected Map<String, Long>                         refreshTimes     = new HashMap<>();
+
+    /** 状態の保存、または生存期間の延長以降に状態を取得したベースキーの集合。取得した順に保持する */
+    protected Set<String>                               readBaseKeys     = new LinkedHashSet<>();
+
     /** Remoteキャッシュマネージャ */
     protected transient RemoteCacheManager              clientManager;
 
@@ -107,6 +128,7 @@ public class InfinispanLofState extends LofState
         // 自分自身のパーティションと異なるパーティションの値を取得する場合、最新の状態値保存TransatctionIdを取得し用いる。
         if (isSelfPartition == true)
         {
+            this.readBaseKeys.add(baseKey);
             targetKey = Joiner.on("_").skipNulls().join(
                     Arrays.asList(baseKey, txId, partitionIndex));
         }
@@ -122,6 +144,17 @@ public class InfinispanLofState extends LofState
         return targetValue;
     }
 
+    /**
+     * {@inheritDoc}<br>
+     * commit時に保存した、自パーティションのベースキー毎の最終保存TransactionIdを取得する。
+     */
+    @Override
+    protected Long getSavedTxId(String baseKey, int partitionIndex) throws IOException
+    {
+        String txIdKey = Joiner.on("_").skipNulls().join(Arrays.asList(baseKey, partitionIndex));
+        return this.txIdCache.get(txIdKey);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -130,6 +163,9 @@ public class InfinispanLofState extends LofState
             throws IOException
     {
         this.baseKey = baseKey;
+        this.putBaseKeys.add(baseKey);
+        this.readBaseKeys.remove(baseKey);
+        this.refreshTimes.put(baseKey, getCurrentTime());
         String putKey = Joiner.on("_").skipNulls().join(
                 Arrays.asList(baseKey, txId, partitionIndex));
         // ログレベルが「DEBUG」の場合は格納するオブジェクトの予測サイズを出力
@@ -160,9 +196,60 @@ public class InfinispanLofState extends LofState
     public void commit(Long txid)
     {
         // commit時に自パーティションの最終保存TransactionIdを保存する。
-        String putKey = Joiner.on("_").skipNulls().join(
-                Arrays.asList(this.baseKey, this.partitionIndex));
-        this.txIdCache.put(putKey, txid, this.lifespan, TimeUnit.SECONDS);
+        // 複数のベースキーの状態を保存した場合は、トランザクション中に保存したベースキー毎に保存する。
+        for (String putBaseKey : this.putBaseKeys)
+        {
+            String putKey = Joiner.on("_").skipNulls().join(
+                    Arrays.asList(putBaseKey, this.partitionIndex));
+            this.txIdCache.put(putKey, txid, this.lifespan, TimeUnit.SECONDS);
+        }
+
+        this.putBaseKeys.clear();
+        refreshStates();
+    }
+
+    /**
+     * 状態を保存していないトランザクションが続いたベースキーについて、前回保存した状態と最終保存TransactionIdの生存期間を延長する。<br>
+     * モデルキー毎の学習モデルは変化したもののみを保存するため、データを受信しても学習モデルが変化しないベースキーの状態が生存期間の経過で失われないようにする。<br>
+     * 延長は前回の保存、または延長以降に状態を取得し、かつ生存期間の半分が経過したベースキーに対して行う。
+     * 状態を取得していないベースキーは延長せず、生存期間の経過で破棄する。
+     * 1回のcommitで延長するベースキー数は上限までとし、残りのベースキーは以降のcommitで延長する。
+     */
+    protected void refreshStates()
+    {
+        long now = getCurrentTime();
+        long refreshInterval = TimeUnit.SECONDS.toMillis(this.lifespan) / 2;
+        this.refreshTimes.keySet().retainAll(this.previousSaveTxIds.keySet());
+        this.readBaseKeys.retainAll(this.previousSaveTxIds.keySet());
+
+        int refreshNum = 0;
+        Iterator<String> keyIterator = this.readBaseKeys.iterator();
+        while (keyIterator.hasNext() == true && refreshNum < this.refreshLimit)
+        {
+            String readBaseKey = keyIterator.next();
+            Long refreshTime = this.refreshTimes.get(readBaseKey);
+            if (refreshTime != null && now - refreshTime < refreshInterval)
+            {
+                continue;
+            }
+
+            keyIterator.remove();
+            Long savedTxId = this.previousSaveTxIds.get(readBaseKey);
+            String stateKey = Joiner.on("_").skipNulls().join(
+                    Arrays.asList(readBaseKey, savedTxId, this.partitionIndex));
+            LofDataSet savedState = this.stateCache.get(stateKey);
+            if (savedState == null)
+            {
+                continue;
+            }
+
+            this.stateCache.put(stateKey, savedState, this.lifespan, TimeUnit.SECONDS);
+            String txIdKey = Joiner.on("_").skipNulls().join(
+                    Arrays.asList(readBaseKey, this.partitionIndex));
+            this.txIdCache.put(txIdKey, savedTxId, this.lifespan, TimeUnit.SECONDS);
+            this.refreshTimes.put(readBaseKey, now);
+            refreshNum++;
+        }
     }
 
     /**
@@ -172,4 +259,12 @@ public class InfinispanLofState extends LofState
     {
         this.lifespan = lifespan;
     }
+
+    /**
+     * @param refreshLimit the refreshLimit to set
+     */
+    public void setRefreshLimit(int refreshLimit)
+    {
+        this.refreshLimit = refreshLimit;
+    }
 }
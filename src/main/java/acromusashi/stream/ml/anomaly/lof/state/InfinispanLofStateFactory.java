@@ -43,6 +43,9 @@ public class InfinispanLofStateFactory implements StateFactory
     /** キャッシュ上にデータを保持する生存期間(単位：秒) */
     protected int                 lifespan;
 
+    /** 1回のcommitで生存期間を延長するベースキー数の上限 */
+    protected int                 refreshLimit;
+
     /**
      * パラメータを指定せずにインスタンスを生成する。
      */
@@ -68,6 +71,11 @@ public class InfinispanLofStateFactory implements StateFactory
             resultState.setLifespan(this.lifespan);
         }
 
+        if (this.refreshLimit > 0)
+        {
+            resultState.setRefreshLimit(this.refreshLimit);
+        }
+
         if (this.mergeConfig != null)
         {
             resultState.setMergeConfig(this.mergeConfig);
@@ -116,4 +124,12 @@ public class InfinispanLofStateFactory implements StateFactory
     {
         this.lifespan = lifespan;
     }
+
+    /**
+     * @param refreshLimit the refreshLimit to set
+     */
+    public void setRefreshLimit(int refreshLimit)
+    {
+        this.refreshLimit = refreshLimit;
+    }
 }
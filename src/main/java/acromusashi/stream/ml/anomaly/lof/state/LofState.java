@@ -12,10 +12,14 @@
 */
 package acromusashi.stream.ml.anomaly.lof.state;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import acromusashi.stream.ml.anomaly.lof.LofCalculator;
 import acromusashi.stream.ml.anomaly.lof.LofConfKey;
+import acromusashi.stream.ml.anomaly.lof.LofMicroClusterCalculator;
+import acromusashi.stream.ml.anomaly.lof.LofWindowCalculator;
 import acromusashi.stream.ml.anomaly.lof.entity.LofDataSet;
 import acromusashi.stream.ml.common.state.MlBaseState;
 
@@ -35,6 +39,9 @@ import acromusashi.stream.ml.common.state.MlBaseState;
  */
 public abstract class LofState extends MlBaseState<LofDataSet>
 {
+    /** マージ後の学習データセットの初期化を並列実行するスレッドプール。同一プロセス内の全Stateでスレッド数毎に共有する。 */
+    private static final Map<Integer, ForkJoinPool> INIT_POOLS = new HashMap<>();
+
     /**
      * 設定値、構成情報をパラメータとしてインスタンスを生成する。
      * 
@@ -62,22 +69,108 @@ public abstract class LofState extends MlBaseState<LofDataSet>
         int kn = Integer.parseInt(mergeConfig.get(LofConfKey.KN).toString());
         int maxDataCount = Integer.parseInt(mergeConfig.get(LofConfKey.MAX_DATA_COUNT).toString());
 
-        // 学習データの保持する対象点を新しい方から最大保持数個だけ取得
-        LofDataSet mergedDataSet = LofCalculator.mergeDataSet(baseDataSet, targetDataSet,
-                maxDataCount);
+        // モデルキー毎に最大保持数を設定している場合は学習モデルの最大保持数を用いる。
+        int modelMaxDataCount = Math.max(baseDataSet.getMaxDataCount(),
+                targetDataSet.getMaxDataCount());
+        if (modelMaxDataCount > 0)
+        {
+            maxDataCount = modelMaxDataCount;
+        }
 
-        // 中間データ保持設定が存在しない場合は中間データの生成は行わない。
-        if (mergeConfig.containsKey(LofConfKey.HAS_INTERMEDIATE) == false)
+        // コンパクトな学習データウィンドウを用いている場合はウィンドウ同士のマージを行う。
+        // ウィンドウを保持しない学習データセットの点もウィンドウにマージする。
+        if (baseDataSet.getWindow() != null || targetDataSet.getWindow() != null)
         {
+            LofDataSet mergedDataSet = new LofDataSet();
+            mergedDataSet.setWindow(LofWindowCalculator.mergeWindow(baseDataSet, targetDataSet));
+            mergedDataSet.setMaxDataCount(modelMaxDataCount);
             return mergedDataSet;
         }
 
         // 中間データ保持設定が存在し、かつ「true」の場合のみ中間データの生成を行う。
-        if (Boolean.getBoolean(mergeConfig.get(LofConfKey.HAS_INTERMEDIATE).toString()) == true)
+        // 中間データはマージ元の値を引き継ぎ、マージによって近傍が変化した点のみ再計算する。
+        // 古い学習データをマイクロクラスタに要約している場合は常に中間データを保持する。
+        LofDataSet mergedDataSet = null;
+        boolean hasMicroCluster = baseDataSet.getMicroClusters().isEmpty() == false
+                || targetDataSet.getMicroClusters().isEmpty() == false;
+        Object hasIntermediate = mergeConfig.get(LofConfKey.HAS_INTERMEDIATE);
+        boolean intermediate = hasIntermediate != null
+                && Boolean.parseBoolean(hasIntermediate.toString()) == true;
+        if (hasMicroCluster == true || intermediate == true)
+        {
+            mergedDataSet = LofCalculator.mergeDataSet(kn, baseDataSet, targetDataSet,
+                    maxDataCount, getInitPool(mergeConfig));
+        }
+        else
         {
-            LofCalculator.initDataSet(kn, mergedDataSet);
+            // 学習データの保持する対象点を新しい方から最大保持数個だけ取得
+            mergedDataSet = LofCalculator.mergeDataSet(baseDataSet, targetDataSet, maxDataCount);
+        }
+
+        mergedDataSet.setMaxDataCount(modelMaxDataCount);
+        if (hasMicroCluster == true)
+        {
+            mergedDataSet.setMicroClusters(LofMicroClusterCalculator.mergeMicroClusters(
+                    baseDataSet.getMicroClusters(), targetDataSet.getMicroClusters(),
+                    getMaxMicroClusterNum(baseDataSet, targetDataSet, mergeConfig)));
         }
 
         return mergedDataSet;
     }
+
+    /**
+     * マージ後に保持するマイクロクラスタの最大数を取得する。<br>
+     * 設定が存在しない場合はマージ元、マージ対象のうちマイクロクラスタ数が多い方の数とする。
+     * 
+     * @param baseDataSet マージ元データモデル
+     * @param targetDataSet マージ対象データモデル
+     * @param mergeConfig マージ設定
+     * @return マイクロクラスタの最大数
+     */
+    protected int getMaxMicroClusterNum(LofDataSet baseDataSet, LofDataSet targetDataSet,
+            Map<String, Object> mergeConfig)
+    {
+        if (mergeConfig.containsKey(LofConfKey.MAX_MICRO_CLUSTER_NUM) == true)
+        {
+            return Integer.parseInt(mergeConfig.get(LofConfKey.MAX_MICRO_CLUSTER_NUM).toString());
+        }
+
+        return Math.max(baseDataSet.getMicroClusters().size(),
+                targetDataSet.getMicroClusters().size());
+    }
+
+    /**
+     * マージ後の学習データセットの初期化を並列実行するスレッドプールを取得する。<br>
+     * スレッド数の設定が存在しない、または1以下の場合はnullを返す。<br>
+     * Stateには終了処理が存在しないため、スレッドプールはState毎に生成せず、同一プロセス内でスレッド数毎に1つだけ生成して共有する。
+     * スレッドプールのスレッドはデーモンスレッドのため、プロセスの終了を妨げない。
+     * 
+     * @param mergeConfig マージ設定
+     * @return スレッドプール
+     */
+    protected ForkJoinPool getInitPool(Map<String, Object> mergeConfig)
+    {
+        if (mergeConfig.containsKey(LofConfKey.INIT_THREAD_NUM) == false)
+        {
+            return null;
+        }
+
+        int initThreadNum = Integer.parseInt(mergeConfig.get(LofConfKey.INIT_THREAD_NUM).toString());
+        if (initThreadNum <= 1)
+        {
+            return null;
+        }
+
+        synchronized (INIT_POOLS)
+        {
+            ForkJoinPool initPool = INIT_POOLS.get(initThreadNum);
+            if (initPool == null)
+            {
+                initPool = new ForkJoinPool(initThreadNum);
+                INIT_POOLS.put(initThreadNum, initPool);
+            }
+
+            return initPool;
+        }
+    }
 }
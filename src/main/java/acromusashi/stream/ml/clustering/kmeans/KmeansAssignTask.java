@@ -0,0 +1,184 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.clustering.kmeans;
+
+import java.util.concurrent.RecursiveTask;
+
+import acromusashi.stream.ml.common.util.PointMatrix;
+
+/**
+ * KMeansの割当ステップを点の範囲毎に分割して並列実行するタスク<br>
+ * 担当範囲の各点について最も近い中心点を割当配列に格納し、クラスタ毎の座標値の部分和と要素数を返す。<br>
+ * 分割は点数のみで決まるため、スレッド数に関わらず部分和の加算順序は同一となる。
+ *
+ * @author kimura
+ */
+public class KmeansAssignTask extends RecursiveTask<KmeansAssignTask.PartialSum>
+{
+    /** 分割せずに処理する点数のデフォルト値 */
+    public static final int   DEFAULT_SPLIT_THRESHOLD = 1024;
+
+    /** serialVersionUID */
+    private static final long serialVersionUID        = 4415785420146937452L;
+
+    /** 点行列 */
+    private PointMatrix       pointMatrix;
+
+    /** 中心点行列 */
+    private PointMatrix       centroidMatrix;
+
+    /** 各点の割当先中心点インデックスの格納先 */
+    private int[]             assignments;
+
+    /** 担当範囲の開始インデックス(この値を含む) */
+    private int               fromIndex;
+
+    /** 担当範囲の終了インデックス(この値を含まない) */
+    private int               toIndex;
+
+    /** 分割せずに処理する点数 */
+    private int               splitThreshold;
+
+    /**
+     * 担当範囲を指定してインスタンスを生成する。
+     *
+     * @param pointMatrix 点行列
+     * @param centroidMatrix 中心点行列
+     * @param assignments 各点の割当先中心点インデックスの格納先
+     * @param fromIndex 担当範囲の開始インデックス(この値を含む)
+     * @param toIndex 担当範囲の終了インデックス(この値を含まない)
+     * @param splitThreshold 分割せずに処理する点数
+     */
+    public KmeansAssignTask(PointMatrix pointMatrix, PointMatrix centroidMatrix,
+            int[] assignments, int fromIndex, int toIndex, int splitThreshold)
+    {
+        this.pointMatrix = pointMatrix;
+        this.centroidMatrix = centroidMatrix;
+        this.assignments = assignments;
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+        this.splitThreshold = splitThreshold;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected PartialSum compute()
+    {
+        if (this.toIndex - this.fromIndex <= this.splitThreshold)
+        {
+            return assign();
+        }
+
+        int middleIndex = (this.fromIndex + this.toIndex) >>> 1;
+        KmeansAssignTask leftTask = new KmeansAssignTask(this.pointMatrix, this.centroidMatrix,
+                this.assignments, this.fromIndex, middleIndex, this.splitThreshold);
+        KmeansAssignTask rightTask = new KmeansAssignTask(this.pointMatrix, this.centroidMatrix,
+                this.assignments, middleIndex, this.toIndex, this.splitThreshold);
+
+        leftTask.fork();
+        PartialSum rightResult = rightTask.compute();
+        PartialSum leftResult = leftTask.join();
+
+        // 加算順序を固定するため、常に左側の部分和に右側の部分和を加算する。
+        leftResult.add(rightResult);
+        return leftResult;
+    }
+
+    /**
+     * 担当範囲の点の割当と部分和の算出を行う。
+     *
+     * @return 部分和
+     */
+    private PartialSum assign()
+    {
+        int dimension = this.pointMatrix.getColumnNum();
+        PartialSum result = new PartialSum(this.centroidMatrix.getRowNum(), dimension);
+        double[] pointValues = this.pointMatrix.getValues();
+
+        for (int pointIndex = this.fromIndex; pointIndex < this.toIndex; pointIndex++)
+        {
+            int pointOffset = this.pointMatrix.getOffset(pointIndex);
+            int assigned = this.centroidMatrix.nearestRow(pointValues, pointOffset);
+            this.assignments[pointIndex] = assigned;
+
+            int sumOffset = assigned * dimension;
+            for (int coordinateIndex = 0; coordinateIndex < dimension; coordinateIndex++)
+            {
+                result.sums[sumOffset + coordinateIndex] += pointValues[pointOffset
+                        + coordinateIndex];
+            }
+            result.counts[assigned]++;
+        }
+
+        return result;
+    }
+
+    /**
+     * クラスタ毎の座標値の部分和と要素数を保持するクラス
+     */
+    public static class PartialSum
+    {
+        /** クラスタ毎の座標値の和(行優先) */
+        private double[] sums;
+
+        /** クラスタ毎の要素数 */
+        private long[]   counts;
+
+        /**
+         * クラスタ数と次元数を指定してインスタンスを生成する。
+         *
+         * @param clusterNum クラスタ数
+         * @param dimension 次元数
+         */
+        public PartialSum(int clusterNum, int dimension)
+        {
+            this.sums = new double[clusterNum * dimension];
+            this.counts = new long[clusterNum];
+        }
+
+        /**
+         * 指定した部分和を加算する。
+         *
+         * @param other 加算する部分和
+         */
+        public void add(PartialSum other)
+        {
+            for (int index = 0; index < this.sums.length; index++)
+            {
+                this.sums[index] += other.sums[index];
+            }
+            for (int index = 0; index < this.counts.length; index++)
+            {
+                this.counts[index] += other.counts[index];
+            }
+        }
+
+        /**
+         * @return the sums
+         */
+        public double[] getSums()
+        {
+            return this.sums;
+        }
+
+        /**
+         * @return the counts
+         */
+        public long[] getCounts()
+        {
+            return this.counts;
+        }
+    }
+}
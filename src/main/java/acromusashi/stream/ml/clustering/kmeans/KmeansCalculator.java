@@ -16,24 +16,28 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.collections.ComparatorUtils;
 import org.apache.commons.math.util.MathUtils;
 
 import acromusashi.stream.ml.clustering.kmeans.entity.CentroidMapping;
 import acromusashi.stream.ml.clustering.kmeans.entity.CentroidsComparator;
+import acromusashi.stream.ml.clustering.kmeans.entity.KmeansCoreset;
 import acromusashi.stream.ml.clustering.kmeans.entity.KmeansDataSet;
 import acromusashi.stream.ml.clustering.kmeans.entity.KmeansPoint;
 import acromusashi.stream.ml.clustering.kmeans.entity.KmeansResult;
+import acromusashi.stream.ml.common.util.ArrayMathUtil;
+import acromusashi.stream.ml.common.util.PointMatrix;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 
 /**
  * KMeansクラスタリングの計算処理を行うユーティリティクラス
@@ -43,7 +47,16 @@ import com.google.common.collect.Maps;
 public class KmeansCalculator
 {
     /** BinarySearchの補正定数。値を含まない場合に「-インデックス-1」が返るため、その補正用 */
-    private static final int COMPENSATE_INDEX = -2;
+    private static final int    COMPENSATE_INDEX          = -2;
+
+    /** KMeans||アルゴリズムのオーバーサンプリング係数のクラスタ数に対する倍率 */
+    private static final double DEFAULT_OVERSAMPLING_RATE = 2.0d;
+
+    /** KMeans||アルゴリズムのサンプリング回数 */
+    private static final int    DEFAULT_SAMPLING_ROUND    = 5;
+
+    /** 判別時にKD木を用いて最近傍の中心点を探索する中心点数の下限 */
+    public static final int     INDEXED_SEARCH_THRESHOLD  = 32;
 
     /**
      * インスタンス化を防止するためのコンストラクタ
@@ -71,59 +84,554 @@ public class KmeansCalculator
 
         // 初回の中心点リストを生成する。
         List<KmeansPoint> centroids = createInitialCentroids(pointList, clusterNum);
+        return trainByLloyd(pointList, centroids, maxIteration, convergenceThres);
+    }
+
+    /**
+     * 既存の学習モデルを起点とし、指定した点を用いてミニバッチ方式で学習モデルを更新する。<br>
+     * 累計要素数の上限は設けない。
+     * 
+     * @param baseModel 既存の学習モデル
+     * @param pointList 学習に用いる点情報
+     * @return 更新された学習モデル
+     * @see #updateDataModelByMiniBatch(KmeansDataSet, List, long)
+     */
+    public static KmeansDataSet updateDataModelByMiniBatch(KmeansDataSet baseModel,
+            List<KmeansPoint> pointList)
+    {
+        return updateDataModelByMiniBatch(baseModel, pointList, 0L);
+    }
+
+    /**
+     * 既存の学習モデルを起点とし、指定した点を用いてミニバッチ方式で学習モデルを更新する。<br>
+     * 全点の割当を1回だけ算出した後、各点を割当先の中心点に「1 / クラスタに分類された累計要素数」の学習率で反映する。<br>
+     * クラスタに分類された要素数は累計値として引き継がれるため、バッチを重ねるごとに学習モデルが収束する。<br>
+     * 既存の中心点は1点分の要素数を持つものとして扱うため、要素数を保持していない学習モデルでも最初の点で中心点が置き換わることはない。<br>
+     * 累計要素数の上限を指定した場合、学習率が「1 / 上限値」を下回らないため、データの傾向の変化に追従し続ける。<br>
+     * 引数の学習モデルは更新せず、更新結果は新たな学習モデルとして返す。
+     * 
+     * @param baseModel 既存の学習モデル
+     * @param pointList 学習に用いる点情報
+     * @param maxClusteredNum 累計要素数の上限。0以下の場合は上限を設けない
+     * @return 更新された学習モデル
+     */
+    public static KmeansDataSet updateDataModelByMiniBatch(KmeansDataSet baseModel,
+            List<KmeansPoint> pointList, long maxClusteredNum)
+    {
+        double[][] baseCentroids = baseModel.getCentroids();
+        int clusterNum = baseCentroids.length;
+
+        double[][] centroids = new double[clusterNum][];
+        for (int centroidIndex = 0; centroidIndex < clusterNum; centroidIndex++)
+        {
+            if (baseCentroids[centroidIndex] != null)
+            {
+                centroids[centroidIndex] = Arrays.copyOf(baseCentroids[centroidIndex],
+                        baseCentroids[centroidIndex].length);
+            }
+        }
+
+        // マージ後の学習モデルなど要素数を保持していない場合、既存の中心点は1点分の要素数を持つものとして扱う。
+        long[] clusteredNum = new long[clusterNum];
+        long[] baseClusteredNum = baseModel.getClusteredNum();
+        for (int centroidIndex = 0; centroidIndex < clusterNum; centroidIndex++)
+        {
+            if (baseClusteredNum != null && centroidIndex < baseClusteredNum.length)
+            {
+                clusteredNum[centroidIndex] = baseClusteredNum[centroidIndex];
+            }
+
+            if (centroids[centroidIndex] != null && clusteredNum[centroidIndex] < 1L)
+            {
+                clusteredNum[centroidIndex] = 1L;
+            }
+
+            clusteredNum[centroidIndex] = capClusteredNum(clusteredNum[centroidIndex],
+                    maxClusteredNum);
+        }
+
+        // 更新前の中心点を用いて全点の割当を算出する。
+        PointMatrix centroidMatrix = baseModel.getCentroidMatrix();
+        int pointNum = pointList.size();
+        int[] assignments = new int[pointNum];
+        for (int pointIndex = 0; pointIndex < pointNum; pointIndex++)
+        {
+            int nearestIndex = centroidMatrix.nearestRow(pointList.get(pointIndex).getDataPoint(),
+                    0);
+            assignments[pointIndex] = Math.max(nearestIndex, 0);
+        }
+
+        // 割当先の中心点を、累計要素数から算出した学習率で対象点に近づける。
+        for (int pointIndex = 0; pointIndex < pointNum; pointIndex++)
+        {
+            double[] targetPoint = pointList.get(pointIndex).getDataPoint();
+            int assigned = assignments[pointIndex];
+            clusteredNum[assigned] = capClusteredNum(clusteredNum[assigned] + 1L,
+                    maxClusteredNum);
+
+            double[] centroid = centroids[assigned];
+            if (centroid == null)
+            {
+                centroids[assigned] = Arrays.copyOf(targetPoint, targetPoint.length);
+                continue;
+            }
+
+            double learningRate = 1.0d / clusteredNum[assigned];
+            for (int coordinateIndex = 0; coordinateIndex < centroid.length; coordinateIndex++)
+            {
+                centroid[coordinateIndex] = centroid[coordinateIndex] + learningRate
+                        * (targetPoint[coordinateIndex] - centroid[coordinateIndex]);
+            }
+        }
+
+        KmeansDataSet updatedModel = new KmeansDataSet();
+        updatedModel.setCentroids(centroids);
+        updatedModel.setClusteredNum(clusteredNum);
+        return updatedModel;
+    }
+
+    /**
+     * 累計要素数を上限値以下に丸める。
+     * 
+     * @param clusteredNum 累計要素数
+     * @param maxClusteredNum 累計要素数の上限。0以下の場合は上限を設けない
+     * @return 上限値以下に丸めた累計要素数
+     */
+    private static long capClusteredNum(long clusteredNum, long maxClusteredNum)
+    {
+        if (maxClusteredNum > 0L && clusteredNum > maxClusteredNum)
+        {
+            return maxClusteredNum;
+        }
+
+        return clusteredNum;
+    }
+
+    /**
+     * 初期中心点リストを基にLloydアルゴリズムのイテレーションを実行し、学習モデルを生成する。
+     * 
+     * @param pointList 学習モデルのベース点情報
+     * @param initialCentroids 初期中心点リスト
+     * @param maxIteration 最大イテレーション回数
+     * @param convergenceThres 収束したと判断する閾値
+     * @return 生成された学習モデル
+     */
+    protected static KmeansDataSet trainByLloyd(List<KmeansPoint> pointList,
+            List<KmeansPoint> initialCentroids, int maxIteration, double convergenceThres)
+    {
+        int clusterNum = initialCentroids.size();
+        PointMatrix pointMatrix = toPointMatrix(pointList);
+        PointMatrix centroidMatrix = toPointMatrix(initialCentroids);
+        double[] pointValues = pointMatrix.getValues();
+        int pointNum = pointMatrix.getRowNum();
+        int[] assignments = new int[pointNum];
+        long[] clusteredNum = new long[clusterNum];
+
+        // イテレーションを最大回数実行し、収束を試みる。
+        for (int exeIndex = 0; exeIndex < maxIteration; exeIndex++)
+        {
+            for (int pointIndex = 0; pointIndex < pointNum; pointIndex++)
+            {
+                assignments[pointIndex] = centroidMatrix.nearestRow(pointValues,
+                        pointMatrix.getOffset(pointIndex));
+            }
+
+            PointMatrix newCentroidMatrix = calculateCentroids(pointMatrix, assignments,
+                    centroidMatrix, clusteredNum);
+
+            boolean isConvergenced = isConvergenced(centroidMatrix, newCentroidMatrix,
+                    convergenceThres);
+            centroidMatrix = newCentroidMatrix;
+
+            if (isConvergenced == true)
+            {
+                break;
+            }
+        }
+
+        KmeansDataSet createdModel = new KmeansDataSet();
+        createdModel.setCentroids(centroidMatrix.toRows());
+        createdModel.setClusteredNum(clusteredNum);
+        return createdModel;
+    }
+
+    /**
+     * 指定した初期中心点を起点とし、割当ステップを並列実行しながらLloydアルゴリズムで学習モデルを生成する。<br>
+     * クラスタ毎の点リストは生成せず、部分和と要素数のみを集約する。
+     * 
+     * @param pointList 学習モデルのベース点情報
+     * @param initialCentroids 初期中心点リスト
+     * @param maxIteration 最大イテレーション回数
+     * @param convergenceThres 収束したと判断する閾値
+     * @param pool 割当ステップを実行するスレッドプール
+     * @param splitThreshold 分割せずに処理する点数
+     * @return 生成された学習モデル
+     */
+    protected static KmeansDataSet trainInParallel(List<KmeansPoint> pointList,
+            List<KmeansPoint> initialCentroids, int maxIteration, double convergenceThres,
+            ForkJoinPool pool, int splitThreshold)
+    {
+        PointMatrix pointMatrix = toPointMatrix(pointList);
+        PointMatrix centroidMatrix = toPointMatrix(initialCentroids);
+        int pointNum = pointMatrix.getRowNum();
+        int[] assignments = new int[pointNum];
+        long[] clusteredNum = new long[centroidMatrix.getRowNum()];
+
+        // イテレーションを最大回数実行し、収束を試みる。
+        for (int exeIndex = 0; exeIndex < maxIteration; exeIndex++)
+        {
+            KmeansAssignTask task = new KmeansAssignTask(pointMatrix, centroidMatrix,
+                    assignments, 0, pointNum, splitThreshold);
+            KmeansAssignTask.PartialSum partialSum = pool.invoke(task);
+
+            PointMatrix sumMatrix = new PointMatrix(centroidMatrix.getRowNum(),
+                    centroidMatrix.getColumnNum());
+            System.arraycopy(partialSum.getSums(), 0, sumMatrix.getValues(), 0,
+                    partialSum.getSums().length);
+            System.arraycopy(partialSum.getCounts(), 0, clusteredNum, 0, clusteredNum.length);
+            PointMatrix newCentroidMatrix = divideCentroids(sumMatrix, clusteredNum,
+                    centroidMatrix);
+
+            boolean isConvergenced = isConvergenced(centroidMatrix, newCentroidMatrix,
+                    convergenceThres);
+            centroidMatrix = newCentroidMatrix;
+
+            if (isConvergenced == true)
+            {
+                break;
+            }
+        }
+
+        KmeansDataSet createdModel = new KmeansDataSet();
+        createdModel.setCentroids(centroidMatrix.toRows());
+        createdModel.setClusteredNum(clusteredNum);
+        return createdModel;
+    }
+
+    /**
+     * 初期中心点リストを基に距離の上限/下限を用いたLloydアルゴリズムのイテレーションを実行し、学習モデルを生成する。<br>
+     * 各点について以下の値を保持し、「上限 &lt; max(下限, 所属中心点から最も近い他中心点までの距離の半分)」を満たす場合は
+     * 所属中心点が変わらないことが確定するため、距離の算出を省略する。
+     * <ol>
+     * <li>上限：所属中心点との距離の上限</li>
+     * <li>下限：所属中心点以外で最も近い中心点との距離の下限</li>
+     * </ol>
+     * 判定に等号を含めないため、距離が同値の中心点が存在する場合も{@link #trainByLloyd(List, List, int, double)}と同じ中心点に割り当てられる。
+     * 
+     * @param pointList 学習モデルのベース点情報
+     * @param initialCentroids 初期中心点リスト
+     * @param maxIteration 最大イテレーション回数
+     * @param convergenceThres 収束したと判断する閾値
+     * @return 生成された学習モデル
+     */
+    protected static KmeansDataSet trainWithBounds(List<KmeansPoint> pointList,
+            List<KmeansPoint> initialCentroids, int maxIteration, double convergenceThres)
+    {
+        int clusterNum = initialCentroids.size();
+        PointMatrix pointMatrix = toPointMatrix(pointList);
+        PointMatrix centroidMatrix = toPointMatrix(initialCentroids);
+        double[] pointValues = pointMatrix.getValues();
+        int pointNum = pointMatrix.getRowNum();
+
+        int[] assignments = new int[pointNum];
+        double[] upperBounds = new double[pointNum];
+        double[] lowerBounds = new double[pointNum];
+        double[] halfSeparations = new double[clusterNum];
+        double[] moved = new double[clusterNum];
         long[] clusteredNum = new long[clusterNum];
 
         // イテレーションを最大回数実行し、収束を試みる。
         for (int exeIndex = 0; exeIndex < maxIteration; exeIndex++)
         {
-            Map<Integer, List<KmeansPoint>> assignments = Maps.newHashMap();
+            // 各中心点から最も近い他中心点までの距離の半分を算出する。
+            calculateHalfSeparations(centroidMatrix, halfSeparations);
+
+            for (int pointIndex = 0; pointIndex < pointNum; pointIndex++)
+            {
+                int pointOffset = pointMatrix.getOffset(pointIndex);
+
+                // 初回は上限/下限が存在しないため、全中心点との距離を算出する。
+                if (exeIndex == 0)
+                {
+                    assignWithFullScan(pointValues, pointOffset, centroidMatrix, pointIndex,
+                            assignments, upperBounds, lowerBounds);
+                    continue;
+                }
+
+                int assigned = assignments[pointIndex];
+                double bound = Math.max(halfSeparations[assigned], lowerBounds[pointIndex]);
+                if (upperBounds[pointIndex] < bound)
+                {
+                    continue;
+                }
+
+                // 上限を実際の距離で引き締め、再度判定を行う。
+                upperBounds[pointIndex] = Math.sqrt(centroidMatrix.squaredDistance(assigned,
+                        pointValues, pointOffset));
+                if (upperBounds[pointIndex] < bound)
+                {
+                    continue;
+                }
+
+                assignWithFullScan(pointValues, pointOffset, centroidMatrix, pointIndex,
+                        assignments, upperBounds, lowerBounds);
+            }
+
+            // 割当結果を基に新しい中心点を算出する。
+            PointMatrix newCentroidMatrix = calculateCentroids(pointMatrix, assignments,
+                    centroidMatrix, clusteredNum);
+
+            boolean isConvergenced = true;
+            double maxMoved = 0.0d;
+            double secondMaxMoved = 0.0d;
+            int maxMovedIndex = -1;
             for (int centroidIndex = 0; centroidIndex < clusterNum; centroidIndex++)
             {
-                assignments.put(centroidIndex, Lists.<KmeansPoint> newArrayList());
+                moved[centroidIndex] = Math.sqrt(newCentroidMatrix.squaredDistance(
+                        centroidIndex, centroidMatrix.getValues(),
+                        centroidMatrix.getOffset(centroidIndex)));
+
+                if (moved[centroidIndex] > convergenceThres)
+                {
+                    isConvergenced = false;
+                }
+
+                if (moved[centroidIndex] > maxMoved)
+                {
+                    secondMaxMoved = maxMoved;
+                    maxMoved = moved[centroidIndex];
+                    maxMovedIndex = centroidIndex;
+                }
+                else if (moved[centroidIndex] > secondMaxMoved)
+                {
+                    secondMaxMoved = moved[centroidIndex];
+                }
             }
 
-            for (KmeansPoint targetPoint : pointList)
+            centroidMatrix = newCentroidMatrix;
+
+            if (isConvergenced == true)
             {
-                KmeansResult result = nearestCentroid(targetPoint, centroids);
-                assignments.get(result.getCentroidIndex()).add(targetPoint);
+                break;
             }
 
-            List<KmeansPoint> newCentroids = Lists.newArrayList();
-            for (Map.Entry<Integer, List<KmeansPoint>> entry : assignments.entrySet())
+            // 中心点の移動量を用いて上限/下限を更新する。
+            for (int pointIndex = 0; pointIndex < pointNum; pointIndex++)
             {
-                if (entry.getValue().isEmpty())
+                int assigned = assignments[pointIndex];
+                upperBounds[pointIndex] = upperBounds[pointIndex] + moved[assigned];
+                if (assigned == maxMovedIndex)
                 {
-                    newCentroids.add(centroids.get(entry.getKey()));
+                    lowerBounds[pointIndex] = lowerBounds[pointIndex] - secondMaxMoved;
                 }
                 else
                 {
-                    newCentroids.add(calculateCentroid(entry.getValue()));
+                    lowerBounds[pointIndex] = lowerBounds[pointIndex] - maxMoved;
                 }
+            }
+        }
+
+        KmeansDataSet createdModel = new KmeansDataSet();
+        createdModel.setCentroids(centroidMatrix.toRows());
+        createdModel.setClusteredNum(clusteredNum);
+        return createdModel;
+    }
+
+    /**
+     * 全中心点との距離を算出して対象点の割当を行い、上限/下限を設定する。
+     * 
+     * @param pointValues 対象点を含む配列
+     * @param pointOffset 対象点の先頭要素のインデックス
+     * @param centroidMatrix 中心点行列
+     * @param pointIndex 対象点のインデックス
+     * @param assignments 割当先中心点インデックス配列
+     * @param upperBounds 上限配列
+     * @param lowerBounds 下限配列
+     */
+    private static void assignWithFullScan(double[] pointValues, int pointOffset,
+            PointMatrix centroidMatrix, int pointIndex, int[] assignments, double[] upperBounds,
+            double[] lowerBounds)
+    {
+        int nearestIndex = 0;
+        double minDistance = Double.MAX_VALUE;
+        double secondDistance = Double.MAX_VALUE;
 
-                clusteredNum[entry.getKey()] = entry.getValue().size();
+        // 大小比較は距離の二乗で行い、平方根は上限/下限の算出時のみ算出する。
+        for (int centroidIndex = 0; centroidIndex < centroidMatrix.getRowNum(); centroidIndex++)
+        {
+            double distance = centroidMatrix.squaredDistance(centroidIndex, pointValues,
+                    pointOffset);
+            if (distance < minDistance)
+            {
+                secondDistance = minDistance;
+                minDistance = distance;
+                nearestIndex = centroidIndex;
+            }
+            else if (distance < secondDistance)
+            {
+                secondDistance = distance;
             }
+        }
 
-            boolean isConvergenced = isConvergenced(centroids, newCentroids, convergenceThres);
-            centroids = newCentroids;
+        assignments[pointIndex] = nearestIndex;
+        upperBounds[pointIndex] = Math.sqrt(minDistance);
+        if (secondDistance == Double.MAX_VALUE)
+        {
+            lowerBounds[pointIndex] = Double.MAX_VALUE;
+        }
+        else
+        {
+            lowerBounds[pointIndex] = Math.sqrt(secondDistance);
+        }
+    }
 
-            if (isConvergenced == true)
+    /**
+     * 各中心点から最も近い他中心点までの距離の半分を算出する。
+     * 
+     * @param centroidMatrix 中心点行列
+     * @param halfSeparations 算出結果を格納する配列
+     */
+    private static void calculateHalfSeparations(PointMatrix centroidMatrix,
+            double[] halfSeparations)
+    {
+        Arrays.fill(halfSeparations, Double.MAX_VALUE);
+        int clusterNum = centroidMatrix.getRowNum();
+        double[] centroidValues = centroidMatrix.getValues();
+
+        for (int baseIndex = 0; baseIndex < clusterNum; baseIndex++)
+        {
+            for (int targetIndex = baseIndex + 1; targetIndex < clusterNum; targetIndex++)
             {
+                double halfDistance = Math.sqrt(centroidMatrix.squaredDistance(baseIndex,
+                        centroidValues, centroidMatrix.getOffset(targetIndex))) / 2.0d;
+                halfSeparations[baseIndex] = Math.min(halfSeparations[baseIndex], halfDistance);
+                halfSeparations[targetIndex] = Math.min(halfSeparations[targetIndex],
+                        halfDistance);
+            }
+        }
+    }
 
-                break;
+    /**
+     * 点リストを行優先で連続した行列に変換する。
+     * 
+     * @param pointList 点リスト
+     * @return 点行列
+     */
+    public static PointMatrix toPointMatrix(List<KmeansPoint> pointList)
+    {
+        int pointNum = pointList.size();
+        int dimension = 0;
+        if (pointNum > 0)
+        {
+            dimension = pointList.get(0).getDataPoint().length;
+        }
+
+        PointMatrix matrix = new PointMatrix(pointNum, dimension);
+        for (int pointIndex = 0; pointIndex < pointNum; pointIndex++)
+        {
+            matrix.setRow(pointIndex, pointList.get(pointIndex).getDataPoint());
+        }
+
+        return matrix;
+    }
+
+    /**
+     * 点行列と各点の割当先を基に各クラスタの中心点を算出する。<br>
+     * 割当のないクラスタは前回の中心点をそのまま用いる。<br>
+     * 各クラスタの座標値は点行列の順に加算するため、{@link #calculateCentroid(List)}と同一の算出結果となる。
+     * 
+     * @param pointMatrix 点行列
+     * @param assignments 各点の割当先中心点インデックス
+     * @param previousCentroids 前回の中心点行列
+     * @param clusteredNum 各クラスタに分類された要素数を格納する配列
+     * @return 算出した中心点行列
+     */
+    public static PointMatrix calculateCentroids(PointMatrix pointMatrix, int[] assignments,
+            PointMatrix previousCentroids, long[] clusteredNum)
+    {
+        int clusterNum = previousCentroids.getRowNum();
+        int dimension = pointMatrix.getColumnNum();
+        PointMatrix centroidMatrix = new PointMatrix(clusterNum, dimension);
+        double[] centroidValues = centroidMatrix.getValues();
+        double[] pointValues = pointMatrix.getValues();
+        Arrays.fill(clusteredNum, 0L);
+
+        for (int pointIndex = 0; pointIndex < pointMatrix.getRowNum(); pointIndex++)
+        {
+            int assigned = assignments[pointIndex];
+            int centroidOffset = centroidMatrix.getOffset(assigned);
+            int pointOffset = pointMatrix.getOffset(pointIndex);
+            for (int coordinateIndex = 0; coordinateIndex < dimension; coordinateIndex++)
+            {
+                centroidValues[centroidOffset + coordinateIndex] += pointValues[pointOffset
+                        + coordinateIndex];
             }
+            clusteredNum[assigned]++;
         }
 
-        double[][] centroidPoints = new double[clusterNum][];
+        return divideCentroids(centroidMatrix, clusteredNum, previousCentroids);
+    }
 
+    /**
+     * クラスタ毎の座標値の和を要素数で除算し、中心点を算出する。<br>
+     * 割当のないクラスタは前回の中心点をそのまま用いる。
+     * 
+     * @param sumMatrix クラスタ毎の座標値の和。算出した中心点で上書きする
+     * @param clusteredNum 各クラスタに分類された要素数
+     * @param previousCentroids 前回の中心点行列
+     * @return 算出した中心点行列
+     */
+    protected static PointMatrix divideCentroids(PointMatrix sumMatrix, long[] clusteredNum,
+            PointMatrix previousCentroids)
+    {
+        double[] centroidValues = sumMatrix.getValues();
+        int clusterNum = sumMatrix.getRowNum();
+        int dimension = sumMatrix.getColumnNum();
+        double[] previousValues = previousCentroids.getValues();
         for (int centroidIndex = 0; centroidIndex < clusterNum; centroidIndex++)
         {
-            centroidPoints[centroidIndex] = centroids.get(centroidIndex).getDataPoint();
+            int centroidOffset = sumMatrix.getOffset(centroidIndex);
+            if (clusteredNum[centroidIndex] == 0)
+            {
+                System.arraycopy(previousValues, centroidOffset, centroidValues, centroidOffset,
+                        dimension);
+                continue;
+            }
+
+            double count = clusteredNum[centroidIndex];
+            for (int coordinateIndex = 0; coordinateIndex < dimension; coordinateIndex++)
+            {
+                centroidValues[centroidOffset + coordinateIndex] /= count;
+            }
         }
 
-        KmeansDataSet createdModel = new KmeansDataSet();
-        createdModel.setCentroids(centroidPoints);
-        createdModel.setClusteredNum(clusteredNum);
-        return createdModel;
+        return sumMatrix;
+    }
+
+    /**
+     * 中心点行列を用いてクラスタリングが収束したかを判定する。
+     * 
+     * @param baseMatrix 前回の中心点行列
+     * @param newMatrix 今回の中心点行列
+     * @param convergenceThres 収束閾値
+     * @return 収束した場合true、収束していない場合false
+     */
+    public static boolean isConvergenced(PointMatrix baseMatrix, PointMatrix newMatrix,
+            double convergenceThres)
+    {
+        double[] newValues = newMatrix.getValues();
+
+        for (int rowIndex = 0; rowIndex < baseMatrix.getRowNum(); rowIndex++)
+        {
+            double distance = Math.sqrt(baseMatrix.squaredDistance(rowIndex, newValues,
+                    newMatrix.getOffset(rowIndex)));
+            if (distance > convergenceThres)
+            {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     /**
@@ -189,15 +697,16 @@ public class KmeansCalculator
     public static KmeansResult nearestCentroid(double[] targetPoint, double[][] centroids)
     {
         int nearestCentroidIndex = 0;
-        Double minDistance = Double.MAX_VALUE;
+        double minDistance = Double.MAX_VALUE;
         double[] currentCentroid = null;
-        Double currentDistance;
+        double currentDistance;
+        // 大小比較は距離の二乗で行い、平方根は結果の算出時のみ算出する。
         for (int index = 0; index < centroids.length; index++)
         {
             currentCentroid = centroids[index];
             if (currentCentroid != null)
             {
-                currentDistance = MathUtils.distance(targetPoint, currentCentroid);
+                currentDistance = ArrayMathUtil.squaredDistance(targetPoint, currentCentroid);
                 if (currentDistance < minDistance)
                 {
                     minDistance = currentDistance;
@@ -206,15 +715,8 @@ public class KmeansCalculator
             }
         }
 
-        currentCentroid = centroids[nearestCentroidIndex];
-
-        KmeansResult result = new KmeansResult();
-        result.setDataPoint(targetPoint);
-        result.setCentroidIndex(nearestCentroidIndex);
-        result.setCentroid(currentCentroid);
-        result.setDistance(minDistance);
-
-        return result;
+        return createResult(targetPoint, nearestCentroidIndex, centroids[nearestCentroidIndex],
+                minDistance);
     }
 
     /**
@@ -227,15 +729,16 @@ public class KmeansCalculator
     public static KmeansResult nearestCentroid(KmeansPoint targetPoint, List<KmeansPoint> centroids)
     {
         int nearestCentroidIndex = 0;
-        Double minDistance = Double.MAX_VALUE;
+        double minDistance = Double.MAX_VALUE;
         KmeansPoint currentCentroid = null;
-        Double currentDistance;
+        double currentDistance;
+        // 大小比較は距離の二乗で行い、平方根は結果の算出時のみ算出する。
         for (int index = 0; index < centroids.size(); index++)
         {
             currentCentroid = centroids.get(index);
             if (currentCentroid != null && currentCentroid.getDataPoint() != null)
             {
-                currentDistance = MathUtils.distance(targetPoint.getDataPoint(),
+                currentDistance = ArrayMathUtil.squaredDistance(targetPoint.getDataPoint(),
                         currentCentroid.getDataPoint());
                 if (currentDistance < minDistance)
                 {
@@ -247,13 +750,8 @@ public class KmeansCalculator
 
         currentCentroid = centroids.get(nearestCentroidIndex);
 
-        KmeansResult result = new KmeansResult();
-        result.setDataPoint(targetPoint.getDataPoint());
-        result.setCentroidIndex(nearestCentroidIndex);
-        result.setCentroid(currentCentroid.getDataPoint());
-        result.setDistance(minDistance);
-
-        return result;
+        return createResult(targetPoint.getDataPoint(), nearestCentroidIndex,
+                currentCentroid.getDataPoint(), minDistance);
     }
 
     /**
@@ -266,31 +764,110 @@ public class KmeansCalculator
     public static KmeansResult classify(KmeansPoint targetPoint, KmeansDataSet dataSet)
     {
         // KMeanクラスタリング結果を算出
-        int nearestCentroidIndex = 0;
-        Double minDistance = Double.MAX_VALUE;
-        double[] currentCentroid = null;
-        Double currentDistance;
-        for (int index = 0; index < dataSet.getCentroids().length; index++)
+        PointMatrix centroidMatrix = dataSet.getCentroidMatrix();
+        double[] dataPoint = targetPoint.getDataPoint();
+        int nearestCentroidIndex = nearestCentroidIndex(dataSet, dataPoint, 0);
+        double minDistance = Double.MAX_VALUE;
+
+        if (nearestCentroidIndex < 0)
         {
-            currentCentroid = dataSet.getCentroids()[index];
-            if (currentCentroid != null)
+            nearestCentroidIndex = 0;
+        }
+        else
+        {
+            minDistance = centroidMatrix.squaredDistance(nearestCentroidIndex, dataPoint, 0);
+        }
+
+        return createResult(dataPoint, nearestCentroidIndex,
+                dataSet.getCentroids()[nearestCentroidIndex], minDistance);
+    }
+
+    /**
+     * 点行列と学習モデルを指定し、各点がどのクラスタに判別されるかを一括で取得する。<br>
+     * 学習モデルが保持する中心点行列を用いて全点の判別を1回の走査で行う。
+     * 
+     * @param pointMatrix 判定対象の点行列
+     * @param dataSet 学習モデル
+     * @param distances 各点の最も近い中心点との距離の格納先。中心点が存在しない場合はDouble.MAX_VALUE
+     * @return 各点の最も近い中心点のインデックス
+     */
+    public static int[] classifyAll(PointMatrix pointMatrix, KmeansDataSet dataSet,
+            double[] distances)
+    {
+        PointMatrix centroidMatrix = dataSet.getCentroidMatrix();
+        double[] pointValues = pointMatrix.getValues();
+        int pointNum = pointMatrix.getRowNum();
+        int[] centroidIndexes = new int[pointNum];
+
+        for (int pointIndex = 0; pointIndex < pointNum; pointIndex++)
+        {
+            int pointOffset = pointMatrix.getOffset(pointIndex);
+            int nearestIndex = nearestCentroidIndex(dataSet, pointValues, pointOffset);
+            if (nearestIndex < 0)
             {
-                currentDistance = MathUtils.distance(targetPoint.getDataPoint(), currentCentroid);
-                if (currentDistance < minDistance)
-                {
-                    minDistance = currentDistance;
-                    nearestCentroidIndex = index;
-                }
+                distances[pointIndex] = Double.MAX_VALUE;
+                continue;
             }
+
+            centroidIndexes[pointIndex] = nearestIndex;
+            distances[pointIndex] = Math.sqrt(centroidMatrix.squaredDistance(nearestIndex,
+                    pointValues, pointOffset));
         }
 
-        currentCentroid = dataSet.getCentroids()[nearestCentroidIndex];
+        return centroidIndexes;
+    }
+
+    /**
+     * 学習モデルの中心点のうち対象点に最も近い中心点のインデックスを取得する。<br>
+     * 中心点数が{@link #INDEXED_SEARCH_THRESHOLD}以上、かつ「2の次元数乗」以上の場合は学習モデルが保持するKD木を用いて探索する。
+     * 次元数に対して中心点数が少ない場合はKD木による枝刈りが効かないため線形探索を行う。
+     * KD木を用いた場合も線形探索と同一の結果となる。
+     * 
+     * @param dataSet 学習モデル
+     * @param target 対象点を含む配列
+     * @param targetOffset 対象点の先頭要素のインデックス
+     * @return 最も近い中心点のインデックス。中心点が存在しない場合は-1
+     */
+    protected static int nearestCentroidIndex(KmeansDataSet dataSet, double[] target,
+            int targetOffset)
+    {
+        PointMatrix centroidMatrix = dataSet.getCentroidMatrix();
+        int centroidNum = centroidMatrix.getRowNum();
+        int dimension = centroidMatrix.getColumnNum();
+        if (centroidNum >= INDEXED_SEARCH_THRESHOLD && dimension < Integer.SIZE - 1
+                && (1 << dimension) <= centroidNum)
+        {
+            return dataSet.getCentroidTree().nearestRow(target, targetOffset);
+        }
+
+        return centroidMatrix.nearestRow(target, targetOffset);
+    }
 
+    /**
+     * 判定結果エンティティを生成する。
+     * 
+     * @param dataPoint 判定対象ポイント
+     * @param centroidIndex 最も近い中心点のインデックス
+     * @param centroid 最も近い中心点
+     * @param squaredDistance 中心点との距離の二乗。中心点が存在しなかった場合はDouble.MAX_VALUE
+     * @return 判定結果エンティティ
+     */
+    private static KmeansResult createResult(double[] dataPoint, int centroidIndex,
+            double[] centroid, double squaredDistance)
+    {
         KmeansResult result = new KmeansResult();
-        result.setDataPoint(targetPoint.getDataPoint());
-        result.setCentroidIndex(nearestCentroidIndex);
-        result.setCentroid(currentCentroid);
-        result.setDistance(minDistance);
+        result.setDataPoint(dataPoint);
+        result.setCentroidIndex(centroidIndex);
+        result.setCentroid(centroid);
+
+        if (squaredDistance == Double.MAX_VALUE)
+        {
+            result.setDistance(squaredDistance);
+        }
+        else
+        {
+            result.setDistance(Math.sqrt(squaredDistance));
+        }
 
         return result;
     }
@@ -305,20 +882,53 @@ public class KmeansCalculator
     public static List<KmeansPoint> createInitialCentroids(List<KmeansPoint> basePoints,
             int clusterNum)
     {
-        Random random = new Random();
+        return createInitialCentroids(basePoints, clusterNum, new Random());
+    }
+
+    /**
+     * 乱数生成器を指定し、KMeans++アルゴリズムで初期の中心点リストを生成する。<br>
+     * 各点の最近傍中心点との距離の二乗は中心点を追加する度に追加した中心点との比較のみで更新する。<br>
+     * シードを固定した乱数生成器を指定した場合、同一の点リストに対して同一の中心点リストを生成する。
+     * 
+     * @param basePoints 中心点を生成するベースデータ
+     * @param clusterNum クラスタ数
+     * @param random 乱数生成器
+     * @return 中心点リスト
+     */
+    public static List<KmeansPoint> createInitialCentroids(List<KmeansPoint> basePoints,
+            int clusterNum, Random random)
+    {
         List<KmeansPoint> resultList = Lists.newArrayList();
+        Set<KmeansPoint> selectedSet = new HashSet<>();
         // ベースデータリストを更新しないためにコピーを生成して用いる
         List<KmeansPoint> pointList = Lists.newArrayList(basePoints);
         KmeansPoint firstCentroid = pointList.remove(random.nextInt(pointList.size()));
         resultList.add(firstCentroid);
+        selectedSet.add(firstCentroid);
+
+        PointMatrix pointMatrix = toPointMatrix(pointList);
+        double[] minDistances = new double[pointMatrix.getRowNum()];
+        Arrays.fill(minDistances, Double.MAX_VALUE);
+        double[] dxs = new double[pointMatrix.getRowNum()];
+        KmeansPoint lastCentroid = firstCentroid;
 
-        double[] dxs;
         // KMeans++方式による中心点算出をクラスタの数だけ実施する。
         // 最初の1点はランダムで算出しているため、1オリジンで開始している。
         for (int centroidIndex = 1; centroidIndex < clusterNum; centroidIndex++)
         {
-            // 各データポイントに対する距離を用いて重みつき確率分布を算出する。
-            dxs = computeDxs(pointList, resultList);
+            // 直前に追加した中心点との距離で各データポイントの最近傍距離を更新し、重みつき確率分布を算出する。
+            double sum = 0.0d;
+            double[] lastPoint = lastCentroid.getDataPoint();
+            for (int pointIndex = 0; pointIndex < minDistances.length; pointIndex++)
+            {
+                double distance = pointMatrix.squaredDistance(pointIndex, lastPoint, 0);
+                if (distance < minDistances[pointIndex])
+                {
+                    minDistances[pointIndex] = distance;
+                }
+                sum += minDistances[pointIndex];
+                dxs[pointIndex] = sum;
+            }
 
             // 重みつき確率分布を用いて次の中心点を選出する。
             double r = random.nextDouble() * dxs[dxs.length - 1];
@@ -330,20 +940,242 @@ public class KmeansCalculator
             }
             else if (next < 0)
             {
-                index = COMPENSATE_INDEX - next;
+                // 先頭の累積値より小さい値を引いた場合は先頭の点を選出する
+                index = Math.max(COMPENSATE_INDEX - next, 0);
             }
 
-            while (index > 0 && resultList.contains(pointList.get(index)))
+            while (index > 0 && selectedSet.contains(pointList.get(index)))
             {
                 index = index - 1;
             }
 
-            resultList.add(pointList.get(index));
+            lastCentroid = pointList.get(index);
+            resultList.add(lastCentroid);
+            selectedSet.add(lastCentroid);
+        }
+
+        return resultList;
+    }
+
+    /**
+     * KMeans||アルゴリズムで初期の中心点リストを生成する。<br>
+     * オーバーサンプリング係数はクラスタ数の2倍、サンプリング回数は5回とする。
+     * 
+     * @param basePoints 中心点を生成するベースデータ
+     * @param clusterNum クラスタ数
+     * @param random 乱数生成器
+     * @return 中心点リスト
+     */
+    public static List<KmeansPoint> createInitialCentroidsScalable(List<KmeansPoint> basePoints,
+            int clusterNum, Random random)
+    {
+        return createInitialCentroidsScalable(basePoints, clusterNum,
+                DEFAULT_OVERSAMPLING_RATE * clusterNum, DEFAULT_SAMPLING_ROUND, random);
+    }
+
+    /**
+     * KMeans||アルゴリズムで初期の中心点リストを生成する。<br>
+     * 各サンプリングで「オーバーサンプリング係数 * 最近傍候補点との距離の二乗 / 距離の二乗の総和」の確率で
+     * 全点から一括して候補点を選出し、最後に候補点に最も近い点の数を重みとして
+     * 重みつきKMeans++アルゴリズムで候補点からクラスタ数分の中心点を選出する。<br>
+     * 各点の最近傍候補点との距離の二乗は新たに選出した候補点との比較のみで更新する。
+     * 
+     * @param basePoints 中心点を生成するベースデータ
+     * @param clusterNum クラスタ数
+     * @param oversamplingFactor オーバーサンプリング係数(1回のサンプリングで選出する候補点数の期待値)
+     * @param roundNum サンプリング回数
+     * @param random 乱数生成器
+     * @return 中心点リスト
+     */
+    public static List<KmeansPoint> createInitialCentroidsScalable(List<KmeansPoint> basePoints,
+            int clusterNum, double oversamplingFactor, int roundNum, Random random)
+    {
+        PointMatrix pointMatrix = toPointMatrix(basePoints);
+        int pointNum = pointMatrix.getRowNum();
+        double[] minDistances = new double[pointNum];
+        int[] nearestCandidates = new int[pointNum];
+        boolean[] selected = new boolean[pointNum];
+        int[] candidates = new int[pointNum];
+        Arrays.fill(minDistances, Double.MAX_VALUE);
+
+        // 最初の候補点はランダムに選出する。
+        int candidateNum = 0;
+        candidates[candidateNum] = random.nextInt(pointNum);
+        selected[candidates[candidateNum]] = true;
+        candidateNum++;
+        double cost = updateMinDistances(pointMatrix, candidates, 0, candidateNum, minDistances,
+                nearestCandidates);
+
+        for (int round = 0; round < roundNum && cost > 0.0d; round++)
+        {
+            // 更新前の距離を用いて今回の候補点を一括で選出する。
+            int roundStart = candidateNum;
+            for (int pointIndex = 0; pointIndex < pointNum; pointIndex++)
+            {
+                if (selected[pointIndex] == false
+                        && random.nextDouble() * cost < oversamplingFactor
+                                * minDistances[pointIndex])
+                {
+                    candidates[candidateNum] = pointIndex;
+                    selected[pointIndex] = true;
+                    candidateNum++;
+                }
+            }
+
+            cost = updateMinDistances(pointMatrix, candidates, roundStart, candidateNum,
+                    minDistances, nearestCandidates);
+        }
+
+        // 候補点がクラスタ数に満たない場合、KMeans++と同様に距離の二乗に比例する確率で補充する。
+        while (candidateNum < clusterNum && candidateNum < pointNum)
+        {
+            int pointIndex = selectByWeight(minDistances, selected, cost, random);
+            candidates[candidateNum] = pointIndex;
+            selected[pointIndex] = true;
+            candidateNum++;
+            cost = updateMinDistances(pointMatrix, candidates, candidateNum - 1, candidateNum,
+                    minDistances, nearestCandidates);
+        }
+
+        // 各候補点に最も近い点の数を候補点の重みとする。
+        double[] weights = new double[candidateNum];
+        for (int pointIndex = 0; pointIndex < pointNum; pointIndex++)
+        {
+            weights[nearestCandidates[pointIndex]]++;
+        }
+
+        // 重みつきKMeans++アルゴリズムで候補点からクラスタ数分の中心点を選出する。
+        PointMatrix candidateMatrix = new PointMatrix(candidateNum, pointMatrix.getColumnNum());
+        for (int candidateIndex = 0; candidateIndex < candidateNum; candidateIndex++)
+        {
+            System.arraycopy(pointMatrix.getValues(),
+                    pointMatrix.getOffset(candidates[candidateIndex]), candidateMatrix.getValues(),
+                    candidateMatrix.getOffset(candidateIndex), pointMatrix.getColumnNum());
+        }
+
+        double[] candidateDistances = new double[candidateNum];
+        Arrays.fill(candidateDistances, 1.0d);
+        boolean[] chosen = new boolean[candidateNum];
+        double[] probabilities = new double[candidateNum];
+        List<KmeansPoint> resultList = Lists.newArrayList();
+        int resultNum = Math.min(clusterNum, candidateNum);
+
+        for (int centroidIndex = 0; centroidIndex < resultNum; centroidIndex++)
+        {
+            double total = 0.0d;
+            for (int candidateIndex = 0; candidateIndex < candidateNum; candidateIndex++)
+            {
+                probabilities[candidateIndex] = weights[candidateIndex]
+                        * candidateDistances[candidateIndex];
+                total += probabilities[candidateIndex];
+            }
+
+            int chosenIndex = selectByWeight(probabilities, chosen, total, random);
+            chosen[chosenIndex] = true;
+            resultList.add(basePoints.get(candidates[chosenIndex]));
+
+            int chosenOffset = candidateMatrix.getOffset(chosenIndex);
+            for (int candidateIndex = 0; candidateIndex < candidateNum; candidateIndex++)
+            {
+                double distance = candidateMatrix.squaredDistance(candidateIndex,
+                        candidateMatrix.getValues(), chosenOffset);
+                if (centroidIndex == 0 || distance < candidateDistances[candidateIndex])
+                {
+                    candidateDistances[candidateIndex] = distance;
+                }
+            }
         }
 
         return resultList;
     }
 
+    /**
+     * 指定した範囲の候補点との距離を用いて各点の最近傍候補点との距離の二乗を更新する。
+     * 
+     * @param pointMatrix 点行列
+     * @param candidates 候補点の点行列上のインデックス
+     * @param fromIndex 比較対象とする候補点の開始インデックス(この値を含む)
+     * @param toIndex 比較対象とする候補点の終了インデックス(この値を含まない)
+     * @param minDistances 各点の最近傍候補点との距離の二乗
+     * @param nearestCandidates 各点の最近傍候補点のインデックス
+     * @return 更新後の距離の二乗の総和
+     */
+    private static double updateMinDistances(PointMatrix pointMatrix, int[] candidates,
+            int fromIndex, int toIndex, double[] minDistances, int[] nearestCandidates)
+    {
+        double[] pointValues = pointMatrix.getValues();
+        double cost = 0.0d;
+
+        for (int pointIndex = 0; pointIndex < minDistances.length; pointIndex++)
+        {
+            for (int candidateIndex = fromIndex; candidateIndex < toIndex; candidateIndex++)
+            {
+                double distance = pointMatrix.squaredDistance(pointIndex, pointValues,
+                        pointMatrix.getOffset(candidates[candidateIndex]));
+                if (distance < minDistances[pointIndex])
+                {
+                    minDistances[pointIndex] = distance;
+                    nearestCandidates[pointIndex] = candidateIndex;
+                }
+            }
+            cost += minDistances[pointIndex];
+        }
+
+        return cost;
+    }
+
+    /**
+     * 重みに比例する確率で未選出の要素を1つ選出する。<br>
+     * 重みの総和が0の場合、未選出の要素のうちインデックスが最も小さいものを選出する。
+     * 
+     * @param weights 各要素の重み
+     * @param selected 各要素が選出済みかを示すフラグ
+     * @param total 重みの総和
+     * @param random 乱数生成器
+     * @return 選出した要素のインデックス
+     */
+    private static int selectByWeight(double[] weights, boolean[] selected, double total,
+            Random random)
+    {
+        int lastCandidate = -1;
+
+        if (total > 0.0d)
+        {
+            double r = random.nextDouble() * total;
+            double sum = 0.0d;
+            for (int index = 0; index < weights.length; index++)
+            {
+                if (selected[index] == true || weights[index] <= 0.0d)
+                {
+                    continue;
+                }
+
+                lastCandidate = index;
+                sum += weights[index];
+                if (r < sum)
+                {
+                    return index;
+                }
+            }
+        }
+
+        // 浮動小数点の誤差で選出できなかった場合は最後の候補を用いる。
+        if (lastCandidate >= 0)
+        {
+            return lastCandidate;
+        }
+
+        for (int index = 0; index < selected.length; index++)
+        {
+            if (selected[index] == false)
+            {
+                return index;
+            }
+        }
+
+        return 0;
+    }
+
     /**
      * 点リストを用いて重みつき確率分布を算出する。
      * 
@@ -354,17 +1186,15 @@ public class KmeansCalculator
     public static double[] computeDxs(List<KmeansPoint> basePoints, List<KmeansPoint> centroids)
     {
         double[] dxs = new double[basePoints.size()];
+        PointMatrix centroidMatrix = toPointMatrix(centroids);
 
         double sum = 0.0d;
-        double[] nearestCentroid;
         for (int pointIndex = 0; pointIndex < basePoints.size(); pointIndex++)
         {
-            // 対象点に対する最近傍中心との距離(dx)を算出し、二乗に比例する重み付き確率分布値を算出
-            KmeansPoint targetPoint = basePoints.get(pointIndex);
-            KmeansResult kmeanResult = KmeansCalculator.nearestCentroid(targetPoint, centroids);
-            nearestCentroid = kmeanResult.getCentroid();
-            double dx = MathUtils.distance(targetPoint.getDataPoint(), nearestCentroid);
-            double probabilityDist = Math.pow(dx, 2);
+            // 対象点に対する最近傍中心との距離(dx)の二乗を算出し、二乗に比例する重み付き確率分布値を算出
+            double[] targetPoint = basePoints.get(pointIndex).getDataPoint();
+            int nearestIndex = centroidMatrix.nearestRow(targetPoint, 0);
+            double probabilityDist = centroidMatrix.squaredDistance(nearestIndex, targetPoint, 0);
             sum += probabilityDist;
             dxs[pointIndex] = sum;
         }
@@ -408,6 +1238,292 @@ public class KmeansCalculator
         return merged;
     }
 
+    /**
+     * Kmeansクラスタリングのデータを各クラスタに分類された要素数で重み付けしてマージする。<br>
+     * 中心点のマッピングは{@link #mergeKmeans(KmeansDataSet, KmeansDataSet)}と同様に距離が小さい組み合わせから順に行うが、
+     * 距離は中心点の組み合わせ毎のエンティティを生成せずに配列で保持する。<br>
+     * マッピングした中心点同士は要素数で重み付けした平均値を取り、要素数は大きい方をマージ結果に引き継ぐ。
+     * 要素数を保持していない学習モデルは各クラスタの要素数を1として重み付けを行う。<br>
+     * 各パーティションは他パーティションの結果とマージした学習モデルを保存し、以後のマージで再度マージ対象となるため、
+     * 要素数を合算すると同じ要素数がマージの度に加算されて増加し続ける。
+     * 大きい方を引き継ぐことで、同じ学習モデル同士を繰り返しマージしても要素数は変化しない。<br>
+     * ストリーミングKMeansのコアセットはパーティション毎に保持するため、マージ元のコアセットを引き継ぎ、
+     * マージ対象のコアセットは他パーティションのコアセットとしてコアセットID毎に最新の1個のみを保持する。
+     * 以後の学習では自パーティションと他パーティションのコアセットを合わせて用いる。
+     * 
+     * @param baseKmeans マージ元Kmeansクラスタリング
+     * @param targetKmeans マージ対象Kmeansクラスタリング
+     * @return マージ後のクラスタリングデータ
+     */
+    public static KmeansDataSet mergeKmeansWeighted(KmeansDataSet baseKmeans,
+            KmeansDataSet targetKmeans)
+    {
+        double[][] baseCentroids = baseKmeans.getCentroids();
+        double[][] targetCentroids = targetKmeans.getCentroids();
+        int centroidNum = Math.min(baseCentroids.length, targetCentroids.length);
+
+        // ベース中心点配列とマージ対象中心点配列の各々の距離の二乗を算出し、距離の小さい順に並べる
+        int pairNum = centroidNum * centroidNum;
+        double[] distances = new double[pairNum];
+        int[] pairOrder = new int[pairNum];
+        for (int baseIndex = 0; baseIndex < centroidNum; baseIndex++)
+        {
+            for (int targetIndex = 0; targetIndex < centroidNum; targetIndex++)
+            {
+                int pairIndex = baseIndex * centroidNum + targetIndex;
+                pairOrder[pairIndex] = pairIndex;
+                if (baseCentroids[baseIndex] == null || targetCentroids[targetIndex] == null)
+                {
+                    distances[pairIndex] = Double.MAX_VALUE;
+                }
+                else
+                {
+                    distances[pairIndex] = ArrayMathUtil.squaredDistance(
+                            baseCentroids[baseIndex], targetCentroids[targetIndex]);
+                }
+            }
+        }
+        sortPairs(pairOrder, distances, 0, pairNum - 1);
+
+        // 距離が小さいものから、未使用の中心点同士をマッピングする
+        int[] mapping = new int[centroidNum];
+        boolean[] baseUsed = new boolean[centroidNum];
+        boolean[] targetUsed = new boolean[centroidNum];
+        int mappingNum = 0;
+        for (int orderIndex = 0; orderIndex < pairNum && mappingNum < centroidNum; orderIndex++)
+        {
+            int baseIndex = pairOrder[orderIndex] / centroidNum;
+            int targetIndex = pairOrder[orderIndex] % centroidNum;
+            if (baseUsed[baseIndex] == true || targetUsed[targetIndex] == true)
+            {
+                continue;
+            }
+
+            baseUsed[baseIndex] = true;
+            targetUsed[targetIndex] = true;
+            mapping[baseIndex] = targetIndex;
+            mappingNum++;
+        }
+
+        // マッピングした中心点同士を要素数で重み付けして平均し、要素数は大きい方を引き継ぐ
+        long[] baseCounts = baseKmeans.getClusteredNum();
+        long[] targetCounts = targetKmeans.getClusteredNum();
+        double[][] mergedCentroids = new double[centroidNum][];
+        long[] mergedCounts = new long[centroidNum];
+        for (int baseIndex = 0; baseIndex < centroidNum; baseIndex++)
+        {
+            int targetIndex = mapping[baseIndex];
+            long baseCount = getClusteredNum(baseCounts, baseIndex);
+            long targetCount = getClusteredNum(targetCounts, targetIndex);
+            mergedCentroids[baseIndex] = weightedAverage(baseCentroids[baseIndex], baseCount,
+                    targetCentroids[targetIndex], targetCount);
+
+            if (baseCounts != null)
+            {
+                mergedCounts[baseIndex] = baseCounts[baseIndex];
+            }
+            if (targetCounts != null)
+            {
+                mergedCounts[baseIndex] = Math.max(mergedCounts[baseIndex],
+                        targetCounts[targetIndex]);
+            }
+        }
+
+        KmeansDataSet merged = new KmeansDataSet();
+        merged.setCentroids(mergedCentroids);
+        merged.setCoreset(baseKmeans.getCoreset());
+        merged.setPeerCoresets(mergePeerCoresets(baseKmeans, targetKmeans));
+        if (baseCounts != null || targetCounts != null)
+        {
+            merged.setClusteredNum(mergedCounts);
+        }
+
+        return merged;
+    }
+
+    /**
+     * マージ元の学習モデルが保持する他パーティションのコアセットに、マージ対象の学習モデルのコアセットを追加する。<br>
+     * 同じコアセットIDのコアセットは置き換えるため、同じパーティションのコアセットを重複して保持しない。
+     * マージ対象が保持する他パーティションのコアセットはマージ対象自身の点を含まないため引き継がない。<br>
+     * 引数の学習モデルが保持するマップは更新せず、新たなマップを返す。
+     * 
+     * @param baseKmeans マージ元Kmeansクラスタリング
+     * @param targetKmeans マージ対象Kmeansクラスタリング
+     * @return 他パーティションのコアセット。いずれの学習モデルもコアセットを保持しない場合はnull
+     */
+    private static Map<String, KmeansCoreset> mergePeerCoresets(KmeansDataSet baseKmeans,
+            KmeansDataSet targetKmeans)
+    {
+        KmeansCoreset targetCoreset = targetKmeans.getCoreset();
+        if (baseKmeans.getPeerCoresets() == null && targetCoreset == null)
+        {
+            return null;
+        }
+
+        Map<String, KmeansCoreset> peerCoresets = new LinkedHashMap<>();
+        if (baseKmeans.getPeerCoresets() != null)
+        {
+            peerCoresets.putAll(baseKmeans.getPeerCoresets());
+        }
+
+        KmeansCoreset baseCoreset = baseKmeans.getCoreset();
+        if (targetCoreset != null
+                && (baseCoreset == null || targetCoreset.getCoresetId().equals(
+                        baseCoreset.getCoresetId()) == false))
+        {
+            peerCoresets.put(targetCoreset.getCoresetId(), targetCoreset);
+        }
+
+        return peerCoresets;
+    }
+
+    /**
+     * 重み付けに用いるクラスタの要素数を取得する。要素数を保持していない場合は1を返す。
+     * 
+     * @param clusteredNum 各クラスタに分類された要素数
+     * @param index クラスタのインデックス
+     * @return 重み付けに用いる要素数
+     */
+    private static long getClusteredNum(long[] clusteredNum, int index)
+    {
+        if (clusteredNum == null)
+        {
+            return 1L;
+        }
+
+        return clusteredNum[index];
+    }
+
+    /**
+     * 2つの中心点を要素数で重み付けした平均値を算出する。<br>
+     * 一方の中心点がnullの場合はもう一方の中心点のコピーを、要素数の合計が0の場合は単純平均を返す。
+     * 
+     * @param base ベース中心点
+     * @param baseCount ベース中心点の要素数
+     * @param target マージ対象中心点
+     * @param targetCount マージ対象中心点の要素数
+     * @return 重み付け平均値
+     */
+    protected static double[] weightedAverage(double[] base, long baseCount, double[] target,
+            long targetCount)
+    {
+        if (base == null && target == null)
+        {
+            return null;
+        }
+        if (base == null)
+        {
+            return Arrays.copyOf(target, target.length);
+        }
+        if (target == null)
+        {
+            return Arrays.copyOf(base, base.length);
+        }
+
+        long totalCount = baseCount + targetCount;
+        if (totalCount <= 0)
+        {
+            return average(base, target);
+        }
+
+        int dataNum = base.length;
+        double[] result = new double[dataNum];
+        for (int index = 0; index < dataNum; index++)
+        {
+            result[index] = (base[index] * baseCount + target[index] * targetCount) / totalCount;
+        }
+
+        return result;
+    }
+
+    /**
+     * 中心点の組み合わせのインデックスを距離の昇順に並べ替える。<br>
+     * 距離が同値の場合は組み合わせのインデックスの昇順とし、
+     * {@link #mergeKmeans(KmeansDataSet, KmeansDataSet)}の安定ソートと同一の順序とする。
+     * 
+     * @param pairOrder 並べ替え対象の組み合わせのインデックス
+     * @param distances 組み合わせ毎の距離
+     * @param left 並べ替え範囲の開始位置(この値を含む)
+     * @param right 並べ替え範囲の終了位置(この値を含む)
+     */
+    private static void sortPairs(int[] pairOrder, double[] distances, int left, int right)
+    {
+        while (left < right)
+        {
+            // 要素数が少ない範囲は挿入ソートで並べ替える
+            if (right - left < 16)
+            {
+                for (int current = left + 1; current <= right; current++)
+                {
+                    int value = pairOrder[current];
+                    int position = current - 1;
+                    while (position >= left
+                            && comparePairs(pairOrder[position], value, distances) > 0)
+                    {
+                        pairOrder[position + 1] = pairOrder[position];
+                        position--;
+                    }
+                    pairOrder[position + 1] = value;
+                }
+                return;
+            }
+
+            int pivot = pairOrder[(left + right) >>> 1];
+            int lower = left;
+            int upper = right;
+            while (lower <= upper)
+            {
+                while (comparePairs(pairOrder[lower], pivot, distances) < 0)
+                {
+                    lower++;
+                }
+                while (comparePairs(pairOrder[upper], pivot, distances) > 0)
+                {
+                    upper--;
+                }
+                if (lower <= upper)
+                {
+                    int temp = pairOrder[lower];
+                    pairOrder[lower] = pairOrder[upper];
+                    pairOrder[upper] = temp;
+                    lower++;
+                    upper--;
+                }
+            }
+
+            // 短い方の範囲を再帰で処理し、再帰の深さを抑える
+            if (upper - left < right - lower)
+            {
+                sortPairs(pairOrder, distances, left, upper);
+                left = lower;
+            }
+            else
+            {
+                sortPairs(pairOrder, distances, lower, right);
+                right = upper;
+            }
+        }
+    }
+
+    /**
+     * 中心点の組み合わせを距離、組み合わせのインデックスの順で比較する。
+     * 
+     * @param pair1 比較対象の組み合わせのインデックス
+     * @param pair2 比較対象の組み合わせのインデックス
+     * @param distances 組み合わせ毎の距離
+     * @return pair1が小さい場合は負の値、等しい場合は0、大きい場合は正の値
+     */
+    private static int comparePairs(int pair1, int pair2, double[] distances)
+    {
+        int result = Double.compare(distances[pair1], distances[pair2]);
+        if (result != 0)
+        {
+            return result;
+        }
+
+        return Integer.compare(pair1, pair2);
+    }
+
     /**
      * クラスタリングのCounts値のマージを行う。
      * 
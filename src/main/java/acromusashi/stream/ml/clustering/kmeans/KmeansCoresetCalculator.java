@@ -0,0 +1,529 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.clustering.kmeans;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import acromusashi.stream.ml.clustering.kmeans.entity.KmeansCoreset;
+import acromusashi.stream.ml.clustering.kmeans.entity.KmeansDataSet;
+import acromusashi.stream.ml.clustering.kmeans.entity.KmeansPoint;
+import acromusashi.stream.ml.common.util.PointMatrix;
+
+/**
+ * 重み付きコアセットを用いたストリーミングKMeansの計算処理を行うユーティリティクラス<br>
+ * 受信した点をmerge-and-reduce方式でコアセットに集約し、コアセットから学習モデルを生成する。<br>
+ * 1点あたりの計算量とコアセットのメモリ量は受信した点の累計数に依存しない。
+ *
+ * @author kimura
+ */
+public class KmeansCoresetCalculator
+{
+    /**
+     * インスタンス化を防止するためのコンストラクタ
+     */
+    private KmeansCoresetCalculator()
+    {}
+
+    /**
+     * 指定した点をコアセットに追加する。<br>
+     * バッファが満杯になった時点でバケットとして階層に格納し、同じ階層のバケットと統合して縮約する。
+     *
+     * @param coreset 追加先コアセット
+     * @param pointList 追加する点リスト
+     * @param random 縮約時の点の選出に用いる乱数生成器
+     */
+    public static void addPoints(KmeansCoreset coreset, List<KmeansPoint> pointList,
+            Random random)
+    {
+        for (KmeansPoint targetPoint : pointList)
+        {
+            int bufferCount = coreset.getBufferCount();
+            coreset.getBuffer().setRow(bufferCount, targetPoint.getDataPoint());
+            coreset.getBufferWeights()[bufferCount] = 1.0d;
+            bufferCount++;
+
+            if (bufferCount < coreset.getBucketSize())
+            {
+                coreset.setBufferCount(bufferCount);
+                continue;
+            }
+
+            // バッファが満杯になった場合、バッファの点を1つのバケットとして階層に格納する。
+            PointMatrix bucketPoints = copyRows(coreset.getBuffer(), bufferCount);
+            double[] bucketWeights = Arrays.copyOf(coreset.getBufferWeights(), bufferCount);
+            coreset.setBufferCount(0);
+            carryBucket(coreset, bucketPoints, bucketWeights, random);
+        }
+    }
+
+    /**
+     * コアセットが保持する全ての点の重みに減衰率を乗算する。<br>
+     * バッチ毎に実行することで、古い点ほど学習モデルへの影響が小さくなる。
+     *
+     * @param coreset 対象コアセット
+     * @param decayFactor 減衰率
+     */
+    public static void decay(KmeansCoreset coreset, double decayFactor)
+    {
+        multiply(coreset.getBufferWeights(), coreset.getBufferCount(), decayFactor);
+        for (double[] weights : coreset.getLevelWeights())
+        {
+            if (weights != null)
+            {
+                multiply(weights, weights.length, decayFactor);
+            }
+        }
+    }
+
+    /**
+     * コアセットが保持する点と重みを用いて学習モデルを生成する。<br>
+     * 重み付きKMeans++アルゴリズムで初期中心点を選出し、重み付きのLloydアルゴリズムで中心点を算出する。<br>
+     * 各クラスタに分類された要素数は、分類された点の重みの合計を四捨五入した値とする。
+     *
+     * @param coreset コアセット
+     * @param clusterNum 分類クラスタ数
+     * @param maxIteration 最大イテレーション回数
+     * @param convergenceThres 収束したと判断する閾値
+     * @param random 初期中心点の選出に用いる乱数生成器
+     * @return 生成された学習モデル。コアセットの点数がクラスタ数より少ない場合はnull
+     */
+    public static KmeansDataSet createDataModel(KmeansCoreset coreset, int clusterNum,
+            int maxIteration, double convergenceThres, Random random)
+    {
+        return createDataModel(coreset, null, clusterNum, maxIteration, convergenceThres, random);
+    }
+
+    /**
+     * 自パーティションのコアセットと、マージ時に取得した他パーティションのコアセットを合わせた点と重みを用いて学習モデルを生成する。<br>
+     * 他パーティションのコアセットはコアセットID毎に最新の1個のみを保持するため、同じ点の重みを重複して用いることはない。<br>
+     * 合わせた点数がコアセットの最大点数を超える場合、重み付きKMeans++アルゴリズムで最大点数に縮約してから学習する。<br>
+     * 生成した学習モデルには自パーティションのコアセットと他パーティションのコアセットを引き継ぐ。
+     *
+     * @param coreset 自パーティションのコアセット
+     * @param peerCoresets 他パーティションのコアセット。存在しない場合はnull
+     * @param clusterNum 分類クラスタ数
+     * @param maxIteration 最大イテレーション回数
+     * @param convergenceThres 収束したと判断する閾値
+     * @param random 初期中心点の選出に用いる乱数生成器
+     * @return 生成された学習モデル。点数がクラスタ数より少ない場合はnull
+     */
+    public static KmeansDataSet createDataModel(KmeansCoreset coreset,
+            Map<String, KmeansCoreset> peerCoresets, int clusterNum, int maxIteration,
+            double convergenceThres, Random random)
+    {
+        // 自パーティションと同一次元の他パーティションのコアセットを対象とする。
+        int dimension = coreset.getBuffer().getColumnNum();
+        List<KmeansCoreset> targetCoresets = new ArrayList<>();
+        targetCoresets.add(coreset);
+        if (peerCoresets != null)
+        {
+            for (KmeansCoreset peerCoreset : peerCoresets.values())
+            {
+                if (peerCoreset.getCoresetId().equals(coreset.getCoresetId()) == false
+                        && peerCoreset.getBuffer().getColumnNum() == dimension)
+                {
+                    targetCoresets.add(peerCoreset);
+                }
+            }
+        }
+
+        int pointNum = 0;
+        for (KmeansCoreset targetCoreset : targetCoresets)
+        {
+            pointNum += countPoints(targetCoreset);
+        }
+
+        if (pointNum < clusterNum)
+        {
+            return null;
+        }
+
+        // バッファと各階層のバケットの点を1つの点行列にまとめる。
+        PointMatrix pointMatrix = new PointMatrix(pointNum, dimension);
+        double[] weights = new double[pointNum];
+        int rowIndex = 0;
+        for (KmeansCoreset targetCoreset : targetCoresets)
+        {
+            rowIndex = appendCoreset(pointMatrix, weights, rowIndex, targetCoreset);
+        }
+
+        // 他パーティションのコアセットと合わせて最大点数を超えた場合、最大点数に縮約する。
+        int capacity = coreset.getCapacity();
+        if (pointNum > capacity && capacity >= clusterNum)
+        {
+            double[] reducedWeights = new double[capacity];
+            pointMatrix = reduce(pointMatrix, weights, capacity, random, reducedWeights);
+            weights = reducedWeights;
+            pointNum = capacity;
+        }
+
+        // 重み付きKMeans++アルゴリズムで初期中心点を選出する。
+        int[] nearestSeeds = new int[pointNum];
+        int[] seeds = selectSeeds(pointMatrix, weights, clusterNum, random, nearestSeeds);
+        PointMatrix centroidMatrix = copyRows(pointMatrix, seeds);
+
+        // 重み付きのLloydアルゴリズムで中心点を算出する。
+        double[] pointValues = pointMatrix.getValues();
+        double[] clusterWeights = new double[clusterNum];
+        for (int exeIndex = 0; exeIndex < maxIteration; exeIndex++)
+        {
+            PointMatrix newCentroidMatrix = new PointMatrix(clusterNum, dimension);
+            double[] centroidValues = newCentroidMatrix.getValues();
+            Arrays.fill(clusterWeights, 0.0d);
+
+            for (int pointIndex = 0; pointIndex < pointNum; pointIndex++)
+            {
+                int pointOffset = pointMatrix.getOffset(pointIndex);
+                int assigned = Math.max(centroidMatrix.nearestRow(pointValues, pointOffset), 0);
+                int centroidOffset = newCentroidMatrix.getOffset(assigned);
+                for (int coordinateIndex = 0; coordinateIndex < dimension; coordinateIndex++)
+                {
+                    centroidValues[centroidOffset + coordinateIndex] += weights[pointIndex]
+                            * pointValues[pointOffset + coordinateIndex];
+                }
+                clusterWeights[assigned] += weights[pointIndex];
+            }
+
+            for (int centroidIndex = 0; centroidIndex < clusterNum; centroidIndex++)
+            {
+                int centroidOffset = newCentroidMatrix.getOffset(centroidIndex);
+                if (clusterWeights[centroidIndex] <= 0.0d)
+                {
+                    System.arraycopy(centroidMatrix.getValues(), centroidOffset, centroidValues,
+                            centroidOffset, dimension);
+                    continue;
+                }
+
+                double clusterWeight = clusterWeights[centroidIndex];
+                for (int coordinateIndex = 0; coordinateIndex < dimension; coordinateIndex++)
+                {
+                    centroidValues[centroidOffset + coordinateIndex] /= clusterWeight;
+                }
+            }
+
+            boolean isConvergenced = KmeansCalculator.isConvergenced(centroidMatrix,
+                    newCentroidMatrix, convergenceThres);
+            centroidMatrix = newCentroidMatrix;
+
+            if (isConvergenced == true)
+            {
+                break;
+            }
+        }
+
+        long[] clusteredNum = new long[clusterNum];
+        for (int centroidIndex = 0; centroidIndex < clusterNum; centroidIndex++)
+        {
+            clusteredNum[centroidIndex] = Math.round(clusterWeights[centroidIndex]);
+        }
+
+        KmeansDataSet createdModel = new KmeansDataSet();
+        createdModel.setCentroids(centroidMatrix.toRows());
+        createdModel.setClusteredNum(clusteredNum);
+        createdModel.setCoreset(coreset);
+        createdModel.setPeerCoresets(peerCoresets);
+        return createdModel;
+    }
+
+    /**
+     * コアセットのバッファと各階層のバケットの点を点行列に追記する。
+     *
+     * @param destMatrix 追記先点行列
+     * @param destWeights 追記先の重み
+     * @param destIndex 追記先の開始行
+     * @param coreset 追記元コアセット
+     * @return 追記後の次の行インデックス
+     */
+    private static int appendCoreset(PointMatrix destMatrix, double[] destWeights,
+            int destIndex, KmeansCoreset coreset)
+    {
+        int rowIndex = appendRows(destMatrix, destWeights, destIndex, coreset.getBuffer(),
+                coreset.getBufferWeights(), coreset.getBufferCount());
+        for (int level = 0; level < coreset.getMaxLevel(); level++)
+        {
+            PointMatrix levelPoints = coreset.getLevelPoints()[level];
+            if (levelPoints != null)
+            {
+                rowIndex = appendRows(destMatrix, destWeights, rowIndex, levelPoints,
+                        coreset.getLevelWeights()[level], levelPoints.getRowNum());
+            }
+        }
+
+        return rowIndex;
+    }
+
+    /**
+     * コアセットが保持する点数を取得する。
+     *
+     * @param coreset コアセット
+     * @return 点数
+     */
+    public static int countPoints(KmeansCoreset coreset)
+    {
+        int pointNum = coreset.getBufferCount();
+        for (PointMatrix levelPoints : coreset.getLevelPoints())
+        {
+            if (levelPoints != null)
+            {
+                pointNum += levelPoints.getRowNum();
+            }
+        }
+
+        return pointNum;
+    }
+
+    /**
+     * バケットを階層に格納する。<br>
+     * 格納先の階層に既にバケットが存在する場合は統合して縮約し、1つ上の階層に繰り上げる。
+     * 最上位の階層では統合と縮約を行った結果をそのまま格納する。
+     *
+     * @param coreset 格納先コアセット
+     * @param bucketPoints バケットの点
+     * @param bucketWeights バケットの点の重み
+     * @param random 縮約時の点の選出に用いる乱数生成器
+     */
+    protected static void carryBucket(KmeansCoreset coreset, PointMatrix bucketPoints,
+            double[] bucketWeights, Random random)
+    {
+        PointMatrix[] levelPoints = coreset.getLevelPoints();
+        double[][] levelWeights = coreset.getLevelWeights();
+        PointMatrix carryPoints = bucketPoints;
+        double[] carryWeights = bucketWeights;
+
+        for (int level = 0; level < coreset.getMaxLevel(); level++)
+        {
+            if (levelPoints[level] == null)
+            {
+                levelPoints[level] = carryPoints;
+                levelWeights[level] = carryWeights;
+                return;
+            }
+
+            // 同じ階層のバケットと統合し、バケットサイズの点数に縮約する。
+            int mergedNum = levelPoints[level].getRowNum() + carryPoints.getRowNum();
+            PointMatrix mergedPoints = new PointMatrix(mergedNum, carryPoints.getColumnNum());
+            double[] mergedWeights = new double[mergedNum];
+            int rowIndex = appendRows(mergedPoints, mergedWeights, 0, levelPoints[level],
+                    levelWeights[level], levelPoints[level].getRowNum());
+            appendRows(mergedPoints, mergedWeights, rowIndex, carryPoints, carryWeights,
+                    carryPoints.getRowNum());
+
+            double[] reducedWeights = new double[coreset.getBucketSize()];
+            PointMatrix reducedPoints = reduce(mergedPoints, mergedWeights,
+                    coreset.getBucketSize(), random, reducedWeights);
+
+            // 最上位の階層の場合、繰り上げずにそのまま格納する。
+            if (level == coreset.getMaxLevel() - 1)
+            {
+                levelPoints[level] = reducedPoints;
+                levelWeights[level] = reducedWeights;
+                return;
+            }
+
+            levelPoints[level] = null;
+            levelWeights[level] = null;
+            carryPoints = reducedPoints;
+            carryWeights = reducedWeights;
+        }
+    }
+
+    /**
+     * 重み付きの点集合を指定した点数に縮約する。<br>
+     * 重み付きKMeans++アルゴリズムで代表点を選出し、各点の重みを最も近い代表点の重みに加算する。
+     *
+     * @param pointMatrix 点行列
+     * @param weights 点の重み
+     * @param reducedNum 縮約後の点数
+     * @param random 代表点の選出に用いる乱数生成器
+     * @param reducedWeights 縮約後の点の重みの格納先
+     * @return 縮約後の点行列
+     */
+    protected static PointMatrix reduce(PointMatrix pointMatrix, double[] weights,
+            int reducedNum, Random random, double[] reducedWeights)
+    {
+        int[] nearestSeeds = new int[pointMatrix.getRowNum()];
+        int[] seeds = selectSeeds(pointMatrix, weights, reducedNum, random, nearestSeeds);
+
+        Arrays.fill(reducedWeights, 0.0d);
+        for (int pointIndex = 0; pointIndex < nearestSeeds.length; pointIndex++)
+        {
+            reducedWeights[nearestSeeds[pointIndex]] += weights[pointIndex];
+        }
+
+        return copyRows(pointMatrix, seeds);
+    }
+
+    /**
+     * 重み付きKMeans++アルゴリズムで指定した数の点を選出する。<br>
+     * 各点の最近傍の選出点との距離の二乗は、点を選出する度に選出した点との比較のみで更新する。
+     *
+     * @param pointMatrix 点行列
+     * @param weights 点の重み
+     * @param seedNum 選出する点数
+     * @param random 乱数生成器
+     * @param nearestSeeds 各点の最近傍の選出点の番号の格納先
+     * @return 選出した点の行インデックス
+     */
+    protected static int[] selectSeeds(PointMatrix pointMatrix, double[] weights, int seedNum,
+            Random random, int[] nearestSeeds)
+    {
+        int pointNum = pointMatrix.getRowNum();
+        double[] pointValues = pointMatrix.getValues();
+        double[] minDistances = new double[pointNum];
+        Arrays.fill(minDistances, Double.MAX_VALUE);
+        boolean[] selected = new boolean[pointNum];
+        int[] seeds = new int[seedNum];
+
+        for (int seedIndex = 0; seedIndex < seedNum; seedIndex++)
+        {
+            // 1点目は重みに比例する確率、以降は「重み * 距離の二乗」に比例する確率で選出する。
+            double total = 0.0d;
+            for (int pointIndex = 0; pointIndex < pointNum; pointIndex++)
+            {
+                if (selected[pointIndex] == false)
+                {
+                    total += probability(weights, minDistances, seedIndex, pointIndex);
+                }
+            }
+
+            int seed = -1;
+            double threshold = random.nextDouble() * total;
+            double sum = 0.0d;
+            for (int pointIndex = 0; pointIndex < pointNum; pointIndex++)
+            {
+                if (selected[pointIndex] == true)
+                {
+                    continue;
+                }
+
+                // 確率の合計が0の場合、または浮動小数点の誤差で選出できなかった場合は最後の未選出の点を用いる。
+                seed = pointIndex;
+                sum += probability(weights, minDistances, seedIndex, pointIndex);
+                if (total > 0.0d && threshold < sum)
+                {
+                    break;
+                }
+            }
+
+            seeds[seedIndex] = seed;
+            selected[seed] = true;
+
+            int seedOffset = pointMatrix.getOffset(seed);
+            for (int pointIndex = 0; pointIndex < pointNum; pointIndex++)
+            {
+                double distance = pointMatrix.squaredDistance(pointIndex, pointValues, seedOffset);
+                if (distance < minDistances[pointIndex])
+                {
+                    minDistances[pointIndex] = distance;
+                    nearestSeeds[pointIndex] = seedIndex;
+                }
+            }
+        }
+
+        return seeds;
+    }
+
+    /**
+     * 点を選出する確率の重みを取得する。
+     *
+     * @param weights 点の重み
+     * @param minDistances 各点の最近傍の選出点との距離の二乗
+     * @param seedIndex 選出する点の番号
+     * @param pointIndex 点の行インデックス
+     * @return 選出する確率の重み
+     */
+    private static double probability(double[] weights, double[] minDistances, int seedIndex,
+            int pointIndex)
+    {
+        if (seedIndex == 0)
+        {
+            return weights[pointIndex];
+        }
+
+        return weights[pointIndex] * minDistances[pointIndex];
+    }
+
+    /**
+     * 点行列の指定した行を追記する。
+     *
+     * @param destMatrix 追記先点行列
+     * @param destWeights 追記先の重み
+     * @param destIndex 追記先の開始行
+     * @param srcMatrix 追記元点行列
+     * @param srcWeights 追記元の重み
+     * @param rowNum 追記する行数
+     * @return 追記後の次の行インデックス
+     */
+    private static int appendRows(PointMatrix destMatrix, double[] destWeights, int destIndex,
+            PointMatrix srcMatrix, double[] srcWeights, int rowNum)
+    {
+        System.arraycopy(srcMatrix.getValues(), 0, destMatrix.getValues(),
+                destMatrix.getOffset(destIndex), rowNum * srcMatrix.getColumnNum());
+        System.arraycopy(srcWeights, 0, destWeights, destIndex, rowNum);
+        return destIndex + rowNum;
+    }
+
+    /**
+     * 点行列の先頭から指定した行数を複製する。
+     *
+     * @param srcMatrix 複製元点行列
+     * @param rowNum 行数
+     * @return 複製した点行列
+     */
+    private static PointMatrix copyRows(PointMatrix srcMatrix, int rowNum)
+    {
+        PointMatrix result = new PointMatrix(rowNum, srcMatrix.getColumnNum());
+        System.arraycopy(srcMatrix.getValues(), 0, result.getValues(), 0,
+                rowNum * srcMatrix.getColumnNum());
+        return result;
+    }
+
+    /**
+     * 点行列の指定した行を複製する。
+     *
+     * @param srcMatrix 複製元点行列
+     * @param rowIndexes 複製する行インデックス
+     * @return 複製した点行列
+     */
+    private static PointMatrix copyRows(PointMatrix srcMatrix, int[] rowIndexes)
+    {
+        int dimension = srcMatrix.getColumnNum();
+        PointMatrix result = new PointMatrix(rowIndexes.length, dimension);
+        for (int index = 0; index < rowIndexes.length; index++)
+        {
+            System.arraycopy(srcMatrix.getValues(), srcMatrix.getOffset(rowIndexes[index]),
+                    result.getValues(), result.getOffset(index), dimension);
+        }
+
+        return result;
+    }
+
+    /**
+     * 配列の先頭から指定した要素数に係数を乗算する。
+     *
+     * @param values 対象配列
+     * @param length 要素数
+     * @param factor 係数
+     */
+    private static void multiply(double[] values, int length, double factor)
+    {
+        for (int index = 0; index < length; index++)
+        {
+            values[index] *= factor;
+        }
+    }
+}
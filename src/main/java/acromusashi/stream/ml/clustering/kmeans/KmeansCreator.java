@@ -14,7 +14,6 @@ package acromusashi.stream.ml.clustering.kmeans;
 
 import java.util.Map;
 
-import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,6 +22,7 @@ import storm.trident.operation.TridentCollector;
 import storm.trident.operation.TridentOperationContext;
 import storm.trident.tuple.TridentTuple;
 import acromusashi.stream.ml.clustering.kmeans.entity.KmeansPoint;
+import acromusashi.stream.ml.common.util.DelimitedDoubleParser;
 import backtype.storm.tuple.Values;
 
 /**
@@ -33,13 +33,16 @@ import backtype.storm.tuple.Values;
 public class KmeansCreator extends BaseFunction
 {
     /** serialVersionUID */
-    private static final long   serialVersionUID = 4620883521921594615L;
+    private static final long               serialVersionUID = 4620883521921594615L;
 
     /** logger */
-    private static final Logger logger           = LoggerFactory.getLogger(KmeansCreator.class);
+    private static final Logger             logger           = LoggerFactory.getLogger(KmeansCreator.class);
 
     /** 読みこんだデータを分割する文字列 */
-    private String              delimeter        = ",";
+    private String                          delimeter        = ",";
+
+    /** 読みこんだデータを数値に変換するパーサ */
+    private transient DelimitedDoubleParser parser;
 
     /**
      * パラメータを指定せずにインスタンスを生成する。
@@ -67,27 +70,23 @@ public class KmeansCreator extends BaseFunction
     @Override
     public void execute(TridentTuple tuple, TridentCollector collector)
     {
-        String receivedStr = tuple.getString(0);
-
-        String[] splitedStr = StringUtils.split(receivedStr, this.delimeter);
-        int dataNum = splitedStr.length;
-        double[] points = new double[splitedStr.length];
-
-        try
+        if (this.parser == null)
         {
-            for (int index = 0; index < dataNum; index++)
-            {
-                points[index] = Double.parseDouble(splitedStr[index].trim());
-            }
-
-            KmeansPoint result = new KmeansPoint();
-            result.setDataPoint(points);
-            collector.emit(new Values(result));
+            this.parser = new DelimitedDoubleParser(this.delimeter);
         }
-        catch (Exception ex)
+
+        String receivedStr = tuple.getString(0);
+        double[] points = this.parser.parseToArray(receivedStr);
+
+        if (points == null)
         {
-            logger.warn("Received data is invalid. skip this data. ReceivedData=" + receivedStr, ex);
+            logger.warn("Received data is invalid. skip this data. ReceivedData=" + receivedStr);
+            return;
         }
+
+        KmeansPoint result = new KmeansPoint();
+        result.setDataPoint(points);
+        collector.emit(new Values(result));
     }
 
     /**
@@ -104,5 +103,6 @@ public class KmeansCreator extends BaseFunction
     public void setDelimeter(String delimeter)
     {
         this.delimeter = delimeter;
+        this.parser = null;
     }
 }
@@ -27,6 +27,8 @@ import storm.trident.tuple.TridentTuple;
 import acromusashi.stream.ml.clustering.kmeans.entity.KmeansDataSet;
 import acromusashi.stream.ml.clustering.kmeans.entity.KmeansPoint;
 import acromusashi.stream.ml.clustering.kmeans.entity.KmeansResult;
+import acromusashi.stream.ml.common.state.MlBaseState;
+import acromusashi.stream.ml.common.util.PointMatrix;
 import backtype.storm.tuple.Values;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -50,6 +52,21 @@ public class KmeansQuery extends BaseQueryFunction<MapState<KmeansDataSet>, Stri
     /** Jacksonを用いた変換マッパーオブジェクト */
     protected transient ObjectMapper objectMapper;
 
+    /** 状態の保存TransactionIdが変化するまで取得した学習モデルを再利用するか */
+    private boolean                  cacheModel;
+
+    /** バッチ内の点を一括で判別し、中心点インデックスと距離のみの結果を返すか */
+    private boolean                  compactResult;
+
+    /** compactResultがtrueの場合に、結果に中心点を含めるか */
+    private boolean                  includeCentroid;
+
+    /** 再利用する学習モデル */
+    private transient KmeansDataSet  cachedDataSet;
+
+    /** 再利用する学習モデルを取得した時点の状態の保存TransactionId */
+    private transient Long           cachedTxId;
+
     /**
      * ベース名称を指定してインスタンスを生成する。
      * 
@@ -72,11 +89,17 @@ public class KmeansQuery extends BaseQueryFunction<MapState<KmeansDataSet>, Stri
         }
 
         // 学習データモデルを取得
-        List<KmeansDataSet> dataSets = state.multiGet(Arrays.asList(Arrays.asList((Object) this.baseStateName)));
-        KmeansDataSet dataSet = null;
-        if (dataSets != null && !dataSets.isEmpty())
+        KmeansDataSet dataSet = getDataSet(state);
+
+        if (this.compactResult == true)
         {
-            dataSet = dataSets.get(0);
+            List<KmeansPoint> pointList = new ArrayList<>(args.size());
+            for (TridentTuple targetTuple : args)
+            {
+                pointList.add((KmeansPoint) targetTuple.get(0));
+            }
+
+            return createCompactResults(dataSet, pointList);
         }
 
         List<String> resultStrList = new ArrayList<>();
@@ -118,6 +141,117 @@ public class KmeansQuery extends BaseQueryFunction<MapState<KmeansDataSet>, Stri
         return resultStrList;
     }
 
+    /**
+     * 学習モデルを取得する。<br>
+     * 学習モデルを再利用する設定の場合、状態の保存TransactionIdが前回取得時から変化しておらず、
+     * かつ他のパーティションとのマージを実行する時刻に達していなければ前回取得した学習モデルを返す。
+     * 
+     * @param state 状態
+     * @return 学習モデル。取得できなかった場合はnull
+     */
+    protected KmeansDataSet getDataSet(MapState<KmeansDataSet> state)
+    {
+        Long savedTxId = null;
+        if (this.cacheModel == true && state instanceof MlBaseState)
+        {
+            MlBaseState<?> baseState = (MlBaseState<?>) state;
+            if (this.cachedDataSet != null && baseState.isReusable(this.cachedTxId) == true)
+            {
+                return this.cachedDataSet;
+            }
+
+            savedTxId = baseState.getPreviousSaveTxId();
+        }
+
+        List<KmeansDataSet> dataSets = state.multiGet(Arrays.asList(Arrays.asList((Object) this.baseStateName)));
+        KmeansDataSet dataSet = null;
+        if (dataSets != null && !dataSets.isEmpty())
+        {
+            dataSet = dataSets.get(0);
+        }
+
+        // 状態が未保存でTransactionIdが確定しない場合は再利用しない。
+        if (savedTxId != null)
+        {
+            this.cachedTxId = savedTxId;
+            this.cachedDataSet = dataSet;
+        }
+
+        return dataSet;
+    }
+
+    /**
+     * バッチ内の点を一括で判別し、中心点インデックスと距離のみを保持する結果文字列を生成する。<br>
+     * 結果文字列は「{"centroidIndex":中心点インデックス,"distance":距離}」形式のJSONとし、
+     * 中心点を含める設定の場合は「"centroid":[座標,...]」を追加する。
+     * 
+     * @param dataSet 学習モデル
+     * @param pointList 判別対象の点リスト
+     * @return 結果文字列リスト。学習モデルが取得できなかった場合は空文字
+     */
+    protected List<String> createCompactResults(KmeansDataSet dataSet, List<KmeansPoint> pointList)
+    {
+        List<String> resultStrList = new ArrayList<>(pointList.size());
+
+        // 状態が取得できなかった場合は空文字を結果として設定する。
+        if (dataSet == null)
+        {
+            for (int index = 0; index < pointList.size(); index++)
+            {
+                resultStrList.add("");
+            }
+            return resultStrList;
+        }
+
+        PointMatrix pointMatrix = KmeansCalculator.toPointMatrix(pointList);
+        double[] distances = new double[pointList.size()];
+        int[] centroidIndexes = KmeansCalculator.classifyAll(pointMatrix, dataSet, distances);
+        double[][] centroids = dataSet.getCentroids();
+
+        StringBuilder builder = new StringBuilder();
+        for (int index = 0; index < centroidIndexes.length; index++)
+        {
+            builder.setLength(0);
+            builder.append("{\"centroidIndex\":").append(centroidIndexes[index]);
+            builder.append(",\"distance\":").append(distances[index]);
+            if (this.includeCentroid == true)
+            {
+                builder.append(",\"centroid\":");
+                appendArray(builder, centroids[centroidIndexes[index]]);
+            }
+            builder.append('}');
+            resultStrList.add(builder.toString());
+        }
+
+        return resultStrList;
+    }
+
+    /**
+     * 座標配列をJSON配列形式で追記する。
+     * 
+     * @param builder 追記先
+     * @param values 座標配列
+     */
+    private void appendArray(StringBuilder builder, double[] values)
+    {
+        if (values == null)
+        {
+            builder.append("null");
+            return;
+        }
+
+        builder.append('[');
+        for (int index = 0; index < values.length; index++)
+        {
+            if (index > 0)
+            {
+                builder.append(',');
+            }
+            builder.append(values[index]);
+        }
+        builder.append(']');
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -126,4 +260,28 @@ public class KmeansQuery extends BaseQueryFunction<MapState<KmeansDataSet>, Stri
     {
         collector.emit(new Values(result));
     }
+
+    /**
+     * @param cacheModel the cacheModel to set
+     */
+    public void setCacheModel(boolean cacheModel)
+    {
+        this.cacheModel = cacheModel;
+    }
+
+    /**
+     * @param compactResult the compactResult to set
+     */
+    public void setCompactResult(boolean compactResult)
+    {
+        this.compactResult = compactResult;
+    }
+
+    /**
+     * @param includeCentroid the includeCentroid to set
+     */
+    public void setIncludeCentroid(boolean includeCentroid)
+    {
+        this.includeCentroid = includeCentroid;
+    }
 }
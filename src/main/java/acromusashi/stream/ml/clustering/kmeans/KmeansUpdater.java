@@ -16,12 +16,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import storm.trident.operation.TridentCollector;
 import storm.trident.operation.TridentOperationContext;
 import storm.trident.state.BaseStateUpdater;
 import storm.trident.state.map.MapState;
 import storm.trident.tuple.TridentTuple;
+import acromusashi.stream.ml.clustering.kmeans.entity.KmeansCoreset;
 import acromusashi.stream.ml.clustering.kmeans.entity.KmeansDataSet;
 import acromusashi.stream.ml.clustering.kmeans.entity.KmeansPoint;
 import acromusashi.stream.ml.clustering.kmeans.entity.KmeansResult;
@@ -43,6 +46,9 @@ public class KmeansUpdater extends BaseStateUpdater<MapState<KmeansDataSet>>
     /** 「中心点が収束したと判断する差分閾値」デフォルト値 */
     private static final double           DEFAULT_CONVERGENCE_THRES = 0.1d;
 
+    /** 「ストリーミングKMeansのコアセットの最大階層数」デフォルト値 */
+    private static final int              DEFAULT_CORESET_MAX_LEVEL = 8;
+
     /** serialVersionUID */
     private static final long             serialVersionUID          = -8751225616008741403L;
 
@@ -64,6 +70,39 @@ public class KmeansUpdater extends BaseStateUpdater<MapState<KmeansDataSet>>
     /** 中心点が収束したと判断する差分閾値 */
     private double                        convergenceThreshold      = DEFAULT_CONVERGENCE_THRES;
 
+    /** 三角不等式を用いて距離算出を省略する学習を行うか */
+    private boolean                       accelerated;
+
+    /** 既存の学習モデルを起点にミニバッチ方式で学習モデルを更新するか */
+    private boolean                       miniBatch;
+
+    /** ミニバッチ方式の累計要素数の上限。0以下の場合は上限を設けない */
+    private long                          miniBatchMaxCount;
+
+    /** 初期中心点をKMeans||アルゴリズムで生成するか。falseの場合はKMeans++アルゴリズムで生成する */
+    private boolean                       scalableInit;
+
+    /** 初期中心点の生成に用いる乱数のシード。nullの場合はシードを固定しない */
+    private Long                          randomSeed;
+
+    /** 初期中心点の生成、コアセットの構築に用いる乱数生成器 */
+    private transient Random              random;
+
+    /** ストリーミングKMeansのコアセットのバケットサイズ。0以下の場合はストリーミングKMeansを用いない */
+    private int                           coresetBucketSize;
+
+    /** ストリーミングKMeansのコアセットの最大階層数 */
+    private int                           coresetMaxLevel           = DEFAULT_CORESET_MAX_LEVEL;
+
+    /** ストリーミングKMeansのコアセットの点の重みにバッチ毎に乗算する減衰率 */
+    private double                        coresetDecayFactor        = 1.0d;
+
+    /** 学習時の割当ステップを並列実行するスレッド数。1以下の場合は並列実行しない */
+    private int                           trainThreadNum;
+
+    /** 学習時の割当ステップを並列実行するスレッドプール */
+    private transient ForkJoinPool        trainPool;
+
     /**
      * パラメータを指定せずにインスタンスを生成する。
      */
@@ -86,6 +125,25 @@ public class KmeansUpdater extends BaseStateUpdater<MapState<KmeansDataSet>>
         {
             this.batchNotifier.initialize(conf, context);
         }
+
+        // 並列学習を行う場合、Updater毎にスレッドプールを生成する。
+        if (this.trainThreadNum > 1)
+        {
+            this.trainPool = new ForkJoinPool(this.trainThreadNum);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void cleanup()
+    {
+        if (this.trainPool != null)
+        {
+            this.trainPool.shutdown();
+            this.trainPool = null;
+        }
     }
 
     /**
@@ -112,8 +170,23 @@ public class KmeansUpdater extends BaseStateUpdater<MapState<KmeansDataSet>>
         }
 
         // 投入されたKMeans用点から学習モデルを生成する。
-        KmeansDataSet generatedDataSet = KmeansCalculator.createDataModel(receiveList,
-                this.clusterNum, this.maxIteration, this.convergenceThreshold);
+        // ストリーミングKMeansの場合、コアセットに点を追加し、コアセットから学習モデルを生成する。
+        // ミニバッチ方式の場合、学習モデルが既に存在すれば既存の中心点を起点に学習モデルを更新する。
+        KmeansDataSet generatedDataSet = null;
+        if (this.coresetBucketSize > 0)
+        {
+            generatedDataSet = updateCoreset(dataSet, receiveList);
+        }
+        else if (this.miniBatch && dataSet != null)
+        {
+            generatedDataSet = KmeansCalculator.updateDataModelByMiniBatch(dataSet, receiveList,
+                    this.miniBatchMaxCount);
+        }
+        else
+        {
+            generatedDataSet = createDataModel(receiveList);
+        }
+
         if (generatedDataSet != null)
         {
             dataSet = generatedDataSet;
@@ -145,6 +218,127 @@ public class KmeansUpdater extends BaseStateUpdater<MapState<KmeansDataSet>>
         }
     }
 
+    /**
+     * 投入されたKMeans用点から学習モデルを生成する。<br>
+     * スレッドプールが生成されている場合は並列学習を、それ以外で三角不等式を用いる設定の場合は高速化した学習を行う。
+     * 
+     * @param receiveList 投入されたKMeans用点リスト
+     * @return 生成された学習モデル。点が不足しており生成できなかった場合はnull
+     */
+    protected KmeansDataSet createDataModel(List<KmeansPoint> receiveList)
+    {
+        // クラスタ数よりもデータ数が少ない場合、結果はnullとして返す。
+        if (receiveList.size() < this.clusterNum)
+        {
+            return null;
+        }
+
+        List<KmeansPoint> initialCentroids = createInitialCentroids(receiveList);
+        KmeansDataSet generatedDataSet = null;
+
+        if (this.trainPool != null)
+        {
+            generatedDataSet = KmeansCalculator.trainInParallel(receiveList, initialCentroids,
+                    this.maxIteration, this.convergenceThreshold, this.trainPool,
+                    KmeansAssignTask.DEFAULT_SPLIT_THRESHOLD);
+        }
+        else if (this.accelerated)
+        {
+            generatedDataSet = KmeansCalculator.trainWithBounds(receiveList, initialCentroids,
+                    this.maxIteration, this.convergenceThreshold);
+        }
+        else
+        {
+            generatedDataSet = KmeansCalculator.trainByLloyd(receiveList, initialCentroids,
+                    this.maxIteration, this.convergenceThreshold);
+        }
+
+        return generatedDataSet;
+    }
+
+    /**
+     * 保存されたコアセットに投入されたKMeans用点を追加し、コアセットから学習モデルを生成する。<br>
+     * コアセットが保存されていない場合は新たに生成する。
+     * 保存された学習モデルはクエリと共有される可能性があるため、コアセットは複製してから更新する。<br>
+     * マージ時に取得した他パーティションのコアセットが存在する場合、自パーティションのコアセットと合わせて学習モデルを生成する。
+     * 
+     * @param dataSet 保存された学習モデル。存在しない場合はnull
+     * @param receiveList 投入されたKMeans用点リスト
+     * @return 生成された学習モデル。コアセットの点が不足しており生成できなかった場合はnull
+     */
+    protected KmeansDataSet updateCoreset(KmeansDataSet dataSet, List<KmeansPoint> receiveList)
+    {
+        if (receiveList.isEmpty())
+        {
+            return null;
+        }
+
+        KmeansCoreset coreset = null;
+        Map<String, KmeansCoreset> peerCoresets = null;
+        if (dataSet != null)
+        {
+            if (dataSet.getCoreset() != null)
+            {
+                coreset = dataSet.getCoreset().deepCopy();
+            }
+            peerCoresets = dataSet.getPeerCoresets();
+        }
+
+        if (coreset == null)
+        {
+            int dimension = receiveList.get(0).getDataPoint().length;
+            coreset = new KmeansCoreset(dimension, this.coresetBucketSize, this.coresetMaxLevel);
+        }
+
+        Random random = getRandom();
+        KmeansCoresetCalculator.decay(coreset, this.coresetDecayFactor);
+        KmeansCoresetCalculator.addPoints(coreset, receiveList, random);
+        return KmeansCoresetCalculator.createDataModel(coreset, peerCoresets, this.clusterNum,
+                this.maxIteration, this.convergenceThreshold, random);
+    }
+
+    /**
+     * 設定に応じてKMeans||アルゴリズム、またはKMeans++アルゴリズムで初期中心点を生成する。
+     * 
+     * @param receiveList 投入されたKMeans用点リスト
+     * @return 初期中心点リスト
+     */
+    protected List<KmeansPoint> createInitialCentroids(List<KmeansPoint> receiveList)
+    {
+        Random random = getRandom();
+
+        if (this.scalableInit)
+        {
+            return KmeansCalculator.createInitialCentroidsScalable(receiveList, this.clusterNum,
+                    random);
+        }
+
+        return KmeansCalculator.createInitialCentroids(receiveList, this.clusterNum, random);
+    }
+
+    /**
+     * 乱数生成器を取得する。初回呼び出し時に生成し、シードが設定されている場合はシードを固定する。<br>
+     * バッチ毎に同一の乱数列とならないよう、生成した乱数生成器を以降のバッチでも用いる。
+     * 
+     * @return 乱数生成器
+     */
+    protected Random getRandom()
+    {
+        if (this.random == null)
+        {
+            if (this.randomSeed != null)
+            {
+                this.random = new Random(this.randomSeed);
+            }
+            else
+            {
+                this.random = new Random();
+            }
+        }
+
+        return this.random;
+    }
+
     /**
      * @param dataNotifier the dataNotifier to set
      */
@@ -193,4 +387,76 @@ public class KmeansUpdater extends BaseStateUpdater<MapState<KmeansDataSet>>
         this.convergenceThreshold = convergenceThreshold;
     }
 
+    /**
+     * @param accelerated the accelerated to set
+     */
+    public void setAccelerated(boolean accelerated)
+    {
+        this.accelerated = accelerated;
+    }
+
+    /**
+     * @param miniBatch the miniBatch to set
+     */
+    public void setMiniBatch(boolean miniBatch)
+    {
+        this.miniBatch = miniBatch;
+    }
+
+    /**
+     * @param miniBatchMaxCount the miniBatchMaxCount to set
+     */
+    public void setMiniBatchMaxCount(long miniBatchMaxCount)
+    {
+        this.miniBatchMaxCount = miniBatchMaxCount;
+    }
+
+    /**
+     * @param scalableInit the scalableInit to set
+     */
+    public void setScalableInit(boolean scalableInit)
+    {
+        this.scalableInit = scalableInit;
+    }
+
+    /**
+     * @param randomSeed the randomSeed to set
+     */
+    public void setRandomSeed(Long randomSeed)
+    {
+        this.randomSeed = randomSeed;
+    }
+
+    /**
+     * @param coresetBucketSize the coresetBucketSize to set
+     */
+    public void setCoresetBucketSize(int coresetBucketSize)
+    {
+        this.coresetBucketSize = coresetBucketSize;
+    }
+
+    /**
+     * @param coresetMaxLevel the coresetMaxLevel to set
+     */
+    public void setCoresetMaxLevel(int coresetMaxLevel)
+    {
+        this.coresetMaxLevel = coresetMaxLevel;
+    }
+
+    /**
+     * @param coresetDecayFactor the coresetDecayFactor to set
+     */
+    public void setCoresetDecayFactor(double coresetDecayFactor)
+    {
+        this.coresetDecayFactor = coresetDecayFactor;
+    }
+
+    /**
+     * @param trainThreadNum the trainThreadNum to set
+     */
+    public void setTrainThreadNum(int trainThreadNum)
+    {
+        this.trainThreadNum = trainThreadNum;
+    }
+
 }
@@ -0,0 +1,264 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.clustering.kmeans.entity;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+
+import acromusashi.stream.ml.common.util.PointMatrix;
+
+/**
+ * ストリーミングKMeansで用いる重み付きコアセット<br>
+ * 受信した点をバッファに蓄積し、バッファが満杯になった時点で1つのバケットとして階層に格納する。<br>
+ * 同じ階層に既にバケットが存在する場合は2つのバケットを統合して「バケットサイズ」の点数に縮約し、1つ上の階層に繰り上げる(merge-and-reduce)。<br>
+ * 階層数には上限があり、最上位の階層では統合と縮約のみを行うため、保持する点数は「バケットサイズ * (最大階層数 + 1)」以下となる。<br>
+ * 他パーティションの学習モデルとのマージ時に同じコアセットを重複して用いないよう、生成時に一意なIDを付与する。
+ *
+ * @author kimura
+ */
+public class KmeansCoreset implements Serializable
+{
+    /** serialVersionUID */
+    private static final long serialVersionUID = 6074435203845195518L;
+
+    /** コアセットのID。コアセットを保持するパーティション毎に一意となる */
+    private String            coresetId;
+
+    /** バケットサイズ(1バケットが保持する点数) */
+    private int               bucketSize;
+
+    /** 最大階層数 */
+    private int               maxLevel;
+
+    /** 受信した点を蓄積するバッファ */
+    private PointMatrix       buffer;
+
+    /** バッファに蓄積した点の重み */
+    private double[]          bufferWeights;
+
+    /** バッファに蓄積した点数 */
+    private int               bufferCount;
+
+    /** 階層毎のバケットの点。バケットが存在しない階層はnull */
+    private PointMatrix[]     levelPoints;
+
+    /** 階層毎のバケットの点の重み。バケットが存在しない階層はnull */
+    private double[][]        levelWeights;
+
+    /**
+     * パラメータを指定せずにインスタンスを生成する。
+     */
+    public KmeansCoreset()
+    {}
+
+    /**
+     * 次元数、バケットサイズ、最大階層数を指定してインスタンスを生成する。
+     *
+     * @param dimension 次元数
+     * @param bucketSize バケットサイズ
+     * @param maxLevel 最大階層数
+     */
+    public KmeansCoreset(int dimension, int bucketSize, int maxLevel)
+    {
+        this.coresetId = UUID.randomUUID().toString();
+        this.bucketSize = bucketSize;
+        this.maxLevel = maxLevel;
+        this.buffer = new PointMatrix(bucketSize, dimension);
+        this.bufferWeights = new double[bucketSize];
+        this.levelPoints = new PointMatrix[maxLevel];
+        this.levelWeights = new double[maxLevel][];
+    }
+
+    /**
+     * 保持できる最大点数を取得する。
+     *
+     * @return 保持できる最大点数(「バケットサイズ * (最大階層数 + 1)」)
+     */
+    public int getCapacity()
+    {
+        return this.bucketSize * (this.maxLevel + 1);
+    }
+
+    /**
+     * 対象エンティティのDeepCopyを作成する。IDも引き継ぐ。
+     *
+     * @return 対象エンティティのDeepCopy
+     */
+    public KmeansCoreset deepCopy()
+    {
+        KmeansCoreset result = new KmeansCoreset();
+        result.setCoresetId(this.coresetId);
+        result.setBucketSize(this.bucketSize);
+        result.setMaxLevel(this.maxLevel);
+        result.setBuffer(this.buffer.deepCopy());
+        result.setBufferWeights(Arrays.copyOf(this.bufferWeights, this.bufferWeights.length));
+        result.setBufferCount(this.bufferCount);
+
+        PointMatrix[] copiedPoints = new PointMatrix[this.levelPoints.length];
+        double[][] copiedWeights = new double[this.levelWeights.length][];
+        for (int level = 0; level < this.levelPoints.length; level++)
+        {
+            if (this.levelPoints[level] != null)
+            {
+                copiedPoints[level] = this.levelPoints[level].deepCopy();
+                copiedWeights[level] = Arrays.copyOf(this.levelWeights[level],
+                        this.levelWeights[level].length);
+            }
+        }
+        result.setLevelPoints(copiedPoints);
+        result.setLevelWeights(copiedWeights);
+        return result;
+    }
+
+    /**
+     * @return the coresetId
+     */
+    public String getCoresetId()
+    {
+        return this.coresetId;
+    }
+
+    /**
+     * @param coresetId the coresetId to set
+     */
+    public void setCoresetId(String coresetId)
+    {
+        this.coresetId = coresetId;
+    }
+
+    /**
+     * @return the bucketSize
+     */
+    public int getBucketSize()
+    {
+        return this.bucketSize;
+    }
+
+    /**
+     * @param bucketSize the bucketSize to set
+     */
+    public void setBucketSize(int bucketSize)
+    {
+        this.bucketSize = bucketSize;
+    }
+
+    /**
+     * @return the maxLevel
+     */
+    public int getMaxLevel()
+    {
+        return this.maxLevel;
+    }
+
+    /**
+     * @param maxLevel the maxLevel to set
+     */
+    public void setMaxLevel(int maxLevel)
+    {
+        this.maxLevel = maxLevel;
+    }
+
+    /**
+     * @return the buffer
+     */
+    public PointMatrix getBuffer()
+    {
+        return this.buffer;
+    }
+
+    /**
+     * @param buffer the buffer to set
+     */
+    public void setBuffer(PointMatrix buffer)
+    {
+        this.buffer = buffer;
+    }
+
+    /**
+     * @return the bufferWeights
+     */
+    public double[] getBufferWeights()
+    {
+        return this.bufferWeights;
+    }
+
+    /**
+     * @param bufferWeights the bufferWeights to set
+     */
+    public void setBufferWeights(double[] bufferWeights)
+    {
+        this.bufferWeights = bufferWeights;
+    }
+
+    /**
+     * @return the bufferCount
+     */
+    public int getBufferCount()
+    {
+        return this.bufferCount;
+    }
+
+    /**
+     * @param bufferCount the bufferCount to set
+     */
+    public void setBufferCount(int bufferCount)
+    {
+        this.bufferCount = bufferCount;
+    }
+
+    /**
+     * @return the levelPoints
+     */
+    public PointMatrix[] getLevelPoints()
+    {
+        return this.levelPoints;
+    }
+
+    /**
+     * @param levelPoints the levelPoints to set
+     */
+    public void setLevelPoints(PointMatrix[] levelPoints)
+    {
+        this.levelPoints = levelPoints;
+    }
+
+    /**
+     * @return the levelWeights
+     */
+    public double[][] getLevelWeights()
+    {
+        return this.levelWeights;
+    }
+
+    /**
+     * @param levelWeights the levelWeights to set
+     */
+    public void setLevelWeights(double[][] levelWeights)
+    {
+        this.levelWeights = levelWeights;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        String result = ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
+        return result;
+    }
+}
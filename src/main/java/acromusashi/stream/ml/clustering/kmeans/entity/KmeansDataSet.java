@@ -13,10 +13,14 @@
 package acromusashi.stream.ml.clustering.kmeans.entity;
 
 import java.io.Serializable;
+import java.util.Map;
 
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 
+import acromusashi.stream.ml.common.util.PointKdTree;
+import acromusashi.stream.ml.common.util.PointMatrix;
+
 /**
  * KMeansクラスタリングの学習モデルを保持するエンティティクラス
  * 
@@ -25,13 +29,25 @@ import org.apache.commons.lang.builder.ToStringStyle;
 public class KmeansDataSet implements Serializable
 {
     /** シリアル */
-    private static final long serialVersionUID = 338231277453149972L;
+    private static final long          serialVersionUID = 338231277453149972L;
 
     /** 各クラスタの中心座標の行列を格納した配列 */
-    private double[][]        centroids;
+    private double[][]                 centroids;
 
     /** 各クラスタに分類された要素数 */
-    private long[]            clusteredNum;
+    private long[]                     clusteredNum;
+
+    /** ストリーミングKMeansで用いる重み付きコアセット。ストリーミングKMeansを用いない場合はnull */
+    private KmeansCoreset              coreset;
+
+    /** マージ時に取得した他パーティションのコアセット(コアセットID>コアセット)。マージしていない場合はnull */
+    private Map<String, KmeansCoreset> peerCoresets;
+
+    /** 中心座標を行優先で連続して保持した行列。初回参照時に生成する。 */
+    private transient PointMatrix      centroidMatrix;
+
+    /** 中心座標の最近傍探索用KD木。初回参照時に生成する。 */
+    private transient PointKdTree      centroidTree;
 
     /**
      * パラメータを指定せずにインスタンスを生成する。
@@ -53,6 +69,40 @@ public class KmeansDataSet implements Serializable
     public void setCentroids(double[][] centroids)
     {
         this.centroids = centroids;
+        this.centroidMatrix = null;
+        this.centroidTree = null;
+    }
+
+    /**
+     * 中心座標を行優先で連続して保持した行列を取得する。<br>
+     * 初回参照時に中心座標の配列から生成し、以後は中心座標が再設定されるまで同じ行列を返す。
+     * 
+     * @return 中心座標の行列
+     */
+    public PointMatrix getCentroidMatrix()
+    {
+        if (this.centroidMatrix == null && this.centroids != null)
+        {
+            this.centroidMatrix = PointMatrix.fromRows(this.centroids);
+        }
+
+        return this.centroidMatrix;
+    }
+
+    /**
+     * 中心座標の最近傍探索用KD木を取得する。<br>
+     * 初回参照時に中心座標の行列から生成し、以後は中心座標が再設定されるまで同じKD木を返す。
+     * 
+     * @return 中心座標の最近傍探索用KD木
+     */
+    public PointKdTree getCentroidTree()
+    {
+        if (this.centroidTree == null && this.centroids != null)
+        {
+            this.centroidTree = new PointKdTree(getCentroidMatrix());
+        }
+
+        return this.centroidTree;
     }
 
     /**
@@ -71,6 +121,38 @@ public class KmeansDataSet implements Serializable
         this.clusteredNum = clusteredNum;
     }
 
+    /**
+     * @return the coreset
+     */
+    public KmeansCoreset getCoreset()
+    {
+        return this.coreset;
+    }
+
+    /**
+     * @param coreset the coreset to set
+     */
+    public void setCoreset(KmeansCoreset coreset)
+    {
+        this.coreset = coreset;
+    }
+
+    /**
+     * @return the peerCoresets
+     */
+    public Map<String, KmeansCoreset> getPeerCoresets()
+    {
+        return this.peerCoresets;
+    }
+
+    /**
+     * @param peerCoresets the peerCoresets to set
+     */
+    public void setPeerCoresets(Map<String, KmeansCoreset> peerCoresets)
+    {
+        this.peerCoresets = peerCoresets;
+    }
+
     /**
      * {@inheritDoc}
      */
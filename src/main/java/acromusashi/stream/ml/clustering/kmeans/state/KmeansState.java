@@ -52,7 +52,8 @@ public abstract class KmeansState extends MlBaseState<KmeansDataSet>
     protected KmeansDataSet mergeState(KmeansDataSet baseDataModel, KmeansDataSet targetDataModel,
             Map<String, Object> mergeConfig)
     {
-        KmeansDataSet mergedDataModel = KmeansCalculator.mergeKmeans(baseDataModel, targetDataModel);
+        KmeansDataSet mergedDataModel = KmeansCalculator.mergeKmeansWeighted(baseDataModel,
+                targetDataModel);
         return mergedDataModel;
     }
 }
@@ -15,6 +15,8 @@ package acromusashi.stream.ml.common.state;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -48,6 +50,9 @@ public abstract class MlBaseState<T> implements MapState<T>
     /** 状態マージインターバルのデフォルト値(秒) */
     public static final int       DEFAULT_MERGE_INTERVAL = 30;
 
+    /** 前回状態を保存したトランザクションIDを保持するベースキー数の上限のデフォルト値 */
+    public static final int       DEFAULT_MAX_KEY_NUM    = 10000;
+
     /** logger */
     private static final Logger   logger                 = LoggerFactory.getLogger(MlBaseState.class);
 
@@ -69,6 +74,12 @@ public abstract class MlBaseState<T> implements MapState<T>
     /** 前回状態を保存したトランザクションID */
     protected Long                previousSaveTxId;
 
+    /** ベースキー>当該キーの状態を前回保存したトランザクションIDのマッピング。保存した順に保持する */
+    protected Map<String, Long>   previousSaveTxIds      = new LinkedHashMap<>();
+
+    /** 前回状態を保存したトランザクションIDを保持するベースキー数の上限 */
+    protected int                 maxKeyNum              = DEFAULT_MAX_KEY_NUM;
+
     /** 前回のマージ実行時刻 */
     protected long                previousMergeTime      = 0;
 
@@ -108,20 +119,70 @@ public abstract class MlBaseState<T> implements MapState<T>
     protected abstract void onInitialize();
 
     /**
-     * {@inheritDoc}
+     * {@inheritDoc}<br>
+     * 指定されたキー毎に状態を取得し、キーと同じ順序のリストで返す。状態が存在しないキーに対応する要素はnullとなる。<br>
+     * 但し、キーが1個のみ指定され、状態が存在しない場合は空リストを返す。
      */
     @Override
     public List<T> multiGet(List<List<Object>> keys)
     {
-        // keysにはStateBaseNameの名称のみが指定される。そのため、1要素目を用いればいい。
-        String baseKey = (String) keys.get(0).get(0);
+        // マージの実行判定は全キーで共通とし、全キーの状態を取得した後にマージ時刻を更新する。
+        boolean executeMerge = isExecuteMerge();
+
+        List<T> dataModels = new ArrayList<>(keys.size());
+        boolean exists = false;
+        for (List<Object> key : keys)
+        {
+            T dataModel = getMergedState((String) key.get(0), executeMerge);
+            if (dataModel != null)
+            {
+                exists = true;
+            }
+            dataModels.add(dataModel);
+        }
+
+        if (exists == true && executeMerge == true)
+        {
+            this.previousMergeTime = getCurrentTime();
+        }
+
+        // 取得できなかった場合は空リストを返す
+        if (keys.size() == 1 && exists == false)
+        {
+            return new ArrayList<>();
+        }
+
+        return dataModels;
+    }
 
+    /**
+     * 指定されたベースキーの前回実行結果を取得し、マージを実行する場合は他のパーティションの結果とマージする。
+     * 
+     * @param baseKey ベースキー値
+     * @param executeMerge 他のパーティションとのマージを実行するか
+     * @return 前回実行結果。存在しない場合はnull
+     */
+    protected T getMergedState(String baseKey, boolean executeMerge)
+    {
         // 前回のクラスタ実行結果を取得する。存在しない場合は空値として扱う。
-        List<T> dataModels = new ArrayList<>();
         T dataModel = null;
 
-        Long previousTxId = null;
-        if (this.previousSaveTxId == null)
+        Long previousTxId = this.previousSaveTxIds.get(baseKey);
+        if (previousTxId == null)
+        {
+            // 保持上限を超過して破棄したベースキーの場合は、データストアに保存した最終保存トランザクションIDを用いる。
+            try
+            {
+                previousTxId = getSavedTxId(baseKey, this.partitionIndex);
+            }
+            catch (IOException ex)
+            {
+                logger.warn("SavedTxId get failed. BaseKey=" + baseKey + " ,partitionIndex="
+                        + this.partitionIndex, ex);
+            }
+        }
+
+        if (previousTxId == null && this.previousSaveTxId == null)
         {
             // クエリによってtxIdが存在しない状態で本メソッドが呼ばれる可能性があるため、nullの場合は補正を行う。
             if (this.txId == null)
@@ -133,7 +194,7 @@ public abstract class MlBaseState<T> implements MapState<T>
                 previousTxId = this.txId - 1;
             }
         }
-        else
+        else if (previousTxId == null)
         {
             previousTxId = this.previousSaveTxId;
         }
@@ -148,14 +209,14 @@ public abstract class MlBaseState<T> implements MapState<T>
                     + " ,partitionIndex=" + this.partitionIndex, ex);
         }
 
-        // 取得できなかった場合は空リストを返す
+        // 取得できなかった場合はnullを返す
         if (dataModel == null)
         {
-            return dataModels;
+            return null;
         }
 
         // 前回実行結果が存在し、前回の状態マージから一定時刻が経過していた場合、他のパーティションとのマージ処理を実行
-        if (isExecuteMerge() == true)
+        if (executeMerge == true)
         {
             for (int nowIndex = 0; nowIndex < this.numPartitions; nowIndex++)
             {
@@ -168,7 +229,7 @@ public abstract class MlBaseState<T> implements MapState<T>
                 T otherDataSet = null;
                 try
                 {
-                    otherDataSet = getState(baseKey, this.previousSaveTxId, nowIndex, false);
+                    otherDataSet = getState(baseKey, previousTxId, nowIndex, false);
                 }
                 catch (IOException ex)
                 {
@@ -189,12 +250,9 @@ public abstract class MlBaseState<T> implements MapState<T>
                     }
                 }
             }
-
-            this.previousMergeTime = getCurrentTime();
         }
 
-        dataModels.add(dataModel);
-        return dataModels;
+        return dataModel;
     }
 
     /**
@@ -227,6 +285,21 @@ public abstract class MlBaseState<T> implements MapState<T>
     protected abstract T getState(String baseKey, Long txId, int partitionIndex,
             boolean isSelfPartition) throws IOException;
 
+    /**
+     * データストアに保存した、指定したベースキーの状態を最後に保存したトランザクションIDを取得する。<br>
+     * 前回状態を保存したトランザクションIDを保持していないベースキーの状態を取得する際に用いる。
+     * デフォルトではデータストアに保存しないため、nullを返す。
+     * 
+     * @param baseKey ベースキー値
+     * @param partitionIndex StateIndex
+     * @return 最後に保存したトランザクションID。存在しない場合はnull
+     * @throws IOException 取得に失敗した場合
+     */
+    protected Long getSavedTxId(String baseKey, int partitionIndex) throws IOException
+    {
+        return null;
+    }
+
     /**
      * データモデルのマージを行う。<br>
      * ベースにしたデータモデルに指定したデータモデルをマージする。
@@ -281,24 +354,38 @@ public abstract class MlBaseState<T> implements MapState<T>
     }
 
     /**
-     * {@inheritDoc}
+     * {@inheritDoc}<br>
+     * 指定されたキー毎に状態を投入し、キー毎の前回状態を保存したトランザクションIDを更新する。<br>
+     * トランザクションIDを保持するベースキー数が上限を超過した場合は、保存が古いベースキーから破棄する。
+     * 破棄したベースキーの次回取得時は、{@link #getSavedTxId(String, int)}で取得したトランザクションIDを用いる。
      */
     @Override
     public void multiPut(List<List<Object>> keys, List<T> results)
     {
-        // keysにはStateBaseNameの名称のみが指定される。そのため、1要素目を用いればいい。
-        String baseKey = (String) keys.get(0).get(0);
-        T putDataSet = results.get(0);
-
-        try
+        for (int index = 0; index < keys.size(); index++)
         {
-            putState(baseKey, this.txId, this.partitionIndex, putDataSet);
-            this.previousSaveTxId = this.txId;
+            String baseKey = (String) keys.get(index).get(0);
+            T putDataSet = results.get(index);
+
+            try
+            {
+                putState(baseKey, this.txId, this.partitionIndex, putDataSet);
+                this.previousSaveTxId = this.txId;
+                this.previousSaveTxIds.remove(baseKey);
+                this.previousSaveTxIds.put(baseKey, this.txId);
+            }
+            catch (IOException ex)
+            {
+                logger.warn("State put failed. BaseKey=" + baseKey + " ,txId=" + this.txId
+                        + " ,partitionIndex=" + this.partitionIndex, ex);
+            }
         }
-        catch (IOException ex)
+
+        Iterator<String> keyIterator = this.previousSaveTxIds.keySet().iterator();
+        while (this.previousSaveTxIds.size() > this.maxKeyNum)
         {
-            logger.warn("State put failed. BaseKey=" + baseKey + " ,txId=" + this.txId
-                    + " ,partitionIndex=" + this.partitionIndex, ex);
+            keyIterator.next();
+            keyIterator.remove();
         }
     }
 
@@ -312,6 +399,35 @@ public abstract class MlBaseState<T> implements MapState<T>
         return System.currentTimeMillis();
     }
 
+    /**
+     * 前回状態を保存したトランザクションIDを取得する。<br>
+     * 状態が保存されるまでは変化しないため、取得した学習モデルを再利用できるかの判定に用いることができる。
+     * 
+     * @return 前回状態を保存したトランザクションID。状態を保存していない場合はnull
+     */
+    public Long getPreviousSaveTxId()
+    {
+        return this.previousSaveTxId;
+    }
+
+    /**
+     * 指定したトランザクションIDの時点で取得した状態を再利用できるかを判定する。<br>
+     * 前回状態を保存したトランザクションIDが指定値から変化しておらず、かつ他のパーティションとのマージを実行する時刻に達していない場合に再利用できると判定する。<br>
+     * マージを実行する時刻に達している場合、{@link #multiGet(List)}を呼び出すことでマージ後の状態を取得できる。
+     * 
+     * @param savedTxId 状態を取得した時点の前回状態を保存したトランザクションID
+     * @return 再利用できる場合true、再取得が必要な場合false
+     */
+    public boolean isReusable(Long savedTxId)
+    {
+        if (savedTxId == null || savedTxId.equals(this.previousSaveTxId) == false)
+        {
+            return false;
+        }
+
+        return isExecuteMerge() == false;
+    }
+
     /**
      * @param mergeInterval the mergeInterval to set
      */
@@ -320,6 +436,14 @@ public abstract class MlBaseState<T> implements MapState<T>
         this.mergeInterval = mergeInterval;
     }
 
+    /**
+     * @param maxKeyNum the maxKeyNum to set
+     */
+    public void setMaxKeyNum(int maxKeyNum)
+    {
+        this.maxKeyNum = maxKeyNum;
+    }
+
     /**
      * @param mergeConfig the mergeConfig to set
      */
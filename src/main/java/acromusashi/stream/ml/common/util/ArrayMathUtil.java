@@ -43,6 +43,43 @@ public class ArrayMathUtil
         return result;
     }
 
+    /**
+     * 2点間のユークリッド距離の二乗を算出する。<br>
+     * 距離の大小比較のみを行う場合は平方根の算出が不要なため、本メソッドを用いる。
+     * 
+     * @param array1 配列1
+     * @param array2 配列2
+     * @return ユークリッド距離の二乗
+     */
+    public static double squaredDistance(double[] array1, double[] array2)
+    {
+        return squaredDistance(array1, 0, array2, 0, array1.length);
+    }
+
+    /**
+     * 配列中の指定位置から始まる2点間のユークリッド距離の二乗を算出する。<br>
+     * 行優先で複数の点を格納した配列に対して、点毎の配列を生成せずに距離を算出するために用いる。
+     * 
+     * @param array1 配列1
+     * @param offset1 配列1中の点の先頭要素のインデックス
+     * @param array2 配列2
+     * @param offset2 配列2中の点の先頭要素のインデックス
+     * @param length 次元数
+     * @return ユークリッド距離の二乗
+     */
+    public static double squaredDistance(double[] array1, int offset1, double[] array2,
+            int offset2, int length)
+    {
+        double sum = 0.0d;
+        for (int i = 0; i < length; i++)
+        {
+            double diff = array1[offset1 + i] - array2[offset2 + i];
+            sum = sum + diff * diff;
+        }
+
+        return sum;
+    }
+
     /**
      * 配列の各要素の加算を行う。
      * 
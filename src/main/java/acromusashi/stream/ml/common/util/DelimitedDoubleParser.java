@@ -0,0 +1,341 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.common.util;
+
+import java.util.Arrays;
+
+/**
+ * 区切り文字で区切られた数値の文字列を、部分文字列を生成せずにdouble配列に変換するパーサ<br>
+ * 区切り文字と数値の解釈は「StringUtils.split」で分割した各要素を「trim」し、「Double.parseDouble」で変換した場合と同一となる。
+ * <ul>
+ * <li>区切り文字列に含まれる各文字を区切り文字として扱う。区切り文字列がnullの場合は空白文字を区切り文字とする。</li>
+ * <li>連続した区切り文字、先頭と末尾の区切り文字は無視する。</li>
+ * <li>有効桁数が15桁以下、かつ10の指数の絶対値が22以下の10進数は文字列を生成せずに変換する。
+ * この範囲では仮数と10の累乗がいずれもdoubleで正確に表現できるため、1回の乗除算で「Double.parseDouble」と同じ値となる。</li>
+ * <li>上記以外の形式(桁数の多い数値、16進数表記、NaN等)は該当要素のみ「Double.parseDouble」で変換する。</li>
+ * </ul>
+ * 変換結果は内部のバッファに格納し、以後の変換で再利用する。そのため、本クラスはスレッドセーフではない。
+ *
+ * @author kimura
+ */
+public class DelimitedDoubleParser
+{
+    /** 文字列を生成せずに変換する有効桁数の上限 */
+    private static final int      MAX_FAST_DIGITS   = 15;
+
+    /** 文字列を生成せずに変換する10の指数の絶対値の上限 */
+    private static final int      MAX_FAST_EXPONENT = 22;
+
+    /** 解析を打ち切る指数部の絶対値 */
+    private static final int      MAX_EXPONENT      = 1000;
+
+    /** 初期バッファサイズ */
+    private static final int      INITIAL_CAPACITY  = 16;
+
+    /** 10の累乗(0乗から22乗まで) */
+    private static final double[] POWERS_OF_TEN     = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7,
+            1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21,
+            1e22                                    };
+
+    /** 区切り文字列。nullの場合は空白文字を区切り文字とする */
+    private String                delimiter;
+
+    /** 区切り文字が1文字の場合の区切り文字 */
+    private char                  delimiterChar;
+
+    /** 区切り文字が1文字か */
+    private boolean               singleDelimiter;
+
+    /** 変換結果を格納するバッファ */
+    private double[]              values            = new double[INITIAL_CAPACITY];
+
+    /**
+     * 区切り文字列を指定してインスタンスを生成する。
+     *
+     * @param delimiter 区切り文字列。文字列に含まれる各文字を区切り文字として扱う。nullの場合は空白文字を区切り文字とする
+     */
+    public DelimitedDoubleParser(String delimiter)
+    {
+        this.delimiter = delimiter;
+        if (delimiter != null && delimiter.length() == 1)
+        {
+            this.singleDelimiter = true;
+            this.delimiterChar = delimiter.charAt(0);
+        }
+    }
+
+    /**
+     * 文字列を変換し、変換結果を内部のバッファに格納する。<br>
+     * 変換結果は{@link #getValues()}で取得できる。次回の変換で上書きされるため、保持する場合はコピーすること。
+     *
+     * @param line 変換対象文字列
+     * @return 変換した数値の数。変換できない要素が含まれる場合、または文字列がnullの場合は-1
+     */
+    public int parse(CharSequence line)
+    {
+        if (line == null)
+        {
+            return -1;
+        }
+
+        int length = line.length();
+        int valueNum = 0;
+        int position = 0;
+
+        while (position < length)
+        {
+            // 区切り文字を読み飛ばし、要素の範囲を特定する。
+            while (position < length && isDelimiter(line.charAt(position)))
+            {
+                position++;
+            }
+            if (position >= length)
+            {
+                break;
+            }
+
+            int start = position;
+            while (position < length && isDelimiter(line.charAt(position)) == false)
+            {
+                position++;
+            }
+            int end = position;
+
+            // 「String#trim」と同様に前後の制御文字、空白を除外する。
+            while (start < end && line.charAt(start) <= ' ')
+            {
+                start++;
+            }
+            while (start < end && line.charAt(end - 1) <= ' ')
+            {
+                end--;
+            }
+            if (start == end)
+            {
+                return -1;
+            }
+
+            if (valueNum == this.values.length)
+            {
+                this.values = Arrays.copyOf(this.values, this.values.length * 2);
+            }
+
+            if (parseFast(line, start, end, valueNum) == false)
+            {
+                try
+                {
+                    String token = line.subSequence(start, end).toString();
+                    this.values[valueNum] = Double.parseDouble(token);
+                }
+                catch (NumberFormatException ex)
+                {
+                    return -1;
+                }
+            }
+
+            valueNum++;
+        }
+
+        return valueNum;
+    }
+
+    /**
+     * 文字列を変換し、変換結果を新たな配列で返す。
+     *
+     * @param line 変換対象文字列
+     * @return 変換結果。変換できない要素が含まれる場合、または文字列がnullの場合はnull
+     */
+    public double[] parseToArray(CharSequence line)
+    {
+        int valueNum = parse(line);
+        if (valueNum < 0)
+        {
+            return null;
+        }
+
+        return Arrays.copyOf(this.values, valueNum);
+    }
+
+    /**
+     * 直前の変換結果を格納したバッファを取得する。
+     *
+     * @return 変換結果を格納したバッファ。有効な要素数は{@link #parse(CharSequence)}の戻り値
+     */
+    public double[] getValues()
+    {
+        return this.values;
+    }
+
+    /**
+     * 指定した文字が区切り文字かを判定する。
+     *
+     * @param target 判定対象文字
+     * @return 区切り文字の場合true
+     */
+    private boolean isDelimiter(char target)
+    {
+        if (this.singleDelimiter == true)
+        {
+            return target == this.delimiterChar;
+        }
+
+        if (this.delimiter == null)
+        {
+            return Character.isWhitespace(target);
+        }
+
+        return this.delimiter.indexOf(target) >= 0;
+    }
+
+    /**
+     * 10進数表記の要素を文字列を生成せずに変換する。
+     *
+     * @param line 変換対象文字列
+     * @param start 要素の開始位置(この値を含む)
+     * @param end 要素の終了位置(この値を含まない)
+     * @param valueIndex 変換結果の格納先インデックス
+     * @return 変換できた場合true、文字列を生成して変換する必要がある場合false
+     */
+    private boolean parseFast(CharSequence line, int start, int end, int valueIndex)
+    {
+        int position = start;
+        boolean negative = false;
+        char current = line.charAt(position);
+        if (current == '-' || current == '+')
+        {
+            negative = current == '-';
+            position++;
+        }
+
+        long mantissa = 0L;
+        int digitNum = 0;
+        int exponent = 0;
+        boolean hasDigit = false;
+
+        // 整数部
+        while (position < end && isDigit(line.charAt(position)))
+        {
+            int digit = line.charAt(position) - '0';
+            hasDigit = true;
+            if (mantissa != 0L || digit != 0)
+            {
+                mantissa = mantissa * 10 + digit;
+                digitNum++;
+            }
+            position++;
+        }
+
+        // 小数部
+        if (position < end && line.charAt(position) == '.')
+        {
+            position++;
+            while (position < end && isDigit(line.charAt(position)))
+            {
+                int digit = line.charAt(position) - '0';
+                hasDigit = true;
+                exponent--;
+                if (mantissa != 0L || digit != 0)
+                {
+                    mantissa = mantissa * 10 + digit;
+                    digitNum++;
+                }
+                position++;
+            }
+        }
+
+        if (hasDigit == false || digitNum > MAX_FAST_DIGITS)
+        {
+            return false;
+        }
+
+        // 指数部
+        if (position < end && (line.charAt(position) == 'e' || line.charAt(position) == 'E'))
+        {
+            position++;
+            boolean negativeExponent = false;
+            if (position < end && (line.charAt(position) == '-' || line.charAt(position) == '+'))
+            {
+                negativeExponent = line.charAt(position) == '-';
+                position++;
+            }
+
+            if (position >= end)
+            {
+                return false;
+            }
+
+            int exponentPart = 0;
+            while (position < end && isDigit(line.charAt(position)))
+            {
+                exponentPart = exponentPart * 10 + (line.charAt(position) - '0');
+                if (exponentPart > MAX_EXPONENT)
+                {
+                    return false;
+                }
+                position++;
+            }
+
+            if (negativeExponent == true)
+            {
+                exponent -= exponentPart;
+            }
+            else
+            {
+                exponent += exponentPart;
+            }
+        }
+
+        // 型接尾辞等の10進数表記以外の文字が残っている場合は文字列を生成して変換する。
+        if (position != end)
+        {
+            return false;
+        }
+
+        double result;
+        if (mantissa == 0L)
+        {
+            result = 0.0d;
+        }
+        else if (exponent < -MAX_FAST_EXPONENT || exponent > MAX_FAST_EXPONENT)
+        {
+            return false;
+        }
+        else if (exponent < 0)
+        {
+            result = mantissa / POWERS_OF_TEN[-exponent];
+        }
+        else
+        {
+            result = mantissa * POWERS_OF_TEN[exponent];
+        }
+
+        if (negative == true)
+        {
+            result = -result;
+        }
+
+        this.values[valueIndex] = result;
+        return true;
+    }
+
+    /**
+     * 指定した文字が数字かを判定する。
+     *
+     * @param target 判定対象文字
+     * @return 数字の場合true
+     */
+    private static boolean isDigit(char target)
+    {
+        return target >= '0' && target <= '9';
+    }
+}
@@ -0,0 +1,276 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.common.util;
+
+/**
+ * 点行列の各行を対象に最近傍探索を行うKD木<br>
+ * 行の並び順を保持する配列の範囲を再帰的に中央値で分割して構築するため、ノード用のオブジェクトは生成しない。<br>
+ * 探索結果は{@link PointMatrix#nearestRow(double[], int)}と同一となる(距離が同値の場合はインデックスが小さい行を返す)。
+ *
+ * @author kimura
+ */
+public class PointKdTree
+{
+    /** 分割せずに線形探索を行う行数 */
+    private static final int LEAF_SIZE = 8;
+
+    /** 探索対象の点行列 */
+    private PointMatrix      matrix;
+
+    /** 木の構造に従って並べた行インデックス */
+    private int[]            order;
+
+    /** 範囲の中央位置毎の分割次元 */
+    private int[]            splitDims;
+
+    /**
+     * 点行列を指定してKD木を構築する。値が存在しない行は探索対象外とする。
+     *
+     * @param matrix 探索対象の点行列
+     */
+    public PointKdTree(PointMatrix matrix)
+    {
+        this.matrix = matrix;
+
+        int rowNum = 0;
+        for (int rowIndex = 0; rowIndex < matrix.getRowNum(); rowIndex++)
+        {
+            if (matrix.isEmptyRow(rowIndex) == false)
+            {
+                rowNum++;
+            }
+        }
+
+        this.order = new int[rowNum];
+        int position = 0;
+        for (int rowIndex = 0; rowIndex < matrix.getRowNum(); rowIndex++)
+        {
+            if (matrix.isEmptyRow(rowIndex) == false)
+            {
+                this.order[position] = rowIndex;
+                position++;
+            }
+        }
+
+        this.splitDims = new int[rowNum];
+        build(0, rowNum);
+    }
+
+    /**
+     * 対象点に最も近い行のインデックスを取得する。<br>
+     * 距離が同値の行が複数存在する場合はインデックスが小さい方を返す。<br>
+     * 比較できる距離が存在しない場合は、{@link PointMatrix#nearestRow(double[], int)}と同様に値が存在する最初の行を返す。
+     *
+     * @param target 対象点を含む配列
+     * @param targetOffset 対象点の先頭要素のインデックス
+     * @return 最も近い行のインデックス。値が存在する行がない場合は-1
+     */
+    public int nearestRow(double[] target, int targetOffset)
+    {
+        int[] nearestIndex = {-1};
+        double[] minDistance = {Double.MAX_VALUE};
+        search(0, this.order.length, target, targetOffset, nearestIndex, minDistance);
+
+        if (nearestIndex[0] < 0)
+        {
+            for (int rowIndex : this.order)
+            {
+                if (nearestIndex[0] < 0 || rowIndex < nearestIndex[0])
+                {
+                    nearestIndex[0] = rowIndex;
+                }
+            }
+        }
+
+        return nearestIndex[0];
+    }
+
+    /**
+     * 指定した範囲の行を分割次元の値で中央値分割し、左右の範囲を再帰的に構築する。
+     *
+     * @param fromIndex 範囲の開始位置(この値を含む)
+     * @param toIndex 範囲の終了位置(この値を含まない)
+     */
+    private void build(int fromIndex, int toIndex)
+    {
+        if (toIndex - fromIndex <= LEAF_SIZE)
+        {
+            return;
+        }
+
+        int splitDim = selectSplitDim(fromIndex, toIndex);
+        int middleIndex = (fromIndex + toIndex) >>> 1;
+        select(fromIndex, toIndex - 1, middleIndex, splitDim);
+        this.splitDims[middleIndex] = splitDim;
+
+        build(fromIndex, middleIndex);
+        build(middleIndex + 1, toIndex);
+    }
+
+    /**
+     * 指定した範囲で値の広がりが最も大きい次元を取得する。
+     *
+     * @param fromIndex 範囲の開始位置(この値を含む)
+     * @param toIndex 範囲の終了位置(この値を含まない)
+     * @return 分割次元
+     */
+    private int selectSplitDim(int fromIndex, int toIndex)
+    {
+        double[] values = this.matrix.getValues();
+        int splitDim = 0;
+        double maxSpread = -1.0d;
+
+        for (int dim = 0; dim < this.matrix.getColumnNum(); dim++)
+        {
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int position = fromIndex; position < toIndex; position++)
+            {
+                double value = values[this.matrix.getOffset(this.order[position]) + dim];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+
+            if (max - min > maxSpread)
+            {
+                maxSpread = max - min;
+                splitDim = dim;
+            }
+        }
+
+        return splitDim;
+    }
+
+    /**
+     * 指定した位置に分割次元の値でk番目となる行が位置するよう、範囲内の行を並べ替える。
+     *
+     * @param left 範囲の開始位置(この値を含む)
+     * @param right 範囲の終了位置(この値を含む)
+     * @param kth 確定させる位置
+     * @param dim 分割次元
+     */
+    private void select(int left, int right, int kth, int dim)
+    {
+        double[] values = this.matrix.getValues();
+
+        while (left < right)
+        {
+            double pivot = values[this.matrix.getOffset(this.order[(left + right) >>> 1]) + dim];
+            int lower = left;
+            int upper = right;
+
+            while (lower <= upper)
+            {
+                while (values[this.matrix.getOffset(this.order[lower]) + dim] < pivot)
+                {
+                    lower++;
+                }
+                while (values[this.matrix.getOffset(this.order[upper]) + dim] > pivot)
+                {
+                    upper--;
+                }
+                if (lower <= upper)
+                {
+                    int temp = this.order[lower];
+                    this.order[lower] = this.order[upper];
+                    this.order[upper] = temp;
+                    lower++;
+                    upper--;
+                }
+            }
+
+            if (kth <= upper)
+            {
+                right = upper;
+            }
+            else if (kth >= lower)
+            {
+                left = lower;
+            }
+            else
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 指定した範囲を探索し、最近傍の行を更新する。<br>
+     * 分割面までの距離の二乗が現在の最短距離の二乗以下の場合のみ反対側の範囲を探索する。
+     *
+     * @param fromIndex 範囲の開始位置(この値を含む)
+     * @param toIndex 範囲の終了位置(この値を含まない)
+     * @param target 対象点を含む配列
+     * @param targetOffset 対象点の先頭要素のインデックス
+     * @param nearestIndex 最近傍の行インデックス
+     * @param minDistance 最近傍の行との距離の二乗
+     */
+    private void search(int fromIndex, int toIndex, double[] target, int targetOffset,
+            int[] nearestIndex, double[] minDistance)
+    {
+        if (toIndex - fromIndex <= LEAF_SIZE)
+        {
+            for (int position = fromIndex; position < toIndex; position++)
+            {
+                check(this.order[position], target, targetOffset, nearestIndex, minDistance);
+            }
+            return;
+        }
+
+        int middleIndex = (fromIndex + toIndex) >>> 1;
+        int rowIndex = this.order[middleIndex];
+        check(rowIndex, target, targetOffset, nearestIndex, minDistance);
+
+        int splitDim = this.splitDims[middleIndex];
+        double diff = target[targetOffset + splitDim]
+                - this.matrix.getValues()[this.matrix.getOffset(rowIndex) + splitDim];
+
+        if (diff < 0)
+        {
+            search(fromIndex, middleIndex, target, targetOffset, nearestIndex, minDistance);
+            if (diff * diff <= minDistance[0])
+            {
+                search(middleIndex + 1, toIndex, target, targetOffset, nearestIndex, minDistance);
+            }
+        }
+        else
+        {
+            search(middleIndex + 1, toIndex, target, targetOffset, nearestIndex, minDistance);
+            if (diff * diff <= minDistance[0])
+            {
+                search(fromIndex, middleIndex, target, targetOffset, nearestIndex, minDistance);
+            }
+        }
+    }
+
+    /**
+     * 指定した行との距離を算出し、最近傍の行を更新する。
+     *
+     * @param rowIndex 行インデックス
+     * @param target 対象点を含む配列
+     * @param targetOffset 対象点の先頭要素のインデックス
+     * @param nearestIndex 最近傍の行インデックス
+     * @param minDistance 最近傍の行との距離の二乗
+     */
+    private void check(int rowIndex, double[] target, int targetOffset, int[] nearestIndex,
+            double[] minDistance)
+    {
+        double distance = this.matrix.squaredDistance(rowIndex, target, targetOffset);
+        if (distance < minDistance[0]
+                || (distance == minDistance[0] && rowIndex < nearestIndex[0]))
+        {
+            minDistance[0] = distance;
+            nearestIndex[0] = rowIndex;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.common.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * 複数の点の座標を1つのdouble配列に行優先で連続して保持する行列クラス<br>
+ * 行が点、列が座標の次元に対応する。<br>
+ * 点毎に配列を保持する場合と比べて距離算出時のメモリアクセスが連続し、オブジェクトの生成数も少なくなる。
+ *
+ * @author kimura
+ */
+public class PointMatrix implements Serializable
+{
+    /** serialVersionUID */
+    private static final long serialVersionUID = -2863360186580423187L;
+
+    /** 行数(点の数) */
+    private int               rowNum;
+
+    /** 列数(座標の次元数) */
+    private int               columnNum;
+
+    /** 行優先で格納した座標値 */
+    private double[]          values;
+
+    /** 値が存在しない行を示すフラグ。全行に値が存在する場合はnull */
+    private boolean[]         emptyRows;
+
+    /**
+     * 行数、列数を指定してインスタンスを生成する。
+     *
+     * @param rowNum 行数
+     * @param columnNum 列数
+     */
+    public PointMatrix(int rowNum, int columnNum)
+    {
+        this.rowNum = rowNum;
+        this.columnNum = columnNum;
+        this.values = new double[rowNum * columnNum];
+    }
+
+    /**
+     * 点毎の座標配列から行列を生成する。<br>
+     * nullの要素は値が存在しない行として扱い、距離算出の対象外とする。
+     *
+     * @param rows 点毎の座標配列
+     * @return 行列
+     */
+    public static PointMatrix fromRows(double[][] rows)
+    {
+        int columnNum = 0;
+        for (double[] row : rows)
+        {
+            if (row != null)
+            {
+                columnNum = row.length;
+                break;
+            }
+        }
+
+        PointMatrix matrix = new PointMatrix(rows.length, columnNum);
+        for (int rowIndex = 0; rowIndex < rows.length; rowIndex++)
+        {
+            matrix.setRow(rowIndex, rows[rowIndex]);
+        }
+
+        return matrix;
+    }
+
+    /**
+     * 対象行列のDeepCopyを作成する。
+     *
+     * @return 対象行列のDeepCopy
+     */
+    public PointMatrix deepCopy()
+    {
+        PointMatrix result = new PointMatrix(this.rowNum, this.columnNum);
+        System.arraycopy(this.values, 0, result.values, 0, this.values.length);
+        if (this.emptyRows != null)
+        {
+            result.emptyRows = Arrays.copyOf(this.emptyRows, this.emptyRows.length);
+        }
+
+        return result;
+    }
+
+    /**
+     * 指定した行に座標を設定する。nullを指定した場合、値が存在しない行として扱う。
+     *
+     * @param rowIndex 行インデックス
+     * @param row 座標
+     */
+    public void setRow(int rowIndex, double[] row)
+    {
+        if (row == null)
+        {
+            if (this.emptyRows == null)
+            {
+                this.emptyRows = new boolean[this.rowNum];
+            }
+
+            this.emptyRows[rowIndex] = true;
+            return;
+        }
+
+        System.arraycopy(row, 0, this.values, rowIndex * this.columnNum, this.columnNum);
+        if (this.emptyRows != null)
+        {
+            this.emptyRows[rowIndex] = false;
+        }
+    }
+
+    /**
+     * 指定した行の座標のコピーを取得する。
+     *
+     * @param rowIndex 行インデックス
+     * @return 座標のコピー。値が存在しない行の場合はnull
+     */
+    public double[] getRow(int rowIndex)
+    {
+        if (isEmptyRow(rowIndex))
+        {
+            return null;
+        }
+
+        int offset = rowIndex * this.columnNum;
+        return Arrays.copyOfRange(this.values, offset, offset + this.columnNum);
+    }
+
+    /**
+     * 点毎の座標配列に変換する。
+     *
+     * @return 点毎の座標配列
+     */
+    public double[][] toRows()
+    {
+        double[][] rows = new double[this.rowNum][];
+        for (int rowIndex = 0; rowIndex < this.rowNum; rowIndex++)
+        {
+            rows[rowIndex] = getRow(rowIndex);
+        }
+
+        return rows;
+    }
+
+    /**
+     * 指定した行が値の存在しない行かを判定する。
+     *
+     * @param rowIndex 行インデックス
+     * @return 値が存在しない行の場合true
+     */
+    public boolean isEmptyRow(int rowIndex)
+    {
+        return this.emptyRows != null && this.emptyRows[rowIndex];
+    }
+
+    /**
+     * 指定した行の先頭要素の、座標値配列上のインデックスを取得する。
+     *
+     * @param rowIndex 行インデックス
+     * @return 座標値配列上のインデックス
+     */
+    public int getOffset(int rowIndex)
+    {
+        return rowIndex * this.columnNum;
+    }
+
+    /**
+     * 指定した行と対象点のユークリッド距離の二乗を算出する。
+     *
+     * @param rowIndex 行インデックス
+     * @param target 対象点を含む配列
+     * @param targetOffset 対象点の先頭要素のインデックス
+     * @return ユークリッド距離の二乗
+     */
+    public double squaredDistance(int rowIndex, double[] target, int targetOffset)
+    {
+        return ArrayMathUtil.squaredDistance(this.values, rowIndex * this.columnNum, target,
+                targetOffset, this.columnNum);
+    }
+
+    /**
+     * 対象点に最も近い行のインデックスを取得する。<br>
+     * 距離が同値の行が複数存在する場合はインデックスが小さい方を返す。<br>
+     * 対象点がNaNを含む場合や、距離の二乗がオーバーフローする場合など比較できる距離が存在しない場合は、値が存在する最初の行を返す。
+     *
+     * @param target 対象点を含む配列
+     * @param targetOffset 対象点の先頭要素のインデックス
+     * @return 最も近い行のインデックス。値が存在する行がない場合は-1
+     */
+    public int nearestRow(double[] target, int targetOffset)
+    {
+        int nearestIndex = -1;
+        double minDistance = Double.MAX_VALUE;
+
+        for (int rowIndex = 0; rowIndex < this.rowNum; rowIndex++)
+        {
+            if (isEmptyRow(rowIndex))
+            {
+                continue;
+            }
+
+            double distance = ArrayMathUtil.squaredDistance(this.values, rowIndex
+                    * this.columnNum, target, targetOffset, this.columnNum);
+            if (distance < minDistance)
+            {
+                minDistance = distance;
+                nearestIndex = rowIndex;
+            }
+            else if (nearestIndex < 0)
+            {
+                nearestIndex = rowIndex;
+            }
+        }
+
+        return nearestIndex;
+    }
+
+    /**
+     * @return the rowNum
+     */
+    public int getRowNum()
+    {
+        return this.rowNum;
+    }
+
+    /**
+     * @return the columnNum
+     */
+    public int getColumnNum()
+    {
+        return this.columnNum;
+    }
+
+    /**
+     * @return the values
+     */
+    public double[] getValues()
+    {
+        return this.values;
+    }
+}
@@ -21,7 +21,7 @@ import storm.trident.operation.Function;
 import storm.trident.operation.TridentCollector;
 import storm.trident.operation.TridentOperationContext;
 import storm.trident.tuple.TridentTuple;
-import acromusashi.stream.ml.anomaly.cf.ChangeFinder;
+import acromusashi.stream.ml.anomaly.cf.PrimitiveChangeFinder;
 import backtype.storm.tuple.Values;
 
 import com.google.common.collect.Maps;
@@ -52,7 +52,7 @@ public class ChangeFindFunction implements Function
     protected static final double                 DEFAULT_SCORE_THRESHOLD  = 15.0d;
 
     /** 変化点検出を行うコンポーネントを保持するマップ */
-    protected transient Map<String, ChangeFinder> changeFinderMap;
+    protected transient Map<String, PrimitiveChangeFinder> changeFinderMap;
 
     /** 自己回帰モデルの次数「k」 */
     protected int                                 arDimensionNum           = DEFAULT_AR_DIMENSION;
@@ -90,12 +90,12 @@ public class ChangeFindFunction implements Function
         String ipAddress = tuple.getStringByField("IPaddress");
         ApacheLog response = (ApacheLog) tuple.getValueByField("responseTime");
 
-        ChangeFinder targetChangeFinder = this.changeFinderMap.get(ipAddress);
+        PrimitiveChangeFinder targetChangeFinder = this.changeFinderMap.get(ipAddress);
 
         if (targetChangeFinder == null)
         {
-            targetChangeFinder = new ChangeFinder(this.arDimensionNum, this.smoothingWindow,
-                    this.forgetability, true);
+            targetChangeFinder = new PrimitiveChangeFinder(this.arDimensionNum,
+                    this.smoothingWindow, this.forgetability, true);
             this.changeFinderMap.put(ipAddress, targetChangeFinder);
         }
 
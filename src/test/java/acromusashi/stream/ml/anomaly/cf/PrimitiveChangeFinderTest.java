@@ -0,0 +1,113 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.anomaly.cf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * PrimitiveChangeFinderのテストクラス
+ *
+ * @author kimura
+ */
+public class PrimitiveChangeFinderTest
+{
+    /**
+     * 2段階学習を行う場合に、ChangeFinderと同一のスコアを算出することを確認する。
+     *
+     * @target {@link PrimitiveChangeFinder#calculateScore(double)}
+     * @test ChangeFinderと同一のスコアを算出すること
+     *    condition::k=4、T=5、r=0.05で2段階学習を行い、1000点毎に平均値が変化する正規分布に従う5000点のスコアを算出
+     *    result::全ての点でChangeFinderのスコアと一致すること
+     */
+    @Test
+    public void testCalculateScore_2段階学習結果一致()
+    {
+        // 準備
+        ChangeFinder expectedFinder = new ChangeFinder(4, 5, 0.05d, true);
+        PrimitiveChangeFinder actualFinder = new PrimitiveChangeFinder(4, 5, 0.05d, true);
+        Random random = new Random(1L);
+
+        for (int index = 0; index < 5000; index++)
+        {
+            double input = (index / 1000) * 10.0d + random.nextGaussian();
+
+            // 実施
+            double actual = actualFinder.calculateScore(input);
+
+            // 検証
+            double expected = expectedFinder.calculateScore(input);
+            assertEquals(expected, actual, 0.0d);
+        }
+    }
+
+    /**
+     * 2段階学習を行わない場合に、パラメータによらずChangeFinderと同一のスコアを算出することを確認する。
+     *
+     * @target {@link PrimitiveChangeFinder#calculateScore(double)}
+     * @test ChangeFinderと同一のスコアを算出すること
+     *    condition::k=0～7、T=1～9、r=0.01/0.2の組み合わせで2段階学習を行わず、一様乱数に従う500点のスコアを算出
+     *    result::全ての組み合わせ、全ての点でChangeFinderのスコアと一致すること
+     */
+    @Test
+    public void testCalculateScore_パラメータ毎結果一致()
+    {
+        // 準備
+        double[] forgetabilities = new double[]{0.01d, 0.2d};
+        Random random = new Random(2L);
+
+        for (int arDimensionNum = 0; arDimensionNum < 8; arDimensionNum++)
+        {
+            for (int smoothingWindow = 1; smoothingWindow < 10; smoothingWindow++)
+            {
+                for (double forgetability : forgetabilities)
+                {
+                    ChangeFinder expectedFinder = new ChangeFinder(arDimensionNum,
+                            smoothingWindow, forgetability, false);
+                    PrimitiveChangeFinder actualFinder = new PrimitiveChangeFinder(
+                            arDimensionNum, smoothingWindow, forgetability, false);
+
+                    for (int index = 0; index < 500; index++)
+                    {
+                        double input = random.nextDouble() * 100.0d;
+
+                        // 実施
+                        double actual = actualFinder.calculateScore(input);
+
+                        // 検証
+                        double expected = expectedFinder.calculateScore(input);
+                        assertEquals(expected, actual, 0.0d);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 平滑化ウィンドウサイズが1未満の場合にインスタンスを生成しないことを確認する。
+     *
+     * @target {@link PrimitiveChangeFinder#PrimitiveChangeFinder(int, int, double, boolean)}
+     * @test インスタンスを生成しないこと
+     *    condition::T=0を指定してインスタンスを生成
+     *    result::IllegalArgumentExceptionが発生すること
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testPrimitiveChangeFinder_平滑化ウィンドウサイズ不正()
+    {
+        // 実施
+        new PrimitiveChangeFinder(4, 0, 0.05d, true);
+    }
+}
@@ -15,20 +15,32 @@ package acromusashi.stream.ml.anomaly.lof;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.junit.Test;
 
+import acromusashi.stream.ml.anomaly.lof.entity.DistanceResult;
 import acromusashi.stream.ml.anomaly.lof.entity.KDistanceResult;
 import acromusashi.stream.ml.anomaly.lof.entity.LofDataSet;
+import acromusashi.stream.ml.anomaly.lof.entity.LofLshIndex;
+import acromusashi.stream.ml.anomaly.lof.entity.LofLshParameter;
 import acromusashi.stream.ml.anomaly.lof.entity.LofPoint;
+import acromusashi.stream.ml.anomaly.lof.entity.LofScoreCache;
 
 /**
  * LofCalculatorのテストクラス
@@ -464,6 +476,268 @@ public class LofCalculatorTest
         assertFalse(actual.getDataIdList().contains("point1"));
     }
 
+    /**
+     * 中間データを引き継いだ学習データのマージ結果が、マージ後に中間データを初期化した結果と一致することを確認する。
+     * 
+     * @target {@link LofCalculator#mergeDataSet(int, LofDataSet, LofDataSet, int, ForkJoinPool)}
+     * @test マージ後に中間データを初期化した結果と一致すること
+     *    condition::K=5で0～599番目の点を保持する学習データと200～799番目の点を保持する学習データを、それぞれ中間データを初期化した上で保持数600でマージ
+     *    result::200～799番目の点が古い順に格納され、K距離、K距離近傍、局所到達可能密度が初期化した結果と一致すること
+     */
+    @Test
+    public void testMergeDataSet_中間データ引継ぎ初期化結果一致()
+    {
+        // 準備
+        Random random = new Random(7L);
+        int kn = 5;
+        List<LofPoint> points = new ArrayList<>();
+        for (int index = 0; index < 800; index++)
+        {
+            LofPoint point = createGridPoint("point" + index, random);
+            point.setJudgeDate(new Date(index));
+            points.add(point);
+        }
+
+        LofDataSet baseDataSet = new LofDataSet();
+        LofDataSet targetDataSet = new LofDataSet();
+        for (int index = 0; index < 800; index++)
+        {
+            if (index < 600)
+            {
+                baseDataSet.addData(points.get(index).deepCopy());
+            }
+            if (index >= 200)
+            {
+                targetDataSet.addData(points.get(index).deepCopy());
+            }
+        }
+        LofCalculator.initDataSet(kn, baseDataSet);
+        LofCalculator.initDataSet(kn, targetDataSet);
+
+        LofDataSet expectedDataSet = new LofDataSet();
+        for (int index = 200; index < 800; index++)
+        {
+            expectedDataSet.addData(points.get(index).deepCopy());
+        }
+        LofCalculator.initDataSet(kn, expectedDataSet);
+
+        // 実施
+        LofDataSet actual = LofCalculator.mergeDataSet(kn, baseDataSet, targetDataSet, 600, null);
+
+        // 検証
+        assertEquals(expectedDataSet.getDataIdList(), actual.getDataIdList());
+        for (String dataId : expectedDataSet.getDataIdList())
+        {
+            LofPoint expected = expectedDataSet.getDataMap().get(dataId);
+            LofPoint actualPoint = actual.getDataMap().get(dataId);
+            assertEquals(expected.getkDistance(), actualPoint.getkDistance(), 0.0d);
+            assertEquals(expected.getkDistanceNeighbor(), actualPoint.getkDistanceNeighbor());
+            assertEquals(expected.getLrd(), actualPoint.getLrd(), 0.0d);
+        }
+    }
+
+    /**
+     * 中間データを引き継いだ学習データのマージを並列実行した結果が、マージ後に中間データを初期化した結果と一致することを確認する。
+     * 
+     * @target {@link LofCalculator#mergeDataSet(int, LofDataSet, LofDataSet, int, ForkJoinPool)}
+     * @test マージ後に中間データを初期化した結果と一致すること
+     *    condition::K=5で偶数番目の点を保持する学習データと奇数番目の点を保持する学習データを、それぞれ中間データを初期化した上で保持数500、スレッド数4でマージ
+     *    result::500～999番目の点が古い順に格納され、K距離、K距離近傍、局所到達可能密度が初期化した結果と一致すること
+     */
+    @Test
+    public void testMergeDataSet_中間データ引継ぎ並列初期化結果一致()
+    {
+        // 準備
+        Random random = new Random(8L);
+        int kn = 5;
+        LofDataSet baseDataSet = new LofDataSet();
+        LofDataSet targetDataSet = new LofDataSet();
+        LofDataSet expectedDataSet = new LofDataSet();
+        for (int index = 0; index < 1000; index++)
+        {
+            LofPoint point = createGridPoint("point" + index, random);
+            point.setJudgeDate(new Date(index));
+            if (index % 2 == 0)
+            {
+                baseDataSet.addData(point);
+            }
+            else
+            {
+                targetDataSet.addData(point);
+            }
+
+            if (index >= 500)
+            {
+                expectedDataSet.addData(point.deepCopy());
+            }
+        }
+        LofCalculator.initDataSet(kn, baseDataSet);
+        LofCalculator.initDataSet(kn, targetDataSet);
+        LofCalculator.initDataSet(kn, expectedDataSet);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        LofDataSet actual = null;
+
+        try
+        {
+            // 実施
+            actual = LofCalculator.mergeDataSet(kn, baseDataSet, targetDataSet, 500, pool);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        // 検証
+        assertEquals(expectedDataSet.getDataIdList(), actual.getDataIdList());
+        for (String dataId : expectedDataSet.getDataIdList())
+        {
+            LofPoint expected = expectedDataSet.getDataMap().get(dataId);
+            LofPoint actualPoint = actual.getDataMap().get(dataId);
+            assertEquals(expected.getkDistance(), actualPoint.getkDistance(), 0.0d);
+            assertEquals(expected.getkDistanceNeighbor(), actualPoint.getkDistanceNeighbor());
+            assertEquals(expected.getLrd(), actualPoint.getLrd(), 0.0d);
+        }
+    }
+
+    /**
+     * 任意の点を置き換えた学習データの中間データとLOF値が、置き換え後に中間データを初期化した結果と一致することを確認する。
+     * 
+     * @target {@link LofCalculator#calculateLofWithReplace(int, String, LofPoint, LofDataSet)}
+     * @test 置き換え後に中間データを初期化した結果と一致すること
+     *    condition::K=5で300点を保持する学習データを初期化した上で、ランダムに選択した点を新しい点で置き換えることを100回行う
+     *    result::LOF値、K距離、K距離近傍、局所到達可能密度が初期化した結果と一致すること
+     */
+    @Test
+    public void testCalculateLofWithReplace_置換初期化結果一致()
+    {
+        // 準備
+        Random random = new Random(10L);
+        int kn = 5;
+        LofDataSet actualDataSet = new LofDataSet();
+        for (int index = 0; index < 300; index++)
+        {
+            actualDataSet.addData(createRandomPoint("point" + index, random));
+        }
+        LofCalculator.initDataSet(kn, actualDataSet);
+
+        for (int index = 300; index < 400; index++)
+        {
+            String deleteId = actualDataSet.getDataIdList().get(random.nextInt(300));
+            LofPoint addedPoint = createRandomPoint("point" + index, random);
+
+            // 実施
+            double actual = LofCalculator.calculateLofWithReplace(kn, deleteId, addedPoint,
+                    actualDataSet);
+
+            // 検証
+            LofDataSet expectedDataSet = actualDataSet.deepCopy();
+            LofCalculator.initDataSet(kn, expectedDataSet);
+            double expected = LofCalculator.calculateLof(
+                    expectedDataSet.getDataMap().get(addedPoint.getDataId()), expectedDataSet);
+            assertEquals(expected, actual, 0.0d);
+
+            for (String dataId : expectedDataSet.getDataIdList())
+            {
+                LofPoint expectedPoint = expectedDataSet.getDataMap().get(dataId);
+                LofPoint actualPoint = actualDataSet.getDataMap().get(dataId);
+                assertEquals(expectedPoint.getkDistance(), actualPoint.getkDistance(), 0.0d);
+                assertEquals(expectedPoint.getkDistanceNeighbor(),
+                        actualPoint.getkDistanceNeighbor());
+                assertEquals(expectedPoint.getLrd(), actualPoint.getLrd(), 0.0d);
+            }
+        }
+    }
+
+    /**
+     * 期間外の点を一括削除した学習データの中間データが、削除後に中間データを初期化した結果と一致することを確認する。
+     * 
+     * @target {@link LofCalculator#deleteExpiredData(int, long, LofDataSet, ForkJoinPool)}
+     * @test 削除後に中間データを初期化した結果と一致すること
+     *    condition::K=5で判定時刻が0～599の点を保持する学習データを初期化した上で、基準時刻200で期間外の点を削除
+     *    result::判定時刻が0～199の点が古い順に返され、残った点のK距離、K距離近傍、局所到達可能密度が初期化した結果と一致すること
+     */
+    @Test
+    public void testDeleteExpiredData_期間外データ削除初期化結果一致()
+    {
+        // 準備
+        Random random = new Random(9L);
+        int kn = 5;
+        LofDataSet actualDataSet = new LofDataSet();
+        LofDataSet expectedDataSet = new LofDataSet();
+        for (int index = 0; index < 600; index++)
+        {
+            LofPoint point = createGridPoint("point" + index, random);
+            point.setJudgeDate(new Date(index));
+            actualDataSet.addData(point);
+
+            if (index >= 200)
+            {
+                expectedDataSet.addData(point.deepCopy());
+            }
+        }
+        LofCalculator.initDataSet(kn, actualDataSet);
+        LofCalculator.initDataSet(kn, expectedDataSet);
+
+        // 実施
+        List<String> actual = LofCalculator.deleteExpiredData(kn, 200L, actualDataSet, null);
+
+        // 検証
+        assertEquals(200, actual.size());
+        for (int index = 0; index < 200; index++)
+        {
+            assertEquals("point" + index, actual.get(index));
+        }
+
+        assertEquals(expectedDataSet.getDataIdList(), actualDataSet.getDataIdList());
+        for (String dataId : expectedDataSet.getDataIdList())
+        {
+            LofPoint expected = expectedDataSet.getDataMap().get(dataId);
+            LofPoint actualPoint = actualDataSet.getDataMap().get(dataId);
+            assertEquals(expected.getkDistance(), actualPoint.getkDistance(), 0.0d);
+            assertEquals(expected.getkDistanceNeighbor(), actualPoint.getkDistanceNeighbor());
+            assertEquals(expected.getLrd(), actualPoint.getLrd(), 0.0d);
+        }
+    }
+
+    /**
+     * 期間外の点の削除が、データIDのリストの先頭から判定時刻が基準時刻以後の点までを対象とすることを確認する。
+     * 
+     * @target {@link LofCalculator#deleteExpiredData(long, LofDataSet)}
+     * @test データIDのリストの先頭から判定時刻が基準時刻以後の点の直前までが削除されること
+     *    condition::判定時刻が0～9の点の間に判定時刻を保持しない点を挟み、末尾に判定時刻1の点を追加した学習データを基準時刻5で削除
+     *    result::判定時刻が0～4の点のみが古い順に返されて削除され、判定時刻を保持しない点と基準時刻以後の点より後ろの点は保持されること
+     */
+    @Test
+    public void testDeleteExpiredData_先頭から期間外データ削除()
+    {
+        // 準備
+        Random random = new Random(10L);
+        LofDataSet dataSet = new LofDataSet();
+        for (int index = 0; index < 10; index++)
+        {
+            LofPoint point = createGridPoint("point" + index, random);
+            point.setJudgeDate(new Date(index));
+            dataSet.addData(point);
+
+            if (index == 2)
+            {
+                dataSet.addData(createGridPoint("undated", random));
+            }
+        }
+        LofPoint latePoint = createGridPoint("late", random);
+        latePoint.setJudgeDate(new Date(1L));
+        dataSet.addData(latePoint);
+
+        // 実施
+        List<String> actual = LofCalculator.deleteExpiredData(5L, dataSet);
+
+        // 検証
+        assertEquals(Arrays.asList("point0", "point1", "point2", "point3", "point4"), actual);
+        assertEquals(Arrays.asList("undated", "point5", "point6", "point7", "point8", "point9",
+                "late"), dataSet.getDataIdList());
+        assertEquals(7, dataSet.getDataMap().size());
+    }
+
     /**
      * K距離が算出可能であることを確認する
      * 
@@ -491,6 +765,635 @@ public class LofCalculatorTest
         assertEquals(expected.getkDistance(), actual.getkDistance(), 0.01d);
     }
 
+    /**
+     * 中間データを使用しないLOF値算出結果が、データセットを複製して全点の中間データを算出した結果と一致することを確認する。
+     * 
+     * @target {@link LofCalculator#calculateLofNoIntermediate(int, LofPoint, LofDataSet)}
+     * @test データセットを複製して全点の中間データを算出した結果と一致すること
+     *    condition::データ数150、K=5のデータセットに対して、データセット外の点50件とデータセット中の点50件のLOF値を算出
+     *    result::LOF値が一致し、データセットの中間データが更新されないこと
+     */
+    @Test
+    public void testCalculateLofNoIntermediate_全点再計算結果一致()
+    {
+        // 準備
+        Random random = new Random(3L);
+        int kn = 5;
+        LofDataSet dataSet = new LofDataSet();
+        for (int index = 0; index < 150; index++)
+        {
+            dataSet.addData(createRandomPoint("point" + index, random));
+        }
+
+        for (int index = 0; index < 100; index++)
+        {
+            LofPoint targetPoint = createRandomPoint("target" + index, random);
+            if (index % 2 == 0)
+            {
+                targetPoint = dataSet.getDataMap().get("point" + random.nextInt(150));
+            }
+
+            // 実施
+            double actual = LofCalculator.calculateLofNoIntermediate(kn, targetPoint, dataSet);
+
+            // 検証
+            LofDataSet expectedDataSet = dataSet.deepCopy();
+            LofCalculator.initDataSet(kn, expectedDataSet);
+            LofPoint expectedPoint = targetPoint.deepCopy();
+            KDistanceResult kResult = LofCalculator.calculateKDistance(kn, targetPoint, dataSet);
+            expectedPoint.setkDistance(kResult.getkDistance());
+            expectedPoint.setkDistanceNeighbor(kResult.getkDistanceNeighbor());
+            LofCalculator.updateLrd(expectedPoint, expectedDataSet);
+            double expected = LofCalculator.calculateLof(expectedPoint, expectedDataSet);
+
+            assertEquals(expected, actual, 0.0d);
+            assertNull(dataSet.getDataMap().get("point0").getkDistanceNeighbor());
+        }
+    }
+
+    /**
+     * 中間データを保持する学習データセットに対する一括算出結果が、1点ずつ算出した結果と一致することを確認する。
+     * 
+     * @target {@link LofCalculator#calculateLofBatch(int, List, LofDataSet, LofScoreCache)}
+     * @test 1点ずつ算出した結果と一致すること
+     *    condition::距離が同値の点を多く含む格子上の点50件、500件のデータセットに対して、データセット外の点とデータセット中の点を含む150点のLOF値をK=5で一括算出
+     *    result::全点のLOF値が{@link LofCalculator#calculateLofWithoutUpdate(int, LofPoint, LofDataSet)}の結果と一致すること
+     */
+    @Test
+    public void testCalculateLofBatch_中間データ有_個別算出結果一致()
+    {
+        for (int dataNum : new int[]{50, 500})
+        {
+            // 準備
+            Random random = new Random(dataNum);
+            int kn = 5;
+            LofDataSet dataSet = new LofDataSet();
+            for (int index = 0; index < dataNum; index++)
+            {
+                dataSet.addData(createGridPoint("point" + index, random));
+            }
+            LofCalculator.initDataSet(kn, dataSet);
+
+            List<LofPoint> targetPoints = new ArrayList<>();
+            for (int index = 0; index < 150; index++)
+            {
+                if (index % 3 == 0)
+                {
+                    targetPoints.add(dataSet.getDataMap().get("point" + random.nextInt(dataNum)));
+                }
+                else
+                {
+                    targetPoints.add(createGridPoint("target" + index, random));
+                }
+            }
+
+            // 実施
+            double[] actual = LofCalculator.calculateLofBatch(kn, targetPoints, dataSet, null);
+
+            // 検証
+            assertEquals(targetPoints.size(), actual.length);
+            for (int index = 0; index < actual.length; index++)
+            {
+                double expected = LofCalculator.calculateLofWithoutUpdate(kn,
+                        targetPoints.get(index), dataSet);
+                assertEquals(expected, actual[index], 0.0d);
+            }
+        }
+    }
+
+    /**
+     * 中間データを保持しない学習データセットに対する一括算出結果が、1点ずつ算出した結果と一致することを確認する。
+     * 
+     * @target {@link LofCalculator#calculateLofBatch(int, List, LofDataSet, LofScoreCache)}
+     * @test 1点ずつ算出した結果と一致すること
+     *    condition::データ数150、K=5のデータセットに対して、同一のキャッシュを用いて点の追加を挟みながら100点のLOF値の一括算出を3回実施
+     *    result::全点のLOF値が{@link LofCalculator#calculateLofNoIntermediate(int, LofPoint, LofDataSet)}の結果と一致し、キャッシュの版が学習データの版と一致すること
+     */
+    @Test
+    public void testCalculateLofBatch_中間データ無_個別算出結果一致()
+    {
+        // 準備
+        Random random = new Random(4L);
+        int kn = 5;
+        int max = 150;
+        LofDataSet dataSet = new LofDataSet();
+        for (int index = 0; index < max; index++)
+        {
+            dataSet.addData(createRandomPoint("point" + index, random));
+        }
+        LofScoreCache cache = new LofScoreCache();
+
+        for (int round = 0; round < 3; round++)
+        {
+            List<LofPoint> targetPoints = new ArrayList<>();
+            for (int index = 0; index < 100; index++)
+            {
+                targetPoints.add(createRandomPoint("target" + round + "_" + index, random));
+            }
+
+            // 実施
+            double[] actual = LofCalculator.calculateLofBatch(kn, targetPoints, dataSet, cache);
+
+            // 検証
+            for (int index = 0; index < actual.length; index++)
+            {
+                double expected = LofCalculator.calculateLofNoIntermediate(kn,
+                        targetPoints.get(index), dataSet);
+                assertEquals(expected, actual[index], 0.0d);
+            }
+            assertEquals(dataSet.getVersion(), cache.getVersion());
+            LofPoint oldestPoint = dataSet.getDataMap().get(dataSet.getDataIdList().get(0));
+            assertNull(oldestPoint.getkDistanceNeighbor());
+
+            LofCalculator.addPointToDataSet(max, createRandomPoint("added" + round, random), dataSet);
+        }
+    }
+
+    /**
+     * 上位K件の選択結果が全点との距離をソートした結果の先頭K件と一致することを確認する。
+     * 
+     * @target {@link LofCalculator#selectNeighbors(int, LofPoint, LofDataSet)}
+     * @test 全点との距離をソートした結果の先頭K件と一致すること
+     *    condition::距離が同値の点を多く含む格子上の点300件のデータセットに対して、K=7で100点の近傍を選択
+     *    result::選択結果のデータID、距離が全点との距離をソートした結果の先頭K件と一致すること
+     */
+    @Test
+    public void testSelectNeighbors_全件ソート結果一致()
+    {
+        // 準備
+        Random random = new Random(2L);
+        int kn = 7;
+        LofDataSet dataSet = new LofDataSet();
+        for (int index = 0; index < 300; index++)
+        {
+            dataSet.addData(createGridPoint("point" + index, random));
+        }
+
+        for (int index = 0; index < 100; index++)
+        {
+            LofPoint targetPoint = createGridPoint("point" + random.nextInt(400), random);
+
+            // 実施
+            List<DistanceResult> actual = LofCalculator.selectNeighbors(kn, targetPoint, dataSet);
+
+            // 検証
+            List<DistanceResult> expected = LofCalculator.calculateDistances(targetPoint,
+                    dataSet).subList(0, kn);
+            assertEquals(kn, actual.size());
+            for (int resultIndex = 0; resultIndex < kn; resultIndex++)
+            {
+                assertEquals(expected.get(resultIndex).getDataId(),
+                        actual.get(resultIndex).getDataId());
+                assertEquals(expected.get(resultIndex).getDistance(),
+                        actual.get(resultIndex).getDistance(), 0.0d);
+            }
+        }
+    }
+
+    /**
+     * 更新対象を逆K近傍に限定した学習データ更新の結果が、全点の中間データを再計算した結果と一致することを確認する。
+     * 
+     * @target {@link LofCalculator#calculateLofWithUpdate(int, int, LofPoint, LofDataSet)}
+     * @test 全点の中間データを再計算した結果と一致すること
+     *    condition::データ数200、K=5のデータセットに対して、古い点の削除を伴う点の追加を300回実施
+     *    result::LOFスコアと全点のK距離、K距離近傍データのID、局所到達可能密度が全点を再計算した結果と一致すること
+     */
+    @Test
+    public void testCalculateLofWithUpdate_全点再計算結果一致()
+    {
+        // 準備
+        Random random = new Random(1L);
+        int kn = 5;
+        int max = 200;
+        LofDataSet actualDataSet = new LofDataSet();
+        for (int index = 0; index < max; index++)
+        {
+            actualDataSet.addData(createRandomPoint("point" + index, random));
+        }
+        LofCalculator.initDataSet(kn, actualDataSet);
+        LofDataSet expectedDataSet = actualDataSet.deepCopy();
+
+        for (int index = max; index < max + 300; index++)
+        {
+            LofPoint addedPoint = createRandomPoint("point" + index, random);
+
+            // 実施
+            double actual = LofCalculator.calculateLofWithUpdate(kn, max, addedPoint,
+                    actualDataSet);
+
+            // 検証
+            LofPoint expectedPoint = addedPoint.deepCopy();
+            LofCalculator.addPointToDataSet(max, expectedPoint, expectedDataSet);
+            LofCalculator.initDataSet(kn, expectedDataSet);
+            double expected = LofCalculator.calculateLof(expectedPoint, expectedDataSet);
+            assertEquals(expected, actual, 0.0d);
+
+            for (LofPoint expectedTarget : expectedDataSet.getDataMap().values())
+            {
+                LofPoint actualTarget = actualDataSet.getDataMap().get(
+                        expectedTarget.getDataId());
+                assertEquals(expectedTarget.getkDistanceNeighbor(),
+                        actualTarget.getkDistanceNeighbor());
+                assertEquals(expectedTarget.getkDistance(), actualTarget.getkDistance(), 0.0d);
+                assertEquals(expectedTarget.getLrd(), actualTarget.getLrd(), 0.0d);
+            }
+        }
+    }
+
+    /**
+     * 距離が同値の点を多く含む場合も、中間データの更新範囲を限定した算出結果が全点の中間データを再計算した結果と一致することを確認する。
+     * 
+     * @target {@link LofCalculator#calculateLofWithUpdate(int, int, LofPoint, LofDataSet)}
+     * @test 全点の中間データを再計算した結果と一致すること
+     *    condition::格子上の点200件、K=5のデータセットに対して、古い点の削除を伴う点の追加を300回実施
+     *    result::LOFスコアと全点のK距離、K距離近傍データのID、局所到達可能密度が全点を再計算した結果と一致すること
+     */
+    @Test
+    public void testCalculateLofWithUpdate_格子点全点再計算結果一致()
+    {
+        // 準備
+        Random random = new Random(2L);
+        int kn = 5;
+        int max = 200;
+        LofDataSet actualDataSet = new LofDataSet();
+        for (int index = 0; index < max; index++)
+        {
+            actualDataSet.addData(createGridPoint("point" + index, random));
+        }
+        LofCalculator.initDataSet(kn, actualDataSet);
+        LofDataSet expectedDataSet = actualDataSet.deepCopy();
+
+        for (int index = max; index < max + 300; index++)
+        {
+            LofPoint addedPoint = createGridPoint("point" + index, random);
+
+            // 実施
+            double actual = LofCalculator.calculateLofWithUpdate(kn, max, addedPoint,
+                    actualDataSet);
+
+            // 検証
+            LofPoint expectedPoint = addedPoint.deepCopy();
+            LofCalculator.addPointToDataSet(max, expectedPoint, expectedDataSet);
+            LofCalculator.initDataSet(kn, expectedDataSet);
+            double expected = LofCalculator.calculateLof(expectedPoint, expectedDataSet);
+            assertEquals(expected, actual, 0.0d);
+
+            for (LofPoint expectedTarget : expectedDataSet.getDataMap().values())
+            {
+                LofPoint actualTarget = actualDataSet.getDataMap().get(
+                        expectedTarget.getDataId());
+                assertEquals(expectedTarget.getkDistanceNeighbor(),
+                        actualTarget.getkDistanceNeighbor());
+                assertEquals(expectedTarget.getkDistance(), actualTarget.getkDistance(), 0.0d);
+                assertEquals(expectedTarget.getLrd(), actualTarget.getLrd(), 0.0d);
+            }
+        }
+    }
+
+    /**
+     * K近傍探索用インデックスを用いたK距離算出結果が全点との距離を算出した結果と一致することを確認する。
+     * 
+     * @target {@link LofCalculator#calculateKDistance(int, LofPoint, LofDataSet)}
+     * @test インデックスを用いた算出結果が全点との距離を算出した結果と一致すること
+     *    condition::距離が同値の点を多く含む格子上の点500件のデータセットに対して、古い点の削除と点の追加を繰り返しながらK=5でK距離を算出
+     *    result::K距離、K距離近傍データのIDが全点との距離を算出した結果と一致すること
+     */
+    @Test
+    public void testCalculateKDistance_インデックス探索結果一致()
+    {
+        // 準備
+        Random random = new Random(1L);
+        int kn = 5;
+        int max = 500;
+        LofDataSet dataSet = new LofDataSet();
+        for (int index = 0; index < max; index++)
+        {
+            dataSet.addData(createGridPoint("point" + index, random));
+        }
+
+        for (int index = max; index < max + 300; index++)
+        {
+            LofCalculator.addPointToDataSet(max, createGridPoint("point" + index, random), dataSet);
+            LofPoint targetPoint = createGridPoint("target" + index, random);
+            LofPoint storedPoint = dataSet.getDataMap().get(
+                    dataSet.getDataIdList().get(random.nextInt(max)));
+
+            // 実施
+            KDistanceResult actualTarget = LofCalculator.calculateKDistance(kn, targetPoint,
+                    dataSet);
+            KDistanceResult actualStored = LofCalculator.calculateKDistance(kn, storedPoint,
+                    dataSet);
+
+            // 検証
+            KDistanceResult expectedTarget = LofCalculator.calculateKDistance(kn,
+                    LofCalculator.calculateDistances(targetPoint, dataSet));
+            KDistanceResult expectedStored = LofCalculator.calculateKDistance(kn,
+                    LofCalculator.calculateDistances(storedPoint, dataSet));
+            assertEquals(expectedTarget.getkDistanceNeighbor(),
+                    actualTarget.getkDistanceNeighbor());
+            assertEquals(expectedTarget.getkDistance(), actualTarget.getkDistance(), 0.0d);
+            assertEquals(expectedStored.getkDistanceNeighbor(),
+                    actualStored.getkDistanceNeighbor());
+            assertEquals(expectedStored.getkDistance(), actualStored.getkDistance(), 0.0d);
+        }
+    }
+
+    /**
+     * シリアライズして復元した学習データセットで、K近傍探索用インデックスを引き継いで探索できることを確認する。
+     * 
+     * @target {@link LofCalculator#calculateKDistance(int, LofPoint, LofDataSet)}
+     * @test 復元したインデックスを用いた算出結果が全点との距離を算出した結果と一致すること
+     *    condition::格子上の点500件のデータセットでインデックスを生成し、点の追加/削除を行った後にシリアライズ/復元を行い、復元後に点の追加/削除を繰り返しながらK=5でK距離を算出
+     *    result::K距離、K距離近傍データのIDが全点との距離を算出した結果と一致すること
+     * @throws Exception 想定外の例外
+     */
+    @Test
+    public void testCalculateKDistance_インデックス状態復元結果一致() throws Exception
+    {
+        // 準備
+        Random random = new Random(3L);
+        int kn = 5;
+        int max = 500;
+        LofDataSet dataSet = new LofDataSet();
+        for (int index = 0; index < max; index++)
+        {
+            dataSet.addData(createGridPoint("point" + index, random));
+        }
+        dataSet.getPointIndex();
+        for (int index = max; index < max + 40; index++)
+        {
+            LofCalculator.addPointToDataSet(max, createGridPoint("point" + index, random), dataSet);
+        }
+
+        LofDataSet restored = serializeAndRestore(dataSet);
+
+        for (int index = max + 40; index < max + 200; index++)
+        {
+            LofCalculator.addPointToDataSet(max, createGridPoint("point" + index, random), restored);
+            LofPoint targetPoint = createGridPoint("target" + index, random);
+
+            // 実施
+            KDistanceResult actual = LofCalculator.calculateKDistance(kn, targetPoint, restored);
+
+            // 検証
+            KDistanceResult expected = LofCalculator.calculateKDistance(kn,
+                    LofCalculator.calculateDistances(targetPoint, restored));
+            assertEquals(expected.getkDistanceNeighbor(), actual.getkDistanceNeighbor());
+            assertEquals(expected.getkDistance(), actual.getkDistance(), 0.0d);
+        }
+    }
+
+    /**
+     * 学習データセットの並列初期化結果が逐次初期化の結果と一致することを確認する。
+     * 
+     * @target {@link LofCalculator#initDataSet(int, LofDataSet, ForkJoinPool)}
+     * @test 並列初期化結果が逐次初期化の結果と一致すること
+     *    condition::距離が同値の点を多く含む格子上の点1000件のデータセットを、スレッド数4のスレッドプールを用いてK=5で初期化
+     *    result::全点のK距離、K距離近傍データのID、局所到達可能密度、逆K近傍が逐次初期化の結果と一致すること
+     */
+    @Test
+    public void testInitDataSet_並列初期化結果一致()
+    {
+        // 準備
+        Random random = new Random(1L);
+        int kn = 5;
+        LofDataSet expectedDataSet = new LofDataSet();
+        for (int index = 0; index < 1000; index++)
+        {
+            expectedDataSet.addData(createGridPoint("point" + index, random));
+        }
+        LofDataSet actualDataSet = expectedDataSet.deepCopy();
+        LofCalculator.initDataSet(kn, expectedDataSet);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try
+        {
+            // 実施
+            LofCalculator.initDataSet(kn, actualDataSet, pool);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        // 検証
+        for (String dataId : expectedDataSet.getDataIdList())
+        {
+            LofPoint expected = expectedDataSet.getDataMap().get(dataId);
+            LofPoint actual = actualDataSet.getDataMap().get(dataId);
+            assertEquals(expected.getkDistance(), actual.getkDistance(), 0.0d);
+            assertEquals(expected.getkDistanceNeighbor(), actual.getkDistanceNeighbor());
+            assertEquals(expected.getLrd(), actual.getLrd(), 0.0d);
+            assertEquals(expectedDataSet.getReverseNeighbors(dataId),
+                    actualDataSet.getReverseNeighbors(dataId));
+        }
+    }
+
+    /**
+     * LSHを用いた近似K近傍探索の結果が厳密な探索結果の大部分と一致することを確認する。
+     * 
+     * @target {@link LofCalculator#calculateKDistance(int, LofPoint, LofDataSet)}
+     * @test 厳密な探索結果の大部分と一致すること
+     *    condition::3次元の潜在変数を30次元に射影した点500件のデータセットに対して、LSH(テーブル数20、ハッシュ関数数4、バケット幅8)を用いてK=5で200点のK距離近傍を算出
+     *    result::厳密な探索結果に含まれる点の割合(再現率)が0.9以上となること
+     */
+    @Test
+    public void testCalculateKDistance_LSH近似探索再現率()
+    {
+        // 準備
+        Random random = new Random(5L);
+        int kn = 5;
+        double[][] projection = createProjection(30, 3, random);
+        LofDataSet exactDataSet = new LofDataSet();
+        for (int index = 0; index < 500; index++)
+        {
+            exactDataSet.addData(createProjectedPoint("point" + index, projection, random));
+        }
+        LofDataSet approximateDataSet = exactDataSet.deepCopy();
+        approximateDataSet.setLshParameter(createLshParameter());
+
+        int matchedNum = 0;
+        for (int index = 0; index < 200; index++)
+        {
+            LofPoint targetPoint = createProjectedPoint("target" + index, projection, random);
+
+            // 実施
+            KDistanceResult actual = LofCalculator.calculateKDistance(kn, targetPoint,
+                    approximateDataSet);
+
+            // 検証
+            KDistanceResult expected = LofCalculator.calculateKDistance(kn, targetPoint,
+                    exactDataSet);
+            assertEquals(kn, actual.getkDistanceNeighbor().size());
+            assertFalse(actual.getkDistance() < expected.getkDistance());
+            for (String neighborId : actual.getkDistanceNeighbor())
+            {
+                if (expected.getkDistanceNeighbor().contains(neighborId) == true)
+                {
+                    matchedNum++;
+                }
+            }
+        }
+
+        assertFalse(matchedNum < 0.9d * kn * 200);
+    }
+
+    /**
+     * LSHを用いた近似K近傍探索で、距離を算出する点数が全点との距離を算出する場合より少ないことを確認する。
+     * 
+     * @target {@link LofLshIndex#searchCandidates(double[], String)}
+     * @test 距離を算出する点数が全点探索の1/4未満となり、かつ厳密な探索結果の大部分と一致すること
+     *    condition::3次元の潜在変数を30次元に射影した点2000件のデータセットに対して、LSH(テーブル数20、ハッシュ関数数4、バケット幅8)を用いてK=5で200点のK距離近傍を算出
+     *    result::候補点(距離の算出対象)の総数が全点探索の総数(2000×200)の1/4未満となり、再現率が0.9以上となること
+     */
+    @Test
+    public void testSearchCandidates_LSH距離算出数削減()
+    {
+        // 準備
+        Random random = new Random(7L);
+        int kn = 5;
+        int max = 2000;
+        int queryNum = 200;
+        double[][] projection = createProjection(30, 3, random);
+        LofDataSet exactDataSet = new LofDataSet();
+        for (int index = 0; index < max; index++)
+        {
+            exactDataSet.addData(createProjectedPoint("point" + index, projection, random));
+        }
+        LofDataSet approximateDataSet = exactDataSet.deepCopy();
+        approximateDataSet.setLshParameter(createLshParameter());
+
+        long candidateTotal = 0L;
+        int matchedNum = 0;
+        for (int index = 0; index < queryNum; index++)
+        {
+            LofPoint targetPoint = createProjectedPoint("target" + index, projection, random);
+
+            // 実施
+            candidateTotal = candidateTotal
+                    + approximateDataSet.getLshIndex().searchCandidates(
+                            targetPoint.getDataPoint(), targetPoint.getDataId()).size();
+            KDistanceResult actual = LofCalculator.calculateKDistance(kn, targetPoint,
+                    approximateDataSet);
+
+            // 検証
+            KDistanceResult expected = LofCalculator.calculateKDistance(kn,
+                    LofCalculator.calculateDistances(targetPoint, exactDataSet));
+            for (String neighborId : actual.getkDistanceNeighbor())
+            {
+                if (expected.getkDistanceNeighbor().contains(neighborId) == true)
+                {
+                    matchedNum++;
+                }
+            }
+        }
+
+        assertTrue(candidateTotal * 4 < (long) max * queryNum);
+        assertFalse(matchedNum < 0.9d * kn * queryNum);
+    }
+
+    /**
+     * シリアライズして復元した学習データセットで、LSHのインデックスを引き継いで近似K近傍探索を行えることを確認する。
+     * 
+     * @target {@link LofCalculator#calculateKDistance(int, LofPoint, LofDataSet)}
+     * @test 復元したインデックスを用いた算出結果が、同じデータからインデックスを生成した場合の結果と一致すること
+     *    condition::3次元の潜在変数を30次元に射影した点500件のデータセットでLSHのインデックスを生成してシリアライズ/復元し、値が同一の別インスタンスのパラメータを設定した後、点の追加/削除を繰り返しながらK=5でK距離を算出
+     *    result::K距離、K距離近傍データのIDが、復元を行わずに同じ操作を行ったデータセットの算出結果と一致すること
+     * @throws Exception 想定外の例外
+     */
+    @Test
+    public void testCalculateKDistance_LSHインデックス状態復元結果一致() throws Exception
+    {
+        // 準備
+        Random random = new Random(8L);
+        int kn = 5;
+        int max = 500;
+        double[][] projection = createProjection(30, 3, random);
+        LofDataSet expectedDataSet = new LofDataSet();
+        expectedDataSet.setLshParameter(createLshParameter());
+        for (int index = 0; index < max; index++)
+        {
+            expectedDataSet.addData(createProjectedPoint("point" + index, projection, random));
+        }
+        expectedDataSet.getLshIndex();
+
+        LofDataSet actualDataSet = serializeAndRestore(expectedDataSet);
+        actualDataSet.setLshParameter(createLshParameter());
+
+        for (int index = max; index < max + 100; index++)
+        {
+            LofPoint addedPoint = createProjectedPoint("point" + index, projection, random);
+            LofCalculator.addPointToDataSet(max, addedPoint, expectedDataSet);
+            LofCalculator.addPointToDataSet(max, addedPoint.deepCopy(), actualDataSet);
+            LofPoint targetPoint = createProjectedPoint("target" + index, projection, random);
+
+            // 実施
+            KDistanceResult actual = LofCalculator.calculateKDistance(kn, targetPoint,
+                    actualDataSet);
+
+            // 検証
+            KDistanceResult expected = LofCalculator.calculateKDistance(kn, targetPoint,
+                    expectedDataSet);
+            assertEquals(expected.getkDistanceNeighbor(), actual.getkDistanceNeighbor());
+            assertEquals(expected.getkDistance(), actual.getkDistance(), 0.0d);
+        }
+    }
+
+    /**
+     * LSHを用いた近似LOFで、外れ値のLOF値が正常値より大きく算出されることを確認する。
+     * 
+     * @target {@link LofCalculator#calculateLofWithUpdate(int, int, LofPoint, LofDataSet)}
+     * @test 外れ値のLOF値が正常値より大きく算出されること
+     *    condition::3次元の潜在変数を30次元に射影した点の保持数300のデータセットに、LSHを用いてK=5で正常値300点と潜在空間の外側の外れ値を順に追加
+     *    result::正常値のLOF値の平均が厳密な算出結果の平均との差0.1以内、外れ値のLOF値が2以上となり、データセットの保持数が300となること
+     */
+    @Test
+    public void testCalculateLofWithUpdate_LSH近似外れ値検知()
+    {
+        // 準備
+        Random random = new Random(6L);
+        int kn = 5;
+        int max = 300;
+        double[][] projection = createProjection(30, 3, random);
+        LofDataSet exactDataSet = new LofDataSet();
+        for (int index = 0; index < max; index++)
+        {
+            exactDataSet.addData(createProjectedPoint("point" + index, projection, random));
+        }
+        LofCalculator.initDataSet(kn, exactDataSet);
+        LofDataSet approximateDataSet = exactDataSet.deepCopy();
+        approximateDataSet.setLshParameter(createLshParameter());
+
+        double actualTotal = 0.0d;
+        double expectedTotal = 0.0d;
+        for (int index = 0; index < max; index++)
+        {
+            LofPoint addedPoint = createProjectedPoint("added" + index, projection, random);
+
+            // 実施
+            actualTotal = actualTotal
+                    + LofCalculator.calculateLofWithUpdate(kn, max, addedPoint.deepCopy(),
+                            approximateDataSet);
+
+            expectedTotal = expectedTotal
+                    + LofCalculator.calculateLofWithUpdate(kn, max, addedPoint, exactDataSet);
+        }
+
+        LofPoint outlier = createProjectedPoint("outlier", projection, random);
+        for (int index = 0; index < outlier.getDataPoint().length; index++)
+        {
+            outlier.getDataPoint()[index] = outlier.getDataPoint()[index] + 10.0d;
+        }
+        double outlierLof = LofCalculator.calculateLofWithUpdate(kn, max, outlier,
+                approximateDataSet);
+
+        // 検証
+        assertEquals(expectedTotal / max, actualTotal / max, 0.1d);
+        assertFalse(outlierLof < 2.0d);
+        assertEquals(max, approximateDataSet.getDataIdList().size());
+        assertEquals(max, approximateDataSet.getDataMap().size());
+    }
+
     /**
      * データ数100でK値を設定した場合のLOF値算出結果を確認する。
      * 
@@ -589,6 +1492,129 @@ public class LofCalculatorTest
         }
     }
 
+    /**
+     * 各座標が標準正規分布に従う3次元の点を生成する。
+     * 
+     * @param dataId データID
+     * @param random 乱数生成器
+     * @return 点
+     */
+    private LofPoint createRandomPoint(String dataId, Random random)
+    {
+        LofPoint point = new LofPoint();
+        point.setDataId(dataId);
+        point.setDataPoint(new double[]{random.nextGaussian(), random.nextGaussian(),
+                random.nextGaussian()});
+        return point;
+    }
+
+    /**
+     * 各座標が0から9の整数値となる3次元の点を生成する。
+     * 
+     * @param dataId データID
+     * @param random 乱数生成器
+     * @return 点
+     */
+    private LofPoint createGridPoint(String dataId, Random random)
+    {
+        LofPoint point = new LofPoint();
+        point.setDataId(dataId);
+        point.setDataPoint(new double[]{random.nextInt(10), random.nextInt(10), random.nextInt(10)});
+        return point;
+    }
+
+    /**
+     * 各要素が標準正規分布に従う射影行列を生成する。
+     * 
+     * @param dimension 射影後の次元数
+     * @param latentDimension 潜在変数の次元数
+     * @param random 乱数生成器
+     * @return 射影行列
+     */
+    private double[][] createProjection(int dimension, int latentDimension, Random random)
+    {
+        double[][] projection = new double[dimension][latentDimension];
+        for (double[] row : projection)
+        {
+            for (int index = 0; index < latentDimension; index++)
+            {
+                row[index] = random.nextGaussian();
+            }
+        }
+
+        return projection;
+    }
+
+    /**
+     * 標準正規分布に従う潜在変数を射影行列で射影し、微小な雑音を加えた点を生成する。
+     * 
+     * @param dataId データID
+     * @param projection 射影行列
+     * @param random 乱数生成器
+     * @return 点
+     */
+    private LofPoint createProjectedPoint(String dataId, double[][] projection, Random random)
+    {
+        double[] latent = new double[projection[0].length];
+        for (int index = 0; index < latent.length; index++)
+        {
+            latent[index] = random.nextGaussian();
+        }
+
+        double[] dataPoint = new double[projection.length];
+        for (int index = 0; index < dataPoint.length; index++)
+        {
+            for (int latentIndex = 0; latentIndex < latent.length; latentIndex++)
+            {
+                dataPoint[index] = dataPoint[index] + projection[index][latentIndex]
+                        * latent[latentIndex];
+            }
+            dataPoint[index] = dataPoint[index] + 0.05d * random.nextGaussian();
+        }
+
+        LofPoint point = new LofPoint();
+        point.setDataId(dataId);
+        point.setDataPoint(dataPoint);
+        return point;
+    }
+
+    /**
+     * テスト用のLSHのパラメータを生成する。
+     * 
+     * @return LSHのパラメータ
+     */
+    private LofLshParameter createLshParameter()
+    {
+        LofLshParameter parameter = new LofLshParameter();
+        parameter.setTableNum(20);
+        parameter.setHashNum(4);
+        parameter.setBucketWidth(8.0d);
+        parameter.setSeed(1L);
+        return parameter;
+    }
+
+    /**
+     * 学習データセットをシリアライズし、復元した学習データセットを返す。
+     * 
+     * @param dataSet 学習データセット
+     * @return 復元した学習データセット
+     * @throws Exception シリアライズ/復元に失敗した場合
+     */
+    private LofDataSet serializeAndRestore(LofDataSet dataSet) throws Exception
+    {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        try (ObjectOutputStream outputStream = new ObjectOutputStream(byteStream))
+        {
+            outputStream.writeObject(dataSet);
+        }
+
+        try (ObjectInputStream inputStream = new ObjectInputStream(new ByteArrayInputStream(
+                byteStream.toByteArray())))
+        {
+            return (LofDataSet) inputStream.readObject();
+        }
+    }
+
     /**
      * 基本の学習データセット(データ数5)を生成する。
      * 
@@ -0,0 +1,301 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.anomaly.lof;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import acromusashi.stream.ml.anomaly.lof.entity.LofDataSet;
+import acromusashi.stream.ml.anomaly.lof.entity.LofMicroCluster;
+import acromusashi.stream.ml.anomaly.lof.entity.LofPoint;
+
+/**
+ * LofMicroClusterCalculatorのテストクラス
+ *
+ * @author kimura
+ */
+public class LofMicroClusterCalculatorTest
+{
+    /**
+     * マイクロクラスタを保持しない学習データに対するスコアが、中間データを用いたスコアと一致することを確認する。
+     *
+     * @target {@link LofMicroClusterCalculator#calculateLof(int, LofPoint, LofDataSet)}
+     * @test 中間データを用いたスコアと一致すること
+     *    condition::K=5で正規分布に従う200点を保持する学習データを初期化した上で、20点のスコアを算出
+     *    result::{@link LofCalculator#calculateLofWithoutUpdate(int, LofPoint, LofDataSet)}の結果と一致すること
+     */
+    @Test
+    public void testCalculateLof_マイクロクラスタなし結果一致()
+    {
+        // 準備
+        Random random = new Random(1L);
+        int kn = 5;
+        LofDataSet dataSet = createDataSet(kn, 200, random);
+
+        for (int index = 0; index < 20; index++)
+        {
+            LofPoint targetPoint = createPoint("target" + index, random);
+
+            // 実施
+            double actual = LofMicroClusterCalculator.calculateLof(kn, targetPoint, dataSet);
+
+            // 検証
+            double expected = LofCalculator.calculateLofWithoutUpdate(kn, targetPoint, dataSet);
+            assertEquals(expected, actual, 0.0d);
+        }
+    }
+
+    /**
+     * 古い点をマイクロクラスタに要約し、直近の点のみを学習データに残すことを確認する。
+     *
+     * @target {@link LofMicroClusterCalculator#summarize(int, int, int, int, LofDataSet, Random, java.util.concurrent.ForkJoinPool)}
+     * @test 直近の点のみを残し、古い点をマイクロクラスタに要約すること
+     *    condition::K=5で400点を保持する学習データを初期化した上で、直近100点を残して10クラスタに要約。その後300点を追加して再度要約
+     *    result::直近100点が残り、中間データが初期化した結果と一致すること。マイクロクラスタの要約点数の合計が要約した点数と一致し、最大数15以下となること
+     */
+    @Test
+    public void testSummarize_直近データ保持()
+    {
+        // 準備
+        Random random = new Random(2L);
+        int kn = 5;
+        LofDataSet dataSet = createDataSet(kn, 400, random);
+        List<String> recentIds = new ArrayList<>(dataSet.getDataIdList().subList(300, 400));
+
+        // 実施
+        int summarized = LofMicroClusterCalculator.summarize(kn, 100, 10, 15, dataSet,
+                new Random(3L), null);
+
+        // 検証
+        assertEquals(300, summarized);
+        assertEquals(recentIds, dataSet.getDataIdList());
+        assertEquals(100, dataSet.getDataMap().size());
+        assertTrue(dataSet.getMicroClusters().size() <= 10);
+        assertEquals(300L, sumCount(dataSet.getMicroClusters()));
+        assertIntermediate(kn, dataSet);
+
+        // 準備
+        for (int index = 400; index < 700; index++)
+        {
+            LofCalculator.calculateLofWithReplace(kn, null, createPoint("point" + index, random),
+                    dataSet);
+        }
+
+        // 実施
+        summarized = LofMicroClusterCalculator.summarize(kn, 100, 10, 15, dataSet,
+                new Random(4L), null);
+
+        // 検証
+        assertEquals(300, summarized);
+        assertEquals(100, dataSet.getDataIdList().size());
+        assertTrue(dataSet.getMicroClusters().size() <= 15);
+        assertEquals(600L, sumCount(dataSet.getMicroClusters()));
+        assertIntermediate(kn, dataSet);
+    }
+
+    /**
+     * 古い点をマイクロクラスタに要約した後も、外れ値のスコアが正常値のスコアより高くなることを確認する。
+     *
+     * @target {@link LofMicroClusterCalculator#calculateLof(int, LofPoint, LofDataSet)}
+     * @test 外れ値のスコアが正常値のスコアより高くなること
+     *    condition::K=5で正規分布に従う400点を保持する学習データの直近50点を残して要約した上で、原点と(8, 8, 8)のスコアを算出
+     *    result::原点のスコアが1.5未満、(8, 8, 8)のスコアが2.0より大きくなること
+     */
+    @Test
+    public void testCalculateLof_要約後外れ値判定()
+    {
+        // 準備
+        Random random = new Random(5L);
+        int kn = 5;
+        LofDataSet dataSet = createDataSet(kn, 400, random);
+        LofMicroClusterCalculator.summarize(kn, 50, 20, 20, dataSet, new Random(6L), null);
+
+        LofPoint normalPoint = new LofPoint();
+        normalPoint.setDataId("normal");
+        normalPoint.setDataPoint(new double[]{0.0d, 0.0d, 0.0d});
+        LofPoint outlierPoint = new LofPoint();
+        outlierPoint.setDataId("outlier");
+        outlierPoint.setDataPoint(new double[]{8.0d, 8.0d, 8.0d});
+
+        // 実施
+        double normalScore = LofMicroClusterCalculator.calculateLof(kn, normalPoint, dataSet);
+        double outlierScore = LofMicroClusterCalculator.calculateLof(kn, outlierPoint, dataSet);
+
+        // 検証
+        assertTrue(normalScore < 1.5d);
+        assertTrue(outlierScore > 2.0d);
+    }
+
+    /**
+     * 同一IDのマイクロクラスタは要約点数の多い方を用い、最大数以下にマージすることを確認する。
+     *
+     * @target {@link LofMicroClusterCalculator#mergeMicroClusters(List, List, int)}
+     * @test 同一IDのマイクロクラスタは要約点数の多い方を用い、最大数以下にマージすること
+     *    condition::マージ元に3個、マージ対象に同一IDで要約点数の多い1個と新規の2個を指定し、最大数3でマージ
+     *    result::マイクロクラスタ数が3、要約点数の合計が重複を除いた合計と一致し、マージ元が更新されないこと
+     */
+    @Test
+    public void testMergeMicroClusters_重複除外最大数マージ()
+    {
+        // 準備
+        List<LofMicroCluster> baseClusters = Arrays.asList(createCluster("a", 0.0d, 10L),
+                createCluster("b", 5.0d, 10L), createCluster("c", 9.0d, 10L));
+        List<LofMicroCluster> targetClusters = Arrays.asList(createCluster("a", 0.5d, 20L),
+                createCluster("d", 5.5d, 10L), createCluster("e", 20.0d, 10L));
+
+        // 実施
+        List<LofMicroCluster> actual = LofMicroClusterCalculator.mergeMicroClusters(
+                baseClusters, targetClusters, 3);
+
+        // 検証
+        assertEquals(3, actual.size());
+        assertEquals(60L, sumCount(actual));
+        assertEquals(10L, baseClusters.get(1).getCount());
+        assertEquals("a", actual.get(0).getClusterId());
+        assertEquals(20L, actual.get(0).getCount());
+        assertEquals(0.5d, actual.get(0).getCenter()[0], 0.0d);
+        assertEquals("b", actual.get(1).getClusterId());
+        assertEquals(30L, actual.get(1).getCount());
+        assertEquals(6.5d, actual.get(1).getCenter()[0], 1.0e-10d);
+        assertEquals("e", actual.get(2).getClusterId());
+    }
+
+    /**
+     * マージ結果を吸収前のマイクロクラスタを保持するパーティションと再度マージした場合に、同じ点を重複して数えないことを確認する。
+     *
+     * @target {@link LofMicroClusterCalculator#mergeMicroClusters(List, List, int)}
+     * @test 吸収済みのマイクロクラスタが除外されること
+     *    condition::最大数3でマージした結果を、マージ対象のマイクロクラスタのリストと再度マージ
+     *    result::要約点数の合計が初回のマージ結果と一致し、吸収済みのマイクロクラスタが含まれないこと
+     */
+    @Test
+    public void testMergeMicroClusters_吸収済み除外()
+    {
+        // 準備
+        List<LofMicroCluster> baseClusters = Arrays.asList(createCluster("a", 0.0d, 10L),
+                createCluster("b", 5.0d, 10L), createCluster("c", 9.0d, 10L));
+        List<LofMicroCluster> targetClusters = Arrays.asList(createCluster("a", 0.5d, 20L),
+                createCluster("d", 5.5d, 10L), createCluster("e", 20.0d, 10L));
+        List<LofMicroCluster> mergedClusters = LofMicroClusterCalculator.mergeMicroClusters(
+                baseClusters, targetClusters, 3);
+
+        // 実施
+        List<LofMicroCluster> actual = LofMicroClusterCalculator.mergeMicroClusters(
+                mergedClusters, targetClusters, 3);
+
+        // 検証
+        assertEquals(3, actual.size());
+        assertEquals(60L, sumCount(actual));
+        assertEquals("a", actual.get(0).getClusterId());
+        assertEquals("b", actual.get(1).getClusterId());
+        assertEquals(30L, actual.get(1).getCount());
+        assertTrue(actual.get(1).getAbsorbedIds().contains("d"));
+        assertEquals("e", actual.get(2).getClusterId());
+    }
+
+    /**
+     * 中間データが初期化した結果と一致することを検証する。
+     *
+     * @param kn K値
+     * @param actualDataSet 検証対象の学習データセット
+     */
+    private void assertIntermediate(int kn, LofDataSet actualDataSet)
+    {
+        LofDataSet expectedDataSet = actualDataSet.deepCopy();
+        LofCalculator.initDataSet(kn, expectedDataSet);
+        for (String dataId : expectedDataSet.getDataIdList())
+        {
+            LofPoint expectedPoint = expectedDataSet.getDataMap().get(dataId);
+            LofPoint actualPoint = actualDataSet.getDataMap().get(dataId);
+            assertEquals(expectedPoint.getkDistance(), actualPoint.getkDistance(), 0.0d);
+            assertEquals(expectedPoint.getkDistanceNeighbor(), actualPoint.getkDistanceNeighbor());
+            assertEquals(expectedPoint.getLrd(), actualPoint.getLrd(), 0.0d);
+        }
+    }
+
+    /**
+     * マイクロクラスタの要約点数の合計を算出する。
+     *
+     * @param microClusters マイクロクラスタのリスト
+     * @return 要約点数の合計
+     */
+    private long sumCount(List<LofMicroCluster> microClusters)
+    {
+        long result = 0L;
+        for (LofMicroCluster microCluster : microClusters)
+        {
+            result = result + microCluster.getCount();
+        }
+        return result;
+    }
+
+    /**
+     * 指定した点数の点を保持し、中間データを初期化した学習データセットを生成する。
+     *
+     * @param kn K値
+     * @param pointNum 点数
+     * @param random 乱数生成器
+     * @return 学習データセット
+     */
+    private LofDataSet createDataSet(int kn, int pointNum, Random random)
+    {
+        LofDataSet dataSet = new LofDataSet();
+        for (int index = 0; index < pointNum; index++)
+        {
+            dataSet.addData(createPoint("point" + index, random));
+        }
+        LofCalculator.initDataSet(kn, dataSet);
+        return dataSet;
+    }
+
+    /**
+     * 各座標が標準正規分布に従う3次元の点を生成する。
+     *
+     * @param dataId データID
+     * @param random 乱数生成器
+     * @return 点
+     */
+    private LofPoint createPoint(String dataId, Random random)
+    {
+        LofPoint point = new LofPoint();
+        point.setDataId(dataId);
+        point.setDataPoint(new double[]{random.nextGaussian(), random.nextGaussian(),
+                random.nextGaussian()});
+        return point;
+    }
+
+    /**
+     * 1次元のマイクロクラスタを生成する。
+     *
+     * @param clusterId マイクロクラスタのID
+     * @param center 中心点の座標
+     * @param count 要約点数
+     * @return マイクロクラスタ
+     */
+    private LofMicroCluster createCluster(String clusterId, double center, long count)
+    {
+        LofMicroCluster microCluster = new LofMicroCluster();
+        microCluster.setClusterId(clusterId);
+        microCluster.setCenter(new double[]{center});
+        microCluster.setCount(count);
+        microCluster.setSquaredSum(center * center * count);
+        return microCluster;
+    }
+}
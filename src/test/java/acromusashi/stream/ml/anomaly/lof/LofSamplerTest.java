@@ -0,0 +1,178 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.anomaly.lof;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.Random;
+
+import org.junit.Test;
+
+import acromusashi.stream.ml.anomaly.lof.entity.LofDataSet;
+import acromusashi.stream.ml.anomaly.lof.entity.LofPoint;
+
+/**
+ * LofSamplerのテストクラス
+ *
+ * @author kimura
+ */
+public class LofSamplerTest
+{
+    /**
+     * リザーバサンプリングで受信データの一部のみを追加し、受信した全期間のデータを保持することを確認する。
+     *
+     * @target {@link LofSampler#selectReplaceIndex(LofWindowPolicy, int, int, long, LofPoint, LofDataSet, Random)}
+     * @test 受信データの一部のみを追加し、受信した全期間のデータを保持すること
+     *    condition::保持数100でリザーバサンプリングを行い、10000点を受信
+     *    result::保持数が100、追加したデータ数が1000未満、保持データのうち前半5000点のデータが20以上80以下となること
+     */
+    @Test
+    public void testSelectReplaceIndex_リザーバサンプリング()
+    {
+        // 準備
+        Random random = new Random(1L);
+        LofDataSet dataSet = new LofDataSet();
+        int max = 100;
+        int addedCount = 0;
+
+        for (int index = 0; index < 10000; index++)
+        {
+            LofPoint point = createPoint(index, index);
+
+            // 実施
+            int replaceIndex = LofSampler.selectReplaceIndex(LofWindowPolicy.RESERVOIR, max, 1,
+                    0L, point, dataSet, random);
+
+            if (applyReplace(replaceIndex, point, dataSet) == true)
+            {
+                addedCount++;
+            }
+        }
+
+        // 検証
+        assertEquals(max, dataSet.getDataIdList().size());
+        assertTrue(addedCount < 1000);
+
+        int firstHalfCount = 0;
+        for (LofPoint point : dataSet.getDataMap().values())
+        {
+            if (point.getPointId() < 5000)
+            {
+                firstHalfCount++;
+            }
+        }
+        assertTrue(firstHalfCount >= 20);
+        assertTrue(firstHalfCount <= 80);
+    }
+
+    /**
+     * 層別サンプリングで集中的に受信したデータが1層分の保持数を超えて学習データを占有しないことを確認する。
+     *
+     * @target {@link LofSampler#selectReplaceIndex(LofWindowPolicy, int, int, long, LofPoint, LofDataSet, Random)}
+     * @test 層毎の保持数を超えて学習データを占有しないこと
+     *    condition::保持数100、層数10、層の期間1000ミリ秒で層別サンプリングを行い、10層分のデータを受信。最後の層のみ5000点、他の層は20点を受信
+     *    result::保持数が100、各層のデータが10ずつとなり、データIDのリストが判定時刻の古い順に並ぶこと
+     */
+    @Test
+    public void testSelectReplaceIndex_層別サンプリング()
+    {
+        // 準備
+        Random random = new Random(2L);
+        LofDataSet dataSet = new LofDataSet();
+        int max = 100;
+        long pointId = 0L;
+
+        for (int stratum = 0; stratum < 10; stratum++)
+        {
+            int receiveNum = 20;
+            if (stratum == 9)
+            {
+                receiveNum = 5000;
+            }
+
+            for (int index = 0; index < receiveNum; index++)
+            {
+                long judgeTime = stratum * 1000L + index * 1000L / receiveNum;
+                LofPoint point = createPoint(pointId, judgeTime);
+                pointId++;
+
+                // 実施
+                int replaceIndex = LofSampler.selectReplaceIndex(LofWindowPolicy.STRATIFIED, max,
+                        10, 1000L, point, dataSet, random);
+
+                applyReplace(replaceIndex, point, dataSet);
+            }
+        }
+
+        // 検証
+        assertEquals(max, dataSet.getDataIdList().size());
+
+        int[] stratumCounts = new int[10];
+        long previousTime = -1L;
+        for (String dataId : dataSet.getDataIdList())
+        {
+            long judgeTime = dataSet.getDataMap().get(dataId).getJudgeDate().getTime();
+            assertTrue(previousTime <= judgeTime);
+            previousTime = judgeTime;
+            stratumCounts[(int) (judgeTime / 1000L)]++;
+        }
+
+        for (int stratum = 0; stratum < 10; stratum++)
+        {
+            assertEquals(10, stratumCounts[stratum]);
+        }
+    }
+
+    /**
+     * 選択結果に従って学習データセットを更新する。
+     *
+     * @param replaceIndex 置き換える学習データの位置
+     * @param point 受信データ
+     * @param dataSet 学習データセット
+     * @return 受信データを追加した場合true
+     */
+    private static boolean applyReplace(int replaceIndex, LofPoint point, LofDataSet dataSet)
+    {
+        if (replaceIndex == LofSampler.NOT_SAMPLED)
+        {
+            return false;
+        }
+
+        if (replaceIndex != LofSampler.APPEND)
+        {
+            dataSet.deleteData(dataSet.getDataIdList().get(replaceIndex));
+        }
+
+        dataSet.addData(point);
+        return true;
+    }
+
+    /**
+     * 判定時刻を指定して1次元の点を生成する。
+     *
+     * @param pointId 数値のデータID
+     * @param judgeTime 判定時刻
+     * @return 点
+     */
+    private static LofPoint createPoint(long pointId, long judgeTime)
+    {
+        LofPoint point = new LofPoint();
+        point.setDataId("point" + pointId);
+        point.setPointId(pointId);
+        point.setJudgeDate(new Date(judgeTime));
+        point.setDataPoint(new double[]{pointId});
+        return point;
+    }
+}
@@ -12,21 +12,31 @@
 */
 package acromusashi.stream.ml.anomaly.lof;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import storm.trident.operation.TridentOperationContext;
 import storm.trident.state.map.MapState;
+import storm.trident.tuple.TridentTuple;
 import acromusashi.stream.ml.anomaly.lof.entity.LofDataSet;
+import acromusashi.stream.ml.anomaly.lof.entity.LofPoint;
 import acromusashi.stream.ml.anomaly.lof.entity.LofResult;
+import acromusashi.stream.ml.anomaly.lof.entity.LofWindow;
 import acromusashi.stream.ml.common.notify.ResultNotifier;
 
 /**
@@ -134,4 +144,90 @@ public class LofUpdaterTest
         Mockito.verify(this.mockDataNotifier).initialize(this.mockConfMap, this.mockContext);
         Mockito.verify(this.mockBatchNotifier).initialize(this.mockConfMap, this.mockContext);;
     }
+
+    /**
+     * モデルキーを指定した場合に、モデルキー毎の学習モデルを一括で取得、保存することを確認する。
+     * 
+     * @target {@link LofUpdater#updateState(MapState, List, storm.trident.operation.TridentCollector)}
+     * @test モデルキー毎の学習モデルを一括で取得、保存すること
+     *    condition::モデルキー「a」「b」「a」の順に3Tupleを受信。状態は存在せず、モデルキー「b」のみ最大保持数5を設定
+     *    result::multiGet、multiPutがそれぞれ1回のみ実行され、モデルキー毎の学習モデルに受信データが追加されること
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testUpdateState_モデルキー毎一括取得保存()
+    {
+        // 準備
+        this.target.setStateName("lof");
+        this.target.setKn(3);
+        this.target.setMinDataCount(10);
+        this.target.setMaxDataCount(100);
+        this.target.setModelKeyField("host");
+        Map<String, Integer> keyMaxDataCounts = new HashMap<>();
+        keyMaxDataCounts.put("b", 5);
+        this.target.setKeyMaxDataCounts(keyMaxDataCounts);
+
+        List<TridentTuple> tuples = Arrays.asList(createTuple("a", "point1"),
+                createTuple("b", "point2"), createTuple("a", "point3"));
+        Mockito.when(this.mockState.multiGet(Mockito.anyList())).thenReturn(
+                new ArrayList<LofDataSet>());
+
+        // 実施
+        this.target.updateState(this.mockState, tuples, null);
+
+        // 検証
+        List<List<Object>> expectedKeys = new ArrayList<>();
+        expectedKeys.add(Arrays.asList((Object) "lof.a"));
+        expectedKeys.add(Arrays.asList((Object) "lof.b"));
+        Mockito.verify(this.mockState, Mockito.times(1)).multiGet(expectedKeys);
+
+        ArgumentCaptor<List> dataSetCaptor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(this.mockState, Mockito.times(1)).multiPut(Mockito.eq(expectedKeys),
+                dataSetCaptor.capture());
+        List<LofDataSet> actualDataSets = dataSetCaptor.getValue();
+        assertEquals(Arrays.asList("point1", "point3"), actualDataSets.get(0).getDataIdList());
+        assertEquals(0, actualDataSets.get(0).getMaxDataCount());
+        assertEquals(Arrays.asList("point2"), actualDataSets.get(1).getDataIdList());
+        assertEquals(5, actualDataSets.get(1).getMaxDataCount());
+    }
+
+    /**
+     * モデルキーを指定した場合に、スロット間の距離のキャッシュを用いないことを確認する。
+     * 
+     * @target {@link LofUpdater#getDistanceCache(LofWindow)}
+     * @test モデルキーを指定した場合はキャッシュを用いないこと
+     *    condition::距離のキャッシュを用いる設定で、モデルキーの指定前後にキャッシュを取得
+     *    result::モデルキーの指定前はキャッシュが取得でき、指定後はnullが返ること
+     */
+    @Test
+    public void testGetDistanceCache_モデルキー指定時キャッシュ無効()
+    {
+        // 準備
+        this.target.setWindowDistanceCache(true);
+        LofWindow window = new LofWindow(100, 3, 2);
+
+        // 実施・検証
+        assertNotNull(this.target.getDistanceCache(window));
+        this.target.setModelKeyField("host");
+        assertNull(this.target.getDistanceCache(window));
+    }
+
+    /**
+     * モデルキーと点を保持するTupleを生成する。
+     * 
+     * @param modelKey モデルキー
+     * @param dataId データID
+     * @return Tuple
+     */
+    private TridentTuple createTuple(String modelKey, String dataId)
+    {
+        LofPoint point = new LofPoint();
+        point.setDataId(dataId);
+        point.setDataPoint(new double[]{1.0d, 2.0d});
+
+        TridentTuple tuple = Mockito.mock(TridentTuple.class);
+        Mockito.when(tuple.get(0)).thenReturn(point);
+        Mockito.when(tuple.getValueByField("host")).thenReturn(modelKey);
+        return tuple;
+    }
 }
@@ -0,0 +1,466 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.anomaly.lof;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import acromusashi.stream.ml.anomaly.lof.entity.LofDataSet;
+import acromusashi.stream.ml.anomaly.lof.entity.LofDistanceCache;
+import acromusashi.stream.ml.anomaly.lof.entity.LofPoint;
+import acromusashi.stream.ml.anomaly.lof.entity.LofWindow;
+
+/**
+ * LofWindowCalculatorのテストクラス
+ *
+ * @author kimura
+ */
+public class LofWindowCalculatorTest
+{
+    /**
+     * 学習データウィンドウへの点の追加で算出したLOF値が、LofDataSetを用いて算出した値と一致することを確認する。
+     *
+     * @target {@link LofWindowCalculator#addPoint(LofWindow, LofPoint)}
+     * @test LofDataSetを用いて算出した値と一致すること
+     *    condition::保持数100、K=5で300点を順に追加し、古い点の削除を伴う追加時のLOF値をLofCalculatorで算出した値と比較
+     *    result::LOF値が一致すること
+     */
+    @Test
+    public void testAddPoint_LofDataSet算出結果一致()
+    {
+        // 準備
+        Random random = new Random(1L);
+        int kn = 5;
+        int max = 100;
+        LofWindow window = new LofWindow(max, kn, 3);
+        LofDataSet dataSet = new LofDataSet();
+
+        for (int index = 0; index < max; index++)
+        {
+            LofPoint point = createRandomPoint(index, random);
+            LofWindowCalculator.addPoint(window, point);
+            dataSet.addData(point.deepCopy());
+        }
+        LofCalculator.initDataSet(kn, dataSet);
+
+        for (int index = max; index < max + 200; index++)
+        {
+            LofPoint point = createRandomPoint(index, random);
+
+            // 実施
+            double actual = LofWindowCalculator.addPoint(window, point);
+
+            // 検証
+            double expected = LofCalculator.calculateLofWithUpdate(kn, max, point.deepCopy(),
+                    dataSet);
+            assertEquals(expected, actual, 1.0e-10d);
+            assertEquals(max, window.getSize());
+        }
+    }
+
+    /**
+     * 距離が同値の点を多く含む場合も、中間データの更新範囲を限定した結果が全点の中間データを再計算した結果と一致することを確認する。
+     *
+     * @target {@link LofWindowCalculator#addPoint(LofWindow, LofPoint)}
+     * @test 全点の中間データを再計算した結果と一致すること
+     *    condition::保持数100、K=5で数値のデータIDを持たない格子上の点300点を順に追加し、追加毎に複製したウィンドウの中間データを再計算
+     *    result::全点のK距離、K距離近傍、局所到達可能密度が一致すること
+     */
+    @Test
+    public void testAddPoint_格子点全点再計算結果一致()
+    {
+        // 準備
+        Random random = new Random(2L);
+        int kn = 5;
+        LofWindow window = new LofWindow(100, kn, 3);
+
+        for (int index = 0; index < 300; index++)
+        {
+            LofPoint point = createRandomPoint(index, random);
+            point.setPointId(0L);
+            point.setDataPoint(new double[]{random.nextInt(10), random.nextInt(10),
+                    random.nextInt(10)});
+
+            // 実施
+            LofWindowCalculator.addPoint(window, point);
+
+            // 検証
+            LofWindow expected = window.deepCopy();
+            LofWindowCalculator.initWindow(expected);
+            for (int order = 0; order < window.getSize(); order++)
+            {
+                int slot = window.getSlot(order);
+                int count = expected.getNeighborCounts()[slot];
+                assertEquals(count, window.getNeighborCounts()[slot]);
+                for (int position = slot * kn; position < slot * kn + count; position++)
+                {
+                    assertEquals(expected.getNeighbors()[position],
+                            window.getNeighbors()[position]);
+                }
+                assertEquals(expected.getkDistances()[slot], window.getkDistances()[slot], 0.0d);
+                assertEquals(expected.getLrds()[slot], window.getLrds()[slot], 0.0d);
+            }
+        }
+    }
+
+    /**
+     * スロット間の距離のキャッシュを用いて算出したLOF値が、キャッシュを用いずに算出した値と一致することを確認する。
+     *
+     * @target {@link LofWindowCalculator#addPoint(LofWindow, LofPoint, LofDistanceCache)}
+     * @test キャッシュを用いずに算出した値と一致すること
+     *    condition::保持数100、K=5で300点を順に追加し、200点目の追加前に双方のウィンドウをマージで再構築
+     *    result::LOF値、K距離、局所到達可能密度が一致すること
+     */
+    @Test
+    public void testAddPoint_距離キャッシュ算出結果一致()
+    {
+        // 準備
+        Random random = new Random(4L);
+        int kn = 5;
+        int max = 100;
+        LofWindow expectedWindow = new LofWindow(max, kn, 3);
+        LofWindow actualWindow = new LofWindow(max, kn, 3);
+        LofDistanceCache cache = new LofDistanceCache();
+
+        for (int index = 0; index < 300; index++)
+        {
+            // ウィンドウの復元、マージによってスロットの配置が変化した場合を再現する。
+            if (index == 200)
+            {
+                expectedWindow = LofWindowCalculator.mergeWindow(expectedWindow, new LofWindow(
+                        max, kn, 3));
+                actualWindow = LofWindowCalculator.mergeWindow(actualWindow, new LofWindow(max,
+                        kn, 3));
+            }
+
+            LofPoint point = createRandomPoint(index, random);
+
+            // 実施
+            double actual = LofWindowCalculator.addPoint(actualWindow, point, cache);
+
+            // 検証
+            double expected = LofWindowCalculator.addPoint(expectedWindow, point);
+            assertEquals(expected, actual, 0.0d);
+        }
+
+        for (int order = 0; order < max; order++)
+        {
+            int expectedSlot = expectedWindow.getSlot(order);
+            int actualSlot = actualWindow.getSlot(order);
+            assertEquals(expectedWindow.getkDistances()[expectedSlot],
+                    actualWindow.getkDistances()[actualSlot], 0.0d);
+            assertEquals(expectedWindow.getLrds()[expectedSlot],
+                    actualWindow.getLrds()[actualSlot], 0.0d);
+        }
+    }
+
+    /**
+     * 数値のデータIDと判定時刻が同一で座標が異なる点を格納したウィンドウで、キャッシュの距離が再算出されることを確認する。
+     *
+     * @target {@link LofWindowCalculator#addPoint(LofWindow, LofPoint, LofDistanceCache)}
+     * @test キャッシュを用いずに算出した値と一致すること
+     *    condition::保持数50、K=5のウィンドウに50点を追加してキャッシュを生成した後、数値のデータIDと判定時刻を変えずに座標のみを変更したウィンドウに点を追加
+     *    result::LOF値がキャッシュを用いずに算出した値と一致すること
+     */
+    @Test
+    public void testAddPoint_距離キャッシュ座標変更検知()
+    {
+        // 準備
+        Random random = new Random(7L);
+        int kn = 5;
+        LofWindow baseWindow = new LofWindow(50, kn, 3);
+        LofDistanceCache cache = new LofDistanceCache();
+        for (int index = 0; index < 50; index++)
+        {
+            LofWindowCalculator.addPoint(baseWindow, createRandomPoint(index, random), cache);
+        }
+
+        LofWindow expectedWindow = baseWindow.deepCopy();
+        for (int index = 0; index < expectedWindow.getCoordinates().length; index++)
+        {
+            expectedWindow.getCoordinates()[index] = random.nextGaussian();
+        }
+        LofWindowCalculator.initWindow(expectedWindow);
+        LofWindow actualWindow = expectedWindow.deepCopy();
+        LofPoint point = createRandomPoint(50, random);
+
+        // 実施
+        double actual = LofWindowCalculator.addPoint(actualWindow, point, cache);
+
+        // 検証
+        double expected = LofWindowCalculator.addPoint(expectedWindow, point);
+        assertEquals(expected, actual, 0.0d);
+    }
+
+    /**
+     * 距離のキャッシュの生成可否が、保持可能な点数と次元数から算出した消費メモリで判定されることを確認する。
+     *
+     * @target {@link LofDistanceCache#isAvailable(int, int, long)}
+     * @test 消費メモリが上限以内の場合のみ生成可能と判定されること
+     *    condition::上限64MBで保持可能な点数1000/5000、上限を設けずに保持可能な点数46341の生成可否を判定
+     *    result::1000点は生成可能、5000点、46341点は生成不可と判定されること
+     */
+    @Test
+    public void testIsAvailable_消費メモリ判定()
+    {
+        // 実施・検証
+        assertTrue(LofDistanceCache.isAvailable(1000, 3, LofDistanceCache.DEFAULT_MAX_BYTES));
+        assertFalse(LofDistanceCache.isAvailable(5000, 3, LofDistanceCache.DEFAULT_MAX_BYTES));
+        assertFalse(LofDistanceCache.isAvailable(LofDistanceCache.MAX_CAPACITY + 1, 3,
+                Long.MAX_VALUE));
+        assertEquals(1000L * 999L / 2L * 8L + 1000L * 41L,
+                LofDistanceCache.estimateBytes(1000, 3));
+    }
+
+    /**
+     * 学習データウィンドウを更新せずに算出したLOF値が、LofDataSetを用いて算出した値と一致することを確認する。
+     *
+     * @target {@link LofWindowCalculator#calculateLof(LofWindow, double[])}
+     * @test LofDataSetを用いて算出した値と一致すること
+     *    condition::保持数100、K=5のウィンドウに150点を追加した後、50点のLOF値を算出
+     *    result::LOF値が一致し、ウィンドウの保持数が変化しないこと
+     */
+    @Test
+    public void testCalculateLof_LofDataSet算出結果一致()
+    {
+        // 準備
+        Random random = new Random(2L);
+        int kn = 5;
+        int max = 100;
+        LofWindow window = new LofWindow(max, kn, 3);
+        for (int index = 0; index < 150; index++)
+        {
+            LofWindowCalculator.addPoint(window, createRandomPoint(index, random));
+        }
+
+        LofDataSet dataSet = new LofDataSet();
+        for (LofPoint point : LofWindowCalculator.toPoints(window))
+        {
+            dataSet.addData(point);
+        }
+        LofCalculator.initDataSet(kn, dataSet);
+
+        for (int index = 150; index < 200; index++)
+        {
+            LofPoint point = createRandomPoint(index, random);
+
+            // 実施
+            double actual = LofWindowCalculator.calculateLof(window, point.getDataPoint());
+
+            // 検証
+            double expected = LofCalculator.calculateLofWithoutUpdate(kn, point, dataSet);
+            assertEquals(expected, actual, 1.0e-10d);
+            assertEquals(max, window.getSize());
+        }
+    }
+
+    /**
+     * 学習データウィンドウのマージ結果が、双方の新しい点から構成されることを確認する。
+     *
+     * @target {@link LofWindowCalculator#mergeWindow(LofWindow, LofWindow)}
+     * @test 双方の新しい点から構成されること
+     *    condition::保持数10のウィンドウに偶数番目の点を、もう一方に奇数番目の点を追加し、一方には重複する点を追加してマージ
+     *    result::重複を除いた最新の10点が古い順に格納されること
+     */
+    @Test
+    public void testMergeWindow_新しい点でマージ()
+    {
+        // 準備
+        Random random = new Random(3L);
+        LofWindow baseWindow = new LofWindow(10, 3, 3);
+        LofWindow targetWindow = new LofWindow(10, 3, 3);
+        for (int index = 0; index < 30; index++)
+        {
+            LofPoint point = createRandomPoint(index, random);
+            if (index % 2 == 0)
+            {
+                LofWindowCalculator.addPoint(baseWindow, point);
+            }
+            else
+            {
+                LofWindowCalculator.addPoint(targetWindow, point);
+            }
+
+            if (index == 29)
+            {
+                LofWindowCalculator.addPoint(baseWindow, point);
+            }
+        }
+
+        // 実施
+        LofWindow actual = LofWindowCalculator.mergeWindow(baseWindow, targetWindow);
+
+        // 検証
+        List<LofPoint> actualPoints = LofWindowCalculator.toPoints(actual);
+        assertEquals(10, actualPoints.size());
+        for (int index = 0; index < 10; index++)
+        {
+            assertEquals(20 + index, actualPoints.get(index).getPointId());
+        }
+    }
+
+    /**
+     * 数値のデータIDを持たない点同士のマージで、データIDが異なる点が除外されず、同一の点が重複しないことを確認する。
+     *
+     * @target {@link LofWindowCalculator#mergeWindow(LofWindow, LofWindow)}
+     * @test データIDで点が識別されること
+     *    condition::数値のデータIDが0の点を、保持数10のウィンドウに偶数番目、もう一方に奇数番目を追加し、一方には重複する点を追加してマージした後、マージ結果に再度マージ対象をマージ
+     *    result::いずれのマージ結果も重複を除いた最新の10点が古い順に格納されること
+     */
+    @Test
+    public void testMergeWindow_数値IDなしデータID識別()
+    {
+        // 準備
+        Random random = new Random(4L);
+        LofWindow baseWindow = new LofWindow(10, 3, 3);
+        LofWindow targetWindow = new LofWindow(10, 3, 3);
+        for (int index = 0; index < 30; index++)
+        {
+            LofPoint point = createRandomPoint(index, random);
+            point.setPointId(0L);
+            if (index % 2 == 0)
+            {
+                LofWindowCalculator.addPoint(baseWindow, point);
+            }
+            else
+            {
+                LofWindowCalculator.addPoint(targetWindow, point);
+            }
+
+            if (index == 29)
+            {
+                LofWindowCalculator.addPoint(baseWindow, point);
+            }
+        }
+
+        // 実施
+        LofWindow actual = LofWindowCalculator.mergeWindow(baseWindow, targetWindow);
+        LofWindow actualRemerged = LofWindowCalculator.mergeWindow(actual, targetWindow);
+
+        // 検証
+        for (LofWindow actualWindow : new LofWindow[]{actual, actualRemerged})
+        {
+            List<LofPoint> actualPoints = LofWindowCalculator.toPoints(actualWindow);
+            assertEquals(10, actualPoints.size());
+            for (int index = 0; index < 10; index++)
+            {
+                assertEquals(20 + index, actualPoints.get(index).getJudgeDate().getTime());
+            }
+        }
+    }
+
+    /**
+     * 学習データウィンドウを保持しない学習データセットとのマージで、当該データセットの点がマージされることを確認する。
+     *
+     * @target {@link LofWindowCalculator#mergeWindow(LofDataSet, LofDataSet)}
+     * @test ウィンドウを保持しない学習データセットの点がマージされること
+     *    condition::保持数10のウィンドウに偶数番目の点を追加した学習データセットと、ウィンドウを保持せず奇数番目の点を保持する学習データセットをマージ
+     *    result::双方の点から最新の10点が古い順に格納されること
+     */
+    @Test
+    public void testMergeWindow_ウィンドウなしデータセットマージ()
+    {
+        // 準備
+        Random random = new Random(5L);
+        LofDataSet baseDataSet = new LofDataSet();
+        baseDataSet.setWindow(new LofWindow(10, 3, 3));
+        LofDataSet targetDataSet = new LofDataSet();
+        for (int index = 0; index < 30; index++)
+        {
+            LofPoint point = createRandomPoint(index, random);
+            if (index % 2 == 0)
+            {
+                LofWindowCalculator.addPoint(baseDataSet.getWindow(), point);
+            }
+            else
+            {
+                targetDataSet.addData(point);
+            }
+        }
+
+        // 実施
+        LofWindow actual = LofWindowCalculator.mergeWindow(baseDataSet, targetDataSet);
+
+        // 検証
+        List<LofPoint> actualPoints = LofWindowCalculator.toPoints(actual);
+        assertEquals(10, actualPoints.size());
+        for (int index = 0; index < 10; index++)
+        {
+            assertEquals(20 + index, actualPoints.get(index).getPointId());
+        }
+    }
+
+    /**
+     * 学習データセットのDeepCopyで学習データウィンドウが複製されることを確認する。
+     *
+     * @target {@link LofDataSet#deepCopy()}
+     * @test 学習データウィンドウが複製されること
+     *    condition::保持数10のウィンドウに15点を追加した学習データセットを複製し、複製元のウィンドウに点を追加
+     *    result::複製したウィンドウの点と中間データが複製時点の値と一致し、複製元への追加の影響を受けないこと
+     */
+    @Test
+    public void testDeepCopy_ウィンドウ複製()
+    {
+        // 準備
+        Random random = new Random(6L);
+        LofDataSet dataSet = new LofDataSet();
+        dataSet.setWindow(new LofWindow(10, 3, 3));
+        for (int index = 0; index < 15; index++)
+        {
+            LofWindowCalculator.addPoint(dataSet.getWindow(), createRandomPoint(index, random));
+        }
+        LofWindow expected = dataSet.getWindow();
+        double[] expectedLrds = expected.getLrds().clone();
+
+        // 実施
+        LofDataSet actual = dataSet.deepCopy();
+
+        // 検証
+        LofWindowCalculator.addPoint(expected, createRandomPoint(15, random));
+        LofWindow actualWindow = actual.getWindow();
+        assertEquals(10, actualWindow.getSize());
+        assertEquals(5, actualWindow.getStart());
+        assertArrayEquals(expectedLrds, actualWindow.getLrds(), 0.0d);
+        List<LofPoint> actualPoints = LofWindowCalculator.toPoints(actualWindow);
+        for (int index = 0; index < 10; index++)
+        {
+            assertEquals(5 + index, actualPoints.get(index).getPointId());
+        }
+    }
+
+    /**
+     * 各座標が標準正規分布に従う3次元の点を生成する。
+     *
+     * @param pointId 数値のデータID
+     * @param random 乱数生成器
+     * @return 点
+     */
+    private static LofPoint createRandomPoint(long pointId, Random random)
+    {
+        LofPoint point = new LofPoint();
+        point.setDataId("point" + pointId);
+        point.setPointId(pointId);
+        point.setJudgeDate(new Date(pointId));
+        point.setDataPoint(new double[]{random.nextGaussian(), random.nextGaussian(),
+                random.nextGaussian()});
+        return point;
+    }
+}
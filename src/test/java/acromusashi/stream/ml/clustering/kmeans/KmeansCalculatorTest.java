@@ -14,13 +14,18 @@ package acromusashi.stream.ml.clustering.kmeans;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
@@ -33,6 +38,7 @@ import acromusashi.stream.ml.clustering.kmeans.entity.CentroidsComparator;
 import acromusashi.stream.ml.clustering.kmeans.entity.KmeansDataSet;
 import acromusashi.stream.ml.clustering.kmeans.entity.KmeansPoint;
 import acromusashi.stream.ml.clustering.kmeans.entity.KmeansResult;
+import acromusashi.stream.ml.common.util.PointMatrix;
 
 import com.google.common.collect.Lists;
 
@@ -148,6 +154,346 @@ public class KmeansCalculatorTest
         assertEquals(3, actual.getCentroids().length);
     }
 
+    /**
+     * 同一の初期中心点を用いた場合、上限/下限を用いた学習とLloydアルゴリズムの学習結果が一致することを確認する。
+     * 
+     * @target {@link KmeansCalculator#trainWithBounds(List, List, int, double)}
+     * @test Lloydアルゴリズムと同一の学習結果が得られること
+     *    condition::3000件のデータ、クラスタ数8、同一の初期中心点で学習を実施
+     *    result::中心点、クラスタ毎の要素数が一致すること
+     */
+    @Test
+    public void testTrainWithBounds_Lloyd結果一致() throws IOException
+    {
+        // 準備 
+        String filePath = DATA_DIR + "KmeansCalculatorTest_3000.csv";
+        File targetFile = new File(filePath);
+        List<String> fileContents = FileUtils.readLines(targetFile);
+
+        List<KmeansPoint> pointList = Lists.newArrayList();
+        for (String targetLine : fileContents)
+        {
+            KmeansPoint entity = convertToEntity(targetLine, ",");
+            pointList.add(entity);
+        }
+
+        List<KmeansPoint> initialCentroids = KmeansCalculator.createInitialCentroids(pointList, 8);
+        KmeansDataSet expected = KmeansCalculator.trainByLloyd(pointList, initialCentroids, 100,
+                0.0d);
+
+        // 実施
+        KmeansDataSet actual = KmeansCalculator.trainWithBounds(pointList, initialCentroids, 100,
+                0.0d);
+
+        // 検証
+        assertArrayEquals(expected.getClusteredNum(), actual.getClusteredNum());
+        for (int index = 0; index < 8; index++)
+        {
+            assertArrayEquals(expected.getCentroids()[index], actual.getCentroids()[index], 0.0d);
+        }
+    }
+
+    /**
+     * 距離を比較できない点を含む場合も、Lloydアルゴリズムの学習が完了することを確認する。
+     * 
+     * @target {@link KmeansCalculator#trainByLloyd(List, List, int, double)}
+     * @test 例外が発生せず、全点がいずれかのクラスタに割り当てられること
+     *    condition::NaNを含む点、1e200のオーダーの座標を持つ点を含む5点を、クラスタ数2で学習
+     *    result::クラスタ毎の要素数の合計が5となること
+     */
+    @Test
+    public void testTrainByLloyd_距離比較不能点()
+    {
+        // 準備
+        List<KmeansPoint> pointList = Lists.newArrayList(createPoint(0.0d, 0.0d),
+                createPoint(1.0d, 1.0d), createPoint(10.0d, 10.0d),
+                createPoint(Double.NaN, 0.0d), createPoint(1.0e200d, -1.0e200d));
+        List<KmeansPoint> initialCentroids = Lists.newArrayList(createPoint(0.0d, 0.0d),
+                createPoint(10.0d, 10.0d));
+
+        // 実施
+        KmeansDataSet actual = KmeansCalculator.trainByLloyd(pointList, initialCentroids, 10,
+                0.0d);
+
+        // 検証
+        assertEquals(5L, actual.getClusteredNum()[0] + actual.getClusteredNum()[1]);
+    }
+
+    /**
+     * 割当ステップを並列実行した場合に逐次実行のLloydアルゴリズムと同じ結果となることを確認する。
+     * 
+     * @target {@link KmeansCalculator#trainInParallel(List, List, int, double, ForkJoinPool, int)}
+     * @test 逐次実行のLloydアルゴリズムと同じクラスタリング結果となること
+     *    condition::3000点、クラスタ数8、4スレッド、分割単位100点で学習
+     *    result::各クラスタの要素数が一致し、中心点の差分が誤差範囲内であること
+     */
+    @Test
+    public void testTrainInParallel_Lloyd結果一致() throws IOException
+    {
+        // 準備 
+        String filePath = DATA_DIR + "KmeansCalculatorTest_3000.csv";
+        File targetFile = new File(filePath);
+        List<String> fileContents = FileUtils.readLines(targetFile);
+
+        List<KmeansPoint> pointList = Lists.newArrayList();
+        for (String targetLine : fileContents)
+        {
+            KmeansPoint entity = convertToEntity(targetLine, ",");
+            pointList.add(entity);
+        }
+
+        List<KmeansPoint> initialCentroids = KmeansCalculator.createInitialCentroids(pointList, 8);
+        KmeansDataSet expected = KmeansCalculator.trainByLloyd(pointList, initialCentroids, 100,
+                0.0d);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        // 実施
+        KmeansDataSet actual = null;
+        try
+        {
+            actual = KmeansCalculator.trainInParallel(pointList, initialCentroids, 100, 0.0d,
+                    pool, 100);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        // 検証
+        assertArrayEquals(expected.getClusteredNum(), actual.getClusteredNum());
+        for (int index = 0; index < 8; index++)
+        {
+            assertArrayEquals(expected.getCentroids()[index], actual.getCentroids()[index],
+                    0.000001d);
+        }
+    }
+
+    /**
+     * 距離を比較できない点を含む場合も、割当ステップを並列実行した学習が完了することを確認する。
+     * 
+     * @target {@link KmeansCalculator#trainInParallel(List, List, int, double, ForkJoinPool, int)}
+     * @test 例外が発生せず、逐次実行のLloydアルゴリズムと同じ要素数となること
+     *    condition::NaNを含む点、1e200のオーダーの座標を持つ点を含む5点を、クラスタ数2、2スレッド、分割単位1点で学習
+     *    result::クラスタ毎の要素数が逐次実行の結果と一致すること
+     */
+    @Test
+    public void testTrainInParallel_距離比較不能点()
+    {
+        // 準備
+        List<KmeansPoint> pointList = Lists.newArrayList(createPoint(0.0d, 0.0d),
+                createPoint(1.0d, 1.0d), createPoint(10.0d, 10.0d),
+                createPoint(Double.NaN, 0.0d), createPoint(1.0e200d, -1.0e200d));
+        List<KmeansPoint> initialCentroids = Lists.newArrayList(createPoint(0.0d, 0.0d),
+                createPoint(10.0d, 10.0d));
+        KmeansDataSet expected = KmeansCalculator.trainByLloyd(pointList, initialCentroids, 10,
+                0.0d);
+        ForkJoinPool pool = new ForkJoinPool(2);
+
+        // 実施
+        KmeansDataSet actual = null;
+        try
+        {
+            actual = KmeansCalculator.trainInParallel(pointList, initialCentroids, 10, 0.0d,
+                    pool, 1);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        // 検証
+        assertArrayEquals(expected.getClusteredNum(), actual.getClusteredNum());
+    }
+
+    /**
+     * 距離を比較できない点を含む場合も、KMeans++アルゴリズムで初期中心点を生成できることを確認する。
+     * 
+     * @target {@link KmeansCalculator#createInitialCentroids(List, int, Random)}
+     * @test 例外が発生せず、クラスタ数分の初期中心点が生成されること
+     *    condition::NaNを含む点、1e200のオーダーの座標を持つ点を含む5点から、クラスタ数3で初期中心点を生成
+     *    result::3個の初期中心点が生成されること
+     */
+    @Test
+    public void testCreateInitialCentroids_距離比較不能点()
+    {
+        // 準備
+        List<KmeansPoint> pointList = Lists.newArrayList(createPoint(0.0d, 0.0d),
+                createPoint(Double.NaN, 0.0d), createPoint(1.0e200d, -1.0e200d),
+                createPoint(1.0d, 1.0d), createPoint(10.0d, 10.0d));
+
+        // 実施
+        List<KmeansPoint> actual = KmeansCalculator.createInitialCentroids(pointList, 3,
+                new Random(1L));
+
+        // 検証
+        assertEquals(3, actual.size());
+    }
+
+    /**
+     * KMeans||アルゴリズムでシードが同一の場合に同一の初期中心点が生成されることを確認する。
+     * 
+     * @target {@link KmeansCalculator#createInitialCentroidsScalable(List, int, Random)}
+     * @test シードが同一の場合に同一の初期中心点が生成されること
+     *    condition::3000点、クラスタ数8、同一シードの乱数生成器で2回生成
+     *    result::重複のないクラスタ数分の中心点が生成され、2回の生成結果が一致すること
+     */
+    @Test
+    public void testCreateInitialCentroidsScalable_シード固定() throws IOException
+    {
+        // 準備 
+        String filePath = DATA_DIR + "KmeansCalculatorTest_3000.csv";
+        File targetFile = new File(filePath);
+        List<String> fileContents = FileUtils.readLines(targetFile);
+
+        List<KmeansPoint> pointList = Lists.newArrayList();
+        for (String targetLine : fileContents)
+        {
+            KmeansPoint entity = convertToEntity(targetLine, ",");
+            pointList.add(entity);
+        }
+
+        // 実施
+        List<KmeansPoint> expected = KmeansCalculator.createInitialCentroidsScalable(pointList, 8,
+                new Random(100L));
+        List<KmeansPoint> actual = KmeansCalculator.createInitialCentroidsScalable(pointList, 8,
+                new Random(100L));
+
+        // 検証
+        assertEquals(8, actual.size());
+        assertEquals(8, new HashSet<KmeansPoint>(actual).size());
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * KMeans++アルゴリズムでシードが同一の場合に、全点の距離を都度算出する従来方式と同一の初期中心点が生成されることを確認する。
+     * 
+     * @target {@link KmeansCalculator#createInitialCentroids(List, int, Random)}
+     * @test シードが同一の場合に従来方式と同一の初期中心点が生成されること
+     *    condition::3000点、クラスタ数8、16、同一シードの乱数生成器で従来方式と本方式で生成
+     *    result::生成された中心点リストが一致すること
+     */
+    @Test
+    public void testCreateInitialCentroids_従来方式結果一致() throws IOException
+    {
+        // 準備 
+        String filePath = DATA_DIR + "KmeansCalculatorTest_3000.csv";
+        File targetFile = new File(filePath);
+        List<String> fileContents = FileUtils.readLines(targetFile);
+
+        List<KmeansPoint> pointList = Lists.newArrayList();
+        for (String targetLine : fileContents)
+        {
+            KmeansPoint entity = convertToEntity(targetLine, ",");
+            pointList.add(entity);
+        }
+
+        for (int clusterNum : new int[]{8, 16})
+        {
+            for (long seed = 0L; seed < 5L; seed++)
+            {
+                List<KmeansPoint> expected = createInitialCentroidsByDxs(pointList, clusterNum,
+                        new Random(seed));
+
+                // 実施
+                List<KmeansPoint> actual = KmeansCalculator.createInitialCentroids(pointList,
+                        clusterNum, new Random(seed));
+
+                // 検証
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    /**
+     * ミニバッチ方式で既存の学習モデルが累計要素数に応じた学習率で更新されることを確認する。
+     * 
+     * @target {@link KmeansCalculator#updateDataModelByMiniBatch(KmeansDataSet, List)}
+     * @test 累計要素数に応じた学習率で中心点が更新されること
+     *    condition::要素数1、3の2中心点を持つ学習モデルに2点を投入
+     *    result::中心点が学習率1/2、1/4で更新され、要素数が加算され、元の学習モデルが更新されないこと
+     */
+    @Test
+    public void testUpdateDataModelByMiniBatch_学習率反映()
+    {
+        // 準備 
+        KmeansDataSet baseModel = new KmeansDataSet();
+        double[][] baseCentroids = {{0.0d, 0.0d}, {10.0d, 10.0d}};
+        baseModel.setCentroids(baseCentroids);
+        baseModel.setClusteredNum(new long[]{1L, 3L});
+
+        KmeansPoint point1 = new KmeansPoint();
+        point1.setDataPoint(new double[]{2.0d, 2.0d});
+        KmeansPoint point2 = new KmeansPoint();
+        point2.setDataPoint(new double[]{10.0d, 14.0d});
+
+        // 実施
+        KmeansDataSet actual = KmeansCalculator.updateDataModelByMiniBatch(baseModel,
+                Lists.newArrayList(point1, point2));
+
+        // 検証
+        assertArrayEquals(new double[]{1.0d, 1.0d}, actual.getCentroids()[0], 0.0001d);
+        assertArrayEquals(new double[]{10.0d, 11.0d}, actual.getCentroids()[1], 0.0001d);
+        assertArrayEquals(new long[]{2L, 4L}, actual.getClusteredNum());
+        assertArrayEquals(new double[]{0.0d, 0.0d}, baseModel.getCentroids()[0], 0.0d);
+        assertArrayEquals(new long[]{1L, 3L}, baseModel.getClusteredNum());
+    }
+
+    /**
+     * 要素数を保持しない学習モデルの中心点が、最初の点で置き換わらないことを確認する。
+     * 
+     * @target {@link KmeansCalculator#updateDataModelByMiniBatch(KmeansDataSet, List)}
+     * @test 既存の中心点を1点分の要素数として扱い更新されること
+     *    condition::要素数を保持しない2中心点の学習モデルに1点を投入
+     *    result::中心点が学習率1/2で更新され、要素数が2、1となること
+     */
+    @Test
+    public void testUpdateDataModelByMiniBatch_要素数なし初期値1()
+    {
+        // 準備 
+        KmeansDataSet baseModel = new KmeansDataSet();
+        baseModel.setCentroids(new double[][]{{0.0d, 0.0d}, {10.0d, 10.0d}});
+
+        KmeansPoint point = new KmeansPoint();
+        point.setDataPoint(new double[]{2.0d, 4.0d});
+
+        // 実施
+        KmeansDataSet actual = KmeansCalculator.updateDataModelByMiniBatch(baseModel,
+                Lists.newArrayList(point));
+
+        // 検証
+        assertArrayEquals(new double[]{1.0d, 2.0d}, actual.getCentroids()[0], 0.0001d);
+        assertArrayEquals(new double[]{10.0d, 10.0d}, actual.getCentroids()[1], 0.0d);
+        assertArrayEquals(new long[]{2L, 1L}, actual.getClusteredNum());
+    }
+
+    /**
+     * 累計要素数の上限を指定した場合、学習率が上限値から算出した値を下回らないことを確認する。
+     * 
+     * @target {@link KmeansCalculator#updateDataModelByMiniBatch(KmeansDataSet, List, long)}
+     * @test 累計要素数が上限値に丸められ、学習率が「1 / 上限値」となること
+     *    condition::要素数1000の1中心点を持つ学習モデルに、累計要素数の上限4を指定して1点を投入
+     *    result::中心点が学習率1/4で更新され、要素数が4となること
+     */
+    @Test
+    public void testUpdateDataModelByMiniBatch_要素数上限()
+    {
+        // 準備 
+        KmeansDataSet baseModel = new KmeansDataSet();
+        baseModel.setCentroids(new double[][]{{0.0d, 0.0d}});
+        baseModel.setClusteredNum(new long[]{1000L});
+
+        KmeansPoint point = new KmeansPoint();
+        point.setDataPoint(new double[]{4.0d, 8.0d});
+
+        // 実施
+        KmeansDataSet actual = KmeansCalculator.updateDataModelByMiniBatch(baseModel,
+                Lists.newArrayList(point), 4L);
+
+        // 検証
+        assertArrayEquals(new double[]{1.0d, 2.0d}, actual.getCentroids()[0], 0.0001d);
+        assertArrayEquals(new long[]{4L}, actual.getClusteredNum());
+    }
+
     /**
      * 指定した対象点、ベースの点集合をベースに最近点が取得されること。
      * 
@@ -200,6 +546,83 @@ public class KmeansCalculatorTest
         assertEquals(23.11981d, actual.getDistance(), 0.0001d);
     }
 
+    /**
+     * 点行列を指定して各点の最近点が一括で取得されることを確認する。
+     * 
+     * @target {@link KmeansCalculator#classifyAll(PointMatrix, KmeansDataSet, double[])}
+     * @test 各点の最近点のインデックスと距離が一括で取得できること
+     *    condition::null要素を含む3中心点の学習モデルに2点を指定してメソッドを実行
+     *    result::各点の最近点のインデックスと距離が個別に判別した場合と一致すること
+     */
+    @Test
+    public void testClassifyAll_一括判別()
+    {
+        // 準備 
+        double[][] centroids = {null, {15.525d, 17.11d, 11.07d}, {25.525d, 27.11d, 21.07d}};
+        KmeansDataSet dataSet = new KmeansDataSet();
+        dataSet.setCentroids(centroids);
+
+        double[][] points = {{1.05d, 2.11d, 1.07d}, {24.0d, 27.0d, 20.0d}};
+        PointMatrix pointMatrix = PointMatrix.fromRows(points);
+        double[] distances = new double[2];
+
+        // 実施
+        int[] actual = KmeansCalculator.classifyAll(pointMatrix, dataSet, distances);
+
+        // 検証
+        assertArrayEquals(new int[]{1, 2}, actual);
+        assertEquals(23.11981d, distances[0], 0.0001d);
+        assertEquals(KmeansCalculator.nearestCentroid(points[1], centroids).getDistance(),
+                distances[1], 0.0d);
+    }
+
+    /**
+     * 中心点数が多い場合にKD木を用いた判別結果が線形探索の結果と一致することを確認する。
+     * 
+     * @target {@link KmeansCalculator#classify(KmeansPoint, KmeansDataSet)}
+     * @test KD木を用いた判別結果が線形探索の結果と一致すること
+     *    condition::3000点のうち先頭200点(重複点、null要素を含む)を中心点とし、3000点を判別
+     *    result::全点で最も近い中心点のインデックスと距離が線形探索の結果と一致すること
+     */
+    @Test
+    public void testClassify_KD木探索結果一致() throws IOException
+    {
+        // 準備 
+        String filePath = DATA_DIR + "KmeansCalculatorTest_3000.csv";
+        File targetFile = new File(filePath);
+        List<String> fileContents = FileUtils.readLines(targetFile);
+
+        List<KmeansPoint> pointList = Lists.newArrayList();
+        for (String targetLine : fileContents)
+        {
+            KmeansPoint entity = convertToEntity(targetLine, ",");
+            pointList.add(entity);
+        }
+
+        double[][] centroids = new double[200][];
+        for (int index = 0; index < centroids.length; index++)
+        {
+            centroids[index] = pointList.get(index).getDataPoint();
+        }
+        centroids[10] = null;
+        centroids[150] = centroids[20];
+
+        KmeansDataSet dataSet = new KmeansDataSet();
+        dataSet.setCentroids(centroids);
+
+        for (KmeansPoint targetPoint : pointList)
+        {
+            // 実施
+            KmeansResult actual = KmeansCalculator.classify(targetPoint, dataSet);
+
+            // 検証
+            KmeansResult expected = KmeansCalculator.nearestCentroid(targetPoint.getDataPoint(),
+                    centroids);
+            assertEquals(expected.getCentroidIndex(), actual.getCentroidIndex());
+            assertEquals(expected.getDistance(), actual.getDistance(), 0.0d);
+        }
+    }
+
     /**
      * double配列の平均値が取得できることを確認する。
      * 
@@ -357,6 +780,158 @@ public class KmeansCalculatorTest
         assertArrayEquals(expected1, actual.getCentroids()[1], 0.01d);
     }
 
+    /**
+     * 要素数で重み付けしたマージが行われ、要素数がマージ結果に引き継がれることを確認する。
+     * 
+     * @target {@link KmeansCalculator#mergeKmeansWeighted(KmeansDataSet, KmeansDataSet)}
+     * @test 要素数で重み付けした中心点と大きい方の要素数が取得できること
+     *    condition::要素数を保持する2クラスタの学習モデル同士をマージ
+     *    result::近い中心点同士が要素数で重み付けして平均され、要素数は大きい方が引き継がれること
+     */
+    @Test
+    public void testMergeKmeansWeighted_要素数重み付け()
+    {
+        // 準備 
+        KmeansDataSet baseKmeans = new KmeansDataSet();
+        KmeansDataSet targetKmeans = new KmeansDataSet();
+
+        baseKmeans.setCentroids(new double[][]{{0.0d, 0.0d}, {10.0d, 10.0d}});
+        baseKmeans.setClusteredNum(new long[]{3L, 1L});
+        targetKmeans.setCentroids(new double[][]{{9.0d, 9.0d}, {1.0d, 1.0d}});
+        targetKmeans.setClusteredNum(new long[]{3L, 1L});
+
+        // 実施
+        KmeansDataSet actual = KmeansCalculator.mergeKmeansWeighted(baseKmeans, targetKmeans);
+
+        // 検証
+        assertArrayEquals(new double[]{0.25d, 0.25d}, actual.getCentroids()[0], 0.0001d);
+        assertArrayEquals(new double[]{9.25d, 9.25d}, actual.getCentroids()[1], 0.0001d);
+        assertArrayEquals(new long[]{3L, 3L}, actual.getClusteredNum());
+    }
+
+    /**
+     * 同じ学習モデル同士を繰り返しマージしても要素数が増加しないことを確認する。
+     * 
+     * @target {@link KmeansCalculator#mergeKmeansWeighted(KmeansDataSet, KmeansDataSet)}
+     * @test 繰り返しマージしても要素数が変化しないこと
+     *    condition::2パーティションが互いのマージ結果を保存し、その保存結果同士のマージを100回繰り返す
+     *    result::要素数が初回マージ結果から変化せず、中心点がマッピングした中心点の間に留まること
+     */
+    @Test
+    public void testMergeKmeansWeighted_繰り返しマージ要素数安定()
+    {
+        // 準備 
+        KmeansDataSet partition0 = new KmeansDataSet();
+        partition0.setCentroids(new double[][]{{0.0d, 0.0d}, {10.0d, 10.0d}});
+        partition0.setClusteredNum(new long[]{300L, 100L});
+        KmeansDataSet partition1 = new KmeansDataSet();
+        partition1.setCentroids(new double[][]{{9.0d, 9.0d}, {1.0d, 1.0d}});
+        partition1.setClusteredNum(new long[]{200L, 400L});
+
+        // 実施
+        for (int count = 0; count < 100; count++)
+        {
+            KmeansDataSet merged0 = KmeansCalculator.mergeKmeansWeighted(partition0, partition1);
+            KmeansDataSet merged1 = KmeansCalculator.mergeKmeansWeighted(partition1, partition0);
+            partition0 = merged0;
+            partition1 = merged1;
+        }
+
+        // 検証
+        assertArrayEquals(new long[]{400L, 200L}, partition0.getClusteredNum());
+        assertArrayEquals(new long[]{200L, 400L}, partition1.getClusteredNum());
+        for (int index = 0; index < 2; index++)
+        {
+            assertTrue(partition0.getCentroids()[0][index] >= 0.0d);
+            assertTrue(partition0.getCentroids()[0][index] <= 1.0d);
+            assertTrue(partition0.getCentroids()[1][index] >= 9.0d);
+            assertTrue(partition0.getCentroids()[1][index] <= 10.0d);
+        }
+    }
+
+    /**
+     * 要素数を保持しない学習モデル同士のマージ結果が従来のマージ結果と一致することを確認する。
+     * 
+     * @target {@link KmeansCalculator#mergeKmeansWeighted(KmeansDataSet, KmeansDataSet)}
+     * @test 要素数を保持しない場合に単純平均でマージされること
+     *    condition::3000点から生成した8クラスタの学習モデル同士をマージ
+     *    result::{@link KmeansCalculator#mergeKmeans(KmeansDataSet, KmeansDataSet)}の結果と一致すること
+     */
+    @Test
+    public void testMergeKmeansWeighted_要素数なし従来結果一致() throws IOException
+    {
+        // 準備 
+        String filePath = DATA_DIR + "KmeansCalculatorTest_3000.csv";
+        File targetFile = new File(filePath);
+        List<String> fileContents = FileUtils.readLines(targetFile);
+
+        List<KmeansPoint> pointList = Lists.newArrayList();
+        for (String targetLine : fileContents)
+        {
+            KmeansPoint entity = convertToEntity(targetLine, ",");
+            pointList.add(entity);
+        }
+
+        KmeansDataSet baseKmeans = KmeansCalculator.createDataModel(pointList.subList(0, 1500),
+                8, 100, 0.1d);
+        KmeansDataSet targetKmeans = KmeansCalculator.createDataModel(
+                pointList.subList(1500, 3000), 8, 100, 0.1d);
+        baseKmeans.setClusteredNum(null);
+        targetKmeans.setClusteredNum(null);
+        KmeansDataSet expected = KmeansCalculator.mergeKmeans(baseKmeans, targetKmeans);
+
+        // 実施
+        KmeansDataSet actual = KmeansCalculator.mergeKmeansWeighted(baseKmeans, targetKmeans);
+
+        // 検証
+        for (int index = 0; index < 8; index++)
+        {
+            assertArrayEquals(expected.getCentroids()[index], actual.getCentroids()[index],
+                    0.000001d);
+        }
+    }
+
+    /**
+     * 中心点を追加する度に全点の重みつき確率分布を算出する従来方式で、KMeans++アルゴリズムの初期中心点リストを生成する。
+     * 
+     * @param basePoints 中心点を生成するベースデータ
+     * @param clusterNum クラスタ数
+     * @param random 乱数生成器
+     * @return 中心点リスト
+     */
+    private static List<KmeansPoint> createInitialCentroidsByDxs(List<KmeansPoint> basePoints,
+            int clusterNum, Random random)
+    {
+        List<KmeansPoint> resultList = Lists.newArrayList();
+        List<KmeansPoint> pointList = Lists.newArrayList(basePoints);
+        resultList.add(pointList.remove(random.nextInt(pointList.size())));
+
+        for (int centroidIndex = 1; centroidIndex < clusterNum; centroidIndex++)
+        {
+            double[] dxs = KmeansCalculator.computeDxs(pointList, resultList);
+            double r = random.nextDouble() * dxs[dxs.length - 1];
+            int next = Arrays.binarySearch(dxs, r);
+            int index = 0;
+            if (next > 0)
+            {
+                index = next - 1;
+            }
+            else if (next < 0)
+            {
+                index = -2 - next;
+            }
+
+            while (index > 0 && resultList.contains(pointList.get(index)))
+            {
+                index = index - 1;
+            }
+
+            resultList.add(pointList.get(index));
+        }
+
+        return resultList;
+    }
+
     /**
      * 入力行を基にKMeans用のエンティティを生成する。
      * 
@@ -379,4 +954,17 @@ public class KmeansCalculatorTest
         result.setDataPoint(points);
         return result;
     }
+
+    /**
+     * 指定した座標を持つKMeans用のエンティティを生成する。
+     * 
+     * @param values 座標値
+     * @return KMeans用のエンティティ
+     */
+    private static KmeansPoint createPoint(double... values)
+    {
+        KmeansPoint result = new KmeansPoint();
+        result.setDataPoint(values);
+        return result;
+    }
 }
@@ -0,0 +1,300 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.clustering.kmeans;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import acromusashi.stream.ml.clustering.kmeans.entity.KmeansCoreset;
+import acromusashi.stream.ml.clustering.kmeans.entity.KmeansDataSet;
+import acromusashi.stream.ml.clustering.kmeans.entity.KmeansPoint;
+
+import com.google.common.collect.Lists;
+
+/**
+ * KmeansCoresetCalculatorのテストクラス
+ *
+ * @author kimura
+ */
+public class KmeansCoresetCalculatorTest
+{
+    /**
+     * 多数の点を追加してもコアセットの点数が上限以下に保たれ、重みの合計が追加した点数と一致することを確認する。
+     *
+     * @target {@link KmeansCoresetCalculator#addPoints(KmeansCoreset, List, Random)}
+     * @test コアセットの点数が上限以下に保たれること
+     *    condition::バケットサイズ20、最大階層数3のコアセットに10000点を追加
+     *    result::点数が「バケットサイズ * (最大階層数 + 1)」以下であり、重みの合計が10000であること
+     */
+    @Test
+    public void testAddPoints_点数上限維持()
+    {
+        // 準備
+        KmeansCoreset coreset = new KmeansCoreset(2, 20, 3);
+        List<KmeansPoint> pointList = createClusteredPoints(10000, new Random(1L));
+
+        // 実施
+        KmeansCoresetCalculator.addPoints(coreset, pointList, new Random(2L));
+
+        // 検証
+        assertTrue(KmeansCoresetCalculator.countPoints(coreset) <= 20 * (3 + 1));
+
+        double totalWeight = 0.0d;
+        for (int index = 0; index < coreset.getBufferCount(); index++)
+        {
+            totalWeight += coreset.getBufferWeights()[index];
+        }
+        for (double[] weights : coreset.getLevelWeights())
+        {
+            for (int index = 0; weights != null && index < weights.length; index++)
+            {
+                totalWeight += weights[index];
+            }
+        }
+        assertEquals(10000.0d, totalWeight, 0.0001d);
+    }
+
+    /**
+     * コアセットから生成した学習モデルの中心点が各クラスタの中心に位置することを確認する。
+     *
+     * @target {@link KmeansCoresetCalculator#createDataModel(KmeansCoreset, int, int, double, Random)}
+     * @test 各クラスタの中心に中心点が算出されること
+     *    condition::(0,0)、(100,0)、(0,100)を中心とする3クラスタの点を複数バッチに分けて追加し、クラスタ数3で学習モデルを生成
+     *    result::各クラスタの中心付近に中心点が算出され、要素数の合計が追加した点数と一致すること
+     */
+    @Test
+    public void testCreateDataModel_クラスタ中心算出()
+    {
+        // 準備
+        KmeansCoreset coreset = new KmeansCoreset(2, 50, 4);
+        Random pointRandom = new Random(1L);
+        Random coresetRandom = new Random(2L);
+        for (int batchIndex = 0; batchIndex < 30; batchIndex++)
+        {
+            KmeansCoresetCalculator.addPoints(coreset, createClusteredPoints(300, pointRandom),
+                    coresetRandom);
+        }
+
+        // 実施
+        KmeansDataSet actual = KmeansCoresetCalculator.createDataModel(coreset, 3, 100, 0.0001d,
+                coresetRandom);
+
+        // 検証
+        double[][] centroids = actual.getCentroids();
+        Arrays.sort(centroids, new Comparator<double[]>() {
+            @Override
+            public int compare(double[] o1, double[] o2)
+            {
+                return Double.compare(o1[0] - o1[1], o2[0] - o2[1]);
+            }
+        });
+        assertArrayEquals(new double[]{0.0d, 100.0d}, centroids[0], 1.0d);
+        assertArrayEquals(new double[]{0.0d, 0.0d}, centroids[1], 1.0d);
+        assertArrayEquals(new double[]{100.0d, 0.0d}, centroids[2], 1.0d);
+
+        long totalCount = 0L;
+        for (long count : actual.getClusteredNum())
+        {
+            totalCount += count;
+        }
+        assertEquals(9000L, totalCount, 1L);
+    }
+
+    /**
+     * マージ時に取得した他パーティションのコアセットの点が学習モデルに反映されることを確認する。
+     *
+     * @target {@link KmeansCoresetCalculator#createDataModel(KmeansCoreset, java.util.Map, int, int, double, Random)}
+     * @test 他パーティションのコアセットの点を合わせて学習モデルが生成されること
+     *    condition::パーティションAに(0,0)、(100,0)周辺の点、パーティションBに(0,100)周辺の点を追加し、学習モデル同士をマージした後にクラスタ数3で学習モデルを生成
+     *    result::3クラスタの中心付近に中心点が算出され、要素数の合計が両パーティションの点数の合計と一致すること
+     */
+    @Test
+    public void testCreateDataModel_他パーティションコアセット反映()
+    {
+        // 準備
+        Random random = new Random(3L);
+        KmeansDataSet modelA = createPartitionModel(random, new double[]{0.0d, 0.0d},
+                new double[]{100.0d, 0.0d});
+        KmeansDataSet modelB = createPartitionModel(random, new double[]{0.0d, 100.0d});
+        KmeansDataSet merged = KmeansCalculator.mergeKmeansWeighted(modelA, modelB);
+
+        // 実施
+        KmeansDataSet actual = KmeansCoresetCalculator.createDataModel(merged.getCoreset(),
+                merged.getPeerCoresets(), 3, 100, 0.0001d, random);
+
+        // 検証
+        assertEquals(1, merged.getPeerCoresets().size());
+        assertSortedCentroids(actual.getCentroids());
+        assertEquals(1800L, sumCount(actual), 1L);
+    }
+
+    /**
+     * 学習モデル同士のマージを繰り返しても他パーティションのコアセットが重複せず、点の重みが増加しないことを確認する。
+     *
+     * @target {@link KmeansCalculator#mergeKmeansWeighted(KmeansDataSet, KmeansDataSet)}
+     * @test 他パーティションのコアセットが重複せず、生成した学習モデルの要素数の合計が変化しないこと
+     *    condition::2パーティションが互いのマージ結果を保存し、その保存結果同士のマージを10回繰り返した後に学習モデルを生成
+     *    result::他パーティションのコアセットが1個のみであり、要素数の合計が両パーティションの点数の合計と一致すること
+     */
+    @Test
+    public void testMergeKmeansWeighted_繰り返しマージ重複なし()
+    {
+        // 準備
+        Random random = new Random(4L);
+        KmeansDataSet partition0 = createPartitionModel(random, new double[]{0.0d, 0.0d},
+                new double[]{100.0d, 0.0d});
+        KmeansDataSet partition1 = createPartitionModel(random, new double[]{0.0d, 100.0d});
+
+        // 実施
+        for (int count = 0; count < 10; count++)
+        {
+            KmeansDataSet merged0 = KmeansCalculator.mergeKmeansWeighted(partition0, partition1);
+            KmeansDataSet merged1 = KmeansCalculator.mergeKmeansWeighted(partition1, partition0);
+            partition0 = merged0;
+            partition1 = merged1;
+        }
+        KmeansDataSet actual = KmeansCoresetCalculator.createDataModel(partition0.getCoreset(),
+                partition0.getPeerCoresets(), 3, 100, 0.0001d, random);
+
+        // 検証
+        assertEquals(1, partition0.getPeerCoresets().size());
+        assertEquals(1, partition1.getPeerCoresets().size());
+        assertSortedCentroids(actual.getCentroids());
+        assertEquals(1800L, sumCount(actual), 1L);
+    }
+
+    /**
+     * 距離を比較できない点を含むコアセットから学習モデルを生成できることを確認する。
+     *
+     * @target {@link KmeansCoresetCalculator#createDataModel(KmeansCoreset, int, int, double, Random)}
+     * @test 例外が発生せず、全ての点がいずれかのクラスタに割り当てられること
+     *    condition::3クラスタの点300点に座標がNaNの点、距離の二乗がオーバーフローする点を加えて縮約が発生するコアセットに追加し、クラスタ数3で学習モデルを生成
+     *    result::中心点が3点算出され、要素数の合計が追加した点数と一致すること
+     */
+    @Test
+    public void testCreateDataModel_距離比較不能点()
+    {
+        // 準備
+        KmeansCoreset coreset = new KmeansCoreset(2, 20, 3);
+        Random random = new Random(4L);
+        List<KmeansPoint> pointList = createClusteredPoints(300, random);
+        KmeansPoint nanPoint = new KmeansPoint();
+        nanPoint.setDataPoint(new double[]{Double.NaN, 0.0d});
+        pointList.add(nanPoint);
+        KmeansPoint farPoint = new KmeansPoint();
+        farPoint.setDataPoint(new double[]{1.0e200d, 1.0e200d});
+        pointList.add(farPoint);
+        KmeansCoresetCalculator.addPoints(coreset, pointList, random);
+
+        // 実施
+        KmeansDataSet actual = KmeansCoresetCalculator.createDataModel(coreset, 3, 100, 0.0001d,
+                random);
+
+        // 検証
+        assertEquals(3, actual.getCentroids().length);
+        assertEquals(302L, sumCount(actual), 1L);
+    }
+
+    /**
+     * 指定した中心周辺の点を600点ずつ追加したコアセットから、1パーティション分の学習モデルを生成する。
+     *
+     * @param random 乱数生成器
+     * @param centers 点を生成する中心
+     * @return 学習モデル
+     */
+    private static KmeansDataSet createPartitionModel(Random random, double[]... centers)
+    {
+        KmeansCoreset coreset = new KmeansCoreset(2, 50, 4);
+        List<KmeansPoint> pointList = Lists.newArrayList();
+        for (int index = 0; index < 600; index++)
+        {
+            for (double[] center : centers)
+            {
+                KmeansPoint point = new KmeansPoint();
+                point.setDataPoint(new double[]{center[0] + random.nextGaussian(),
+                        center[1] + random.nextGaussian()});
+                pointList.add(point);
+            }
+        }
+
+        KmeansCoresetCalculator.addPoints(coreset, pointList, random);
+        return KmeansCoresetCalculator.createDataModel(coreset, centers.length, 100, 0.0001d,
+                random);
+    }
+
+    /**
+     * 中心点が(0,100)、(0,0)、(100,0)の付近に算出されていることを検証する。
+     *
+     * @param centroids 中心点
+     */
+    private static void assertSortedCentroids(double[][] centroids)
+    {
+        Arrays.sort(centroids, new Comparator<double[]>() {
+            @Override
+            public int compare(double[] o1, double[] o2)
+            {
+                return Double.compare(o1[0] - o1[1], o2[0] - o2[1]);
+            }
+        });
+        assertArrayEquals(new double[]{0.0d, 100.0d}, centroids[0], 1.0d);
+        assertArrayEquals(new double[]{0.0d, 0.0d}, centroids[1], 1.0d);
+        assertArrayEquals(new double[]{100.0d, 0.0d}, centroids[2], 1.0d);
+    }
+
+    /**
+     * 学習モデルの要素数の合計を算出する。
+     *
+     * @param dataSet 学習モデル
+     * @return 要素数の合計
+     */
+    private static long sumCount(KmeansDataSet dataSet)
+    {
+        long totalCount = 0L;
+        for (long count : dataSet.getClusteredNum())
+        {
+            totalCount += count;
+        }
+        return totalCount;
+    }
+
+    /**
+     * (0,0)、(100,0)、(0,100)を中心とする3クラスタの点を生成する。
+     *
+     * @param pointNum 点数
+     * @param random 乱数生成器
+     * @return 点リスト
+     */
+    private static List<KmeansPoint> createClusteredPoints(int pointNum, Random random)
+    {
+        double[][] centers = {{0.0d, 0.0d}, {100.0d, 0.0d}, {0.0d, 100.0d}};
+        List<KmeansPoint> pointList = Lists.newArrayList();
+        for (int index = 0; index < pointNum; index++)
+        {
+            double[] center = centers[index % centers.length];
+            KmeansPoint point = new KmeansPoint();
+            point.setDataPoint(new double[]{center[0] + random.nextGaussian(),
+                    center[1] + random.nextGaussian()});
+            pointList.add(point);
+        }
+
+        return pointList;
+    }
+}
@@ -0,0 +1,300 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.clustering.kmeans;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import acromusashi.stream.ml.clustering.kmeans.entity.KmeansDataSet;
+import acromusashi.stream.ml.clustering.kmeans.entity.KmeansPoint;
+import acromusashi.stream.ml.clustering.kmeans.state.KmeansState;
+
+/**
+ * KmeansQueryのテストクラス
+ * 
+ * @author kimura
+ */
+public class KmeansQueryTest
+{
+    /** 状態名称 */
+    private static final String STATE_NAME = "KMeans";
+
+    /**
+     * 状態の保存TransactionIdが変化していない場合、前回取得した学習モデルを再利用することを確認する。
+     * 
+     * @target {@link KmeansQuery#getDataSet(storm.trident.state.map.MapState)}
+     * @test 前回取得した学習モデルを再利用すること
+     *    condition::学習モデルを保存した状態から、保存TransactionIdが変化しない状態で2回取得
+     *    result::2回目は状態から取得せず、1回目と同一の学習モデルが返ること
+     */
+    @Test
+    public void testGetDataSet_保存TxId同一再利用()
+    {
+        // 準備
+        TestKmeansState state = createState(0, 1);
+        putModel(state, 1L, createModel(0.0d));
+        KmeansQuery query = new KmeansQuery(STATE_NAME);
+        query.setCacheModel(true);
+
+        // 実施
+        KmeansDataSet first = query.getDataSet(state);
+        KmeansDataSet second = query.getDataSet(state);
+
+        // 検証
+        assertSame(first, second);
+        assertEquals(1, state.getCount);
+    }
+
+    /**
+     * 状態の保存TransactionIdが変化した場合、学習モデルを再取得することを確認する。
+     * 
+     * @target {@link KmeansQuery#getDataSet(storm.trident.state.map.MapState)}
+     * @test 学習モデルを再取得すること
+     *    condition::学習モデルを取得した後、別のTransactionIdで新たな学習モデルを保存して取得
+     *    result::状態から再取得し、新たに保存した学習モデルが返ること
+     */
+    @Test
+    public void testGetDataSet_保存TxId変化再取得()
+    {
+        // 準備
+        TestKmeansState state = createState(0, 1);
+        putModel(state, 1L, createModel(0.0d));
+        KmeansQuery query = new KmeansQuery(STATE_NAME);
+        query.setCacheModel(true);
+        query.getDataSet(state);
+
+        KmeansDataSet updated = createModel(5.0d);
+        putModel(state, 2L, updated);
+
+        // 実施
+        KmeansDataSet actual = query.getDataSet(state);
+
+        // 検証
+        assertSame(updated, actual);
+        assertEquals(2, state.getCount);
+    }
+
+    /**
+     * 他のパーティションとのマージを実行する時刻に達した場合、保存TransactionIdが変化していなくても学習モデルを再取得し、マージ結果を返すことを確認する。
+     * 
+     * @target {@link KmeansQuery#getDataSet(storm.trident.state.map.MapState)}
+     * @test マージ時刻に達した場合はマージした学習モデルを再取得し、以後はマージ結果を再利用すること
+     *    condition::2パーティション構成でマージ間隔30秒とし、学習モデルを取得した後、31秒経過させて2回取得
+     *    result::1回目の再取得で他のパーティションの学習モデルとマージした結果が返り、2回目はマージ結果を再利用すること
+     */
+    @Test
+    public void testGetDataSet_マージ時刻到達再取得()
+    {
+        // 準備
+        TestKmeansState state = createState(0, 2);
+        putModel(state, 1L, createModel(0.0d));
+        state.models.put(1, createModel(2.0d));
+        KmeansQuery query = new KmeansQuery(STATE_NAME);
+        query.setCacheModel(true);
+
+        KmeansDataSet before = query.getDataSet(state);
+        state.currentTime = state.currentTime + 31000L;
+
+        // 実施
+        KmeansDataSet merged = query.getDataSet(state);
+        KmeansDataSet reused = query.getDataSet(state);
+
+        // 検証
+        assertArrayEquals(new double[]{0.0d, 0.0d}, before.getCentroids()[0], 0.0d);
+        assertArrayEquals(new double[]{1.0d, 1.0d}, merged.getCentroids()[0], 0.0001d);
+        assertSame(merged, reused);
+        assertEquals(3, state.getCount);
+    }
+
+    /**
+     * 一括判別結果が中心点インデックスと距離のみを保持するJSON形式で生成されることを確認する。
+     * 
+     * @target {@link KmeansQuery#createCompactResults(KmeansDataSet, List)}
+     * @test 中心点インデックスと距離を保持するJSON形式となること
+     *    condition::中心点(0, 0)、(10, 10)の学習モデルで(3, 4)、(10, 11)を判別
+     *    result::中心点インデックスと距離のみを保持するJSON文字列が点の順に生成されること
+     */
+    @Test
+    public void testCreateCompactResults_中心点なし()
+    {
+        // 準備
+        KmeansQuery query = new KmeansQuery(STATE_NAME);
+        List<KmeansPoint> pointList = Arrays.asList(createPoint(3.0d, 4.0d),
+                createPoint(10.0d, 11.0d));
+
+        // 実施
+        List<String> actual = query.createCompactResults(createModel(0.0d), pointList);
+
+        // 検証
+        assertEquals(Arrays.asList("{\"centroidIndex\":0,\"distance\":5.0}",
+                "{\"centroidIndex\":1,\"distance\":1.0}"), actual);
+    }
+
+    /**
+     * 中心点を含める設定の場合、一括判別結果に中心点の座標配列が追加されることを確認する。
+     * 
+     * @target {@link KmeansQuery#createCompactResults(KmeansDataSet, List)}
+     * @test 中心点の座標配列がJSON配列として追加されること
+     *    condition::中心点を含める設定とし、中心点(0, 0)、(10, 10)の学習モデルで(3, 4)を判別。学習モデルなしでも判別
+     *    result::中心点インデックス、距離、中心点を保持するJSON文字列が生成されること。学習モデルなしの場合は空文字となること
+     */
+    @Test
+    public void testCreateCompactResults_中心点あり()
+    {
+        // 準備
+        KmeansQuery query = new KmeansQuery(STATE_NAME);
+        query.setIncludeCentroid(true);
+        List<KmeansPoint> pointList = Arrays.asList(createPoint(3.0d, 4.0d));
+
+        // 実施
+        List<String> actual = query.createCompactResults(createModel(0.0d), pointList);
+        List<String> actualNoModel = query.createCompactResults(null, pointList);
+
+        // 検証
+        assertEquals(
+                Arrays.asList("{\"centroidIndex\":0,\"distance\":5.0,\"centroid\":[0.0,0.0]}"),
+                actual);
+        assertEquals(Arrays.asList(""), actualNoModel);
+    }
+
+    /**
+     * 時刻を固定した状態を生成して初期化する。
+     * 
+     * @param partitionIndex パーティションID
+     * @param numPartitions パーティション数
+     * @return 状態
+     */
+    private static TestKmeansState createState(int partitionIndex, int numPartitions)
+    {
+        TestKmeansState state = new TestKmeansState(partitionIndex, numPartitions);
+        state.setMergeInterval(30);
+        state.initialize();
+        return state;
+    }
+
+    /**
+     * 指定したTransactionIdで学習モデルを保存する。
+     * 
+     * @param state 状態
+     * @param txId TransactionId
+     * @param dataSet 学習モデル
+     */
+    private static void putModel(TestKmeansState state, long txId, KmeansDataSet dataSet)
+    {
+        state.beginCommit(txId);
+        state.multiPut(Arrays.asList(Arrays.asList((Object) STATE_NAME)), Arrays.asList(dataSet));
+        state.commit(txId);
+    }
+
+    /**
+     * (base, base)、(base + 10, base + 10)を中心点とする学習モデルを生成する。
+     * 
+     * @param base 中心点の座標の基準値
+     * @return 学習モデル
+     */
+    private static KmeansDataSet createModel(double base)
+    {
+        KmeansDataSet dataSet = new KmeansDataSet();
+        dataSet.setCentroids(new double[][]{{base, base}, {base + 10.0d, base + 10.0d}});
+        dataSet.setClusteredNum(new long[]{1L, 1L});
+        return dataSet;
+    }
+
+    /**
+     * 2次元の点を生成する。
+     * 
+     * @param x X座標
+     * @param y Y座標
+     * @return 点
+     */
+    private static KmeansPoint createPoint(double x, double y)
+    {
+        KmeansPoint point = new KmeansPoint();
+        point.setDataPoint(new double[]{x, y});
+        return point;
+    }
+
+    /**
+     * パーティション毎の学習モデルをメモリ上に保持し、取得回数と時刻を制御できる試験用の状態クラス
+     */
+    private static class TestKmeansState extends KmeansState
+    {
+        /** パーティションID>学習モデルのマッピング */
+        Map<Integer, KmeansDataSet> models      = new HashMap<>();
+
+        /** 学習モデルの取得回数 */
+        int                         getCount;
+
+        /** 現在時刻 */
+        long                        currentTime = 1000000L;
+
+        /**
+         * 構成情報を指定してインスタンスを生成する。
+         * 
+         * @param partitionIndex パーティションID
+         * @param numPartitions パーティション数
+         */
+        TestKmeansState(int partitionIndex, int numPartitions)
+        {
+            super(partitionIndex, numPartitions);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void onInitialize()
+        {
+            // Do nothing.
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected KmeansDataSet getState(String baseKey, Long txId, int partitionIndex,
+                boolean isSelfPartition) throws IOException
+        {
+            this.getCount++;
+            return this.models.get(partitionIndex);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void putState(String baseKey, Long txId, int partitionIndex,
+                KmeansDataSet putState) throws IOException
+        {
+            this.models.put(partitionIndex, putState);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected long getCurrentTime()
+        {
+            return this.currentTime;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.clustering.kmeans;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import acromusashi.stream.ml.clustering.kmeans.entity.KmeansCoreset;
+import acromusashi.stream.ml.clustering.kmeans.entity.KmeansDataSet;
+import acromusashi.stream.ml.clustering.kmeans.entity.KmeansPoint;
+
+import com.google.common.collect.Lists;
+
+/**
+ * KmeansUpdaterのテストクラス
+ *
+ * @author kimura
+ */
+public class KmeansUpdaterTest
+{
+    /**
+     * 保存された学習モデルのコアセットを更新せず、他パーティションのコアセットを合わせて学習モデルを生成することを確認する。
+     *
+     * @target {@link KmeansUpdater#updateCoreset(KmeansDataSet, List)}
+     * @test 保存された学習モデルのコアセットが更新されず、他パーティションのコアセットの点が学習モデルに反映されること
+     *    condition::(0,0)周辺の点を保持するパーティションの学習モデルと(100,100)周辺の点を保持するパーティションの学習モデルをマージし、(0,0)周辺の点を投入
+     *    result::マージ結果のコアセットの点数と重みが変化せず、生成した学習モデルのコアセットは複製であり、(0,0)、(100,100)付近に中心点が算出されること
+     */
+    @Test
+    public void testUpdateCoreset_保存コアセット非更新()
+    {
+        // 準備
+        Random random = new Random(1L);
+        KmeansDataSet partition0 = createPartitionModel(new double[]{0.0d, 0.0d}, random);
+        KmeansDataSet partition1 = createPartitionModel(new double[]{100.0d, 100.0d}, random);
+        KmeansDataSet merged = KmeansCalculator.mergeKmeansWeighted(partition0, partition1);
+        KmeansCoreset savedCoreset = merged.getCoreset();
+        int savedBufferCount = savedCoreset.getBufferCount();
+        double[] savedWeights = savedCoreset.getBufferWeights().clone();
+
+        KmeansUpdater updater = new KmeansUpdater();
+        updater.setClusterNum(2);
+        updater.setCoresetBucketSize(50);
+        updater.setCoresetDecayFactor(0.5d);
+        updater.setRandomSeed(2L);
+
+        // 実施
+        KmeansDataSet actual = updater.updateCoreset(merged,
+                createPoints(new double[]{0.0d, 0.0d}, 10, random));
+
+        // 検証
+        assertSame(savedCoreset, merged.getCoreset());
+        assertEquals(savedBufferCount, savedCoreset.getBufferCount());
+        assertArrayEquals(savedWeights, savedCoreset.getBufferWeights(), 0.0d);
+        assertNotSame(savedCoreset, actual.getCoreset());
+        assertEquals(savedCoreset.getCoresetId(), actual.getCoreset().getCoresetId());
+
+        double[][] centroids = actual.getCentroids();
+        int farIndex = 0;
+        if (centroids[1][0] > centroids[0][0])
+        {
+            farIndex = 1;
+        }
+        assertArrayEquals(new double[]{100.0d, 100.0d}, centroids[farIndex], 1.0d);
+        assertArrayEquals(new double[]{0.0d, 0.0d}, centroids[1 - farIndex], 1.0d);
+    }
+
+    /**
+     * シードを設定した場合に、バッチ毎に同一の乱数列で初期中心点を生成しないことを確認する。
+     *
+     * @target {@link KmeansUpdater#createInitialCentroids(List)}
+     * @test 初回はシードで生成した乱数生成器と同一の初期中心点となり、2回目は異なる初期中心点となること
+     *    condition::シードを設定し、同一の点リストに対してKMeans++アルゴリズムで初期中心点を2回生成
+     *    result::初回はシードから生成した乱数生成器を用いた結果と一致し、2回目は初回と異なること
+     */
+    @Test
+    public void testCreateInitialCentroids_シード設定時乱数列継続()
+    {
+        // 準備
+        List<KmeansPoint> pointList = createPoints(new double[]{0.0d, 0.0d}, 200,
+                new Random(1L));
+        KmeansUpdater updater = new KmeansUpdater();
+        updater.setClusterNum(4);
+        updater.setRandomSeed(2L);
+        List<KmeansPoint> expected = KmeansCalculator.createInitialCentroids(pointList, 4,
+                new Random(2L));
+
+        // 実施
+        List<KmeansPoint> first = updater.createInitialCentroids(pointList);
+        List<KmeansPoint> second = updater.createInitialCentroids(pointList);
+
+        // 検証
+        boolean sameAsFirst = true;
+        for (int index = 0; index < 4; index++)
+        {
+            assertArrayEquals(expected.get(index).getDataPoint(),
+                    first.get(index).getDataPoint(), 0.0d);
+            if (Arrays.equals(first.get(index).getDataPoint(),
+                    second.get(index).getDataPoint()) == false)
+            {
+                sameAsFirst = false;
+            }
+        }
+        assertFalse(sameAsFirst);
+    }
+
+    /**
+     * 指定した中心周辺の点を保持するコアセットから、1パーティション分の学習モデルを生成する。
+     *
+     * @param center 点を生成する中心
+     * @param random 乱数生成器
+     * @return 学習モデル
+     */
+    private static KmeansDataSet createPartitionModel(double[] center, Random random)
+    {
+        KmeansCoreset coreset = new KmeansCoreset(2, 50, 4);
+        KmeansCoresetCalculator.addPoints(coreset, createPoints(center, 520, random), random);
+        return KmeansCoresetCalculator.createDataModel(coreset, 2, 100, 0.0001d, random);
+    }
+
+    /**
+     * 指定した中心周辺の点を生成する。
+     *
+     * @param center 点を生成する中心
+     * @param pointNum 点数
+     * @param random 乱数生成器
+     * @return 点リスト
+     */
+    private static List<KmeansPoint> createPoints(double[] center, int pointNum, Random random)
+    {
+        List<KmeansPoint> pointList = Lists.newArrayList();
+        for (int index = 0; index < pointNum; index++)
+        {
+            KmeansPoint point = new KmeansPoint();
+            point.setDataPoint(new double[]{center[0] + random.nextGaussian(),
+                    center[1] + random.nextGaussian()});
+            pointList.add(point);
+        }
+
+        return pointList;
+    }
+}
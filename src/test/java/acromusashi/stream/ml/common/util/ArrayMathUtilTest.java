@@ -0,0 +1,118 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.common.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.apache.commons.math.util.MathUtils;
+import org.junit.Test;
+
+/**
+ * ArrayMathUtilのテストクラス
+ *
+ * @author kimura
+ */
+public class ArrayMathUtilTest
+{
+    /**
+     * ユークリッド距離の二乗が、ユークリッド距離の二乗と一致することを確認する。
+     *
+     * @target {@link ArrayMathUtil#squaredDistance(double[], double[])}
+     * @test ユークリッド距離の二乗と一致すること
+     *    condition::乱数で生成した5次元の点の組100件の距離の二乗を算出
+     *    result::{@link MathUtils#distance(double[], double[])}の二乗と誤差範囲内で一致すること
+     */
+    @Test
+    public void testSquaredDistance_距離二乗一致()
+    {
+        // 準備
+        Random random = new Random(1L);
+
+        for (int index = 0; index < 100; index++)
+        {
+            double[] point1 = createPoint(5, random);
+            double[] point2 = createPoint(5, random);
+
+            // 実施
+            double actual = ArrayMathUtil.squaredDistance(point1, point2);
+
+            // 検証
+            double distance = MathUtils.distance(point1, point2);
+            assertEquals(distance * distance, actual, 1.0e-9d);
+        }
+    }
+
+    /**
+     * 配列中の指定位置から始まる点同士の距離の二乗が算出されることを確認する。
+     *
+     * @target {@link ArrayMathUtil#squaredDistance(double[], int, double[], int, int)}
+     * @test 指定位置から次元数分の要素のみを用いて算出されること
+     *    condition::3点を行優先で格納した配列の2点目と、別配列のオフセット1から始まる点の距離の二乗を算出
+     *    result::該当する要素のみから算出した値と一致すること
+     */
+    @Test
+    public void testSquaredDistance_オフセット指定()
+    {
+        // 準備
+        double[] values = {100.0d, 100.0d, 1.0d, 2.0d, -100.0d, -100.0d};
+        double[] target = {50.0d, 4.0d, 6.0d, 50.0d};
+
+        // 実施
+        double actual = ArrayMathUtil.squaredDistance(values, 2, target, 1, 2);
+
+        // 検証
+        assertEquals(25.0d, actual, 0.0d);
+    }
+
+    /**
+     * 同一点同士の距離の二乗、0次元の点同士の距離の二乗が0となることを確認する。
+     *
+     * @target {@link ArrayMathUtil#squaredDistance(double[], int, double[], int, int)}
+     * @test 0となること
+     *    condition::同一の配列同士、次元数0を指定して距離の二乗を算出
+     *    result::いずれも0となること
+     */
+    @Test
+    public void testSquaredDistance_距離0()
+    {
+        // 準備
+        double[] point = {1.5d, -2.5d, 3.0d};
+
+        // 実施
+        double sameActual = ArrayMathUtil.squaredDistance(point, point);
+        double emptyActual = ArrayMathUtil.squaredDistance(point, 0, point, 1, 0);
+
+        // 検証
+        assertEquals(0.0d, sameActual, 0.0d);
+        assertEquals(0.0d, emptyActual, 0.0d);
+    }
+
+    /**
+     * 各座標が標準正規分布に従う点を生成する。
+     *
+     * @param dimension 次元数
+     * @param random 乱数生成器
+     * @return 点
+     */
+    private static double[] createPoint(int dimension, Random random)
+    {
+        double[] point = new double[dimension];
+        for (int index = 0; index < dimension; index++)
+        {
+            point[index] = random.nextGaussian();
+        }
+        return point;
+    }
+}
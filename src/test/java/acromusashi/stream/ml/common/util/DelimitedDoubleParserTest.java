@@ -0,0 +1,144 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+
+/**
+ * DelimitedDoubleParserのテストクラス
+ *
+ * @author kimura
+ */
+public class DelimitedDoubleParserTest
+{
+    /**
+     * 様々な表記の数値が「StringUtils.split」「trim」「Double.parseDouble」と同じ値に変換されることを確認する。
+     *
+     * @target {@link DelimitedDoubleParser#parseToArray(CharSequence)}
+     * @test 従来の変換方式と同じ値に変換されること
+     *    condition::符号、小数、指数、桁数の多い数値、前後の空白、連続した区切り文字を含む文字列を変換
+     *    result::従来の変換方式と全要素のビット表現が一致すること
+     */
+    @Test
+    public void testParseToArray_従来変換一致()
+    {
+        // 準備
+        String[] lines = {"1.05, 2.11 ,1.07", "-0.0,+3,4e-3,5E+10,0.000123",
+                ",,12345678901234567890,0.1234567890123456789,", "1e22,1e23,9007199254740993",
+                "NaN,Infinity,-Infinity,0x1p3,1.5d,2f", "0,-0,00012.5000,1e-400,1e400"};
+        DelimitedDoubleParser parser = new DelimitedDoubleParser(",");
+
+        for (String line : lines)
+        {
+            // 実施
+            double[] actual = parser.parseToArray(line);
+
+            // 検証
+            double[] expected = parseByDefault(line, ",");
+            assertEquals(expected.length, actual.length);
+            for (int index = 0; index < actual.length; index++)
+            {
+                assertEquals(Double.doubleToLongBits(expected[index]),
+                        Double.doubleToLongBits(actual[index]));
+            }
+        }
+    }
+
+    /**
+     * 乱数で生成した数値が従来の変換方式と同じ値に変換されることを確認する。
+     *
+     * @target {@link DelimitedDoubleParser#parse(CharSequence)}
+     * @test 従来の変換方式と同じ値に変換されること
+     *    condition::乱数で生成した数値を桁数を変えて文字列化し、複数の区切り文字で区切って変換
+     *    result::従来の変換方式と全要素のビット表現が一致すること
+     */
+    @Test
+    public void testParse_乱数値従来変換一致()
+    {
+        // 準備
+        Random random = new Random(1L);
+        DelimitedDoubleParser parser = new DelimitedDoubleParser(",\t");
+
+        for (int lineIndex = 0; lineIndex < 1000; lineIndex++)
+        {
+            StringBuilder builder = new StringBuilder();
+            for (int index = 0; index < 10; index++)
+            {
+                double value = random.nextGaussian() * Math.pow(10, random.nextInt(20) - 10);
+                builder.append(String.format("%." + random.nextInt(18) + "f", value));
+                builder.append(",\t".charAt(index % 2));
+            }
+            builder.append(Double.toString(random.nextDouble()));
+            String line = builder.toString();
+
+            // 実施
+            int actualNum = parser.parse(line);
+
+            // 検証
+            double[] expected = parseByDefault(line, ",\t");
+            assertEquals(expected.length, actualNum);
+            for (int index = 0; index < actualNum; index++)
+            {
+                assertEquals(Double.doubleToLongBits(expected[index]),
+                        Double.doubleToLongBits(parser.getValues()[index]));
+            }
+        }
+    }
+
+    /**
+     * 数値として解釈できない要素を含む場合に変換に失敗することを確認する。
+     *
+     * @target {@link DelimitedDoubleParser#parseToArray(CharSequence)}
+     * @test 変換に失敗すること
+     *    condition::数値以外の要素、空白のみの要素、null文字列を変換
+     *    result::nullが返ること
+     */
+    @Test
+    public void testParseToArray_不正値()
+    {
+        // 準備
+        DelimitedDoubleParser parser = new DelimitedDoubleParser(",");
+
+        // 実施・検証
+        assertNull(parser.parseToArray("1.0,abc,3.0"));
+        assertNull(parser.parseToArray("1.0, ,3.0"));
+        assertNull(parser.parseToArray("1.0,1e,3.0"));
+        assertNull(parser.parseToArray("1.0,-,3.0"));
+        assertNull(parser.parseToArray(null));
+    }
+
+    /**
+     * 従来の方式で文字列を変換する。
+     *
+     * @param line 変換対象文字列
+     * @param delimiter 区切り文字列
+     * @return 変換結果
+     */
+    private static double[] parseByDefault(String line, String delimiter)
+    {
+        String[] splitedStr = StringUtils.split(line, delimiter);
+        double[] result = new double[splitedStr.length];
+        for (int index = 0; index < splitedStr.length; index++)
+        {
+            result[index] = Double.parseDouble(splitedStr[index].trim());
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,214 @@
+/**
+* Copyright (c) Acroquest Technology Co, Ltd. All Rights Reserved.
+* Please read the associated COPYRIGHTS file for more details.
+*
+* THE SOFTWARE IS PROVIDED BY Acroquest Technolog Co., Ltd.,
+* WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+* IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDER BE LIABLE FOR ANY
+* CLAIM, DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING
+* OR DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES.
+*/
+package acromusashi.stream.ml.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * PointMatrixのテストクラス
+ *
+ * @author kimura
+ */
+public class PointMatrixTest
+{
+    /**
+     * null行を含む座標配列から生成した行列が、null行を値の存在しない行として保持することを確認する。
+     *
+     * @target {@link PointMatrix#fromRows(double[][])}
+     * @test null行を値の存在しない行として保持すること
+     *    condition::先頭と3番目がnullの4行の座標配列から行列を生成
+     *    result::列数が値の存在する行の次元数となり、null行のみ値の存在しない行と判定され、行優先で値が格納されること
+     */
+    @Test
+    public void testFromRows_null行混在()
+    {
+        // 準備
+        double[][] rows = {null, {1.0d, 2.0d}, null, {3.0d, 4.0d}};
+
+        // 実施
+        PointMatrix actual = PointMatrix.fromRows(rows);
+
+        // 検証
+        assertEquals(4, actual.getRowNum());
+        assertEquals(2, actual.getColumnNum());
+        assertTrue(actual.isEmptyRow(0));
+        assertFalse(actual.isEmptyRow(1));
+        assertTrue(actual.isEmptyRow(2));
+        assertFalse(actual.isEmptyRow(3));
+        assertNull(actual.getRow(0));
+        assertArrayEquals(new double[]{1.0d, 2.0d}, actual.getRow(1), 0.0d);
+        assertArrayEquals(new double[]{3.0d, 4.0d}, actual.getRow(3), 0.0d);
+        assertEquals(6, actual.getOffset(3));
+        assertEquals(3.0d, actual.getValues()[actual.getOffset(3)], 0.0d);
+    }
+
+    /**
+     * 値の存在しない行に座標を設定した場合、値の存在する行として扱われることを確認する。
+     *
+     * @target {@link PointMatrix#setRow(int, double[])}
+     * @test null設定で値の存在しない行となり、座標の再設定で値の存在する行に戻ること
+     *    condition::2行2列の行列の1行目にnullを設定した後、座標を設定
+     *    result::null設定後は値の存在しない行、座標設定後は設定した座標を保持する行と判定されること
+     */
+    @Test
+    public void testSetRow_null設定後再設定()
+    {
+        // 準備
+        PointMatrix matrix = new PointMatrix(2, 2);
+        matrix.setRow(0, new double[]{1.0d, 1.0d});
+
+        // 実施
+        matrix.setRow(1, null);
+
+        // 検証
+        assertFalse(matrix.isEmptyRow(0));
+        assertTrue(matrix.isEmptyRow(1));
+        assertNull(matrix.getRow(1));
+
+        // 実施
+        matrix.setRow(1, new double[]{5.0d, 6.0d});
+
+        // 検証
+        assertFalse(matrix.isEmptyRow(1));
+        assertArrayEquals(new double[]{5.0d, 6.0d}, matrix.getRow(1), 0.0d);
+    }
+
+    /**
+     * 点毎の座標配列に変換した結果が、生成元の座標配列と一致することを確認する。
+     *
+     * @target {@link PointMatrix#toRows()}
+     * @test 生成元の座標配列と一致し、行列の値を共有しないこと
+     *    condition::null行を含む3行の座標配列から行列を生成し、点毎の座標配列に変換
+     *    result::null行を含めて生成元と一致し、変換結果を変更しても行列の値が変わらないこと
+     */
+    @Test
+    public void testToRows_往復変換一致()
+    {
+        // 準備
+        double[][] rows = {{1.0d, 2.0d, 3.0d}, null, {-4.0d, 5.5d, 0.0d}};
+        PointMatrix matrix = PointMatrix.fromRows(rows);
+
+        // 実施
+        double[][] actual = matrix.toRows();
+
+        // 検証
+        assertEquals(3, actual.length);
+        assertArrayEquals(rows[0], actual[0], 0.0d);
+        assertNull(actual[1]);
+        assertArrayEquals(rows[2], actual[2], 0.0d);
+
+        actual[0][0] = 100.0d;
+        assertEquals(1.0d, matrix.getRow(0)[0], 0.0d);
+    }
+
+    /**
+     * 値の存在する行がない行列に対して最近傍行を探索した場合、-1が返ることを確認する。
+     *
+     * @target {@link PointMatrix#nearestRow(double[], int)}
+     * @test -1が返ること
+     *    condition::0行の行列、全行がnullの行列に対して最近傍行を探索
+     *    result::いずれも-1が返ること
+     */
+    @Test
+    public void testNearestRow_空行列()
+    {
+        // 準備
+        PointMatrix emptyMatrix = new PointMatrix(0, 2);
+        PointMatrix nullMatrix = PointMatrix.fromRows(new double[][]{null, null});
+        double[] target = {1.0d, 1.0d};
+
+        // 実施
+        int emptyActual = emptyMatrix.nearestRow(target, 0);
+        int nullActual = nullMatrix.nearestRow(target, 0);
+
+        // 検証
+        assertEquals(-1, emptyActual);
+        assertEquals(-1, nullActual);
+    }
+
+    /**
+     * 対象点に最も近い行が、値の存在しない行を除外し、同距離の場合は小さいインデックスで選択されることを確認する。
+     *
+     * @target {@link PointMatrix#nearestRow(double[], int)}
+     * @test 値の存在しない行を除外し、同距離の場合はインデックスが小さい行が選択されること
+     *    condition::null行、対象点から等距離の2行を含む行列に対して、オフセットを指定して最近傍行を探索
+     *    result::等距離の2行のうちインデックスが小さい行が返ること
+     */
+    @Test
+    public void testNearestRow_null行除外同距離()
+    {
+        // 準備
+        PointMatrix matrix = PointMatrix.fromRows(new double[][]{{10.0d, 10.0d}, null,
+                {1.0d, 0.0d}, {-1.0d, 0.0d}});
+        double[] target = {9.0d, 0.0d, 0.0d};
+
+        // 実施
+        int actual = matrix.nearestRow(target, 1);
+
+        // 検証
+        assertEquals(2, actual);
+        assertEquals(1.0d, matrix.squaredDistance(2, target, 1), 0.0d);
+    }
+
+    /**
+     * 対象点がNaNを含み距離を比較できない場合に、値の存在する最初の行が返ることを確認する。
+     *
+     * @target {@link PointMatrix#nearestRow(double[], int)}
+     * @test 値の存在する最初の行が返ること
+     *    condition::先頭がnull行の行列に対して、NaNを含む対象点の最近傍行を探索
+     *    result::値の存在する最初の行のインデックスが返ること
+     */
+    @Test
+    public void testNearestRow_NaN座標()
+    {
+        // 準備
+        PointMatrix matrix = PointMatrix.fromRows(new double[][]{null, {1.0d, 0.0d},
+                {-1.0d, 0.0d}});
+        double[] target = {Double.NaN, 0.0d};
+
+        // 実施
+        int actual = matrix.nearestRow(target, 0);
+
+        // 検証
+        assertEquals(1, actual);
+    }
+
+    /**
+     * 距離の二乗がオーバーフローする場合に、値の存在する最初の行が返ることを確認する。
+     *
+     * @target {@link PointMatrix#nearestRow(double[], int)}
+     * @test 値の存在する最初の行が返ること
+     *    condition::1e200のオーダーの座標を持つ対象点の最近傍行を探索
+     *    result::値の存在する最初の行のインデックスが返ること
+     */
+    @Test
+    public void testNearestRow_距離二乗オーバーフロー()
+    {
+        // 準備
+        PointMatrix matrix = PointMatrix.fromRows(new double[][]{null, {1.0d, 0.0d},
+                {-1.0d, 0.0d}});
+        double[] target = {1.0e200d, -1.0e200d};
+
+        // 実施
+        int actual = matrix.nearestRow(target, 0);
+
+        // 検証
+        assertEquals(1, actual);
+    }
+}